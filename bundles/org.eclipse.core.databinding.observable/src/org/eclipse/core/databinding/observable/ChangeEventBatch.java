@@ -0,0 +1,309 @@
+/*******************************************************************************
+ * Copyright (c) 2015 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.core.databinding.observable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.databinding.observable.list.ListChangeEvent;
+import org.eclipse.core.databinding.observable.list.ListDiffEntry;
+import org.eclipse.core.databinding.observable.map.MapChangeEvent;
+import org.eclipse.core.databinding.observable.map.MapDiff;
+import org.eclipse.core.databinding.observable.map.WritableMap;
+import org.eclipse.core.databinding.observable.set.SetChangeEvent;
+import org.eclipse.core.databinding.observable.set.SetDiff;
+import org.eclipse.core.databinding.observable.set.UnionSet;
+import org.eclipse.core.databinding.observable.set.WritableSet;
+import org.eclipse.core.internal.databinding.observable.Util;
+
+/**
+ * Collects the change events fired within {@link Realm#runBatched(Runnable)}
+ * and delivers them as one merged event per observable when the batch ends.
+ * <p>
+ * Only {@link ChangeEvent}s and list, set and map change events are deferred.
+ * Any other event fired by an observable first delivers the events deferred
+ * for that observable, so listeners never observe events of one observable out
+ * of order.
+ * <p>
+ * Set and map diffs are merged by comparing their elements and keys with
+ * equals(), which is only correct for observables known to do the same. The
+ * events of other sets and maps, for instance identity sets or sets comparing
+ * their elements with an element comparer, are delivered one by one.
+ *
+ * @since 1.5
+ */
+/* package */class ChangeEventBatch {
+
+	/**
+	 * ChangeManager -> PendingEvents. Keyed by identity since observable
+	 * collections implement equals() and hashCode() by content.
+	 */
+	private final Map pendingEvents = new IdentityHashMap();
+
+	/**
+	 * The change managers in the order their first event was fired. May
+	 * contain managers whose events were dispatched early.
+	 */
+	private final List pendingManagers = new ArrayList();
+
+	/**
+	 * @param manager
+	 *            the change manager firing the event
+	 * @param event
+	 *            the event
+	 * @return <code>true</code> if the event was deferred,
+	 *         <code>false</code> if the caller must dispatch it now
+	 */
+	boolean defer(ChangeManager manager, ObservableEvent event) {
+		PendingEvents pending = (PendingEvents) pendingEvents.get(manager);
+		if (event instanceof ChangeEvent || event instanceof ListChangeEvent
+				|| event instanceof SetChangeEvent
+				|| event instanceof MapChangeEvent) {
+			if (pending == null) {
+				pending = new PendingEvents();
+				pendingEvents.put(manager, pending);
+				pendingManagers.add(manager);
+			}
+			pending.add(event);
+			return true;
+		}
+		if (pending != null) {
+			pendingEvents.remove(manager);
+			pending.dispatch(manager);
+		}
+		return false;
+	}
+
+	/**
+	 * Dispatches all deferred events.
+	 */
+	void flush() {
+		for (int i = 0; i < pendingManagers.size(); i++) {
+			ChangeManager manager = (ChangeManager) pendingManagers.get(i);
+			PendingEvents pending = (PendingEvents) pendingEvents
+					.remove(manager);
+			if (pending != null) {
+				pending.dispatch(manager);
+			}
+		}
+		pendingManagers.clear();
+	}
+
+	private static class PendingEvents {
+		private ChangeEvent changeEvent;
+
+		/**
+		 * The collection change events in the order they were fired. All
+		 * events are of the same type since they stem from one observable.
+		 */
+		private List collectionEvents;
+
+		void add(ObservableEvent event) {
+			if (event instanceof ChangeEvent) {
+				if (changeEvent == null) {
+					changeEvent = (ChangeEvent) event;
+				}
+			} else {
+				if (collectionEvents == null) {
+					collectionEvents = new ArrayList(2);
+				}
+				collectionEvents.add(event);
+			}
+		}
+
+		void dispatch(ChangeManager manager) {
+			ObservableEvent collectionEvent = null;
+			if (collectionEvents != null && !canMerge()) {
+				if (changeEvent != null) {
+					manager.dispatchEvent(changeEvent);
+				}
+				for (Iterator it = collectionEvents.iterator(); it.hasNext();) {
+					manager.dispatchEvent((ObservableEvent) it.next());
+				}
+				return;
+			}
+			if (collectionEvents != null) {
+				collectionEvent = mergeCollectionEvents();
+				if (collectionEvent == null) {
+					// the changes cancelled each other out
+					return;
+				}
+			}
+			if (changeEvent != null) {
+				manager.dispatchEvent(changeEvent);
+			}
+			if (collectionEvent != null) {
+				manager.dispatchEvent(collectionEvent);
+			}
+		}
+
+		private boolean canMerge() {
+			ObservableEvent first = (ObservableEvent) collectionEvents.get(0);
+			if (collectionEvents.size() == 1
+					|| first instanceof ListChangeEvent) {
+				return true;
+			}
+			// the exact classes, since subclasses may replace the wrapped
+			// collection
+			Class type = first.getObservable().getClass();
+			return type == WritableSet.class || type == UnionSet.class
+					|| type == WritableMap.class;
+		}
+
+		private ObservableEvent mergeCollectionEvents() {
+			ObservableEvent first = (ObservableEvent) collectionEvents.get(0);
+			if (collectionEvents.size() == 1) {
+				return first;
+			}
+			if (first instanceof ListChangeEvent) {
+				return mergeListEvents((ListChangeEvent) first);
+			}
+			if (first instanceof SetChangeEvent) {
+				return mergeSetEvents((SetChangeEvent) first);
+			}
+			return mergeMapEvents((MapChangeEvent) first);
+		}
+
+		private ObservableEvent mergeListEvents(ListChangeEvent first) {
+			List entries = new ArrayList();
+			for (Iterator it = collectionEvents.iterator(); it.hasNext();) {
+				ListDiffEntry[] differences = ((ListChangeEvent) it.next()).diff
+						.getDifferences();
+				for (int i = 0; i < differences.length; i++) {
+					entries.add(differences[i]);
+				}
+			}
+			return new ListChangeEvent(first.getObservableList(), Diffs
+					.createListDiff((ListDiffEntry[]) entries
+							.toArray(new ListDiffEntry[entries.size()])));
+		}
+
+		private ObservableEvent mergeSetEvents(SetChangeEvent first) {
+			Set additions = new HashSet();
+			Set removals = new HashSet();
+			for (Iterator it = collectionEvents.iterator(); it.hasNext();) {
+				SetDiff diff = ((SetChangeEvent) it.next()).diff;
+				for (Iterator elements = diff.getRemovals().iterator(); elements
+						.hasNext();) {
+					Object element = elements.next();
+					if (!additions.remove(element)) {
+						removals.add(element);
+					}
+				}
+				for (Iterator elements = diff.getAdditions().iterator(); elements
+						.hasNext();) {
+					Object element = elements.next();
+					if (!removals.remove(element)) {
+						additions.add(element);
+					}
+				}
+			}
+			if (additions.isEmpty() && removals.isEmpty()) {
+				return null;
+			}
+			return new SetChangeEvent(first.getObservableSet(), Diffs
+					.createSetDiff(additions, removals));
+		}
+
+		private ObservableEvent mergeMapEvents(MapChangeEvent first) {
+			// key -> KeyChange, tracking each key from before the first diff to
+			// after the last one
+			Map keyChanges = new HashMap();
+			for (Iterator it = collectionEvents.iterator(); it.hasNext();) {
+				MapDiff diff = ((MapChangeEvent) it.next()).diff;
+				for (Iterator keys = diff.getRemovedKeys().iterator(); keys
+						.hasNext();) {
+					Object key = keys.next();
+					KeyChange change = getKeyChange(keyChanges, key, true, diff);
+					change.present = false;
+					change.newValue = null;
+				}
+				for (Iterator keys = diff.getAddedKeys().iterator(); keys
+						.hasNext();) {
+					Object key = keys.next();
+					KeyChange change = getKeyChange(keyChanges, key, false, diff);
+					change.present = true;
+					change.newValue = diff.getNewValue(key);
+				}
+				for (Iterator keys = diff.getChangedKeys().iterator(); keys
+						.hasNext();) {
+					Object key = keys.next();
+					KeyChange change = getKeyChange(keyChanges, key, true, diff);
+					change.present = true;
+					change.newValue = diff.getNewValue(key);
+				}
+			}
+
+			Set addedKeys = new HashSet();
+			Set removedKeys = new HashSet();
+			Set changedKeys = new HashSet();
+			Map oldValues = new HashMap();
+			Map newValues = new HashMap();
+			for (Iterator it = keyChanges.entrySet().iterator(); it.hasNext();) {
+				Map.Entry entry = (Map.Entry) it.next();
+				Object key = entry.getKey();
+				KeyChange change = (KeyChange) entry.getValue();
+				if (change.wasPresent) {
+					if (!change.present) {
+						removedKeys.add(key);
+					} else if (!Util.equals(change.oldValue, change.newValue)) {
+						changedKeys.add(key);
+					} else {
+						continue;
+					}
+					oldValues.put(key, change.oldValue);
+				} else if (change.present) {
+					addedKeys.add(key);
+				} else {
+					continue;
+				}
+				if (change.present) {
+					newValues.put(key, change.newValue);
+				}
+			}
+			if (addedKeys.isEmpty() && removedKeys.isEmpty()
+					&& changedKeys.isEmpty()) {
+				return null;
+			}
+			return new MapChangeEvent(first.getObservableMap(), Diffs
+					.createMapDiff(addedKeys, removedKeys, changedKeys,
+							oldValues, newValues));
+		}
+
+		private static KeyChange getKeyChange(Map keyChanges, Object key,
+				boolean wasPresent, MapDiff diff) {
+			KeyChange change = (KeyChange) keyChanges.get(key);
+			if (change == null) {
+				change = new KeyChange();
+				change.wasPresent = wasPresent;
+				if (wasPresent) {
+					change.oldValue = diff.getOldValue(key);
+				}
+				keyChanges.put(key, change);
+			}
+			return change;
+		}
+	}
+
+	private static class KeyChange {
+		boolean wasPresent;
+		Object oldValue;
+		boolean present;
+		Object newValue;
+	}
+}
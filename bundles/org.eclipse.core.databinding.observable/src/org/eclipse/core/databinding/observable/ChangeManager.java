@@ -110,6 +110,20 @@ import org.eclipse.core.runtime.ListenerList;
 	}
 
 	protected void fireEvent(ObservableEvent event) {
+		ChangeEventBatch batch = realm.batch;
+		if (batch != null && batch.defer(this, event)) {
+			return;
+		}
+		dispatchEvent(event);
+	}
+
+	/**
+	 * Notifies the listeners registered for the event's type, regardless of
+	 * any batch running in the realm.
+	 * 
+	 * @param event
+	 */
+	void dispatchEvent(ObservableEvent event) {
 		Object listenerType = event.getListenerType();
 		int listenerTypeIndex = findListenerTypeIndex(listenerType);
 		if (listenerTypeIndex != -1) {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2010 IBM Corporation and others.
+ * Copyright (c) 2006, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -27,6 +27,7 @@ import org.eclipse.core.databinding.observable.list.ListDiffEntry;
 import org.eclipse.core.databinding.observable.map.MapDiff;
 import org.eclipse.core.databinding.observable.set.SetDiff;
 import org.eclipse.core.databinding.observable.value.ValueDiff;
+import org.eclipse.core.internal.databinding.observable.ListDiffComputer;
 import org.eclipse.core.internal.databinding.observable.Util;
 
 /**
@@ -35,6 +36,13 @@ import org.eclipse.core.internal.databinding.observable.Util;
  */
 public class Diffs {
 
+	/**
+	 * Lists up to this combined size are diffed with the original algorithm,
+	 * which is quadratic but keeps the reported entries unchanged for the
+	 * small lists most clients deal with.
+	 */
+	private static final int SMALL_LIST_DIFF_THRESHOLD = 64;
+
 	/**
 	 * Returns a {@link ListDiff} describing the change between the specified
 	 * old and new list states.
@@ -46,6 +54,9 @@ public class Diffs {
 	 * @return the differences between oldList and newList
 	 */
 	public static ListDiff computeListDiff(List oldList, List newList) {
+		if (oldList.size() + newList.size() > SMALL_LIST_DIFF_THRESHOLD) {
+			return computeListDiff(oldList, newList, true);
+		}
 		List diffEntries = new ArrayList();
 		createListDiffs(new ArrayList(oldList), newList, diffEntries);
 		ListDiff listDiff = createListDiff((ListDiffEntry[]) diffEntries
@@ -53,6 +64,34 @@ public class Diffs {
 		return listDiff;
 	}
 
+	/**
+	 * Returns a {@link ListDiff} describing the change between the specified
+	 * old and new list states. The diff is computed in O(n log n) time, where
+	 * n is the combined size of both lists.
+	 * <p>
+	 * If <code>detectMoves</code> is <code>true</code>, elements which are
+	 * present in both lists but changed their relative position are reported
+	 * as a remove entry immediately followed by an add entry of the same
+	 * element, which {@link ListDiff#accept} reports as a
+	 * move. Otherwise such elements may be removed and added at unrelated
+	 * points in the returned diff.
+	 * 
+	 * @param oldList
+	 *            the old list state
+	 * @param newList
+	 *            the new list state
+	 * @param detectMoves
+	 *            whether moved elements should be reported as adjacent
+	 *            remove/add entries
+	 * @return the differences between oldList and newList
+	 * @since 1.5
+	 */
+	public static ListDiff computeListDiff(List oldList, List newList,
+			boolean detectMoves) {
+		return createListDiff(ListDiffComputer.computeDifferences(oldList,
+				newList, detectMoves));
+	}
+
 	/**
 	 * Returns a lazily computed {@link ListDiff} describing the change between
 	 * the specified old and new list states.
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2009 IBM Corporation and others.
+ * Copyright (c) 2005, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,10 +11,7 @@
  *******************************************************************************/
 package org.eclipse.core.databinding.observable;
 
-import java.util.Set;
-
 import org.eclipse.core.databinding.util.Policy;
-import org.eclipse.core.internal.databinding.identity.IdentitySet;
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
@@ -60,20 +57,159 @@ import org.eclipse.core.runtime.Status;
 public class ObservableTracker {
 
 	/**
-	 * Threadlocal storage pointing to the current Set of IObservables, or null
-	 * if none. Note that this is actually the top of a stack. Whenever a method
-	 * changes the current value, it remembers the old value as a local variable
-	 * and restores the old value when the method exits.
+	 * Threadlocal storage pointing to the tracking state of the current thread,
+	 * or null if none has been needed yet. The state points to the frames at
+	 * the top of the getterCalled and observableCreated stacks. Whenever a
+	 * method changes the current frame, it remembers the old frame as a local
+	 * variable and restores the old frame when the method exits.
+	 */
+	private static ThreadLocal currentState = new ThreadLocal();
+
+	/**
+	 * Frames with a capacity above this are not reused, so that a single large
+	 * run does not permanently retain a large table.
+	 */
+	private static final int MAX_POOLED_FRAME_CAPACITY = 1024;
+
+	/**
+	 * Maximum number of unused frames kept per thread.
 	 */
-	private static ThreadLocal currentChangeListener = new ThreadLocal();
+	private static final int MAX_POOLED_FRAMES = 8;
+
+	private static class TrackingState {
+		TrackingFrame getterCalledFrame;
+
+		TrackingFrame observableCreatedFrame;
+
+		int ignoreCount;
 
-	private static ThreadLocal currentStaleListener = new ThreadLocal();
+		private final TrackingFrame[] pool = new TrackingFrame[MAX_POOLED_FRAMES];
 
-	private static ThreadLocal currentGetterCalledSet = new ThreadLocal();
+		private int poolSize;
 
-	private static ThreadLocal currentObservableCreatedSet = new ThreadLocal();
+		TrackingFrame obtainFrame(IChangeListener changeListener,
+				IStaleListener staleListener) {
+			TrackingFrame frame;
+			if (poolSize > 0) {
+				frame = pool[--poolSize];
+				pool[poolSize] = null;
+			} else {
+				frame = new TrackingFrame();
+			}
+			frame.changeListener = changeListener;
+			frame.staleListener = staleListener;
+			return frame;
+		}
 
-	private static ThreadLocal currentIgnoreCount = new ThreadLocal();
+		void releaseFrame(TrackingFrame frame) {
+			frame.changeListener = null;
+			frame.staleListener = null;
+			if (frame.clear() && poolSize < pool.length) {
+				pool[poolSize++] = frame;
+			}
+		}
+	}
+
+	/**
+	 * The listeners and observables of one runAndMonitor or runAndCollect
+	 * invocation. Observables are kept in insertion order, with an open
+	 * addressing table of indices for identity lookups, so that adding an
+	 * observable allocates nothing once the frame has grown to size.
+	 */
+	private static class TrackingFrame {
+		IChangeListener changeListener;
+
+		IStaleListener staleListener;
+
+		private IObservable[] observables = new IObservable[8];
+
+		/**
+		 * Open addressing table holding index + 1 into observables, or 0 for
+		 * empty slots. Its length is a power of two, at least twice the
+		 * length of observables.
+		 */
+		private int[] table = new int[16];
+
+		private int size;
+
+		/**
+		 * @return <code>true</code> if the observable was added,
+		 *         <code>false</code> if it was already present
+		 */
+		boolean add(IObservable observable) {
+			int mask = table.length - 1;
+			int slot = hash(observable) & mask;
+			while (table[slot] != 0) {
+				if (observables[table[slot] - 1] == observable) {
+					return false;
+				}
+				slot = (slot + 1) & mask;
+			}
+			if (size == observables.length) {
+				grow();
+				return add(observable);
+			}
+			observables[size++] = observable;
+			table[slot] = size;
+			return true;
+		}
+
+		private void grow() {
+			IObservable[] newObservables = new IObservable[size * 2];
+			System.arraycopy(observables, 0, newObservables, 0, size);
+			observables = newObservables;
+			table = new int[newObservables.length * 2];
+			int mask = table.length - 1;
+			for (int i = 0; i < size; i++) {
+				int slot = hash(observables[i]) & mask;
+				while (table[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				table[slot] = i + 1;
+			}
+		}
+
+		private static int hash(Object object) {
+			int hash = System.identityHashCode(object);
+			// spread the bits, identity hash codes are often multiples of 8
+			return hash ^ (hash >>> 16) ^ (hash >>> 7);
+		}
+
+		IObservable[] toArray() {
+			IObservable[] result = new IObservable[size];
+			System.arraycopy(observables, 0, result, 0, size);
+			return result;
+		}
+
+		/**
+		 * Removes all observables.
+		 * 
+		 * @return <code>true</code> if the frame can be reused,
+		 *         <code>false</code> if it grew too large to be pooled
+		 */
+		boolean clear() {
+			if (observables.length > MAX_POOLED_FRAME_CAPACITY) {
+				return false;
+			}
+			for (int i = 0; i < size; i++) {
+				observables[i] = null;
+			}
+			for (int i = 0; i < table.length; i++) {
+				table[i] = 0;
+			}
+			size = 0;
+			return true;
+		}
+	}
+
+	private static TrackingState getState() {
+		TrackingState state = (TrackingState) currentState.get();
+		if (state == null) {
+			state = new TrackingState();
+			currentState.set(state);
+		}
+		return state;
+	}
 
 	/**
 	 * Invokes the given runnable, and returns the set of IObservables that were
@@ -92,34 +228,26 @@ public class ObservableTracker {
 	 */
 	public static IObservable[] runAndMonitor(Runnable runnable,
 			IChangeListener changeListener, IStaleListener staleListener) {
+		TrackingState state = getState();
 		// Remember the previous value in the listener stack
-		Set lastObservableSet = (Set) currentGetterCalledSet.get();
-		IChangeListener lastChangeListener = (IChangeListener) currentChangeListener
-				.get();
-		IStaleListener lastStaleListener = (IStaleListener) currentStaleListener
-				.get();
-		Integer lastIgnore = (Integer) currentIgnoreCount.get();
-
-		Set observableSet = new IdentitySet();
+		TrackingFrame lastFrame = state.getterCalledFrame;
+		int lastIgnore = state.ignoreCount;
+
+		TrackingFrame frame = state.obtainFrame(changeListener, staleListener);
 		// Push the new listeners to the top of the stack
-		currentGetterCalledSet.set(observableSet);
-		currentChangeListener.set(changeListener);
-		currentStaleListener.set(staleListener);
-		currentIgnoreCount.set(null);
+		state.getterCalledFrame = frame;
+		state.ignoreCount = 0;
 		try {
 			runnable.run();
+			return frame.toArray();
 		} finally {
 			// Pop the new listener off the top of the stack (by restoring the
 			// previous listener)
-			currentGetterCalledSet.set(lastObservableSet);
-			currentChangeListener.set(lastChangeListener);
-			currentStaleListener.set(lastStaleListener);
-			checkUnmatchedIgnore(runnable);
-			currentIgnoreCount.set(lastIgnore);
+			state.getterCalledFrame = lastFrame;
+			checkUnmatchedIgnore(state, runnable);
+			state.ignoreCount = lastIgnore;
+			state.releaseFrame(frame);
 		}
-
-		return (IObservable[]) observableSet
-				.toArray(new IObservable[observableSet.size()]);
 	}
 
 	/**
@@ -139,29 +267,30 @@ public class ObservableTracker {
 	 * @since 1.2
 	 */
 	public static IObservable[] runAndCollect(Runnable runnable) {
-		Set lastObservableCreatedSet = (Set) currentObservableCreatedSet.get();
-		Integer lastIgnore = (Integer) currentIgnoreCount.get();
+		TrackingState state = getState();
+		TrackingFrame lastFrame = state.observableCreatedFrame;
+		int lastIgnore = state.ignoreCount;
 
-		Set observableSet = new IdentitySet();
+		TrackingFrame frame = state.obtainFrame(null, null);
 		// Push the new listeners to the top of the stack
-		currentObservableCreatedSet.set(observableSet);
-		currentIgnoreCount.set(null);
+		state.observableCreatedFrame = frame;
+		state.ignoreCount = 0;
 		try {
 			runnable.run();
+			return frame.toArray();
 		} finally {
 			// Pop the new listener off the top of the stack (by restoring the
 			// previous listener)
-			currentObservableCreatedSet.set(lastObservableCreatedSet);
-			checkUnmatchedIgnore(runnable);
-			currentIgnoreCount.set(lastIgnore);
+			state.observableCreatedFrame = lastFrame;
+			checkUnmatchedIgnore(state, runnable);
+			state.ignoreCount = lastIgnore;
+			state.releaseFrame(frame);
 		}
-
-		return (IObservable[]) observableSet
-				.toArray(new IObservable[observableSet.size()]);
 	}
 
-	private static void checkUnmatchedIgnore(Runnable runnable) {
-		if (isIgnore()) {
+	private static void checkUnmatchedIgnore(TrackingState state,
+			Runnable runnable) {
+		if (state.ignoreCount > 0) {
 			Policy
 					.getLog()
 					.log(
@@ -169,7 +298,7 @@ public class ObservableTracker {
 									IStatus.ERROR,
 									Policy.JFACE_DATABINDING,
 									"There were " //$NON-NLS-1$
-											+ currentIgnoreCount.get()
+											+ state.ignoreCount
 											+ " unmatched setIgnore(true) invocations in runnable " //$NON-NLS-1$
 											+ runnable));
 		}
@@ -196,15 +325,14 @@ public class ObservableTracker {
 	 * @since 1.3
 	 */
 	public static void setIgnore(boolean ignore) {
-		Integer lastCount = (Integer) currentIgnoreCount.get();
+		TrackingState state = getState();
 
-		int newCount = (lastCount == null ? 0 : lastCount.intValue())
-				+ (ignore ? 1 : -1);
+		int newCount = state.ignoreCount + (ignore ? 1 : -1);
 
 		if (newCount < 0)
 			throw new IllegalStateException("Ignore count is already zero"); //$NON-NLS-1$
 
-		currentIgnoreCount.set(newCount == 0 ? null : new Integer(newCount));
+		state.ignoreCount = newCount;
 	}
 
 	/**
@@ -233,10 +361,6 @@ public class ObservableTracker {
 				+ Integer.toHexString(System.identityHashCode(observable));
 	}
 
-	private static boolean isIgnore() {
-		return currentIgnoreCount.get() != null;
-	}
-
 	/**
 	 * Notifies the ObservableTracker that an observable was read from. The
 	 * JavaDoc for methods that invoke this method should include the following
@@ -256,18 +380,17 @@ public class ObservableTracker {
 			Assert.isTrue(false, "Getter called outside realm of observable " //$NON-NLS-1$
 					+ toString(observable));
 
-		if (isIgnore())
+		TrackingState state = (TrackingState) currentState.get();
+		if (state == null || state.ignoreCount > 0)
 			return;
 
-		Set getterCalledSet = (Set) currentGetterCalledSet.get();
-		if (getterCalledSet != null && getterCalledSet.add(observable)) {
+		TrackingFrame frame = state.getterCalledFrame;
+		if (frame != null && frame.add(observable)) {
 			// If anyone is listening for observable usage...
-			IChangeListener changeListener = (IChangeListener) currentChangeListener
-					.get();
+			IChangeListener changeListener = frame.changeListener;
 			if (changeListener != null)
 				observable.addChangeListener(changeListener);
-			IStaleListener staleListener = (IStaleListener) currentStaleListener
-					.get();
+			IStaleListener staleListener = frame.staleListener;
 			if (staleListener != null)
 				observable.addStaleListener(staleListener);
 		}
@@ -281,11 +404,12 @@ public class ObservableTracker {
 	 * @since 1.2
 	 */
 	public static void observableCreated(IObservable observable) {
-		if (isIgnore())
+		TrackingState state = (TrackingState) currentState.get();
+		if (state == null || state.ignoreCount > 0)
 			return;
-		Set observableCreatedSet = (Set) currentObservableCreatedSet.get();
-		if (observableCreatedSet != null) {
-			observableCreatedSet.add(observable);
+		TrackingFrame frame = state.observableCreatedFrame;
+		if (frame != null) {
+			frame.add(observable);
 		}
 	}
 }
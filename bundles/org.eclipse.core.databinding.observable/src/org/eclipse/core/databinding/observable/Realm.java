@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2009 IBM Corporation and others.
+ * Copyright (c) 2006, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,11 +13,11 @@
 
 package org.eclipse.core.databinding.observable;
 
-import java.util.Timer;
-import java.util.TimerTask;
-
 import org.eclipse.core.databinding.util.Policy;
 import org.eclipse.core.internal.databinding.observable.Queue;
+import org.eclipse.core.internal.databinding.observable.RealmScheduler;
+import org.eclipse.core.runtime.Assert;
+import org.eclipse.core.runtime.AssertionFailedException;
 import org.eclipse.core.runtime.ISafeRunnable;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.SafeRunner;
@@ -114,9 +114,19 @@ public abstract class Realm {
 	 */
 	abstract public boolean isCurrent();
 
+	/**
+	 * Number of milliseconds the worker thread waits for new work before it
+	 * terminates.
+	 */
+	private static final long WORKER_IDLE_TIMEOUT = 5000;
+
 	private Thread workerThread;
-	
-	private volatile Timer timer;
+
+	/**
+	 * The batch collecting change events while {@link #runBatched(Runnable)}
+	 * runs, or <code>null</code>. Only accessed from within this realm.
+	 */
+	ChangeEventBatch batch;
 
 	Queue workQueue = new Queue();
 	
@@ -211,6 +221,11 @@ public abstract class Realm {
 	 * <p>
 	 * Subclasses should use {@link #safeRun(Runnable)} to run the runnable.
 	 * </p>
+	 * <p>
+	 * The default implementation uses a single timer thread shared by all
+	 * realms, which passes the runnable to {@link #asyncExec(Runnable)} once
+	 * it is due.
+	 * </p>
 	 * 
 	 * @param milliseconds
 	 * @param runnable
@@ -222,22 +237,16 @@ public abstract class Realm {
 		} else if (milliseconds == 0) {
 			asyncExec(runnable);
 		} else {
-			synchronized (workQueue) {
-				if (timer == null) {
-					timer = new Timer(true);
-				}
-				timer.schedule(new TimerTask() {
-					public void run() {
-						asyncExec(runnable);
-					}
-				}, milliseconds);
-			}
+			RealmScheduler.getDefault().schedule(this, milliseconds, runnable);
 		}
 
 	}
 
 	/**
-	 * 
+	 * Starts the worker thread unless it is running. The worker thread
+	 * terminates once it has been idle for {@link #WORKER_IDLE_TIMEOUT}
+	 * milliseconds, so realms which are no longer used do not keep a thread
+	 * alive. Must be called while holding the lock on the work queue.
 	 */
 	private void ensureWorkerThreadIsRunning() {
 		if (workerThread == null) {
@@ -247,15 +256,21 @@ public abstract class Realm {
 						while (true) {
 							Runnable work = null;
 							synchronized (workQueue) {
-								while (workQueue.isEmpty()) {
-									workQueue.wait();
+								if (workQueue.isEmpty()) {
+									workQueue.wait(WORKER_IDLE_TIMEOUT);
+								}
+								if (workQueue.isEmpty()) {
+									workerThread = null;
+									return;
 								}
 								work = (Runnable) workQueue.dequeue();
 							}
 							syncExec(work);
 						}
 					} catch (InterruptedException e) {
-						// exit
+						synchronized (workQueue) {
+							workerThread = null;
+						}
 					}
 				}
 			};
@@ -317,6 +332,51 @@ public abstract class Realm {
 		}
 	}
 
+	/**
+	 * Runs the given runnable, deferring change notifications of observables
+	 * in this realm until it completes. All list, set and map changes as well
+	 * as generic change events fired by an observable while the runnable runs
+	 * are then delivered as a single event per observable, whose diff is the
+	 * combination of the individual diffs. Sets and maps that do not compare
+	 * their elements or keys with <code>equals()</code>, for instance identity
+	 * sets, deliver their deferred events one by one instead. Other events,
+	 * such as value change or stale events, are delivered immediately,
+	 * preceded by any event deferred for the same observable.
+	 * <p>
+	 * This is useful for bulk modifications, for instance a call to
+	 * <code>addAll</code> followed by several calls to <code>set</code>,
+	 * which would otherwise notify every listener once per operation.
+	 * Listeners must not rely on seeing the state of an observable in the
+	 * middle of the batch.
+	 * </p>
+	 * <p>
+	 * Nested calls join the outermost batch. The deferred events are delivered
+	 * even if the runnable throws an exception.
+	 * </p>
+	 * 
+	 * @param runnable
+	 *            the runnable to run
+	 * @throws AssertionFailedException
+	 *             if this realm is not the current realm
+	 * @since 1.5
+	 */
+	public void runBatched(Runnable runnable) {
+		Assert.isTrue(isCurrent(),
+				"Batches must be run within the realm"); //$NON-NLS-1$
+		if (batch != null) {
+			runnable.run();
+			return;
+		}
+		ChangeEventBatch newBatch = new ChangeEventBatch();
+		batch = newBatch;
+		try {
+			runnable.run();
+		} finally {
+			batch = null;
+			newBatch.flush();
+		}
+	}
+
 	/**
 	 * Sets the provided <code>realm</code> as the default for the duration of
 	 * {@link Runnable#run()} and resets the previous realm after completion.
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2010 Matthew Hall and others.
+ * Copyright (c) 2008, 2015 Matthew Hall and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -15,10 +15,13 @@
 package org.eclipse.core.internal.databinding.identity;
 
 import java.lang.reflect.Array;
+import java.util.AbstractCollection;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 import org.eclipse.core.internal.databinding.observable.Util;
@@ -32,376 +35,510 @@ import org.eclipse.core.runtime.Assert;
  * This class is <i>not</i> a strict implementation the {@link Map} interface.
  * It intentionally violates the {@link Map} contract, which requires the use of
  * {@link #equals(Object)} when comparing keys.
- * 
+ * <p>
+ * Keys and values are stored next to each other in a single open-addressing
+ * hash table with linear probing, hashed by
+ * {@link System#identityHashCode(Object)}, so no wrapper or entry objects are
+ * created when adding or looking up entries.
+ *
  * @since 1.2
  */
 public class IdentityMap implements Map {
-	private Map wrappedMap;
+	/**
+	 * Stands in for <code>null</code> keys in the table.
+	 */
+	private static final Object NULL_KEY = new Object();
+
+	/**
+	 * Marks slots whose entry was removed, so that probe sequences running
+	 * through the slot are not cut short.
+	 */
+	private static final Object REMOVED = new Object();
+
+	/**
+	 * Keys at even indices, each followed by its value.
+	 */
+	private Object[] table;
+
+	private int size;
+
+	/**
+	 * The number of key slots which are not <code>null</code>, including
+	 * removed slots.
+	 */
+	private int usedSlots;
+
+	private int modCount;
 
 	/**
 	 * Constructs an IdentityMap.
 	 */
 	public IdentityMap() {
-		this.wrappedMap = new HashMap();
+		this.table = new Object[2 * IdentitySet.capacityFor(0)];
 	}
 
 	/**
 	 * Constructs an IdentityMap containing all the entries in the specified
 	 * map.
-	 * 
+	 *
 	 * @param map
 	 *            the map whose entries are to be added to this map.
 	 */
 	public IdentityMap(Map map) {
-		this();
 		Assert.isNotNull(map);
+		this.table = new Object[2 * IdentitySet.capacityFor(map.size())];
 		putAll(map);
 	}
 
-	public void clear() {
-		wrappedMap.clear();
+	private static Object maskNull(Object key) {
+		return key == null ? NULL_KEY : key;
 	}
 
-	public boolean containsKey(Object key) {
-		return wrappedMap.containsKey(IdentityWrapper.wrap(key));
+	private static Object unmaskNull(Object key) {
+		return key == NULL_KEY ? null : key;
 	}
 
-	public boolean containsValue(Object value) {
-		return wrappedMap.containsValue(value);
+	private static boolean isKey(Object item) {
+		return item != null && item != REMOVED;
 	}
 
-	public Set entrySet() {
-		final Set wrappedEntrySet = wrappedMap.entrySet();
-		return new Set() {
-			public boolean add(Object o) {
-				throw new UnsupportedOperationException();
-			}
+	/**
+	 * @return the table index of the given (masked) key, or -1 if the key is
+	 *         not in the map
+	 */
+	private int indexOf(Object key) {
+		Object[] table = this.table;
+		int mask = table.length - 2;
+		for (int i = (IdentitySet.hash(key) << 1) & mask;; i = (i + 2) & mask) {
+			Object item = table[i];
+			if (item == key)
+				return i;
+			if (item == null)
+				return -1;
+		}
+	}
 
-			public boolean addAll(Collection c) {
-				throw new UnsupportedOperationException();
-			}
+	private void removeAt(int index) {
+		modCount++;
+		size--;
+		Object[] table = this.table;
+		table[index + 1] = null;
+		if (table[(index + 2) & (table.length - 2)] == null) {
+			// no probe sequence runs through this slot
+			table[index] = null;
+			usedSlots--;
+		} else {
+			table[index] = REMOVED;
+		}
+	}
 
-			public void clear() {
-				wrappedEntrySet.clear();
+	private void rehash(int capacity) {
+		Object[] oldTable = table;
+		Object[] newTable = new Object[2 * capacity];
+		int mask = newTable.length - 2;
+		for (int j = 0; j < oldTable.length; j += 2) {
+			Object key = oldTable[j];
+			if (isKey(key)) {
+				int i = (IdentitySet.hash(key) << 1) & mask;
+				while (newTable[i] != null)
+					i = (i + 2) & mask;
+				newTable[i] = key;
+				newTable[i + 1] = oldTable[j + 1];
 			}
+		}
+		table = newTable;
+		usedSlots = size;
+	}
 
-			public boolean contains(Object o) {
-				for (Iterator iterator = iterator(); iterator.hasNext();)
-					if (iterator.next().equals(o))
-						return true;
-				return false;
-			}
+	public void clear() {
+		if (usedSlots > 0) {
+			modCount++;
+			Arrays.fill(table, null);
+			size = 0;
+			usedSlots = 0;
+		}
+	}
 
-			public boolean containsAll(Collection c) {
-				for (Iterator iterator = c.iterator(); iterator.hasNext();)
-					if (!contains(iterator.next()))
-						return false;
-				return true;
-			}
+	public boolean containsKey(Object key) {
+		return indexOf(maskNull(key)) != -1;
+	}
 
-			public boolean isEmpty() {
-				return wrappedEntrySet.isEmpty();
-			}
+	public boolean containsValue(Object value) {
+		Object[] table = this.table;
+		for (int i = 0; i < table.length; i += 2)
+			if (isKey(table[i]) && Util.equals(table[i + 1], value))
+				return true;
+		return false;
+	}
 
-			public Iterator iterator() {
-				final Iterator wrappedIterator = wrappedEntrySet.iterator();
-				return new Iterator() {
-					public boolean hasNext() {
-						return wrappedIterator.hasNext();
-					}
+	public Object get(Object key) {
+		int index = indexOf(maskNull(key));
+		return index == -1 ? null : table[index + 1];
+	}
 
-					public Object next() {
-						final Map.Entry wrappedEntry = (Map.Entry) wrappedIterator
-								.next();
-						return new Map.Entry() {
-							public Object getKey() {
-								return ((IdentityWrapper) wrappedEntry.getKey())
-										.unwrap();
-							}
-
-							public Object getValue() {
-								return wrappedEntry.getValue();
-							}
-
-							public Object setValue(Object value) {
-								return wrappedEntry.setValue(value);
-							}
-
-							public boolean equals(Object obj) {
-								if (obj == this)
-									return true;
-								if (obj == null || !(obj instanceof Map.Entry))
-									return false;
-								Map.Entry that = (Map.Entry) obj;
-								return this.getKey() == that.getKey()
-										&& Util.equals(this.getValue(), that
-												.getValue());
-							}
-
-							public int hashCode() {
-								return wrappedEntry.hashCode();
-							}
-						};
-					}
+	public boolean isEmpty() {
+		return size == 0;
+	}
 
-					public void remove() {
-						wrappedIterator.remove();
-					}
-				};
+	public Object put(Object key, Object value) {
+		Object k = maskNull(key);
+		Object[] table = this.table;
+		int mask = table.length - 2;
+		int removedSlot = -1;
+		int i = (IdentitySet.hash(k) << 1) & mask;
+		for (;; i = (i + 2) & mask) {
+			Object item = table[i];
+			if (item == k) {
+				Object oldValue = table[i + 1];
+				table[i + 1] = value;
+				return oldValue;
 			}
+			if (item == null)
+				break;
+			if (item == REMOVED && removedSlot == -1)
+				removedSlot = i;
+		}
+		modCount++;
+		size++;
+		if (removedSlot != -1) {
+			table[removedSlot] = k;
+			table[removedSlot + 1] = value;
+		} else {
+			table[i] = k;
+			table[i + 1] = value;
+			if (++usedSlots * 3 > table.length)
+				rehash(IdentitySet.capacityFor(size));
+		}
+		return null;
+	}
 
-			public boolean remove(Object o) {
-				final Map.Entry unwrappedEntry = (Map.Entry) o;
-				final IdentityWrapper wrappedKey = IdentityWrapper
-						.wrap(unwrappedEntry.getKey());
-				Map.Entry wrappedEntry = new Map.Entry() {
-					public Object getKey() {
-						return wrappedKey;
-					}
+	public void putAll(Map other) {
+		for (Iterator iterator = other.entrySet().iterator(); iterator
+				.hasNext();) {
+			Map.Entry entry = (Map.Entry) iterator.next();
+			put(entry.getKey(), entry.getValue());
+		}
+	}
 
-					public Object getValue() {
-						return unwrappedEntry.getValue();
-					}
+	public Object remove(Object key) {
+		int index = indexOf(maskNull(key));
+		if (index == -1)
+			return null;
+		Object oldValue = table[index + 1];
+		removeAt(index);
+		return oldValue;
+	}
 
-					public Object setValue(Object value) {
-						throw new UnsupportedOperationException();
-					}
+	public int size() {
+		return size;
+	}
 
-					public boolean equals(Object obj) {
-						if (obj == this)
-							return true;
-						if (obj == null || !(obj instanceof Map.Entry))
-							return false;
-						Map.Entry that = (Map.Entry) obj;
-						return Util.equals(wrappedKey, that.getKey())
-								&& Util
-										.equals(this.getValue(), that
-												.getValue());
-					}
+	public Set keySet() {
+		return new KeySet();
+	}
 
-					public int hashCode() {
-						return wrappedKey.hashCode()
-								^ (getValue() == null ? 0 : getValue()
-										.hashCode());
+	public Collection values() {
+		return new AbstractCollection() {
+			public Iterator iterator() {
+				return new TableIterator() {
+					public Object next() {
+						return table[nextIndex() + 1];
 					}
 				};
-				return wrappedEntrySet.remove(wrappedEntry);
-			}
-
-			public boolean removeAll(Collection c) {
-				boolean changed = false;
-				for (Iterator iterator = c.iterator(); iterator.hasNext();)
-					changed |= remove(iterator.next());
-				return changed;
-			}
-
-			public boolean retainAll(Collection c) {
-				boolean changed = false;
-				Object[] toRetain = c.toArray();
-				outer: for (Iterator iterator = iterator(); iterator.hasNext();) {
-					Object entry = iterator.next();
-					for (int i = 0; i < toRetain.length; i++)
-						if (entry.equals(toRetain[i]))
-							continue outer;
-					iterator.remove();
-					changed = true;
-				}
-				return changed;
 			}
 
 			public int size() {
-				return wrappedEntrySet.size();
+				return size;
 			}
 
-			public Object[] toArray() {
-				return toArray(new Object[size()]);
+			public boolean contains(Object o) {
+				return containsValue(o);
 			}
 
-			public Object[] toArray(Object[] a) {
-				int size = size();
-				if (a.length < size) {
-					a = (Object[]) Array.newInstance(a.getClass()
-							.getComponentType(), size);
-				}
-				int i = 0;
-				for (Iterator iterator = iterator(); iterator.hasNext();) {
-					a[i] = iterator.next();
-					i++;
-				}
-				return a;
+			public void clear() {
+				IdentityMap.this.clear();
 			}
+		};
+	}
 
-			public boolean equals(Object obj) {
-				if (obj == this)
-					return true;
-				if (obj == null || !(obj instanceof Set))
-					return false;
-				Set that = (Set) obj;
-				return this.size() == that.size() && containsAll(that);
-			}
+	public Set entrySet() {
+		return new EntrySet();
+	}
 
-			public int hashCode() {
-				return wrappedEntrySet.hashCode();
-			}
-		};
+	public boolean equals(Object obj) {
+		if (obj == this)
+			return true;
+		if (obj == null || !(obj instanceof Map))
+			return false;
+		Map that = (Map) obj;
+		return this.entrySet().equals(that.entrySet());
 	}
 
-	public Object get(Object key) {
-		return wrappedMap.get(IdentityWrapper.wrap(key));
+	public int hashCode() {
+		int hash = 0;
+		Object[] table = this.table;
+		for (int i = 0; i < table.length; i += 2)
+			if (isKey(table[i]))
+				hash += entryHashCode(table[i], table[i + 1]);
+		return hash;
 	}
 
-	public boolean isEmpty() {
-		return wrappedMap.isEmpty();
+	private static int entryHashCode(Object key, Object value) {
+		return System.identityHashCode(unmaskNull(key))
+				^ (value == null ? 0 : value.hashCode());
 	}
 
-	public Set keySet() {
-		final Set wrappedKeySet = wrappedMap.keySet();
-		return new Set() {
-			public boolean add(Object o) {
-				throw new UnsupportedOperationException();
-			}
+	/**
+	 * Iterates over the key slots of the table.
+	 */
+	private abstract class TableIterator implements Iterator {
+		private int index;
+		private int lastIndex = -1;
+		private int expectedModCount = modCount;
+
+		public boolean hasNext() {
+			Object[] table = IdentityMap.this.table;
+			while (index < table.length && !isKey(table[index]))
+				index += 2;
+			return index < table.length;
+		}
 
-			public boolean addAll(Collection c) {
-				throw new UnsupportedOperationException();
-			}
+		/**
+		 * @return the table index of the next key
+		 */
+		int nextIndex() {
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+			if (!hasNext())
+				throw new NoSuchElementException();
+			lastIndex = index;
+			index += 2;
+			return lastIndex;
+		}
 
-			public void clear() {
-				wrappedKeySet.clear();
-			}
+		public void remove() {
+			if (lastIndex == -1)
+				throw new IllegalStateException();
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+			removeAt(lastIndex);
+			lastIndex = -1;
+			expectedModCount = modCount;
+		}
+	}
 
-			public boolean contains(Object o) {
-				return wrappedKeySet.contains(IdentityWrapper.wrap(o));
-			}
+	/**
+	 * Base class of the key and entry set views. Elements of the views are
+	 * looked up by key through {@link #indexOf(Object)}.
+	 */
+	private abstract class View implements Set {
+		/**
+		 * @return the table index of the key of the given element, or -1 if the
+		 *         element is not in this set
+		 */
+		abstract int indexOfElement(Object o);
+
+		public boolean add(Object o) {
+			throw new UnsupportedOperationException();
+		}
 
-			public boolean containsAll(Collection c) {
-				for (Iterator iterator = c.iterator(); iterator.hasNext();)
-					if (!wrappedKeySet.contains(IdentityWrapper.wrap(iterator
-							.next())))
-						return false;
-				return true;
-			}
+		public boolean addAll(Collection c) {
+			throw new UnsupportedOperationException();
+		}
 
-			public boolean isEmpty() {
-				return wrappedKeySet.isEmpty();
-			}
+		public void clear() {
+			IdentityMap.this.clear();
+		}
 
-			public Iterator iterator() {
-				final Iterator wrappedIterator = wrappedKeySet.iterator();
-				return new Iterator() {
-					public boolean hasNext() {
-						return wrappedIterator.hasNext();
-					}
+		public boolean contains(Object o) {
+			return indexOfElement(o) != -1;
+		}
 
-					public Object next() {
-						return ((IdentityWrapper) wrappedIterator.next())
-								.unwrap();
-					}
+		public boolean containsAll(Collection c) {
+			for (Iterator iterator = c.iterator(); iterator.hasNext();)
+				if (!contains(iterator.next()))
+					return false;
+			return true;
+		}
 
-					public void remove() {
-						wrappedIterator.remove();
-					}
-				};
-			}
+		public boolean isEmpty() {
+			return size == 0;
+		}
 
-			public boolean remove(Object o) {
-				return wrappedKeySet.remove(IdentityWrapper.wrap(o));
-			}
+		public boolean remove(Object o) {
+			int index = indexOfElement(o);
+			if (index == -1)
+				return false;
+			removeAt(index);
+			return true;
+		}
+
+		public boolean removeAll(Collection c) {
+			boolean changed = false;
+			for (Iterator iterator = c.iterator(); iterator.hasNext();)
+				changed |= remove(iterator.next());
+			return changed;
+		}
+
+		public int size() {
+			return size;
+		}
+
+		public Object[] toArray() {
+			return toArray(new Object[size]);
+		}
 
-			public boolean removeAll(Collection c) {
-				boolean changed = false;
-				for (Iterator iterator = c.iterator(); iterator.hasNext();)
-					changed |= wrappedKeySet.remove(IdentityWrapper
-							.wrap(iterator.next()));
-				return changed;
+		public Object[] toArray(Object[] a) {
+			Object[] result = a;
+			if (a.length < size) {
+				result = (Object[]) Array.newInstance(a.getClass()
+						.getComponentType(), size);
+			} else if (a.length > size) {
+				result[size] = null;
 			}
+			int i = 0;
+			for (Iterator iterator = iterator(); iterator.hasNext();)
+				result[i++] = iterator.next();
+			return result;
+		}
+
+		public boolean equals(Object obj) {
+			if (obj == this)
+				return true;
+			if (obj == null || !(obj instanceof Set))
+				return false;
+			Set that = (Set) obj;
+			return this.size() == that.size() && containsAll(that);
+		}
+	}
 
-			public boolean retainAll(Collection c) {
-				boolean changed = false;
-				Object[] toRetain = c.toArray();
-				outer: for (Iterator iterator = iterator(); iterator.hasNext();) {
-					Object element = iterator.next();
-					for (int i = 0; i < toRetain.length; i++)
-						if (element == toRetain[i])
-							continue outer;
-					// element not contained in collection, remove.
-					remove(element);
+	private class KeySet extends View {
+		int indexOfElement(Object o) {
+			return indexOf(maskNull(o));
+		}
+
+		public Iterator iterator() {
+			return new TableIterator() {
+				public Object next() {
+					return unmaskNull(table[nextIndex()]);
+				}
+			};
+		}
+
+		public boolean retainAll(Collection c) {
+			Set toRetain = c instanceof IdentitySet ? (Set) c
+					: new IdentitySet(c);
+			boolean changed = false;
+			for (Iterator iterator = iterator(); iterator.hasNext();) {
+				if (!toRetain.contains(iterator.next())) {
+					iterator.remove();
 					changed = true;
 				}
-				return changed;
 			}
+			return changed;
+		}
 
-			public int size() {
-				return wrappedKeySet.size();
-			}
+		public int hashCode() {
+			int hash = 0;
+			Object[] table = IdentityMap.this.table;
+			for (int i = 0; i < table.length; i += 2)
+				if (isKey(table[i]))
+					hash += System.identityHashCode(unmaskNull(table[i]));
+			return hash;
+		}
+	}
 
-			public Object[] toArray() {
-				return toArray(new Object[wrappedKeySet.size()]);
-			}
+	private class EntrySet extends View {
+		int indexOfElement(Object o) {
+			if (!(o instanceof Map.Entry))
+				return -1;
+			Map.Entry entry = (Map.Entry) o;
+			int index = indexOf(maskNull(entry.getKey()));
+			if (index == -1 || !Util.equals(table[index + 1], entry.getValue()))
+				return -1;
+			return index;
+		}
 
-			public Object[] toArray(Object[] a) {
-				int size = wrappedKeySet.size();
-				IdentityWrapper[] wrappedArray = (IdentityWrapper[]) wrappedKeySet
-						.toArray(new IdentityWrapper[size]);
-				Object[] result = a;
-				if (a.length < size) {
-					result = (Object[]) Array.newInstance(a.getClass()
-							.getComponentType(), size);
+		public Iterator iterator() {
+			return new TableIterator() {
+				public Object next() {
+					return new Entry(nextIndex());
 				}
-				for (int i = 0; i < size; i++)
-					result[i] = wrappedArray[i].unwrap();
-				return result;
-			}
+			};
+		}
 
-			public boolean equals(Object obj) {
-				if (obj == this)
-					return true;
-				if (obj == null || !(obj instanceof Set))
-					return false;
-				Set that = (Set) obj;
-				return this.size() == that.size() && containsAll(that);
+		public boolean retainAll(Collection c) {
+			boolean changed = false;
+			Object[] toRetain = c.toArray();
+			outer: for (Iterator iterator = iterator(); iterator.hasNext();) {
+				Object entry = iterator.next();
+				for (int i = 0; i < toRetain.length; i++)
+					if (entry.equals(toRetain[i]))
+						continue outer;
+				iterator.remove();
+				changed = true;
 			}
+			return changed;
+		}
 
-			public int hashCode() {
-				return wrappedKeySet.hashCode();
-			}
-		};
+		public int hashCode() {
+			return IdentityMap.this.hashCode();
+		}
 	}
 
-	public Object put(Object key, Object value) {
-		return wrappedMap.put(IdentityWrapper.wrap(key), value);
-	}
+	private class Entry implements Map.Entry {
+		private final Object key;
+		private Object value;
+		private int index;
 
-	public void putAll(Map other) {
-		for (Iterator iterator = other.entrySet().iterator(); iterator
-				.hasNext();) {
-			Map.Entry entry = (Map.Entry) iterator.next();
-			wrappedMap.put(IdentityWrapper.wrap(entry.getKey()), entry
-					.getValue());
+		Entry(int index) {
+			this.key = table[index];
+			this.value = table[index + 1];
+			this.index = index;
 		}
-	}
 
-	public Object remove(Object key) {
-		return wrappedMap.remove(IdentityWrapper.wrap(key));
-	}
+		/**
+		 * @return the current table index of the key, or -1 if it has been
+		 *         removed from the map
+		 */
+		private int currentIndex() {
+			if (index >= table.length || table[index] != key)
+				index = indexOf(key);
+			return index;
+		}
 
-	public int size() {
-		return wrappedMap.size();
-	}
+		public Object getKey() {
+			return unmaskNull(key);
+		}
 
-	public Collection values() {
-		return wrappedMap.values();
-	}
+		public Object getValue() {
+			int index = currentIndex();
+			if (index != -1)
+				value = table[index + 1];
+			return value;
+		}
 
-	public boolean equals(Object obj) {
-		if (obj == this)
-			return true;
-		if (obj == null || !(obj instanceof Map))
-			return false;
-		Map that = (Map) obj;
-		return this.entrySet().equals(that.entrySet());
-	}
+		public Object setValue(Object value) {
+			Object oldValue = getValue();
+			this.value = value;
+			int index = currentIndex();
+			if (index != -1)
+				table[index + 1] = value;
+			return oldValue;
+		}
 
-	public int hashCode() {
-		return wrappedMap.hashCode();
+		public boolean equals(Object obj) {
+			if (obj == this)
+				return true;
+			if (obj == null || !(obj instanceof Map.Entry))
+				return false;
+			Map.Entry that = (Map.Entry) obj;
+			return this.getKey() == that.getKey()
+					&& Util.equals(this.getValue(), that.getValue());
+		}
+
+		public int hashCode() {
+			return entryHashCode(key, getValue());
+		}
 	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2009 Matthew Hall and others.
+ * Copyright (c) 2008, 2015 Matthew Hall and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -136,18 +136,15 @@ public class IdentityObservableSet extends AbstractObservableSet {
 	public boolean retainAll(Collection c) {
 		getterCalled();
 		Set removals = new IdentitySet();
-		Object[] toRetain = c.toArray();
-		outer: for (Iterator iterator = wrappedSet.iterator(); iterator
-				.hasNext();) {
+		// Cannot rely on c.contains(element) because we must compare elements
+		// by identity.
+		Set toRetain = new IdentitySet(c);
+		for (Iterator iterator = wrappedSet.iterator(); iterator.hasNext();) {
 			Object element = iterator.next();
-			// Cannot rely on c.contains(element) because we must compare
-			// elements using IElementComparer.
-			for (int i = 0; i < toRetain.length; i++) {
-				if (element == toRetain[i])
-					continue outer;
+			if (!toRetain.contains(element)) {
+				iterator.remove();
+				removals.add(element);
 			}
-			iterator.remove();
-			removals.add(element);
 		}
 		boolean changed = !removals.isEmpty();
 		if (changed)
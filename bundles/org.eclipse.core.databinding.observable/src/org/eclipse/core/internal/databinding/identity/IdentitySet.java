@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2010 Matthew Hall and others.
+ * Copyright (c) 2008, 2015 Matthew Hall and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -15,9 +15,11 @@
 package org.eclipse.core.internal.databinding.identity;
 
 import java.lang.reflect.Array;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 /**
@@ -28,80 +30,221 @@ import java.util.Set;
  * This class is <i>not</i> a strict implementation the {@link Set} interface.
  * It intentionally violates the {@link Set} contract, which requires the use of
  * {@link #equals(Object)} when comparing elements.
- * 
+ * <p>
+ * The elements are stored directly in an open-addressing hash table with
+ * linear probing, hashed by {@link System#identityHashCode(Object)}, so no
+ * wrapper objects are created when adding or looking up elements.
+ *
  * @since 1.2
  */
 public class IdentitySet implements Set {
-	private final Set wrappedSet;
+	/**
+	 * Stands in for <code>null</code> elements in the table.
+	 */
+	private static final Object NULL_ELEMENT = new Object();
+
+	/**
+	 * Marks slots whose element was removed, so that probe sequences running
+	 * through the slot are not cut short.
+	 */
+	private static final Object REMOVED = new Object();
+
+	private static final int MINIMUM_CAPACITY = 8;
+
+	private Object[] table;
+
+	private int size;
+
+	/**
+	 * The number of slots which are not <code>null</code>, including removed
+	 * slots.
+	 */
+	private int usedSlots;
+
+	private int modCount;
 
 	/**
 	 * Constructs an IdentitySet.
 	 */
 	public IdentitySet() {
-		this.wrappedSet = new HashSet();
+		this.table = new Object[MINIMUM_CAPACITY];
 	}
 
 	/**
 	 * Constructs an IdentitySet containing all the unique instances in the
 	 * specified collection.
-	 * 
+	 *
 	 * @param collection
 	 *            the collection whose elements are to be added to this set.
 	 */
 	public IdentitySet(Collection collection) {
-		this();
+		this.table = new Object[capacityFor(collection.size())];
 		addAll(collection);
 	}
 
+	static int capacityFor(int size) {
+		// keep the table at most half full after (re)hashing
+		int capacity = MINIMUM_CAPACITY;
+		while (capacity < size * 2 && capacity < (1 << 30))
+			capacity <<= 1;
+		return capacity;
+	}
+
+	static int hash(Object element) {
+		int hash = System.identityHashCode(element);
+		// spread the bits, identity hash codes are often multiples of 8
+		return hash ^ (hash >>> 16) ^ (hash >>> 7);
+	}
+
+	private static Object maskNull(Object o) {
+		return o == null ? NULL_ELEMENT : o;
+	}
+
+	private static Object unmaskNull(Object o) {
+		return o == NULL_ELEMENT ? null : o;
+	}
+
+	private int indexOf(Object element) {
+		Object[] table = this.table;
+		int mask = table.length - 1;
+		for (int i = hash(element) & mask;; i = (i + 1) & mask) {
+			Object item = table[i];
+			if (item == element)
+				return i;
+			if (item == null)
+				return -1;
+		}
+	}
+
 	public boolean add(Object o) {
-		return wrappedSet.add(IdentityWrapper.wrap(o));
+		Object element = maskNull(o);
+		Object[] table = this.table;
+		int mask = table.length - 1;
+		int removedSlot = -1;
+		int i = hash(element) & mask;
+		for (;; i = (i + 1) & mask) {
+			Object item = table[i];
+			if (item == element)
+				return false;
+			if (item == null)
+				break;
+			if (item == REMOVED && removedSlot == -1)
+				removedSlot = i;
+		}
+		modCount++;
+		size++;
+		if (removedSlot != -1) {
+			table[removedSlot] = element;
+		} else {
+			table[i] = element;
+			if (++usedSlots * 3 > table.length * 2)
+				rehash(capacityFor(size));
+		}
+		return true;
+	}
+
+	private void rehash(int capacity) {
+		Object[] oldTable = table;
+		Object[] newTable = new Object[capacity];
+		int mask = capacity - 1;
+		for (int j = 0; j < oldTable.length; j++) {
+			Object element = oldTable[j];
+			if (element != null && element != REMOVED) {
+				int i = hash(element) & mask;
+				while (newTable[i] != null)
+					i = (i + 1) & mask;
+				newTable[i] = element;
+			}
+		}
+		table = newTable;
+		usedSlots = size;
 	}
 
 	public boolean addAll(Collection c) {
 		boolean changed = false;
 		for (Iterator iterator = c.iterator(); iterator.hasNext();)
-			changed |= wrappedSet.add(IdentityWrapper.wrap(iterator.next()));
+			changed |= add(iterator.next());
 		return changed;
 	}
 
 	public void clear() {
-		wrappedSet.clear();
+		if (usedSlots > 0) {
+			modCount++;
+			Arrays.fill(table, null);
+			size = 0;
+			usedSlots = 0;
+		}
 	}
 
 	public boolean contains(Object o) {
-		return wrappedSet.contains(IdentityWrapper.wrap(o));
+		return indexOf(maskNull(o)) != -1;
 	}
 
 	public boolean containsAll(Collection c) {
 		for (Iterator iterator = c.iterator(); iterator.hasNext();)
-			if (!wrappedSet.contains(IdentityWrapper.wrap(iterator.next())))
+			if (!contains(iterator.next()))
 				return false;
 		return true;
 	}
 
 	public boolean isEmpty() {
-		return wrappedSet.isEmpty();
+		return size == 0;
 	}
 
 	public Iterator iterator() {
-		final Iterator wrappedIterator = wrappedSet.iterator();
 		return new Iterator() {
+			private int index;
+			private int lastIndex = -1;
+			private int expectedModCount = modCount;
+
 			public boolean hasNext() {
-				return wrappedIterator.hasNext();
+				Object[] table = IdentitySet.this.table;
+				while (index < table.length
+						&& (table[index] == null || table[index] == REMOVED))
+					index++;
+				return index < table.length;
 			}
 
 			public Object next() {
-				return ((IdentityWrapper) wrappedIterator.next()).unwrap();
+				if (modCount != expectedModCount)
+					throw new ConcurrentModificationException();
+				if (!hasNext())
+					throw new NoSuchElementException();
+				lastIndex = index++;
+				return unmaskNull(table[lastIndex]);
 			}
 
 			public void remove() {
-				wrappedIterator.remove();
+				if (lastIndex == -1)
+					throw new IllegalStateException();
+				if (modCount != expectedModCount)
+					throw new ConcurrentModificationException();
+				removeAt(lastIndex);
+				lastIndex = -1;
+				expectedModCount = modCount;
 			}
 		};
 	}
 
+	private void removeAt(int index) {
+		modCount++;
+		size--;
+		Object[] table = this.table;
+		if (table[(index + 1) & (table.length - 1)] == null) {
+			// no probe sequence runs through this slot
+			table[index] = null;
+			usedSlots--;
+		} else {
+			table[index] = REMOVED;
+		}
+	}
+
 	public boolean remove(Object o) {
-		return wrappedSet.remove(IdentityWrapper.wrap(o));
+		int index = indexOf(maskNull(o));
+		if (index == -1)
+			return false;
+		removeAt(index);
+		return true;
 	}
 
 	public boolean removeAll(Collection c) {
@@ -112,43 +255,42 @@ public class IdentitySet implements Set {
 	}
 
 	public boolean retainAll(Collection c) {
-		// Have to do this the slow way to ensure correct comparisons. i.e.
-		// cannot delegate to c.contains(it) since we can't be sure will
-		// compare elements the way we want.
+		// Cannot delegate to c.contains(element) since we can't be sure it
+		// will compare elements by identity.
+		Set toRetain = c instanceof IdentitySet ? (Set) c : new IdentitySet(c);
 		boolean changed = false;
-		Object[] retainAll = c.toArray();
-		outer: for (Iterator iterator = iterator(); iterator.hasNext();) {
-			Object element = iterator.next();
-			for (int i = 0; i < retainAll.length; i++) {
-				if (element == retainAll[i]) {
-					continue outer;
-				}
+		for (Iterator iterator = iterator(); iterator.hasNext();) {
+			if (!toRetain.contains(iterator.next())) {
+				iterator.remove();
+				changed = true;
 			}
-			iterator.remove();
-			changed = true;
 		}
 		return changed;
 	}
 
 	public int size() {
-		return wrappedSet.size();
+		return size;
 	}
 
 	public Object[] toArray() {
-		return toArray(new Object[wrappedSet.size()]);
+		return toArray(new Object[size]);
 	}
 
 	public Object[] toArray(Object[] a) {
-		int size = wrappedSet.size();
-		IdentityWrapper[] wrappedArray = (IdentityWrapper[]) wrappedSet
-				.toArray(new IdentityWrapper[size]);
 		Object[] result = a;
 		if (a.length < size) {
 			result = (Object[]) Array.newInstance(a.getClass()
 					.getComponentType(), size);
+		} else if (a.length > size) {
+			result[size] = null;
+		}
+		Object[] table = this.table;
+		int i = 0;
+		for (int j = 0; j < table.length; j++) {
+			Object element = table[j];
+			if (element != null && element != REMOVED)
+				result[i++] = unmaskNull(element);
 		}
-		for (int i = 0; i < size; i++)
-			result[i] = wrappedArray[i].unwrap();
 		return result;
 	}
 
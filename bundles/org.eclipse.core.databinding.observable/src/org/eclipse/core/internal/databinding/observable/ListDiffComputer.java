@@ -0,0 +1,302 @@
+/*******************************************************************************
+ * Copyright (c) 2015 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.core.internal.databinding.observable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.databinding.observable.Diffs;
+import org.eclipse.core.databinding.observable.list.ListDiffEntry;
+
+/**
+ * Computes the differences between two lists in O(n log n) time.
+ * <p>
+ * The common prefix and suffix of both lists are skipped. Elements of the
+ * remaining ranges are paired up through a hash index on the old list, and
+ * the longest increasing subsequence of the paired old positions (in new list
+ * order) is kept in place. Every other old element is removed and every other
+ * new element is added. When move detection is enabled, a paired element that
+ * is not kept in place is reported as an adjacent remove/add entry pair, which
+ * {@link org.eclipse.core.databinding.observable.list.ListDiff#accept} reports
+ * as a move.
+ * <p>
+ * Positions of the reported entries are tracked with a binary indexed tree
+ * over the merged sequence of old and new elements, so that entries can be
+ * reported in any order.
+ *
+ * @since 1.5
+ */
+public class ListDiffComputer {
+
+	private static final ListDiffEntry[] NO_ENTRIES = new ListDiffEntry[0];
+
+	private final Object[] oldElements;
+	private final Object[] newElements;
+	private final boolean detectMoves;
+
+	private int offset;
+	private int oldCount;
+	private int newCount;
+
+	private int[] oldToNew;
+	private int[] newToOld;
+	private boolean[] newAnchor;
+
+	private int[] oldSlot;
+	private int[] newSlot;
+	private int[] tree;
+
+	private List entries;
+
+	private ListDiffComputer(List oldList, List newList, boolean detectMoves) {
+		this.oldElements = oldList.toArray();
+		this.newElements = newList.toArray();
+		this.detectMoves = detectMoves;
+	}
+
+	/**
+	 * Returns the entries which, when applied in order to <code>oldList</code>
+	 * , turn it into <code>newList</code>.
+	 *
+	 * @param oldList
+	 *            the old list state
+	 * @param newList
+	 *            the new list state
+	 * @param detectMoves
+	 *            whether elements which changed position should be reported as
+	 *            adjacent remove/add entries
+	 * @return the differences between oldList and newList
+	 */
+	public static ListDiffEntry[] computeDifferences(List oldList,
+			List newList, boolean detectMoves) {
+		return new ListDiffComputer(oldList, newList, detectMoves).compute();
+	}
+
+	private ListDiffEntry[] compute() {
+		trimCommonEnds();
+		if (oldCount == 0 && newCount == 0) {
+			return NO_ENTRIES;
+		}
+
+		matchElements();
+		findAnchors();
+		assignSlots();
+
+		entries = new ArrayList(oldCount + newCount);
+		emitEntries();
+		return (ListDiffEntry[]) entries.toArray(new ListDiffEntry[entries
+				.size()]);
+	}
+
+	private void trimCommonEnds() {
+		int oldEnd = oldElements.length;
+		int newEnd = newElements.length;
+		int start = 0;
+		int limit = Math.min(oldEnd, newEnd);
+		while (start < limit
+				&& Util.equals(oldElements[start], newElements[start])) {
+			start++;
+		}
+		while (oldEnd > start && newEnd > start
+				&& Util.equals(oldElements[oldEnd - 1], newElements[newEnd - 1])) {
+			oldEnd--;
+			newEnd--;
+		}
+		offset = start;
+		oldCount = oldEnd - start;
+		newCount = newEnd - start;
+	}
+
+	/**
+	 * Pairs every new element with the first unpaired equal old element, if
+	 * any.
+	 */
+	private void matchElements() {
+		// element -> int[1] holding the first unpaired old index, chained
+		// through nextOccurrence
+		Map firstOccurrence = new HashMap();
+		int[] nextOccurrence = new int[oldCount];
+		for (int k = oldCount - 1; k >= 0; k--) {
+			Object element = oldElements[offset + k];
+			int[] head = (int[]) firstOccurrence.get(element);
+			if (head == null) {
+				firstOccurrence.put(element, new int[] { k });
+				nextOccurrence[k] = -1;
+			} else {
+				nextOccurrence[k] = head[0];
+				head[0] = k;
+			}
+		}
+
+		oldToNew = new int[oldCount];
+		for (int k = 0; k < oldCount; k++) {
+			oldToNew[k] = -1;
+		}
+		newToOld = new int[newCount];
+		for (int j = 0; j < newCount; j++) {
+			int[] head = (int[]) firstOccurrence.get(newElements[offset + j]);
+			if (head == null || head[0] == -1) {
+				newToOld[j] = -1;
+			} else {
+				int k = head[0];
+				head[0] = nextOccurrence[k];
+				newToOld[j] = k;
+				oldToNew[k] = j;
+			}
+		}
+	}
+
+	/**
+	 * Marks the paired elements which keep their relative order, i.e. the
+	 * longest increasing subsequence of old indices in new list order.
+	 */
+	private void findAnchors() {
+		int[] tails = new int[newCount];
+		int[] previous = new int[newCount];
+		int length = 0;
+		for (int j = 0; j < newCount; j++) {
+			int k = newToOld[j];
+			if (k == -1) {
+				continue;
+			}
+			int low = 0;
+			int high = length;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (newToOld[tails[mid]] < k) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			previous[j] = low > 0 ? tails[low - 1] : -1;
+			tails[low] = j;
+			if (low == length) {
+				length++;
+			}
+		}
+
+		newAnchor = new boolean[newCount];
+		for (int j = length > 0 ? tails[length - 1] : -1; j != -1; j = previous[j]) {
+			newAnchor[j] = true;
+		}
+	}
+
+	private boolean isOldAnchor(int k) {
+		int j = oldToNew[k];
+		return j != -1 && newAnchor[j];
+	}
+
+	/**
+	 * Lays out old and new elements in one merged sequence: between two
+	 * anchors, the old elements come first, followed by the new ones. Every
+	 * intermediate state of the list is a subsequence of this sequence.
+	 */
+	private void assignSlots() {
+		oldSlot = new int[oldCount];
+		newSlot = new int[newCount];
+		boolean[] present = new boolean[oldCount + newCount];
+		int slot = 0;
+		int k = 0;
+		int j = 0;
+		while (k < oldCount || j < newCount) {
+			while (k < oldCount && !isOldAnchor(k)) {
+				present[slot] = true;
+				oldSlot[k++] = slot++;
+			}
+			while (j < newCount && !newAnchor[j]) {
+				newSlot[j++] = slot++;
+			}
+			if (k < oldCount) {
+				present[slot] = true;
+				oldSlot[k++] = newSlot[j++] = slot++;
+			}
+		}
+
+		// build the binary indexed tree over the initially present slots
+		tree = new int[slot + 1];
+		for (int i = 1; i <= slot; i++) {
+			if (present[i - 1]) {
+				tree[i]++;
+			}
+			int parent = i + (i & -i);
+			if (parent <= slot) {
+				tree[parent] += tree[i];
+			}
+		}
+	}
+
+	private void emitEntries() {
+		boolean[] handledOld = new boolean[oldCount];
+		boolean[] handledNew = new boolean[newCount];
+		int k = 0;
+		int j = 0;
+		while (k < oldCount || j < newCount) {
+			for (; k < oldCount && !isOldAnchor(k); k++) {
+				if (handledOld[k]) {
+					continue;
+				}
+				remove(k);
+				int partner = oldToNew[k];
+				if (detectMoves && partner != -1) {
+					add(partner);
+					handledNew[partner] = true;
+				}
+			}
+			for (; j < newCount && !newAnchor[j]; j++) {
+				if (handledNew[j]) {
+					continue;
+				}
+				int partner = newToOld[j];
+				if (detectMoves && partner != -1) {
+					remove(partner);
+					handledOld[partner] = true;
+				}
+				add(j);
+			}
+			if (k < oldCount) {
+				k++;
+				j++;
+			}
+		}
+	}
+
+	private void remove(int k) {
+		int slot = oldSlot[k];
+		entries.add(Diffs.createListDiffEntry(offset + countPresentBefore(slot),
+				false, oldElements[offset + k]));
+		updatePresence(slot, -1);
+	}
+
+	private void add(int j) {
+		int slot = newSlot[j];
+		entries.add(Diffs.createListDiffEntry(offset + countPresentBefore(slot),
+				true, newElements[offset + j]));
+		updatePresence(slot, 1);
+	}
+
+	private int countPresentBefore(int slot) {
+		int count = 0;
+		for (int i = slot; i > 0; i -= i & -i) {
+			count += tree[i];
+		}
+		return count;
+	}
+
+	private void updatePresence(int slot, int delta) {
+		for (int i = slot + 1; i < tree.length; i += i & -i) {
+			tree[i] += delta;
+		}
+	}
+}
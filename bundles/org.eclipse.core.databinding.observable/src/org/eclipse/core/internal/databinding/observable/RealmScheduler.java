@@ -0,0 +1,329 @@
+/*******************************************************************************
+ * Copyright (c) 2015 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.core.internal.databinding.observable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.core.databinding.observable.Realm;
+import org.eclipse.core.databinding.util.Policy;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+
+/**
+ * Schedules runnables for delayed execution in a realm, using a single daemon
+ * thread shared by all realms. Due times are rounded up to a 10 millisecond
+ * tick, so that runnables becoming due in the same tick are handed to their
+ * realms in one go. The thread terminates when it has been idle for a while
+ * and is restarted on demand.
+ * <p>
+ * Due runnables are handed to their realm using {@link Realm#asyncExec}.
+ *
+ * @since 1.5
+ */
+public class RealmScheduler {
+
+	/**
+	 * Receives a notification each time a scheduled runnable is handed to its
+	 * realm. Notifications are sent from the scheduler thread and must return
+	 * quickly.
+	 */
+	public interface IMetricsListener {
+		/**
+		 * @param realm
+		 *            the realm the runnable was dispatched to
+		 * @param pendingCount
+		 *            the number of runnables still scheduled for the realm
+		 * @param latency
+		 *            the number of milliseconds the runnable was dispatched
+		 *            after its due time
+		 */
+		public void taskDispatched(Realm realm, int pendingCount, long latency);
+	}
+
+	/**
+	 * Handle to a scheduled runnable.
+	 */
+	public final class ScheduledTask {
+		final Realm realm;
+		final Runnable runnable;
+		final long dueTime;
+		final long tickTime;
+		final long sequence;
+		int heapIndex = -1;
+
+		ScheduledTask(Realm realm, Runnable runnable, long dueTime,
+				long sequence) {
+			this.realm = realm;
+			this.runnable = runnable;
+			this.dueTime = dueTime;
+			this.tickTime = (dueTime + TICK_MILLIS - 1) / TICK_MILLIS
+					* TICK_MILLIS;
+			this.sequence = sequence;
+		}
+
+		/**
+		 * Removes the runnable from the schedule if it has not been dispatched
+		 * yet.
+		 *
+		 * @return <code>true</code> if the runnable was removed,
+		 *         <code>false</code> if it had already been dispatched or
+		 *         cancelled
+		 */
+		public boolean cancel() {
+			return RealmScheduler.this.cancel(this);
+		}
+
+		boolean isBefore(ScheduledTask other) {
+			return tickTime < other.tickTime || tickTime == other.tickTime
+					&& sequence < other.sequence;
+		}
+	}
+
+	private static final long TICK_MILLIS = 10;
+
+	private static final long IDLE_TIMEOUT_MILLIS = 5000;
+
+	private static final RealmScheduler DEFAULT = new RealmScheduler();
+
+	private ScheduledTask[] queue = new ScheduledTask[16];
+
+	private int size;
+
+	private long nextSequence;
+
+	/**
+	 * Realm -> int[1] holding the number of runnables scheduled for the realm
+	 */
+	private final Map pendingCounts = new HashMap();
+
+	private Thread thread;
+
+	private volatile IMetricsListener metricsListener;
+
+	/**
+	 * @return the scheduler shared by all realms
+	 */
+	public static RealmScheduler getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Schedules <code>runnable</code> to be passed to
+	 * <code>realm.asyncExec()</code> after <code>milliseconds</code> have
+	 * elapsed.
+	 *
+	 * @param realm
+	 * @param milliseconds
+	 * @param runnable
+	 * @return a handle which can be used to cancel the runnable
+	 */
+	public synchronized ScheduledTask schedule(Realm realm, int milliseconds,
+			Runnable runnable) {
+		ScheduledTask task = new ScheduledTask(realm, runnable, System
+				.currentTimeMillis()
+				+ milliseconds, nextSequence++);
+		offer(task);
+		int[] count = (int[]) pendingCounts.get(realm);
+		if (count == null) {
+			pendingCounts.put(realm, new int[] { 1 });
+		} else {
+			count[0]++;
+		}
+
+		if (thread == null) {
+			thread = new Thread("Data Binding Realm Scheduler") { //$NON-NLS-1$
+				public void run() {
+					runLoop();
+				}
+			};
+			thread.setDaemon(true);
+			thread.start();
+		} else if (task.heapIndex == 0) {
+			notifyAll();
+		}
+		return task;
+	}
+
+	/**
+	 * @param realm
+	 * @return the number of runnables scheduled for the given realm which
+	 *         have not been dispatched yet
+	 */
+	public synchronized int getPendingCount(Realm realm) {
+		int[] count = (int[]) pendingCounts.get(realm);
+		return count == null ? 0 : count[0];
+	}
+
+	/**
+	 * Sets the listener notified about every dispatched runnable.
+	 *
+	 * @param listener
+	 *            the listener, or <code>null</code> to remove the current one
+	 */
+	public void setMetricsListener(IMetricsListener listener) {
+		metricsListener = listener;
+	}
+
+	synchronized boolean cancel(ScheduledTask task) {
+		if (task.heapIndex == -1) {
+			return false;
+		}
+		removeAt(task.heapIndex);
+		decrementPendingCount(task.realm);
+		return true;
+	}
+
+	private void runLoop() {
+		while (true) {
+			ScheduledTask[] dueTasks;
+			int[] remaining;
+			long now;
+			synchronized (this) {
+				try {
+					if (!awaitDueTask()) {
+						thread = null;
+						return;
+					}
+				} catch (InterruptedException e) {
+					thread = null;
+					return;
+				}
+				now = System.currentTimeMillis();
+				dueTasks = new ScheduledTask[countDueTasks(now)];
+				remaining = new int[dueTasks.length];
+				for (int i = 0; i < dueTasks.length; i++) {
+					dueTasks[i] = queue[0];
+					removeAt(0);
+					remaining[i] = decrementPendingCount(dueTasks[i].realm);
+				}
+			}
+
+			IMetricsListener listener = metricsListener;
+			for (int i = 0; i < dueTasks.length; i++) {
+				ScheduledTask task = dueTasks[i];
+				if (listener != null) {
+					listener.taskDispatched(task.realm, remaining[i], now
+							- task.dueTime);
+				}
+				try {
+					task.realm.asyncExec(task.runnable);
+				} catch (RuntimeException e) {
+					Policy.getLog().log(
+							new Status(IStatus.ERROR, Policy.JFACE_DATABINDING,
+									IStatus.OK, "Unhandled exception: " //$NON-NLS-1$
+											+ e.getMessage(), e));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Waits until the first task in the queue is due.
+	 *
+	 * @return <code>false</code> if the queue stayed empty for longer than
+	 *         the idle timeout
+	 * @throws InterruptedException
+	 */
+	private boolean awaitDueTask() throws InterruptedException {
+		while (true) {
+			if (size == 0) {
+				wait(IDLE_TIMEOUT_MILLIS);
+				if (size == 0) {
+					return false;
+				}
+			}
+			long delay = queue[0].tickTime - System.currentTimeMillis();
+			if (delay <= 0) {
+				return true;
+			}
+			wait(delay);
+		}
+	}
+
+	private int countDueTasks(long now) {
+		// due tasks form a subtree rooted at the head of the heap
+		return countDueTasks(0, now);
+	}
+
+	private int countDueTasks(int index, long now) {
+		if (index >= size || queue[index].tickTime > now) {
+			return 0;
+		}
+		return 1 + countDueTasks(2 * index + 1, now)
+				+ countDueTasks(2 * index + 2, now);
+	}
+
+	private int decrementPendingCount(Realm realm) {
+		int[] count = (int[]) pendingCounts.get(realm);
+		if (--count[0] == 0) {
+			pendingCounts.remove(realm);
+		}
+		return count[0];
+	}
+
+	private void offer(ScheduledTask task) {
+		if (size == queue.length) {
+			ScheduledTask[] grown = new ScheduledTask[size * 2];
+			System.arraycopy(queue, 0, grown, 0, size);
+			queue = grown;
+		}
+		siftUp(size++, task);
+	}
+
+	private void removeAt(int index) {
+		ScheduledTask removed = queue[index];
+		removed.heapIndex = -1;
+		ScheduledTask last = queue[--size];
+		queue[size] = null;
+		if (index < size) {
+			siftDown(index, last);
+			if (queue[index] == last) {
+				siftUp(index, last);
+			}
+		}
+	}
+
+	private void siftUp(int index, ScheduledTask task) {
+		while (index > 0) {
+			int parent = (index - 1) >>> 1;
+			if (!task.isBefore(queue[parent])) {
+				break;
+			}
+			place(index, queue[parent]);
+			index = parent;
+		}
+		place(index, task);
+	}
+
+	private void siftDown(int index, ScheduledTask task) {
+		int half = size >>> 1;
+		while (index < half) {
+			int child = 2 * index + 1;
+			int right = child + 1;
+			if (right < size && queue[right].isBefore(queue[child])) {
+				child = right;
+			}
+			if (!queue[child].isBefore(task)) {
+				break;
+			}
+			place(index, queue[child]);
+			index = child;
+		}
+		place(index, task);
+	}
+
+	private void place(int index, ScheduledTask task) {
+		queue[index] = task;
+		task.heapIndex = index;
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010, 2013 IBM Corporation and others.
+ * Copyright (c) 2010, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -122,6 +122,20 @@ public class BindingTable {
 
 	public static final BindingComparator BEST_SEQUENCE = new BindingComparator();
 
+	/**
+	 * Incremented whenever the bindings of a table change, so the lookup structures built from
+	 * the tables can tell whether they are still valid.
+	 */
+	private static int generation;
+
+	static int getGeneration() {
+		return generation;
+	}
+
+	static void incrementGeneration() {
+		generation++;
+	}
+
 	private Context tableId;
 	private ArrayList<Binding> bindings = new ArrayList<Binding>();
 	private Map<TriggerSequence, Binding> bindingsByTrigger = new HashMap<TriggerSequence, Binding>();
@@ -190,6 +204,7 @@ public class BindingTable {
 		}
 
 		evaluateOrderedBindings(binding.getTriggerSequence(), binding);
+		incrementGeneration();
 	}
 
 	private void addBindingSimple(Binding binding) {
@@ -257,6 +272,7 @@ public class BindingTable {
 				evaluateOrderedBindings(binding.getTriggerSequence(), null);
 			}
 		}
+		incrementGeneration();
 	}
 
 	/**
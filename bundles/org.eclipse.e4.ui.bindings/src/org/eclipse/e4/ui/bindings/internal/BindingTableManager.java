@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010, 2012 IBM Corporation and others.
+ * Copyright (c) 2010, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,13 +14,16 @@ package org.eclipse.e4.ui.bindings.internal;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import javax.inject.Inject;
 import org.eclipse.core.commands.ParameterizedCommand;
 import org.eclipse.core.commands.contexts.Context;
 import org.eclipse.e4.core.contexts.IEclipseContext;
 import org.eclipse.jface.bindings.Binding;
+import org.eclipse.jface.bindings.Trigger;
 import org.eclipse.jface.bindings.TriggerSequence;
 
 /**
@@ -36,6 +39,42 @@ public class BindingTableManager {
 
 	private String[] activeSchemeIds;
 
+	/**
+	 * The tries of the key sequences bound in the recently used context sets.
+	 */
+	private Map<ContextSet, TriggerNode> compiledTables = new HashMap<ContextSet, TriggerNode>();
+
+	private int compiledGeneration = -1;
+
+	private static final int MAX_COMPILED_TABLES = 16;
+
+	/**
+	 * A node of the trie of the key sequences bound in a context set. The node of a sequence holds
+	 * its perfect match, and has children if the sequence is a partial match.
+	 */
+	private static class TriggerNode {
+		Map<Trigger, TriggerNode> children;
+		Binding match;
+		// whether the match is in the most active scheme, so later tables can not replace it
+		boolean settled;
+
+		TriggerNode getChild(Trigger trigger) {
+			return children == null ? null : children.get(trigger);
+		}
+
+		TriggerNode getOrCreateChild(Trigger trigger) {
+			if (children == null) {
+				children = new HashMap<Trigger, TriggerNode>(4);
+			}
+			TriggerNode child = children.get(trigger);
+			if (child == null) {
+				child = new TriggerNode();
+				children.put(trigger, child);
+			}
+			return child;
+		}
+	}
+
 	public void addTable(BindingTable table) {
 		String contextId = getTableId(table.getId());
 		if (eclipseContext.containsKey(contextId)) {
@@ -43,6 +82,7 @@ public class BindingTableManager {
 			//			throw new IllegalArgumentException("Already contains table " + contextId); //$NON-NLS-1$
 		}
 		eclipseContext.set(contextId, table);
+		BindingTable.incrementGeneration();
 		final List<Context> contexts = definedTables.getContexts();
 		if (!contexts.contains(table.getTableId())) {
 			// this is only valid because I'm throwing away the old definedTables contextSet
@@ -61,6 +101,7 @@ public class BindingTableManager {
 			throw new IllegalArgumentException("Does not contains table " + contextId); //$NON-NLS-1$
 		}
 		eclipseContext.remove(contextId);
+		BindingTable.incrementGeneration();
 		final List<Context> contexts = definedTables.getContexts();
 		if (contexts.contains(table.getTableId())) {
 			// this is only valid because I'm throwing away the old definedTables contextSet
@@ -120,31 +161,82 @@ public class BindingTableManager {
 	}
 
 	public Binding getPerfectMatch(ContextSet contextSet, TriggerSequence triggerSequence) {
-		Binding result = null;
-		Binding currentResult = null;
+		TriggerNode node = findNode(contextSet, triggerSequence);
+		return node == null ? null : node.match;
+	}
+
+	/**
+	 * Returns the node of the sequence in the trie of the context set.
+	 */
+	private TriggerNode findNode(ContextSet contextSet, TriggerSequence triggerSequence) {
+		TriggerNode node = getCompiledTable(contextSet);
+		for (Trigger trigger : triggerSequence.getTriggers()) {
+			node = node.getChild(trigger);
+			if (node == null) {
+				return null;
+			}
+		}
+		return node;
+	}
+
+	private TriggerNode getCompiledTable(ContextSet contextSet) {
+		if (compiledGeneration != BindingTable.getGeneration()) {
+			compiledTables.clear();
+			compiledGeneration = BindingTable.getGeneration();
+		}
+		TriggerNode root = compiledTables.get(contextSet);
+		if (root == null) {
+			root = compileTable(contextSet);
+			if (compiledTables.size() >= MAX_COMPILED_TABLES) {
+				compiledTables.clear();
+			}
+			// the contexts of the set may be changed later, the key must not
+			compiledTables.put(createContextSet(contextSet.getContexts()), root);
+		}
+		return root;
+	}
+
+	/**
+	 * Merges the bindings of the tables of the context set into one trie. The tables are visited
+	 * from the most specific context, and the match of each sequence is chosen as the tables
+	 * would be searched one after the other.
+	 */
+	private TriggerNode compileTable(ContextSet contextSet) {
+		TriggerNode root = new TriggerNode();
 		List<Context> contexts = contextSet.getContexts();
 		ListIterator<Context> it = contexts.listIterator(contexts.size());
 		while (it.hasPrevious()) {
 			Context c = it.previous();
 			BindingTable table = getTable(c.getId());
-			if (table != null) {
-				currentResult = table.getPerfectMatch(triggerSequence);
+			if (table == null) {
+				continue;
 			}
-			if (currentResult != null) {
-				if (isMostActiveScheme(currentResult)) {
-					return currentResult;
-				}
-				if (result == null) {
-					result = currentResult;
-				} else {
-					int rc = compareSchemes(result.getSchemeId(), currentResult.getSchemeId());
-					if (rc < 0) {
-						result = currentResult;
-					}
+			for (Binding binding : table.getBindings()) {
+				TriggerNode node = root;
+				for (Trigger trigger : binding.getTriggerSequence().getTriggers()) {
+					node = node.getOrCreateChild(trigger);
 				}
+				addMatch(node, binding);
+			}
+		}
+		return root;
+	}
+
+	private void addMatch(TriggerNode node, Binding binding) {
+		if (node.settled) {
+			return;
+		}
+		if (isMostActiveScheme(binding)) {
+			node.match = binding;
+			node.settled = true;
+		} else if (node.match == null) {
+			node.match = binding;
+		} else {
+			int rc = compareSchemes(node.match.getSchemeId(), binding.getSchemeId());
+			if (rc < 0) {
+				node.match = binding;
 			}
 		}
-		return result;
 	}
 
 	/**
@@ -203,18 +295,11 @@ public class BindingTableManager {
 	}
 
 	public boolean isPartialMatch(ContextSet contextSet, TriggerSequence sequence) {
-		List<Context> contexts = contextSet.getContexts();
-		ListIterator<Context> it = contexts.listIterator(contexts.size());
-		while (it.hasPrevious()) {
-			Context c = it.previous();
-			BindingTable table = getTable(c.getId());
-			if (table != null) {
-				if (table.isPartialMatch(sequence)) {
-					return true;
-				}
-			}
+		if (sequence.isEmpty()) {
+			return false;
 		}
-		return false;
+		TriggerNode node = findNode(contextSet, sequence);
+		return node != null && node.children != null && !node.children.isEmpty();
 	}
 
 	public Collection<Binding> getPartialMatches(ContextSet contextSet, TriggerSequence sequence) {
@@ -240,6 +325,7 @@ public class BindingTableManager {
 	public void setActiveSchemes(String[] activeSchemeIds) {
 		this.activeSchemeIds = activeSchemeIds;
 		BindingTable.BEST_SEQUENCE.setActiveSchemes(activeSchemeIds);
+		BindingTable.incrementGeneration();
 	}
 
 	/*
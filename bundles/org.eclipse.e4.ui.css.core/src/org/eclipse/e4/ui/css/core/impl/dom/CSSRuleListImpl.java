@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2013 Angelo Zerr and others.
+ * Copyright (c) 2008, 2015 Angelo Zerr and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -21,6 +21,8 @@ public class CSSRuleListImpl implements CSSRuleList {
 
 	private List<CSSRule> ruleList;
 
+	private int modificationCount;
+
 	public CSSRuleListImpl() {
 		super();
 		this.ruleList = new ArrayList<CSSRule>();
@@ -53,6 +55,7 @@ public class CSSRuleListImpl implements CSSRuleList {
 	 */
 	public void add(CSSRule rule) {
 		ruleList.add(rule);
+		modificationCount++;
 	}
 
 	/**
@@ -60,5 +63,14 @@ public class CSSRuleListImpl implements CSSRuleList {
 	 */
 	public void remove(int position) {
 		ruleList.remove(position);
+		modificationCount++;
+	}
+
+	/**
+	 * Returns the number of times rules were added to or removed from the
+	 * list, so that data derived from the rules can detect that it is stale.
+	 */
+	int getModificationCount() {
+		return modificationCount;
 	}
 }
@@ -0,0 +1,397 @@
+/*******************************************************************************
+ * Copyright (c) 2015 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.ui.css.core.impl.dom;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.eclipse.e4.ui.css.core.dom.CSSStylableElement;
+import org.eclipse.e4.ui.css.core.dom.ExtendedCSSRule;
+import org.eclipse.e4.ui.css.core.impl.sac.AbstractDescendantSelector;
+import org.eclipse.e4.ui.css.core.impl.sac.CSSAndConditionImpl;
+import org.eclipse.e4.ui.css.core.impl.sac.CSSAttributeConditionImpl;
+import org.eclipse.e4.ui.css.core.impl.sac.CSSChildSelectorImpl;
+import org.eclipse.e4.ui.css.core.impl.sac.CSSClassConditionImpl;
+import org.eclipse.e4.ui.css.core.impl.sac.CSSConditionalSelectorImpl;
+import org.eclipse.e4.ui.css.core.impl.sac.CSSDescendantSelectorImpl;
+import org.eclipse.e4.ui.css.core.impl.sac.CSSElementSelectorImpl;
+import org.eclipse.e4.ui.css.core.impl.sac.CSSIdConditionImpl;
+import org.eclipse.e4.ui.css.core.impl.sac.CSSLangConditionImpl;
+import org.eclipse.e4.ui.css.core.impl.sac.CSSPseudoClassConditionImpl;
+import org.eclipse.e4.ui.css.core.impl.sac.CSSPseudoElementSelectorImpl;
+import org.w3c.css.sac.Condition;
+import org.w3c.css.sac.Selector;
+import org.w3c.css.sac.SelectorList;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.css.CSSRule;
+import org.w3c.dom.css.CSSRuleList;
+import org.w3c.dom.css.CSSStyleDeclaration;
+import org.w3c.dom.css.CSSStyleSheet;
+import org.w3c.dom.css.DocumentCSS;
+import org.w3c.dom.css.ViewCSS;
+import org.w3c.dom.stylesheets.StyleSheetList;
+
+/**
+ * Cache of the styles computed by a {@link ViewCSS}, shared by all elements
+ * with the same style signature.
+ * <p>
+ * The signature of an element consists of everything the selectors of the
+ * stylesheets can test: its name, id and class, the attributes and pseudo
+ * classes the selectors refer to, and the signature of its parent element if
+ * the selectors refer to ancestors. Elements with the same signature match
+ * the same rules, so the style computed for one of them is reused for the
+ * others, for example for the items of a tool bar. A change of the attributes
+ * of an element changes its signature, and a change of the stylesheets clears
+ * the cache.
+ * </p>
+ * <p>
+ * If the stylesheets contain sibling selectors, the signature is not enough
+ * to know the matching rules and the styles are not cached.
+ * </p>
+ * <p>
+ * Signatures are remembered per element until {@link #forgetSignatures()} is
+ * called, so that the signatures of ancestors are only computed once while a
+ * tree of elements is styled.
+ * </p>
+ */
+public class ComputedStyleCache {
+
+	private static final int MAX_SIZE = 2048;
+
+	private static final Object NO_STYLE = new Object();
+
+	/**
+	 * The style signature of an element.
+	 */
+	private static final class Signature {
+		private final Object[] values;
+		private final Signature parent;
+		private final int hash;
+
+		Signature(Object[] values, Signature parent) {
+			this.values = values;
+			this.parent = parent;
+			this.hash = Arrays.hashCode(values) * 31
+					+ (parent == null ? 0 : parent.hash);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Signature)) {
+				return false;
+			}
+			Signature other = (Signature) obj;
+			if (hash != other.hash || !Arrays.equals(values, other.values)) {
+				return false;
+			}
+			return parent == null ? other.parent == null : parent
+					.equals(other.parent);
+		}
+	}
+
+	/**
+	 * The key of a cached style: the signature of the element and the pseudo
+	 * element.
+	 */
+	private static final class Key {
+		private final Signature signature;
+		private final String pseudoElt;
+
+		Key(Signature signature, String pseudoElt) {
+			this.signature = signature;
+			this.pseudoElt = pseudoElt;
+		}
+
+		@Override
+		public int hashCode() {
+			return signature.hash * 31
+					+ (pseudoElt == null ? 0 : pseudoElt.hashCode());
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return signature.equals(other.signature)
+					&& (pseudoElt == null ? other.pseudoElt == null
+							: pseudoElt.equals(other.pseudoElt));
+		}
+	}
+
+	private final DocumentCSS documentCSS;
+	private final ViewCSS viewCSS;
+
+	private final Map<Key, Object> styles = new LinkedHashMap<Key, Object>(
+			64, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+			return size() > MAX_SIZE;
+		}
+	};
+
+	private final Map<Element, Signature> signatures = new IdentityHashMap<Element, Signature>();
+
+	// the rule lists the selectors were analyzed for
+	private CSSRuleList[] ruleLists;
+	private int[] ruleCounts;
+	private int[] modificationCounts;
+
+	private boolean enabled;
+	private boolean ancestorsMatter;
+	private String[] attributes;
+	private String[] pseudoClasses;
+
+	public ComputedStyleCache(DocumentCSS documentCSS, ViewCSS viewCSS) {
+		this.documentCSS = documentCSS;
+		this.viewCSS = viewCSS;
+	}
+
+	/**
+	 * Returns the style the view computes for the given element, computing
+	 * it only if no element with the same signature was styled before.
+	 *
+	 * @see ViewCSS#getComputedStyle(Element, String)
+	 */
+	public CSSStyleDeclaration getComputedStyle(Element elt, String pseudoElt) {
+		if (!isValid()) {
+			analyze();
+		}
+		if (!enabled) {
+			return viewCSS.getComputedStyle(elt, pseudoElt);
+		}
+		Key key = new Key(getSignature(elt), pseudoElt);
+		Object style = styles.get(key);
+		if (style == null) {
+			style = viewCSS.getComputedStyle(elt, pseudoElt);
+			if (style == null) {
+				style = NO_STYLE;
+			}
+			styles.put(key, style);
+		}
+		return style == NO_STYLE ? null : (CSSStyleDeclaration) style;
+	}
+
+	/**
+	 * Forgets the signatures computed for the elements, which must be called
+	 * once the elements were styled since their attributes may change.
+	 */
+	public void forgetSignatures() {
+		signatures.clear();
+	}
+
+	/**
+	 * Removes all cached styles.
+	 */
+	public void clear() {
+		styles.clear();
+		signatures.clear();
+		ruleLists = null;
+	}
+
+	private Signature getSignature(Element elt) {
+		Signature signature = signatures.get(elt);
+		if (signature != null) {
+			return signature;
+		}
+		int size = 7 + attributes.length + pseudoClasses.length * 2;
+		Object[] values = new Object[size];
+		int i = 0;
+		values[i++] = elt.getNodeName();
+		values[i++] = elt.getPrefix();
+		values[i++] = elt.getLocalName();
+		values[i++] = elt.getNamespaceURI();
+		if (elt instanceof CSSStylableElement) {
+			CSSStylableElement stylableElement = (CSSStylableElement) elt;
+			values[i++] = stylableElement.getCSSId();
+			values[i++] = stylableElement.getCSSClass();
+			for (String pseudoClass : pseudoClasses) {
+				values[i++] = Boolean.valueOf(stylableElement
+						.isPseudoInstanceOf(pseudoClass));
+				values[i++] = Boolean.valueOf(stylableElement
+						.isStaticPseudoInstance(pseudoClass));
+			}
+		} else {
+			values[i++] = elt.getAttribute("id");
+			values[i++] = elt.getAttribute("class");
+			i += pseudoClasses.length * 2;
+		}
+		for (String attribute : attributes) {
+			values[i++] = elt.getAttribute(attribute);
+		}
+		Signature parentSignature = null;
+		if (ancestorsMatter) {
+			Node parent = elt.getParentNode();
+			// child selectors only match if the parent is an element
+			values[i++] = Boolean.valueOf(parent != null
+					&& parent.getNodeType() == Node.ELEMENT_NODE);
+			while (parent != null && parent.getNodeType() != Node.ELEMENT_NODE) {
+				parent = parent.getParentNode();
+			}
+			if (parent != null) {
+				parentSignature = getSignature((Element) parent);
+			}
+		}
+		signature = new Signature(values, parentSignature);
+		signatures.put(elt, signature);
+		return signature;
+	}
+
+	private boolean isValid() {
+		if (ruleLists == null) {
+			return false;
+		}
+		StyleSheetList styleSheetList = documentCSS.getStyleSheets();
+		int l = styleSheetList.getLength();
+		if (l != ruleLists.length) {
+			return false;
+		}
+		for (int i = 0; i < l; i++) {
+			CSSRuleList ruleList = ((CSSStyleSheet) styleSheetList.item(i))
+					.getCssRules();
+			if (ruleList != ruleLists[i]
+					|| ruleList.getLength() != ruleCounts[i]
+					|| getModificationCount(ruleList) != modificationCounts[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int getModificationCount(CSSRuleList ruleList) {
+		if (ruleList instanceof CSSRuleListImpl) {
+			return ((CSSRuleListImpl) ruleList).getModificationCount();
+		}
+		return 0;
+	}
+
+	/**
+	 * Collects what the selectors of the stylesheets test, to know what the
+	 * signatures consist of.
+	 */
+	private void analyze() {
+		styles.clear();
+		signatures.clear();
+		enabled = true;
+		ancestorsMatter = false;
+		Set<String> attributeSet = new HashSet<String>();
+		Set<String> pseudoClassSet = new HashSet<String>();
+		StyleSheetList styleSheetList = documentCSS.getStyleSheets();
+		int l = styleSheetList.getLength();
+		ruleLists = new CSSRuleList[l];
+		ruleCounts = new int[l];
+		modificationCounts = new int[l];
+		for (int i = 0; i < l; i++) {
+			CSSRuleList ruleList = ((CSSStyleSheet) styleSheetList.item(i))
+					.getCssRules();
+			ruleLists[i] = ruleList;
+			ruleCounts[i] = ruleList.getLength();
+			modificationCounts[i] = getModificationCount(ruleList);
+			for (int j = 0; j < ruleCounts[i]; j++) {
+				CSSRule rule = ruleList.item(j);
+				if (rule.getType() != CSSRule.STYLE_RULE
+						|| !(rule instanceof ExtendedCSSRule)) {
+					continue;
+				}
+				SelectorList selectorList = ((ExtendedCSSRule) rule)
+						.getSelectorList();
+				for (int k = 0; k < selectorList.getLength(); k++) {
+					if (!analyze(selectorList.item(k), attributeSet,
+							pseudoClassSet)) {
+						enabled = false;
+					}
+				}
+			}
+		}
+		attributes = attributeSet.toArray(new String[attributeSet.size()]);
+		pseudoClasses = pseudoClassSet.toArray(new String[pseudoClassSet
+				.size()]);
+	}
+
+	/**
+	 * Collects the attributes and pseudo classes the selector tests.
+	 *
+	 * @return <code>false</code> if the selector tests anything that is not
+	 *         part of the signature
+	 */
+	private boolean analyze(Selector selector, Set<String> attributeSet,
+			Set<String> pseudoClassSet) {
+		Class<?> type = selector.getClass();
+		if (type == CSSElementSelectorImpl.class
+				|| type == CSSPseudoElementSelectorImpl.class) {
+			return true;
+		}
+		if (type == CSSConditionalSelectorImpl.class) {
+			CSSConditionalSelectorImpl conditional = (CSSConditionalSelectorImpl) selector;
+			return analyze(conditional.getSimpleSelector(), attributeSet,
+					pseudoClassSet)
+					&& analyze(conditional.getCondition(), attributeSet,
+							pseudoClassSet);
+		}
+		if (type == CSSDescendantSelectorImpl.class
+				|| type == CSSChildSelectorImpl.class) {
+			ancestorsMatter = true;
+			AbstractDescendantSelector descendant = (AbstractDescendantSelector) selector;
+			return analyze(descendant.getAncestorSelector(), attributeSet,
+					pseudoClassSet)
+					&& analyze(descendant.getSimpleSelector(), attributeSet,
+							pseudoClassSet);
+		}
+		// sibling selectors depend on the position of the element
+		return false;
+	}
+
+	private boolean analyze(Condition condition, Set<String> attributeSet,
+			Set<String> pseudoClassSet) {
+		if (condition instanceof CSSAndConditionImpl) {
+			CSSAndConditionImpl and = (CSSAndConditionImpl) condition;
+			return analyze(and.getFirstCondition(), attributeSet,
+					pseudoClassSet)
+					&& analyze(and.getSecondCondition(), attributeSet,
+							pseudoClassSet);
+		}
+		if (condition instanceof CSSIdConditionImpl
+				|| condition instanceof CSSClassConditionImpl) {
+			// the id and the class are always part of the signature
+			return true;
+		}
+		if (condition instanceof CSSAttributeConditionImpl) {
+			attributeSet.add(((CSSAttributeConditionImpl) condition)
+					.getLocalName());
+			return true;
+		}
+		if (condition instanceof CSSLangConditionImpl) {
+			attributeSet.add("lang");
+			return true;
+		}
+		if (condition instanceof CSSPseudoClassConditionImpl) {
+			pseudoClassSet.add(((CSSPseudoClassConditionImpl) condition)
+					.getValue());
+			return true;
+		}
+		return false;
+	}
+}
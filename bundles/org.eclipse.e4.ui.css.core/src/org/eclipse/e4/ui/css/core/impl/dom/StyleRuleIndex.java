@@ -0,0 +1,334 @@
+/*******************************************************************************
+ * Copyright (c) 2015 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.ui.css.core.impl.dom;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.e4.ui.css.core.dom.CSSStylableElement;
+import org.eclipse.e4.ui.css.core.dom.ExtendedCSSRule;
+import org.eclipse.e4.ui.css.core.impl.sac.CSSAndConditionImpl;
+import org.eclipse.e4.ui.css.core.impl.sac.CSSChildSelectorImpl;
+import org.eclipse.e4.ui.css.core.impl.sac.CSSClassConditionImpl;
+import org.eclipse.e4.ui.css.core.impl.sac.CSSConditionalSelectorImpl;
+import org.eclipse.e4.ui.css.core.impl.sac.CSSDescendantSelectorImpl;
+import org.eclipse.e4.ui.css.core.impl.sac.CSSDirectAdjacentSelectorImpl;
+import org.eclipse.e4.ui.css.core.impl.sac.CSSElementSelectorImpl;
+import org.eclipse.e4.ui.css.core.impl.sac.CSSIdConditionImpl;
+import org.eclipse.e4.ui.css.core.impl.sac.ExtendedSelector;
+import org.w3c.css.sac.Condition;
+import org.w3c.css.sac.Selector;
+import org.w3c.css.sac.SelectorList;
+import org.w3c.dom.Element;
+import org.w3c.dom.css.CSSRule;
+import org.w3c.dom.css.CSSRuleList;
+import org.w3c.dom.css.CSSStyleDeclaration;
+import org.w3c.dom.css.CSSStyleRule;
+
+/**
+ * The selectors of the style rules of a stylesheet, bucketed by their
+ * right-most simple selector: by id, by class, by element name, or universal.
+ * An element can only match the selectors of the buckets for its id, its
+ * classes and its name, and the universal ones, so only those are matched.
+ */
+final class StyleRuleIndex {
+
+	private static final Entry[] NO_ENTRIES = new Entry[0];
+
+	/**
+	 * A selector of a style rule, together with the wrapper of the rule's
+	 * style, which is immutable and can be shared by all computed styles.
+	 */
+	private static final class Entry {
+		final ExtendedSelector selector;
+		final StyleWrapper wrapper;
+
+		Entry(ExtendedSelector selector, StyleWrapper wrapper) {
+			this.selector = selector;
+			this.wrapper = wrapper;
+		}
+	}
+
+	private final CSSRuleList ruleList;
+	private final int ruleCount;
+	private final int modificationCount;
+
+	private final Map<String, Entry[]> idEntries;
+	private final Map<String, Entry[]> classEntries;
+	private final Map<String, Entry[]> elementEntries;
+	private final Entry[] universalEntries;
+
+	/**
+	 * Creates the index of the style rules in the given list.
+	 */
+	StyleRuleIndex(CSSRuleList ruleList) {
+		this.ruleList = ruleList;
+		this.ruleCount = ruleList.getLength();
+		this.modificationCount = getModificationCount(ruleList);
+		Map<String, List<Entry>> ids = new HashMap<String, List<Entry>>();
+		Map<String, List<Entry>> classes = new HashMap<String, List<Entry>>();
+		Map<String, List<Entry>> elements = new HashMap<String, List<Entry>>();
+		List<Entry> universal = new ArrayList<Entry>();
+		int position = 0;
+		for (int i = 0; i < ruleCount; i++) {
+			CSSRule rule = ruleList.item(i);
+			if (rule.getType() != CSSRule.STYLE_RULE
+					|| !(rule instanceof ExtendedCSSRule)) {
+				continue;
+			}
+			CSSStyleDeclaration style = ((CSSStyleRule) rule).getStyle();
+			SelectorList selectorList = ((ExtendedCSSRule) rule)
+					.getSelectorList();
+			int l = selectorList.getLength();
+			for (int j = 0; j < l; j++) {
+				Selector selector = selectorList.item(j);
+				if (!(selector instanceof ExtendedSelector)) {
+					continue;
+				}
+				ExtendedSelector extendedSelector = (ExtendedSelector) selector;
+				// the position preserves the order of the selectors in the
+				// stylesheet for the cascade
+				Entry entry = new Entry(extendedSelector, new StyleWrapper(
+						style, extendedSelector.getSpecificity(), position++));
+				Selector key = getKeySelector(selector);
+				if (key.getClass() == CSSConditionalSelectorImpl.class) {
+					Condition condition = ((CSSConditionalSelectorImpl) key)
+							.getCondition();
+					String id = findConditionValue(condition,
+							CSSIdConditionImpl.class);
+					if (id != null) {
+						add(ids, id, entry);
+						continue;
+					}
+					String className = findConditionValue(condition,
+							CSSClassConditionImpl.class);
+					if (className != null && isClassName(className)) {
+						add(classes, className, entry);
+						continue;
+					}
+					key = ((CSSConditionalSelectorImpl) key)
+							.getSimpleSelector();
+				}
+				if (key.getClass() == CSSElementSelectorImpl.class
+						&& ((CSSElementSelectorImpl) key).getLocalName() != null) {
+					add(elements,
+							((CSSElementSelectorImpl) key).getLocalName(),
+							entry);
+				} else {
+					universal.add(entry);
+				}
+			}
+		}
+		idEntries = toArrays(ids);
+		classEntries = toArrays(classes);
+		elementEntries = toArrays(elements);
+		universalEntries = universal.toArray(new Entry[universal.size()]);
+	}
+
+	/**
+	 * Returns the right-most simple selector of the given selector.
+	 */
+	private static Selector getKeySelector(Selector selector) {
+		while (true) {
+			Class<?> type = selector.getClass();
+			if (type == CSSDescendantSelectorImpl.class) {
+				selector = ((CSSDescendantSelectorImpl) selector)
+						.getSimpleSelector();
+			} else if (type == CSSChildSelectorImpl.class) {
+				selector = ((CSSChildSelectorImpl) selector)
+						.getSimpleSelector();
+			} else if (type == CSSDirectAdjacentSelectorImpl.class) {
+				selector = ((CSSDirectAdjacentSelectorImpl) selector)
+						.getSiblingSelector();
+			} else {
+				return selector;
+			}
+		}
+	}
+
+	/**
+	 * Returns the value of a condition of the given type the condition
+	 * requires, or <code>null</code> if there is none.
+	 */
+	private static String findConditionValue(Condition condition,
+			Class<?> type) {
+		if (condition.getClass() == type) {
+			if (condition instanceof CSSIdConditionImpl) {
+				return ((CSSIdConditionImpl) condition).getValue();
+			}
+			return ((CSSClassConditionImpl) condition).getValue();
+		}
+		if (condition.getClass() == CSSAndConditionImpl.class) {
+			CSSAndConditionImpl and = (CSSAndConditionImpl) condition;
+			String value = findConditionValue(and.getFirstCondition(), type);
+			if (value == null) {
+				value = findConditionValue(and.getSecondCondition(), type);
+			}
+			return value;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns whether a class condition with the given value only matches
+	 * elements with a class of the same name.
+	 */
+	private static boolean isClassName(String value) {
+		if (value.length() == 0) {
+			return false;
+		}
+		for (int i = 0; i < value.length(); i++) {
+			if (Character.isSpaceChar(value.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void add(Map<String, List<Entry>> map, String key,
+			Entry entry) {
+		List<Entry> entries = map.get(key);
+		if (entries == null) {
+			entries = new ArrayList<Entry>(2);
+			map.put(key, entries);
+		}
+		entries.add(entry);
+	}
+
+	private static Map<String, Entry[]> toArrays(Map<String, List<Entry>> map) {
+		Map<String, Entry[]> result = new HashMap<String, Entry[]>(
+				map.size() * 4 / 3 + 1);
+		for (Map.Entry<String, List<Entry>> e : map.entrySet()) {
+			List<Entry> entries = e.getValue();
+			result.put(e.getKey(), entries.toArray(new Entry[entries.size()]));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns whether the index was created for the current rules of the
+	 * given list.
+	 */
+	boolean isValidFor(CSSRuleList ruleList) {
+		return this.ruleList == ruleList && ruleCount == ruleList.getLength()
+				&& modificationCount == getModificationCount(ruleList);
+	}
+
+	private static int getModificationCount(CSSRuleList ruleList) {
+		if (ruleList instanceof CSSRuleListImpl) {
+			return ((CSSRuleListImpl) ruleList).getModificationCount();
+		}
+		return 0;
+	}
+
+	/**
+	 * Computes the style of the given element from the rules of the index.
+	 *
+	 * @return the style, or <code>null</code> if no rule matches
+	 */
+	CSSStyleDeclaration getComputedStyle(Element elt, String pseudoElt) {
+		Matches matches = new Matches();
+		String id;
+		String classes;
+		if (elt instanceof CSSStylableElement) {
+			id = ((CSSStylableElement) elt).getCSSId();
+			classes = ((CSSStylableElement) elt).getCSSClass();
+		} else {
+			id = elt.getAttribute("id");
+			classes = elt.getAttribute("class");
+		}
+		if (id != null) {
+			matches.match(idEntries.get(id), elt, pseudoElt);
+		}
+		if (classes != null && classes.length() > 0) {
+			matchClasses(matches, classes, elt, pseudoElt);
+		}
+		String name = elt.getPrefix() == null ? elt.getNodeName() : elt
+				.getLocalName();
+		if (name != null) {
+			matches.match(elementEntries.get(name), elt, pseudoElt);
+		}
+		matches.match(universalEntries, elt, pseudoElt);
+		return matches.getStyle();
+	}
+
+	private void matchClasses(Matches matches, String classes, Element elt,
+			String pseudoElt) {
+		if (classEntries.isEmpty()) {
+			return;
+		}
+		int length = classes.length();
+		int start = 0;
+		List<String> matched = null;
+		while (start < length) {
+			while (start < length
+					&& Character.isSpaceChar(classes.charAt(start))) {
+				start++;
+			}
+			int end = start;
+			while (end < length && !Character.isSpaceChar(classes.charAt(end))) {
+				end++;
+			}
+			if (end > start) {
+				String className = classes.substring(start, end);
+				Entry[] entries = classEntries.get(className);
+				if (entries != null) {
+					// an element may list a class several times
+					if (matched == null) {
+						matched = new ArrayList<String>(2);
+					}
+					if (!matched.contains(className)) {
+						matched.add(className);
+						matches.match(entries, elt, pseudoElt);
+					}
+				}
+			}
+			start = end;
+		}
+	}
+
+	/**
+	 * The styles of the selectors matching an element.
+	 */
+	private static final class Matches {
+		private StyleWrapper first;
+		private List<StyleWrapper> all;
+
+		void match(Entry[] entries, Element elt, String pseudoElt) {
+			if (entries == null) {
+				entries = NO_ENTRIES;
+			}
+			for (Entry entry : entries) {
+				if (entry.selector.match(elt, pseudoElt)) {
+					if (first == null) {
+						first = entry.wrapper;
+					} else {
+						if (all == null) {
+							all = new ArrayList<StyleWrapper>();
+							all.add(first);
+						}
+						all.add(entry.wrapper);
+					}
+				}
+			}
+		}
+
+		CSSStyleDeclaration getStyle() {
+			if (all != null) {
+				// CSSComputedStyleImpl sorts the styles by specificity and
+				// position, so the order of the matches does not matter
+				return new CSSComputedStyleImpl(all);
+			}
+			return first == null ? null : first.style;
+		}
+	}
+}
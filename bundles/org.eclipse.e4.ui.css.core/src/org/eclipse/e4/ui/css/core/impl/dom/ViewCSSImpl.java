@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2013 Angelo Zerr and others.
+ * Copyright (c) 2008, 2015 Angelo Zerr and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,17 +12,11 @@
  *******************************************************************************/
 package org.eclipse.e4.ui.css.core.impl.dom;
 
-import java.util.ArrayList;
-import java.util.List;
-import org.eclipse.e4.ui.css.core.dom.ExtendedCSSRule;
-import org.eclipse.e4.ui.css.core.impl.sac.ExtendedSelector;
-import org.w3c.css.sac.Selector;
-import org.w3c.css.sac.SelectorList;
+import java.util.Map;
+import java.util.WeakHashMap;
 import org.w3c.dom.Element;
-import org.w3c.dom.css.CSSRule;
 import org.w3c.dom.css.CSSRuleList;
 import org.w3c.dom.css.CSSStyleDeclaration;
-import org.w3c.dom.css.CSSStyleRule;
 import org.w3c.dom.css.CSSStyleSheet;
 import org.w3c.dom.css.DocumentCSS;
 import org.w3c.dom.css.ViewCSS;
@@ -37,6 +31,8 @@ public class ViewCSSImpl implements ViewCSS {
 
 	protected DocumentCSS documentCSS;
 
+	private final Map<CSSStyleSheet, StyleRuleIndex> ruleIndexes = new WeakHashMap<CSSStyleSheet, StyleRuleIndex>();
+
 	/**
 	 * Creates a new ViewCSS.
 	 */
@@ -74,62 +70,17 @@ public class ViewCSSImpl implements ViewCSS {
 	}
 
 	public CSSStyleDeclaration getComputedStyle(CSSStyleSheet styleSheet, Element elt, String pseudoElt) {
-		List styleDeclarations = null;
-		StyleWrapper firstStyleDeclaration = null;
 		CSSRuleList ruleList = styleSheet.getCssRules();
-		int length = ruleList.getLength();
-		int position = 0;
-		for (int i = 0; i < length; i++) {
-			CSSRule rule = ruleList.item(i);
-			if (rule.getType() == CSSRule.STYLE_RULE) {
-				CSSStyleRule styleRule = (CSSStyleRule) rule;
-				if (rule instanceof ExtendedCSSRule) {
-					ExtendedCSSRule r = (ExtendedCSSRule) rule;
-					SelectorList selectorList = r.getSelectorList();
-					// Loop for SelectorList
-					int l = selectorList.getLength();
-					for (int j = 0; j < l; j++) {
-						Selector selector = selectorList.item(j);
-						if (selector instanceof ExtendedSelector) {
-							ExtendedSelector extendedSelector = (ExtendedSelector) selector;
-							if (extendedSelector.match(elt, pseudoElt)) {
-								CSSStyleDeclaration style = styleRule
-										.getStyle();
-								int specificity = extendedSelector
-										.getSpecificity();
-								StyleWrapper wrapper = new StyleWrapper(style,
-										specificity, position++);
-								if (firstStyleDeclaration == null) {
-									firstStyleDeclaration = wrapper;
-								} else {
-									// There is several Style Declarations which
-									// match the current element
-									if (styleDeclarations == null) {
-										styleDeclarations = new ArrayList();
-										styleDeclarations.add(firstStyleDeclaration);
-									}
-									styleDeclarations.add(wrapper);
-								}
-							}
-						} else {
-							// TODO : selector is not batik ExtendedSelector,
-							// Manage this case...
-						}
-					}
-				} else {
-					// TODO : CSS rule is not ExtendedCSSRule,
-					// Manage this case...
-				}
+		StyleRuleIndex index;
+		synchronized (ruleIndexes) {
+			index = ruleIndexes.get(styleSheet);
+			if (index == null || !index.isValidFor(ruleList)) {
+				// Index the rules once instead of matching every rule against
+				// every element
+				index = new StyleRuleIndex(ruleList);
+				ruleIndexes.put(styleSheet, index);
 			}
 		}
-		if (styleDeclarations != null) {
-			// There is several Style Declarations wich match
-			// the element, merge the CSS Property value.
-			return new CSSComputedStyleImpl(styleDeclarations);
-		}
-		if (firstStyleDeclaration != null) {
-			return firstStyleDeclaration.style;
-		}
-		return null;
+		return index.getComputedStyle(elt, pseudoElt);
 	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2013 Angelo Zerr and others.
+ * Copyright (c) 2008, 2015 Angelo Zerr and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -23,6 +23,7 @@ import org.eclipse.e4.ui.css.core.sac.ISACParserFactory;
 import org.eclipse.e4.ui.css.core.sac.ParserNotFoundException;
 import org.eclipse.e4.ui.css.core.sac.SACParserFactory;
 import org.w3c.css.sac.ConditionFactory;
+import org.w3c.css.sac.DocumentHandler;
 import org.w3c.css.sac.InputSource;
 import org.w3c.css.sac.Parser;
 import org.w3c.css.sac.SelectorFactory;
@@ -52,6 +53,8 @@ public class AbstractCSSParser implements CSSParser {
 	private ConditionFactory conditionFactory = null;
 	private SelectorFactory selectorFactory = null;
 
+	private CSSStyleSheetCache styleSheetCache;
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -59,12 +62,27 @@ public class AbstractCSSParser implements CSSParser {
 	 */
 	@Override
 	public CSSStyleSheet parseStyleSheet(InputSource source) throws IOException {
+		// the compiled style sheets only hold selectors and conditions
+		// created by the factories of the parser
+		if (styleSheetCache != null && source.getURI() != null
+				&& selectorFactory != null && conditionFactory != null) {
+			return styleSheetCache.parseStyleSheet(source, this);
+		}
 		ExtendedDocumentHandler documentHandler = getDocumentHandlerFactory()
 				.makeDocumentHandler();
+		parseStyleSheet(source, documentHandler);
+		return (CSSStyleSheet) documentHandler.getNodeRoot();
+	}
+
+	/**
+	 * Parses the style sheet of the source, sending the events to the given
+	 * handler.
+	 */
+	void parseStyleSheet(InputSource source, DocumentHandler documentHandler)
+			throws IOException {
 		Parser parser = getParser();
 		parser.setDocumentHandler(documentHandler);
 		parser.parseStyleSheet(source);
-		return (CSSStyleSheet) documentHandler.getNodeRoot();
 	}
 
 	/*
@@ -269,4 +287,26 @@ public class AbstractCSSParser implements CSSParser {
 		this.selectorFactory = selectorFactory;
 	}
 
+	/**
+	 * Returns the cache of compiled style sheets used to parse style sheets
+	 * with a URI.
+	 *
+	 * @return the cache, or <code>null</code> if style sheets are always
+	 *         parsed
+	 */
+	public CSSStyleSheetCache getStyleSheetCache() {
+		return styleSheetCache;
+	}
+
+	/**
+	 * Sets the cache of compiled style sheets used to parse style sheets with
+	 * a URI.
+	 *
+	 * @param styleSheetCache
+	 *            the cache, or <code>null</code> to always parse style sheets
+	 */
+	public void setStyleSheetCache(CSSStyleSheetCache styleSheetCache) {
+		this.styleSheetCache = styleSheetCache;
+	}
+
 }
@@ -0,0 +1,286 @@
+/*******************************************************************************
+ * Copyright (c) 2015 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.ui.css.core.impl.dom.parsers;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.CharArrayReader;
+import java.io.CharArrayWriter;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.net.URI;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.e4.ui.css.core.sac.ExtendedDocumentHandler;
+import org.eclipse.osgi.service.datalocation.Location;
+import org.osgi.framework.Bundle;
+import org.w3c.css.sac.ConditionFactory;
+import org.w3c.css.sac.InputSource;
+import org.w3c.css.sac.SelectorFactory;
+import org.w3c.dom.css.CSSStyleSheet;
+
+/**
+ * A cache of compiled style sheets in a directory. Style sheets with a URI are
+ * parsed once, later parses of the same content replay the compiled form
+ * instead.
+ * <p>
+ * A compiled style sheet is used as long as the content of the style sheet has
+ * the same length and checksum, and the file of a <code>file:</code> URI has
+ * the same modification time.
+ * </p>
+ */
+public class CSSStyleSheetCache {
+
+	/**
+	 * The system property disabling the cache of the workspace.
+	 */
+	public static final String DISABLED_PROPERTY = "org.eclipse.e4.ui.css.core.disableStyleSheetCache"; //$NON-NLS-1$
+
+	private static final String BUNDLE_ID = "org.eclipse.e4.ui.css.core"; //$NON-NLS-1$
+
+	private static final int MAGIC = 0x45344353; // E4CS
+
+	// increase whenever the compiled form changes
+	private static final int FORMAT_VERSION = 1;
+
+	private static final String SUFFIX = ".cssc"; //$NON-NLS-1$
+
+	private static CSSStyleSheetCache defaultCache;
+
+	private final File directory;
+
+	/**
+	 * Creates a cache writing the compiled style sheets to the given
+	 * directory.
+	 */
+	public CSSStyleSheetCache(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Returns the cache in the metadata of the workspace.
+	 *
+	 * @return the cache, or <code>null</code> if there is no workspace or the
+	 *         cache is disabled
+	 */
+	public static synchronized CSSStyleSheetCache getDefault() {
+		if (defaultCache == null) {
+			if (Boolean.getBoolean(DISABLED_PROPERTY)) {
+				return null;
+			}
+			try {
+				if (!Platform.isRunning()) {
+					return null;
+				}
+				Location location = Platform.getInstanceLocation();
+				if (location == null || !location.isSet()) {
+					return null;
+				}
+				Bundle bundle = Platform.getBundle(BUNDLE_ID);
+				if (bundle == null) {
+					return null;
+				}
+				defaultCache = new CSSStyleSheetCache(Platform
+						.getStateLocation(bundle).append("stylesheets") //$NON-NLS-1$
+						.toFile());
+			} catch (RuntimeException e) {
+				// no workspace
+				return null;
+			}
+		}
+		return defaultCache;
+	}
+
+	/**
+	 * Returns the directory of the compiled style sheets.
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Parses the style sheet of the source, replaying its compiled form when
+	 * it is up to date. The stream of the source is read completely.
+	 */
+	CSSStyleSheet parseStyleSheet(InputSource source, AbstractCSSParser parser)
+			throws IOException {
+		String uri = source.getURI();
+		byte[] content = readContent(source);
+		CRC32 crc = new CRC32();
+		crc.update(content);
+		long checksum = crc.getValue();
+		long lastModified = getLastModified(uri);
+
+		File file = new File(directory, getFileName(uri));
+		SelectorFactory selectorFactory = parser.getSelectorFactory();
+		ConditionFactory conditionFactory = parser.getConditionFactory();
+		if (file.isFile()) {
+			ExtendedDocumentHandler handler = parser
+					.getDocumentHandlerFactory().makeDocumentHandler();
+			if (replay(file, uri, content.length, checksum, lastModified,
+					handler, source, selectorFactory, conditionFactory)) {
+				return (CSSStyleSheet) handler.getNodeRoot();
+			}
+		}
+
+		ExtendedDocumentHandler handler = parser.getDocumentHandlerFactory()
+				.makeDocumentHandler();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+				content.length / 2 + 64);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(MAGIC);
+		out.writeInt(FORMAT_VERSION);
+		CompiledStyleSheet.writeBytes(out, uri);
+		out.writeInt(content.length);
+		out.writeLong(checksum);
+		out.writeLong(lastModified);
+		CompiledStyleSheet.Recorder recorder = new CompiledStyleSheet.Recorder(
+				handler, out);
+		parser.parseStyleSheet(source, recorder);
+		recorder.finish();
+		if (recorder.isComplete()) {
+			out.flush();
+			write(file, bytes);
+		}
+		return (CSSStyleSheet) handler.getNodeRoot();
+	}
+
+	/**
+	 * Reads the content of the source, and replaces its stream by one on the
+	 * content.
+	 */
+	private static byte[] readContent(InputSource source) throws IOException {
+		Reader reader = source.getCharacterStream();
+		if (reader != null) {
+			CharArrayWriter writer = new CharArrayWriter();
+			char[] buffer = new char[4096];
+			int read;
+			while ((read = reader.read(buffer)) != -1) {
+				writer.write(buffer, 0, read);
+			}
+			char[] chars = writer.toCharArray();
+			source.setCharacterStream(new CharArrayReader(chars));
+			return new String(chars).getBytes("UTF-8"); //$NON-NLS-1$
+		}
+		InputStream stream = source.getByteStream();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while ((read = stream.read(buffer)) != -1) {
+			bytes.write(buffer, 0, read);
+		}
+		byte[] content = bytes.toByteArray();
+		source.setByteStream(new ByteArrayInputStream(content));
+		return content;
+	}
+
+	private static long getLastModified(String uri) {
+		if (!uri.startsWith("file:")) { //$NON-NLS-1$
+			return 0;
+		}
+		try {
+			return new File(new URI(uri)).lastModified();
+		} catch (Exception e) {
+			return 0;
+		}
+	}
+
+	private static String getFileName(String uri) {
+		// the URI is written to the file, a collision only misses the cache
+		return Integer.toHexString(uri.hashCode())
+				+ Integer.toHexString(uri.length()) + SUFFIX;
+	}
+
+	private static boolean replay(File file, String uri, int length,
+			long checksum, long lastModified, ExtendedDocumentHandler handler,
+			InputSource source, SelectorFactory selectorFactory,
+			ConditionFactory conditionFactory) {
+		FileInputStream in = null;
+		try {
+			in = new FileInputStream(file);
+			FileChannel channel = in.getChannel();
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+					0, channel.size());
+			if (!isValid(buffer, uri, length, checksum, lastModified)) {
+				return false;
+			}
+			CompiledStyleSheet.replay(buffer, handler, source,
+					selectorFactory, conditionFactory);
+			return true;
+		} catch (IOException e) {
+			return false;
+		} catch (BufferUnderflowException e) {
+			return false;
+		} catch (RuntimeException e) {
+			// the compiled form does not match the factories
+			return false;
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+	}
+
+	private static boolean isValid(ByteBuffer buffer, String uri, int length,
+			long checksum, long lastModified) throws IOException {
+		return buffer.getInt() == MAGIC && buffer.getInt() == FORMAT_VERSION
+				&& uri.equals(CompiledStyleSheet.readBytes(buffer))
+				&& buffer.getInt() == length && buffer.getLong() == checksum
+				&& buffer.getLong() == lastModified;
+	}
+
+	/**
+	 * Writes the compiled style sheet. The cache is an optimization, so
+	 * failures are ignored.
+	 */
+	private void write(File file, ByteArrayOutputStream bytes) {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			return;
+		}
+		File temp = new File(directory, file.getName() + ".tmp"); //$NON-NLS-1$
+		BufferedOutputStream out = null;
+		try {
+			out = new BufferedOutputStream(new FileOutputStream(temp));
+			bytes.writeTo(out);
+			out.close();
+			out = null;
+			// the file may be mapped by another engine on some platforms
+			if (!temp.renameTo(file) && (!file.delete() || !temp.renameTo(file))) {
+				temp.delete();
+			}
+		} catch (IOException e) {
+			temp.delete();
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					// ignore
+				}
+				temp.delete();
+			}
+		}
+	}
+}
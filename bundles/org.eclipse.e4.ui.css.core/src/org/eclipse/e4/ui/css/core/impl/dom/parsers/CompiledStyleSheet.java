@@ -0,0 +1,835 @@
+/*******************************************************************************
+ * Copyright (c) 2015 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.ui.css.core.impl.dom.parsers;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.w3c.css.sac.AttributeCondition;
+import org.w3c.css.sac.CSSException;
+import org.w3c.css.sac.CombinatorCondition;
+import org.w3c.css.sac.Condition;
+import org.w3c.css.sac.ConditionFactory;
+import org.w3c.css.sac.ConditionalSelector;
+import org.w3c.css.sac.DescendantSelector;
+import org.w3c.css.sac.DocumentHandler;
+import org.w3c.css.sac.ElementSelector;
+import org.w3c.css.sac.InputSource;
+import org.w3c.css.sac.LangCondition;
+import org.w3c.css.sac.LexicalUnit;
+import org.w3c.css.sac.SACMediaList;
+import org.w3c.css.sac.Selector;
+import org.w3c.css.sac.SelectorFactory;
+import org.w3c.css.sac.SelectorList;
+import org.w3c.css.sac.SiblingSelector;
+import org.w3c.css.sac.SimpleSelector;
+
+/**
+ * The compiled form of a style sheet: the events the SAC parser sent to the
+ * document handler while parsing it, with the selectors and the lexical units
+ * they carry. Replaying the events builds the same style sheet as parsing it
+ * again.
+ * <p>
+ * Strings are written once, later occurrences refer to the first one by its
+ * index.
+ * </p>
+ */
+final class CompiledStyleSheet {
+
+	private static final byte END = 0;
+	private static final byte START_DOCUMENT = 1;
+	private static final byte END_DOCUMENT = 2;
+	private static final byte COMMENT = 3;
+	private static final byte IGNORABLE_AT_RULE = 4;
+	private static final byte NAMESPACE_DECLARATION = 5;
+	private static final byte IMPORT_STYLE = 6;
+	private static final byte START_MEDIA = 7;
+	private static final byte END_MEDIA = 8;
+	private static final byte START_PAGE = 9;
+	private static final byte END_PAGE = 10;
+	private static final byte START_FONT_FACE = 11;
+	private static final byte END_FONT_FACE = 12;
+	private static final byte START_SELECTOR = 13;
+	private static final byte END_SELECTOR = 14;
+	private static final byte PROPERTY = 15;
+
+	private static final int NULL_STRING = -1;
+	private static final int NEW_STRING = -2;
+
+	private static final String UTF_8 = "UTF-8"; //$NON-NLS-1$
+
+	private CompiledStyleSheet() {
+	}
+
+	/**
+	 * A document handler writing the events it receives, before passing them
+	 * on to another handler. If an event can not be written, the recorder
+	 * still passes on the events but {@link #isComplete()} returns
+	 * <code>false</code>.
+	 */
+	static final class Recorder implements DocumentHandler {
+
+		private final DocumentHandler handler;
+		private final DataOutputStream out;
+		private final Map<String, Integer> strings = new HashMap<String, Integer>();
+		private boolean complete = true;
+
+		// the selector list of the rule being written, it is not written
+		// again at the end of the rule
+		private SelectorList currentSelectors;
+
+		Recorder(DocumentHandler handler, DataOutputStream out) {
+			this.handler = handler;
+			this.out = out;
+		}
+
+		/**
+		 * @return whether all the events were written
+		 */
+		boolean isComplete() {
+			return complete;
+		}
+
+		/**
+		 * Writes the end of the events.
+		 */
+		void finish() {
+			try {
+				out.writeByte(END);
+			} catch (IOException e) {
+				complete = false;
+			}
+		}
+
+		@Override
+		public void startDocument(InputSource source) throws CSSException {
+			write(START_DOCUMENT);
+			handler.startDocument(source);
+		}
+
+		@Override
+		public void endDocument(InputSource source) throws CSSException {
+			write(END_DOCUMENT);
+			handler.endDocument(source);
+		}
+
+		@Override
+		public void comment(String text) throws CSSException {
+			write(COMMENT, text);
+			handler.comment(text);
+		}
+
+		@Override
+		public void ignorableAtRule(String atRule) throws CSSException {
+			write(IGNORABLE_AT_RULE, atRule);
+			handler.ignorableAtRule(atRule);
+		}
+
+		@Override
+		public void namespaceDeclaration(String prefix, String uri)
+				throws CSSException {
+			write(NAMESPACE_DECLARATION, prefix, uri);
+			handler.namespaceDeclaration(prefix, uri);
+		}
+
+		@Override
+		public void importStyle(String uri, SACMediaList media,
+				String defaultNamespaceURI) throws CSSException {
+			if (complete) {
+				try {
+					out.writeByte(IMPORT_STYLE);
+					writeString(uri);
+					writeMediaList(media);
+					writeString(defaultNamespaceURI);
+				} catch (IOException e) {
+					complete = false;
+				}
+			}
+			handler.importStyle(uri, media, defaultNamespaceURI);
+		}
+
+		@Override
+		public void startMedia(SACMediaList media) throws CSSException {
+			writeMedia(START_MEDIA, media);
+			handler.startMedia(media);
+		}
+
+		@Override
+		public void endMedia(SACMediaList media) throws CSSException {
+			writeMedia(END_MEDIA, media);
+			handler.endMedia(media);
+		}
+
+		@Override
+		public void startPage(String name, String pseudo_page)
+				throws CSSException {
+			write(START_PAGE, name, pseudo_page);
+			handler.startPage(name, pseudo_page);
+		}
+
+		@Override
+		public void endPage(String name, String pseudo_page)
+				throws CSSException {
+			write(END_PAGE, name, pseudo_page);
+			handler.endPage(name, pseudo_page);
+		}
+
+		@Override
+		public void startFontFace() throws CSSException {
+			write(START_FONT_FACE);
+			handler.startFontFace();
+		}
+
+		@Override
+		public void endFontFace() throws CSSException {
+			write(END_FONT_FACE);
+			handler.endFontFace();
+		}
+
+		@Override
+		public void startSelector(SelectorList selectors) throws CSSException {
+			if (complete) {
+				try {
+					out.writeByte(START_SELECTOR);
+					out.writeInt(selectors.getLength());
+					for (int i = 0; i < selectors.getLength(); i++) {
+						writeSelector(selectors.item(i));
+					}
+					currentSelectors = selectors;
+				} catch (IOException e) {
+					complete = false;
+				}
+			}
+			handler.startSelector(selectors);
+		}
+
+		@Override
+		public void endSelector(SelectorList selectors) throws CSSException {
+			if (selectors != currentSelectors) {
+				complete = false;
+			}
+			currentSelectors = null;
+			write(END_SELECTOR);
+			handler.endSelector(selectors);
+		}
+
+		@Override
+		public void property(String name, LexicalUnit value, boolean important)
+				throws CSSException {
+			if (complete) {
+				try {
+					out.writeByte(PROPERTY);
+					writeString(name);
+					writeLexicalUnits(value);
+					out.writeBoolean(important);
+				} catch (IOException e) {
+					complete = false;
+				}
+			}
+			handler.property(name, value, important);
+		}
+
+		private void write(byte event, String... values) {
+			if (!complete) {
+				return;
+			}
+			try {
+				out.writeByte(event);
+				for (String value : values) {
+					writeString(value);
+				}
+			} catch (IOException e) {
+				complete = false;
+			}
+		}
+
+		private void writeMedia(byte event, SACMediaList media) {
+			if (!complete) {
+				return;
+			}
+			try {
+				out.writeByte(event);
+				writeMediaList(media);
+			} catch (IOException e) {
+				complete = false;
+			}
+		}
+
+		private void writeString(String value) throws IOException {
+			if (value == null) {
+				out.writeInt(NULL_STRING);
+				return;
+			}
+			Integer index = strings.get(value);
+			if (index != null) {
+				out.writeInt(index.intValue());
+				return;
+			}
+			strings.put(value, Integer.valueOf(strings.size()));
+			out.writeInt(NEW_STRING);
+			writeBytes(out, value);
+		}
+
+		private void writeMediaList(SACMediaList media) throws IOException {
+			int length = media == null ? 0 : media.getLength();
+			out.writeInt(length);
+			for (int i = 0; i < length; i++) {
+				writeString(media.item(i));
+			}
+		}
+
+		private void writeSelector(Selector selector) throws IOException {
+			short type = selector.getSelectorType();
+			out.writeShort(type);
+			switch (type) {
+			case Selector.SAC_CONDITIONAL_SELECTOR:
+				ConditionalSelector conditional = (ConditionalSelector) selector;
+				writeSelector(conditional.getSimpleSelector());
+				writeCondition(conditional.getCondition());
+				break;
+			case Selector.SAC_ELEMENT_NODE_SELECTOR:
+			case Selector.SAC_PSEUDO_ELEMENT_SELECTOR:
+				ElementSelector element = (ElementSelector) selector;
+				writeString(element.getNamespaceURI());
+				writeString(element.getLocalName());
+				break;
+			case Selector.SAC_DESCENDANT_SELECTOR:
+			case Selector.SAC_CHILD_SELECTOR:
+				DescendantSelector descendant = (DescendantSelector) selector;
+				writeSelector(descendant.getAncestorSelector());
+				writeSelector(descendant.getSimpleSelector());
+				break;
+			case Selector.SAC_DIRECT_ADJACENT_SELECTOR:
+				SiblingSelector sibling = (SiblingSelector) selector;
+				out.writeShort(sibling.getNodeType());
+				writeSelector(sibling.getSelector());
+				writeSelector(sibling.getSiblingSelector());
+				break;
+			default:
+				// not created by the selector factories of the engines
+				throw new IOException("Unsupported selector type: " + type); //$NON-NLS-1$
+			}
+		}
+
+		private void writeCondition(Condition condition) throws IOException {
+			short type = condition.getConditionType();
+			out.writeShort(type);
+			switch (type) {
+			case Condition.SAC_AND_CONDITION:
+				CombinatorCondition and = (CombinatorCondition) condition;
+				writeCondition(and.getFirstCondition());
+				writeCondition(and.getSecondCondition());
+				break;
+			case Condition.SAC_ATTRIBUTE_CONDITION:
+			case Condition.SAC_ONE_OF_ATTRIBUTE_CONDITION:
+			case Condition.SAC_BEGIN_HYPHEN_ATTRIBUTE_CONDITION:
+				AttributeCondition attribute = (AttributeCondition) condition;
+				writeString(attribute.getLocalName());
+				writeString(attribute.getNamespaceURI());
+				out.writeBoolean(attribute.getSpecified());
+				writeString(attribute.getValue());
+				break;
+			case Condition.SAC_ID_CONDITION:
+				writeString(((AttributeCondition) condition).getValue());
+				break;
+			case Condition.SAC_CLASS_CONDITION:
+			case Condition.SAC_PSEUDO_CLASS_CONDITION:
+				AttributeCondition value = (AttributeCondition) condition;
+				writeString(value.getNamespaceURI());
+				writeString(value.getValue());
+				break;
+			case Condition.SAC_LANG_CONDITION:
+				writeString(((LangCondition) condition).getLang());
+				break;
+			default:
+				// not created by the condition factories of the engines
+				throw new IOException("Unsupported condition type: " + type); //$NON-NLS-1$
+			}
+		}
+
+		private void writeLexicalUnits(LexicalUnit first) throws IOException {
+			int count = 0;
+			for (LexicalUnit unit = first; unit != null; unit = unit
+					.getNextLexicalUnit()) {
+				count++;
+			}
+			out.writeInt(count);
+			for (LexicalUnit unit = first; unit != null; unit = unit
+					.getNextLexicalUnit()) {
+				writeLexicalUnit(unit);
+			}
+		}
+
+		private void writeLexicalUnit(LexicalUnit unit) throws IOException {
+			short type = unit.getLexicalUnitType();
+			out.writeShort(type);
+			switch (getValueKind(type)) {
+			case NO_VALUE:
+				break;
+			case INTEGER_VALUE:
+				out.writeInt(unit.getIntegerValue());
+				break;
+			case FLOAT_VALUE:
+				out.writeFloat(unit.getFloatValue());
+				break;
+			case DIMENSION_VALUE:
+				out.writeFloat(unit.getFloatValue());
+				writeString(unit.getDimensionUnitText());
+				break;
+			case STRING_VALUE:
+				writeString(unit.getStringValue());
+				break;
+			case FUNCTION_VALUE:
+				writeString(unit.getFunctionName());
+				writeLexicalUnits(unit.getParameters());
+				break;
+			case SUB_VALUES:
+				writeLexicalUnits(unit.getSubValues());
+				break;
+			default:
+				throw new IOException("Unsupported lexical unit type: " + type); //$NON-NLS-1$
+			}
+		}
+	}
+
+	/**
+	 * Sends the events read from the buffer to the handler.
+	 *
+	 * @throws IOException
+	 *             if the buffer does not hold valid events
+	 */
+	static void replay(ByteBuffer buffer, DocumentHandler handler,
+			InputSource source, SelectorFactory selectorFactory,
+			ConditionFactory conditionFactory) throws IOException {
+		new Player(buffer, selectorFactory, conditionFactory).play(handler,
+				source);
+	}
+
+	private static final class Player {
+		private final ByteBuffer buffer;
+		private final SelectorFactory selectorFactory;
+		private final ConditionFactory conditionFactory;
+		private final List<String> strings = new ArrayList<String>();
+
+		Player(ByteBuffer buffer, SelectorFactory selectorFactory,
+				ConditionFactory conditionFactory) {
+			this.buffer = buffer;
+			this.selectorFactory = selectorFactory;
+			this.conditionFactory = conditionFactory;
+		}
+
+		void play(DocumentHandler handler, InputSource source)
+				throws IOException {
+			SelectorList selectors = null;
+			while (true) {
+				byte event = buffer.get();
+				switch (event) {
+				case END:
+					return;
+				case START_DOCUMENT:
+					handler.startDocument(source);
+					break;
+				case END_DOCUMENT:
+					handler.endDocument(source);
+					break;
+				case COMMENT:
+					handler.comment(readString());
+					break;
+				case IGNORABLE_AT_RULE:
+					handler.ignorableAtRule(readString());
+					break;
+				case NAMESPACE_DECLARATION:
+					handler.namespaceDeclaration(readString(), readString());
+					break;
+				case IMPORT_STYLE:
+					handler.importStyle(readString(), readMediaList(),
+							readString());
+					break;
+				case START_MEDIA:
+					handler.startMedia(readMediaList());
+					break;
+				case END_MEDIA:
+					handler.endMedia(readMediaList());
+					break;
+				case START_PAGE:
+					handler.startPage(readString(), readString());
+					break;
+				case END_PAGE:
+					handler.endPage(readString(), readString());
+					break;
+				case START_FONT_FACE:
+					handler.startFontFace();
+					break;
+				case END_FONT_FACE:
+					handler.endFontFace();
+					break;
+				case START_SELECTOR:
+					selectors = readSelectorList();
+					handler.startSelector(selectors);
+					break;
+				case END_SELECTOR:
+					handler.endSelector(selectors);
+					selectors = null;
+					break;
+				case PROPERTY:
+					handler.property(readString(), readLexicalUnits(null),
+							buffer.get() != 0);
+					break;
+				default:
+					throw new IOException("Unknown event: " + event); //$NON-NLS-1$
+				}
+			}
+		}
+
+		private String readString() throws IOException {
+			int index = buffer.getInt();
+			if (index == NULL_STRING) {
+				return null;
+			}
+			if (index == NEW_STRING) {
+				String value = readBytes(buffer);
+				strings.add(value);
+				return value;
+			}
+			if (index < 0 || index >= strings.size()) {
+				throw new IOException("Invalid string index: " + index); //$NON-NLS-1$
+			}
+			return strings.get(index);
+		}
+
+		private SACMediaList readMediaList() throws IOException {
+			int length = buffer.getInt();
+			String[] media = new String[length];
+			for (int i = 0; i < length; i++) {
+				media[i] = readString();
+			}
+			return new MediaList(media);
+		}
+
+		private SelectorList readSelectorList() throws IOException {
+			int length = buffer.getInt();
+			Selector[] selectors = new Selector[length];
+			for (int i = 0; i < length; i++) {
+				selectors[i] = readSelector();
+			}
+			return new Selectors(selectors);
+		}
+
+		private Selector readSelector() throws IOException {
+			short type = buffer.getShort();
+			switch (type) {
+			case Selector.SAC_CONDITIONAL_SELECTOR:
+				return selectorFactory.createConditionalSelector(
+						(SimpleSelector) readSelector(), readCondition());
+			case Selector.SAC_ELEMENT_NODE_SELECTOR:
+				return selectorFactory.createElementSelector(readString(),
+						readString());
+			case Selector.SAC_PSEUDO_ELEMENT_SELECTOR:
+				return selectorFactory.createPseudoElementSelector(
+						readString(), readString());
+			case Selector.SAC_DESCENDANT_SELECTOR:
+				return selectorFactory.createDescendantSelector(readSelector(),
+						(SimpleSelector) readSelector());
+			case Selector.SAC_CHILD_SELECTOR:
+				return selectorFactory.createChildSelector(readSelector(),
+						(SimpleSelector) readSelector());
+			case Selector.SAC_DIRECT_ADJACENT_SELECTOR:
+				return selectorFactory.createDirectAdjacentSelector(
+						buffer.getShort(), readSelector(),
+						(SimpleSelector) readSelector());
+			default:
+				throw new IOException("Unsupported selector type: " + type); //$NON-NLS-1$
+			}
+		}
+
+		private Condition readCondition() throws IOException {
+			short type = buffer.getShort();
+			switch (type) {
+			case Condition.SAC_AND_CONDITION:
+				return conditionFactory.createAndCondition(readCondition(),
+						readCondition());
+			case Condition.SAC_ATTRIBUTE_CONDITION:
+				return conditionFactory.createAttributeCondition(readString(),
+						readString(), buffer.get() != 0, readString());
+			case Condition.SAC_ONE_OF_ATTRIBUTE_CONDITION:
+				return conditionFactory.createOneOfAttributeCondition(
+						readString(), readString(), buffer.get() != 0,
+						readString());
+			case Condition.SAC_BEGIN_HYPHEN_ATTRIBUTE_CONDITION:
+				return conditionFactory.createBeginHyphenAttributeCondition(
+						readString(), readString(), buffer.get() != 0,
+						readString());
+			case Condition.SAC_ID_CONDITION:
+				return conditionFactory.createIdCondition(readString());
+			case Condition.SAC_CLASS_CONDITION:
+				return conditionFactory.createClassCondition(readString(),
+						readString());
+			case Condition.SAC_PSEUDO_CLASS_CONDITION:
+				return conditionFactory.createPseudoClassCondition(
+						readString(), readString());
+			case Condition.SAC_LANG_CONDITION:
+				return conditionFactory.createLangCondition(readString());
+			default:
+				throw new IOException("Unsupported condition type: " + type); //$NON-NLS-1$
+			}
+		}
+
+		private LexicalUnit readLexicalUnits(Unit parent) throws IOException {
+			int count = buffer.getInt();
+			Unit first = null;
+			Unit previous = null;
+			for (int i = 0; i < count; i++) {
+				Unit unit = readLexicalUnit();
+				if (previous == null) {
+					first = unit;
+				} else {
+					previous.next = unit;
+					unit.previous = previous;
+				}
+				previous = unit;
+			}
+			return first;
+		}
+
+		private Unit readLexicalUnit() throws IOException {
+			short type = buffer.getShort();
+			Unit unit = new Unit(type);
+			switch (getValueKind(type)) {
+			case NO_VALUE:
+				break;
+			case INTEGER_VALUE:
+				unit.integerValue = buffer.getInt();
+				break;
+			case FLOAT_VALUE:
+				unit.floatValue = buffer.getFloat();
+				break;
+			case DIMENSION_VALUE:
+				unit.floatValue = buffer.getFloat();
+				unit.stringValue = readString();
+				break;
+			case STRING_VALUE:
+				unit.stringValue = readString();
+				break;
+			case FUNCTION_VALUE:
+				unit.stringValue = readString();
+				unit.subValues = readLexicalUnits(unit);
+				break;
+			case SUB_VALUES:
+				unit.subValues = readLexicalUnits(unit);
+				break;
+			default:
+				throw new IOException("Unsupported lexical unit type: " + type); //$NON-NLS-1$
+			}
+			return unit;
+		}
+	}
+
+	private static final int NO_VALUE = 0;
+	private static final int INTEGER_VALUE = 1;
+	private static final int FLOAT_VALUE = 2;
+	private static final int DIMENSION_VALUE = 3;
+	private static final int STRING_VALUE = 4;
+	private static final int FUNCTION_VALUE = 5;
+	private static final int SUB_VALUES = 6;
+	private static final int UNSUPPORTED = -1;
+
+	/**
+	 * Returns which value a lexical unit of the given type holds.
+	 */
+	private static int getValueKind(short type) {
+		switch (type) {
+		case LexicalUnit.SAC_OPERATOR_COMMA:
+		case LexicalUnit.SAC_OPERATOR_PLUS:
+		case LexicalUnit.SAC_OPERATOR_MINUS:
+		case LexicalUnit.SAC_OPERATOR_MULTIPLY:
+		case LexicalUnit.SAC_OPERATOR_SLASH:
+		case LexicalUnit.SAC_OPERATOR_MOD:
+		case LexicalUnit.SAC_OPERATOR_EXP:
+		case LexicalUnit.SAC_OPERATOR_LT:
+		case LexicalUnit.SAC_OPERATOR_GT:
+		case LexicalUnit.SAC_OPERATOR_LE:
+		case LexicalUnit.SAC_OPERATOR_GE:
+		case LexicalUnit.SAC_OPERATOR_TILDE:
+		case LexicalUnit.SAC_INHERIT:
+			return NO_VALUE;
+		case LexicalUnit.SAC_INTEGER:
+			return INTEGER_VALUE;
+		case LexicalUnit.SAC_REAL:
+			return FLOAT_VALUE;
+		case LexicalUnit.SAC_EM:
+		case LexicalUnit.SAC_EX:
+		case LexicalUnit.SAC_PIXEL:
+		case LexicalUnit.SAC_INCH:
+		case LexicalUnit.SAC_CENTIMETER:
+		case LexicalUnit.SAC_MILLIMETER:
+		case LexicalUnit.SAC_POINT:
+		case LexicalUnit.SAC_PICA:
+		case LexicalUnit.SAC_PERCENTAGE:
+		case LexicalUnit.SAC_DEGREE:
+		case LexicalUnit.SAC_GRADIAN:
+		case LexicalUnit.SAC_RADIAN:
+		case LexicalUnit.SAC_MILLISECOND:
+		case LexicalUnit.SAC_SECOND:
+		case LexicalUnit.SAC_HERTZ:
+		case LexicalUnit.SAC_KILOHERTZ:
+		case LexicalUnit.SAC_DIMENSION:
+			return DIMENSION_VALUE;
+		case LexicalUnit.SAC_URI:
+		case LexicalUnit.SAC_IDENT:
+		case LexicalUnit.SAC_STRING_VALUE:
+		case LexicalUnit.SAC_ATTR:
+		case LexicalUnit.SAC_UNICODERANGE:
+			return STRING_VALUE;
+		case LexicalUnit.SAC_RGBCOLOR:
+		case LexicalUnit.SAC_COUNTER_FUNCTION:
+		case LexicalUnit.SAC_COUNTERS_FUNCTION:
+		case LexicalUnit.SAC_RECT_FUNCTION:
+		case LexicalUnit.SAC_FUNCTION:
+			return FUNCTION_VALUE;
+		case LexicalUnit.SAC_SUB_EXPRESSION:
+			return SUB_VALUES;
+		default:
+			return UNSUPPORTED;
+		}
+	}
+
+	static void writeBytes(DataOutputStream out, String value)
+			throws IOException {
+		byte[] bytes = value.getBytes(UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	static String readBytes(ByteBuffer buffer) throws IOException {
+		int length = buffer.getInt();
+		if (length < 0 || length > buffer.remaining()) {
+			throw new IOException("Invalid string length: " + length); //$NON-NLS-1$
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		try {
+			return new String(bytes, UTF_8);
+		} catch (UnsupportedEncodingException e) {
+			throw new IOException(e.getMessage());
+		}
+	}
+
+	/**
+	 * A lexical unit read from a compiled style sheet.
+	 */
+	private static final class Unit implements LexicalUnit {
+		private final short type;
+		int integerValue;
+		float floatValue;
+		// the string value, the dimension unit or the function name
+		String stringValue;
+		// the parameters of a function or the sub values of an expression
+		LexicalUnit subValues;
+		Unit next;
+		Unit previous;
+
+		Unit(short type) {
+			this.type = type;
+		}
+
+		@Override
+		public short getLexicalUnitType() {
+			return type;
+		}
+
+		@Override
+		public LexicalUnit getNextLexicalUnit() {
+			return next;
+		}
+
+		@Override
+		public LexicalUnit getPreviousLexicalUnit() {
+			return previous;
+		}
+
+		@Override
+		public int getIntegerValue() {
+			return integerValue;
+		}
+
+		@Override
+		public float getFloatValue() {
+			return floatValue;
+		}
+
+		@Override
+		public String getDimensionUnitText() {
+			return getValueKind(type) == DIMENSION_VALUE ? stringValue : ""; //$NON-NLS-1$
+		}
+
+		@Override
+		public String getFunctionName() {
+			return getValueKind(type) == FUNCTION_VALUE ? stringValue : null;
+		}
+
+		@Override
+		public LexicalUnit getParameters() {
+			return getValueKind(type) == FUNCTION_VALUE ? subValues : null;
+		}
+
+		@Override
+		public String getStringValue() {
+			return getValueKind(type) == STRING_VALUE ? stringValue : null;
+		}
+
+		@Override
+		public LexicalUnit getSubValues() {
+			return type == SAC_SUB_EXPRESSION ? subValues : null;
+		}
+	}
+
+	private static final class Selectors implements SelectorList {
+		private final Selector[] selectors;
+
+		Selectors(Selector[] selectors) {
+			this.selectors = selectors;
+		}
+
+		@Override
+		public int getLength() {
+			return selectors.length;
+		}
+
+		@Override
+		public Selector item(int index) {
+			return index < 0 || index >= selectors.length ? null
+					: selectors[index];
+		}
+	}
+
+	private static final class MediaList implements SACMediaList {
+		private final String[] media;
+
+		MediaList(String[] media) {
+			this.media = media;
+		}
+
+		@Override
+		public int getLength() {
+			return media.length;
+		}
+
+		@Override
+		public String item(int index) {
+			return index < 0 || index >= media.length ? null : media[index];
+		}
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2014 Angelo Zerr and others.
+ * Copyright (c) 2008, 2015 Angelo Zerr and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -48,9 +48,12 @@ import org.eclipse.e4.ui.css.core.engine.CSSEngine;
 import org.eclipse.e4.ui.css.core.engine.CSSErrorHandler;
 import org.eclipse.e4.ui.css.core.exceptions.UnsupportedPropertyException;
 import org.eclipse.e4.ui.css.core.impl.dom.CSSRuleListImpl;
+import org.eclipse.e4.ui.css.core.impl.dom.ComputedStyleCache;
 import org.eclipse.e4.ui.css.core.impl.dom.CSSStyleSheetImpl;
 import org.eclipse.e4.ui.css.core.impl.dom.DocumentCSSImpl;
 import org.eclipse.e4.ui.css.core.impl.dom.ViewCSSImpl;
+import org.eclipse.e4.ui.css.core.impl.dom.parsers.AbstractCSSParser;
+import org.eclipse.e4.ui.css.core.impl.dom.parsers.CSSStyleSheetCache;
 import org.eclipse.e4.ui.css.core.impl.sac.ExtendedSelector;
 import org.eclipse.e4.ui.css.core.resources.IResourcesRegistry;
 import org.eclipse.e4.ui.css.core.resources.ResourceRegistryKeyFactory;
@@ -106,6 +109,18 @@ public abstract class AbstractCSSEngine implements CSSEngine {
 	 */
 	private ViewCSS viewCSS;
 
+	/**
+	 * Styles computed by the {@link #viewCSS}, shared by elements with the
+	 * same style signature.
+	 */
+	private ComputedStyleCache computedStyleCache;
+
+	/**
+	 * The depth of the nested {@link #applyStyles(Object, boolean, boolean)}
+	 * calls.
+	 */
+	private int applyStylesDepth;
+
 	/**
 	 * {@link IElementProvider} used to retrieve w3c Element linked to the
 	 * widget.
@@ -138,6 +153,13 @@ public abstract class AbstractCSSEngine implements CSSEngine {
 
 	private boolean parseImport;
 
+	/**
+	 * Compiled style sheets replayed instead of parsing style sheets with a
+	 * URI.
+	 */
+	private CSSStyleSheetCache styleSheetCache = CSSStyleSheetCache
+			.getDefault();
+
 	private ResourceRegistryKeyFactory keyFactory;
 
 	public AbstractCSSEngine() {
@@ -147,6 +169,7 @@ public abstract class AbstractCSSEngine implements CSSEngine {
 	public AbstractCSSEngine(ExtendedDocumentCSS documentCSS) {
 		this.documentCSS = documentCSS;
 		this.viewCSS = new ViewCSSImpl(documentCSS);
+		this.computedStyleCache = new ComputedStyleCache(documentCSS, viewCSS);
 		keyFactory = new ResourceRegistryKeyFactory();
 	}
 
@@ -171,6 +194,9 @@ public abstract class AbstractCSSEngine implements CSSEngine {
 		// Check that CharacterStream or ByteStream is not null
 		checkInputSource(source);
 		CSSParser parser = makeCSSParser();
+		if (parser instanceof AbstractCSSParser) {
+			((AbstractCSSParser) parser).setStyleSheetCache(styleSheetCache);
+		}
 		CSSStyleSheet styleSheet = parser.parseStyleSheet(source);
 
 		CSSRuleList rules = styleSheet.getCssRules();
@@ -357,7 +383,21 @@ public abstract class AbstractCSSEngine implements CSSEngine {
 	@Override
 	public void applyStyles(Object element, boolean applyStylesToChildNodes,
 			boolean computeDefaultStyle) {
-		Element elt = getElement(element);
+		applyStylesDepth++;
+		try {
+			applyStyles(getElement(element), element, applyStylesToChildNodes,
+					computeDefaultStyle);
+		} finally {
+			if (--applyStylesDepth == 0) {
+				// the attributes of the elements may change until they are
+				// styled the next time
+				computedStyleCache.forgetSignatures();
+			}
+		}
+	}
+
+	private void applyStyles(Element elt, Object element,
+			boolean applyStylesToChildNodes, boolean computeDefaultStyle) {
 		if (elt != null) {
 			if (!isVisible(elt)) {
 				return;
@@ -366,7 +406,8 @@ public abstract class AbstractCSSEngine implements CSSEngine {
 			/*
 			 * Compute new Style to apply.
 			 */
-			CSSStyleDeclaration style = viewCSS.getComputedStyle(elt, null);
+			CSSStyleDeclaration style = computedStyleCache.getComputedStyle(
+					elt, null);
 			if (computeDefaultStyle) {
 				if (applyStylesToChildNodes) {
 					this.computeDefaultStyle = computeDefaultStyle;
@@ -385,7 +426,7 @@ public abstract class AbstractCSSEngine implements CSSEngine {
 				// there are static pseudo instances definied, loop for it and
 				// apply styles for each pseudo instance.
 				for (String pseudoInstance : pseudoInstances) {
-					CSSStyleDeclaration styleWithPseudoInstance = viewCSS
+					CSSStyleDeclaration styleWithPseudoInstance = computedStyleCache
 							.getComputedStyle(elt, pseudoInstance);
 					if (computeDefaultStyle) {
 						/*
@@ -1015,6 +1056,29 @@ public abstract class AbstractCSSEngine implements CSSEngine {
 	public void reset() {
 		// Remove All Style Sheets
 		documentCSS.removeAllStyleSheets();
+		computedStyleCache.clear();
+	}
+
+	/**
+	 * Returns the cache of compiled style sheets used to parse style sheets
+	 * with a URI.
+	 *
+	 * @return the cache, or <code>null</code> if style sheets are always
+	 *         parsed
+	 */
+	public CSSStyleSheetCache getStyleSheetCache() {
+		return styleSheetCache;
+	}
+
+	/**
+	 * Sets the cache of compiled style sheets used to parse style sheets with
+	 * a URI.
+	 *
+	 * @param styleSheetCache
+	 *            the cache, or <code>null</code> to always parse style sheets
+	 */
+	public void setStyleSheetCache(CSSStyleSheetCache styleSheetCache) {
+		this.styleSheetCache = styleSheetCache;
 	}
 
 	/*--------------- Resources Registry -----------------*/
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2013 Angelo Zerr and others.
+ * Copyright (c) 2008, 2015 Angelo Zerr and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -90,10 +90,7 @@ public abstract class AbstractResourcesRegistry implements IResourcesRegistry {
 		if (resourcesMap == null) {
 			return;
 		}
-		Object resource = resourcesMap.get(key);
-		if (resource != null) {
-			resourcesMap.remove(resource);
-		}
+		resourcesMap.remove(key);
 	}
 
 	public void unregisterResource(Object resource) {
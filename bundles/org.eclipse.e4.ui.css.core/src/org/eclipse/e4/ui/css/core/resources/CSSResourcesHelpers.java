@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2013 Angelo Zerr and others.
+ * Copyright (c) 2008, 2015 Angelo Zerr and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -81,11 +81,26 @@ public class CSSResourcesHelpers {
 		return rgb;
 	}
 
+	/**
+	 * Return the key of the font properties <code>fontProperties</code> which
+	 * is used to cache Font into {@link IResourcesRegistry}. Font properties
+	 * with the same family, size, style and weight have the same key, so they
+	 * share the same Font.
+	 *
+	 * @param fontProperties
+	 * @return
+	 */
 	public static String getCSSFontPropertiesKey(
 			CSS2FontProperties fontProperties) {
-		return fontProperties.getFamily() + "_" + fontProperties.getSize()
-				+ "_" + fontProperties.getStyle() + "_"
-				+ fontProperties.getWeight();
+		return getCSSFontPropertyKey(fontProperties.getFamily()) + "_"
+				+ getCSSFontPropertyKey(fontProperties.getSize()) + "_"
+				+ getCSSFontPropertyKey(fontProperties.getStyle()) + "_"
+				+ getCSSFontPropertyKey(fontProperties.getWeight());
+	}
+
+	private static String getCSSFontPropertyKey(CSSPrimitiveValue value) {
+		// the values do not implement toString(), their text is compared
+		return value == null ? null : value.getCssText();
 	}
 
 	/**
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2014 Angelo Zerr and others.
+ * Copyright (c) 2008, 2015 Angelo Zerr and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -16,6 +16,7 @@ import org.eclipse.e4.ui.css.core.dom.ElementAdapter;
 import org.eclipse.e4.ui.css.core.engine.CSSEngine;
 import org.eclipse.e4.ui.css.core.utils.ClassUtils;
 import org.eclipse.e4.ui.css.swt.CSSSWTConstants;
+import org.eclipse.e4.ui.css.swt.engine.CSSSWTEngineImpl;
 import org.eclipse.e4.ui.css.swt.helpers.SWTStyleHelpers;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Widget;
@@ -112,6 +113,25 @@ public class WidgetElement extends ElementAdapter implements NodeList {
 		}
 	}
 
+	/**
+	 * Convenience method for requesting the CSS engine to restyle a widget and
+	 * its children after its CSS class, id or pseudo state changed. Engines
+	 * with incremental restyling enabled restyle the widget later, together
+	 * with the other changed widgets.
+	 *
+	 * @param widget
+	 *            widget to be restyled
+	 * @see CSSSWTEngineImpl#markDirty(Widget)
+	 */
+	public static void markDirty(Widget widget) {
+		CSSEngine engine = getEngine(widget);
+		if (engine instanceof CSSSWTEngineImpl) {
+			((CSSSWTEngineImpl) engine).markDirty(widget);
+		} else if (engine != null) {
+			engine.applyStyles(widget, true);
+		}
+	}
+
 	/**
 	 * Convenience method for setting the CSS engine responsible for a display.
 	 *
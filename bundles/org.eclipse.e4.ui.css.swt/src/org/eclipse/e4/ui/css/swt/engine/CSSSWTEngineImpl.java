@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2013 Angelo Zerr and others.
+ * Copyright (c) 2008, 2015 Angelo Zerr and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,15 +11,31 @@
  *******************************************************************************/
 package org.eclipse.e4.ui.css.swt.engine;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 import org.eclipse.core.runtime.RegistryFactory;
+import org.eclipse.e4.ui.css.core.dom.CSSStylableElement;
+import org.eclipse.e4.ui.css.core.dom.properties.ICSSPropertyHandler;
+import org.eclipse.e4.ui.css.core.engine.CSSElementContext;
 import org.eclipse.e4.ui.css.core.impl.engine.RegistryCSSElementProvider;
 import org.eclipse.e4.ui.css.core.impl.engine.RegistryCSSPropertyHandlerProvider;
+import org.eclipse.e4.ui.css.core.resources.IResourcesRegistry;
+import org.eclipse.e4.ui.css.swt.resources.SWTResourcesRegistry;
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.CTabItem;
 import org.eclipse.swt.events.DisposeEvent;
 import org.eclipse.swt.events.DisposeListener;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Shell;
 import org.eclipse.swt.widgets.Widget;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.css.CSSStyleDeclaration;
+import org.w3c.dom.css.CSSValue;
 
 /**
  * CSS SWT Engine implementation which configure CSSEngineImpl to apply styles
@@ -27,8 +43,42 @@ import org.eclipse.swt.widgets.Widget;
  */
 public class CSSSWTEngineImpl extends AbstractCSSSWTEngineImpl {
 
+	/**
+	 * Key of the element context data holding the CSS values applied to the
+	 * element, per pseudo instance and property.
+	 */
+	private static final String APPLIED_PROPERTIES_KEY = "org.eclipse.e4.ui.css.swt.appliedProperties"; //$NON-NLS-1$
+
+	/** The properties of a tab item which are applied to its folder. */
+	private static final Set<String> TAB_FOLDER_PROPERTIES = new HashSet<String>(
+			Arrays.asList("background", "background-color", "color")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
 	private DisposeListener disposeListener;
 
+	private boolean incrementalRestyling = Boolean
+			.getBoolean("org.eclipse.e4.ui.css.incremental"); //$NON-NLS-1$
+
+	/**
+	 * The widgets whose CSS class, id or pseudo state changed since the last
+	 * restyle pass.
+	 */
+	private final Set<Widget> dirtyWidgets = new LinkedHashSet<Widget>();
+
+	private boolean restyleScheduled;
+
+	/**
+	 * Whether the dirty widgets are being restyled, in which case only the
+	 * properties whose values changed are applied.
+	 */
+	private boolean restyling;
+
+	private final Runnable restyleRunnable = new Runnable() {
+		@Override
+		public void run() {
+			restyleDirtyWidgets();
+		}
+	};
+
 	public CSSSWTEngineImpl(Display display) {
 		super(display);
 		init();
@@ -68,6 +118,220 @@ public class CSSSWTEngineImpl extends AbstractCSSSWTEngineImpl {
 				RegistryFactory.getRegistry()));
 	}
 
+	/**
+	 * Enables or disables incremental restyling. When enabled, widgets marked
+	 * dirty with {@link #markDirty(Widget)} are restyled together once per
+	 * iteration of the event loop, and only the properties whose values
+	 * changed since they were last applied are applied again. Incremental
+	 * restyling can be enabled on startup with the
+	 * <code>org.eclipse.e4.ui.css.incremental</code> system property.
+	 *
+	 * @param incrementalRestyling
+	 *            <code>true</code> to enable incremental restyling
+	 */
+	public void setIncrementalRestyling(boolean incrementalRestyling) {
+		this.incrementalRestyling = incrementalRestyling;
+		if (!incrementalRestyling) {
+			forgetAppliedProperties();
+		}
+	}
+
+	/**
+	 * @return whether incremental restyling is enabled
+	 * @see #setIncrementalRestyling(boolean)
+	 */
+	public boolean isIncrementalRestyling() {
+		return incrementalRestyling;
+	}
+
+	/**
+	 * Requests the widget and its children to be restyled because its CSS
+	 * class, id or pseudo state changed. If incremental restyling is enabled
+	 * the widget is restyled in the next restyle pass, otherwise it is
+	 * restyled immediately.
+	 *
+	 * @param widget
+	 *            the widget to restyle
+	 */
+	public void markDirty(Widget widget) {
+		if (!incrementalRestyling) {
+			applyStyles(widget, true);
+			return;
+		}
+		if (dirtyWidgets.add(widget) && !restyleScheduled
+				&& !display.isDisposed()) {
+			restyleScheduled = true;
+			display.asyncExec(restyleRunnable);
+		}
+	}
+
+	/**
+	 * Restyles the widgets marked dirty. A widget whose ancestor is dirty as
+	 * well is restyled with the ancestor.
+	 */
+	private void restyleDirtyWidgets() {
+		restyleScheduled = false;
+		Set<Object> dirtyElements = new LinkedHashSet<Object>();
+		for (Widget widget : dirtyWidgets) {
+			if (!widget.isDisposed()) {
+				dirtyElements.add(widget);
+			}
+		}
+		dirtyWidgets.clear();
+		restyling = true;
+		try {
+			for (Object widget : dirtyElements) {
+				if (!hasDirtyAncestor(widget, dirtyElements)) {
+					applyStyles(widget, true);
+				}
+			}
+		} finally {
+			restyling = false;
+		}
+	}
+
+	private boolean hasDirtyAncestor(Object widget, Set<Object> dirtyElements) {
+		Element element = getElement(widget);
+		if (element == null) {
+			return false;
+		}
+		for (Node node = element.getParentNode(); node != null; node = node
+				.getParentNode()) {
+			if (node instanceof CSSStylableElement
+					&& dirtyElements.contains(((CSSStylableElement) node)
+							.getNativeWidget())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void applyStyleDeclaration(Object element,
+			CSSStyleDeclaration style, String pseudo) {
+		// the resources converted once all the properties are applied, such
+		// as fonts, are referenced by the declaration
+		SWTResourcesRegistry registry = beginAcquire(element, "*", pseudo); //$NON-NLS-1$
+		try {
+			super.applyStyleDeclaration(element, style, pseudo);
+		} finally {
+			if (registry != null) {
+				registry.endAcquire();
+			}
+		}
+	}
+
+	@Override
+	public ICSSPropertyHandler applyCSSProperty(Object element,
+			String property, CSSValue value, String pseudo) throws Exception {
+		SWTResourcesRegistry registry = beginAcquire(element, property, pseudo);
+		try {
+			return applyChangedCSSProperty(element, property, value, pseudo);
+		} finally {
+			if (registry != null) {
+				registry.endAcquire();
+			}
+		}
+	}
+
+	/**
+	 * Starts attributing the resources converted while styling the element to
+	 * a slot of its widget, so that they can be disposed once no widget uses
+	 * them.
+	 *
+	 * @return the registry, or <code>null</code> if the resources are not
+	 *         attributed
+	 */
+	private SWTResourcesRegistry beginAcquire(Object element, String property,
+			String pseudo) {
+		Object widget = element instanceof CSSStylableElement ? ((CSSStylableElement) element)
+				.getNativeWidget() : element;
+		IResourcesRegistry registry = getResourcesRegistry();
+		if (!(widget instanceof Widget)
+				|| !(registry instanceof SWTResourcesRegistry)) {
+			return null;
+		}
+		String slot = pseudo == null ? property : property + ':' + pseudo;
+		if (widget instanceof CTabItem
+				&& TAB_FOLDER_PROPERTIES.contains(property)) {
+			// the colors of a tab item are set on its folder, where they are
+			// used until another tab item of the folder replaces them
+			widget = ((CTabItem) widget).getParent();
+			slot = "CTabItem:" + slot; //$NON-NLS-1$
+		}
+		((SWTResourcesRegistry) registry).beginAcquire(widget, slot);
+		return (SWTResourcesRegistry) registry;
+	}
+
+	private ICSSPropertyHandler applyChangedCSSProperty(Object element,
+			String property, CSSValue value, String pseudo) throws Exception {
+		if (!incrementalRestyling || value == null) {
+			return super.applyCSSProperty(element, property, value, pseudo);
+		}
+		Map<String, String> appliedProperties = getAppliedProperties(element,
+				pseudo);
+		String cssText = value.getCssText();
+		if (restyling && appliedProperties != null
+				&& cssText.equals(appliedProperties.get(property))) {
+			// the value did not change since it was applied
+			return null;
+		}
+		ICSSPropertyHandler handler = super.applyCSSProperty(element,
+				property, value, pseudo);
+		if (handler != null && appliedProperties != null) {
+			appliedProperties.put(property, cssText);
+		}
+		return handler;
+	}
+
+	/**
+	 * Returns the CSS values last applied to the element for the pseudo
+	 * instance, by property name.
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<String, String> getAppliedProperties(Object element,
+			String pseudo) {
+		CSSElementContext context = getCSSElementContext(element);
+		if (context == null) {
+			return null;
+		}
+		Map<String, Map<String, String>> appliedProperties = (Map<String, Map<String, String>>) context
+				.getData(APPLIED_PROPERTIES_KEY);
+		if (appliedProperties == null) {
+			appliedProperties = new HashMap<String, Map<String, String>>(4);
+			context.setData(APPLIED_PROPERTIES_KEY, appliedProperties);
+		}
+		String key = pseudo == null ? "" : pseudo; //$NON-NLS-1$
+		Map<String, String> properties = appliedProperties.get(key);
+		if (properties == null) {
+			properties = new HashMap<String, String>();
+			appliedProperties.put(key, properties);
+		}
+		return properties;
+	}
+
+	private void forgetAppliedProperties() {
+		for (CSSElementContext context : getElementsContext().values()) {
+			context.setData(APPLIED_PROPERTIES_KEY, null);
+		}
+	}
+
+	@Override
+	protected void handleWidgetDisposed(Object widget) {
+		IResourcesRegistry registry = getResourcesRegistry();
+		if (registry instanceof SWTResourcesRegistry) {
+			((SWTResourcesRegistry) registry).releaseResources(widget);
+		}
+		super.handleWidgetDisposed(widget);
+	}
+
+	@Override
+	public void reset() {
+		// the widgets are reset to their defaults
+		forgetAppliedProperties();
+		super.reset();
+	}
+
 	@Override
 	public void reapply() {
 		Shell[] shells = display.getShells();
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2009 Angelo Zerr and others.
+ * Copyright (c) 2008, 2015 Angelo Zerr and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,15 +12,21 @@
 package org.eclipse.e4.ui.css.swt.resources;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import org.eclipse.e4.ui.css.core.dom.properties.Gradient;
 import org.eclipse.e4.ui.css.core.resources.AbstractResourcesRegistry;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.Cursor;
 import org.eclipse.swt.graphics.Font;
 import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.Resource;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.Listener;
@@ -28,10 +34,69 @@ import org.eclipse.swt.widgets.Listener;
 /**
  * SWT Resources Registry to cache SWT Resource like Color, Cursor and Font and
  * dispose it.
+ * <p>
+ * The resources are reference counted. Resources requested between
+ * {@link #beginAcquire(Object, Object)} and {@link #endAcquire()} are
+ * referenced by a slot of an owner, typically a property of a widget, until
+ * the slot acquires other resources or the owner releases its resources with
+ * {@link #releaseResources(Object)}. Resources requested outside of a slot
+ * are never disposed before the registry. The most recently used
+ * unreferenced resources are kept in the cache, the others are disposed.
+ * </p>
  */
 public class SWTResourcesRegistry extends AbstractResourcesRegistry {
 
+	private static final int DEFAULT_MAX_UNREFERENCED_RESOURCES = 64;
+
+	/**
+	 * A registered resource with the number of slots referencing it.
+	 */
+	private static final class Entry {
+		final Object type;
+		final Object key;
+		final Object resource;
+		int referenceCount;
+		/** Whether the resource is used outside of any slot. */
+		boolean pinned;
+
+		Entry(Object type, Object key, Object resource) {
+			this.type = type;
+			this.key = key;
+			this.resource = resource;
+		}
+	}
+
+	/**
+	 * A slot of an owner acquiring resources.
+	 */
+	private static final class Acquisition {
+		final Object owner;
+		final Object slot;
+		final Set<Object> resources = new LinkedHashSet<Object>();
+
+		Acquisition(Object owner, Object slot) {
+			this.owner = owner;
+			this.slot = slot;
+		}
+	}
+
+	private final Display display;
+
+	/** registered resource (by identity) -> entry */
+	private final Map<Object, Entry> entries = new IdentityHashMap<Object, Entry>();
+
+	/** owner -> slot -> resources referenced by the slot */
+	private final Map<Object, Map<Object, Set<Object>>> ownedResources = new IdentityHashMap<Object, Map<Object, Set<Object>>>();
+
+	/** unreferenced entries, least recently used first */
+	private final Set<Entry> unreferenced = new LinkedHashSet<Entry>();
+
+	private final List<Acquisition> acquisitions = new ArrayList<Acquisition>();
+
+	private int maxUnreferencedResources = DEFAULT_MAX_UNREFERENCED_RESOURCES;
+
 	public SWTResourcesRegistry(Display display) {
+		this.display = display;
 		if (display == null) {
 			return;
 		}
@@ -53,9 +118,10 @@ public class SWTResourcesRegistry extends AbstractResourcesRegistry {
 			if (isDisposed(resource)) {
 				// SWT Resource is disposed
 				// unregister it.
-				super.unregisterResource(resource);
+				unregisterResource(type, key);
 				return null;
 			}
+			acquire(resource);
 		}
 		return resource;
 	}
@@ -88,7 +154,238 @@ public class SWTResourcesRegistry extends AbstractResourcesRegistry {
 			//			System.out.println("Cache" + hit + "Resource key=" + key);
 		}
 
+		Object previous = super.getResource(type, key);
+		if (previous != null && previous != resource) {
+			forget(previous);
+		}
 		super.registerResource(type, key, resource);
+		if (!entries.containsKey(resource)) {
+			Entry entry = new Entry(type, key, resource);
+			// a resource which is shared with the device, or registered
+			// under several keys, can not be disposed by the registry
+			entry.pinned = isSystemResource(resource);
+			entries.put(resource, entry);
+		} else {
+			Entry entry = entries.get(resource);
+			entry.pinned = true;
+			unreferenced.remove(entry);
+		}
+		acquire(resource);
+	}
+
+	@Override
+	public void unregisterResource(Object type, Object key) {
+		Object resource = super.getResource(type, key);
+		if (resource != null) {
+			forget(resource);
+		}
+		super.unregisterResource(type, key);
+	}
+
+	@Override
+	public void dispose() {
+		super.dispose();
+		entries.clear();
+		ownedResources.clear();
+		unreferenced.clear();
+	}
+
+	/**
+	 * Starts attributing the resources requested from the registry to a slot
+	 * of the owner. Once {@link #endAcquire()} is called, the resources
+	 * acquired replace the resources the slot referenced before, unless none
+	 * was acquired. Acquisitions may be nested.
+	 *
+	 * @param owner
+	 *            the owner of the resources, for example a widget
+	 * @param slot
+	 *            the slot of the owner, for example a property
+	 */
+	public void beginAcquire(Object owner, Object slot) {
+		acquisitions.add(new Acquisition(owner, slot));
+	}
+
+	/**
+	 * Ends the innermost acquisition started by
+	 * {@link #beginAcquire(Object, Object)}.
+	 */
+	public void endAcquire() {
+		Acquisition acquisition = acquisitions
+				.remove(acquisitions.size() - 1);
+		if (acquisition.resources.isEmpty()) {
+			// the slot keeps its resources, they may still be in use
+			return;
+		}
+		Map<Object, Set<Object>> slots = ownedResources.get(acquisition.owner);
+		if (slots == null) {
+			slots = new HashMap<Object, Set<Object>>(4);
+			ownedResources.put(acquisition.owner, slots);
+		}
+		Set<Object> previous = slots.put(acquisition.slot,
+				acquisition.resources);
+		if (previous != null) {
+			release(previous);
+		}
+	}
+
+	/**
+	 * Releases the resources referenced by the slots of the owner, for
+	 * example when the owner is disposed.
+	 *
+	 * @param owner
+	 *            the owner of the resources
+	 */
+	public void releaseResources(Object owner) {
+		Map<Object, Set<Object>> slots = ownedResources.remove(owner);
+		if (slots != null) {
+			for (Set<Object> resources : slots.values()) {
+				release(resources);
+			}
+		}
+	}
+
+	/**
+	 * Sets the maximum number of resources kept in the cache while they are
+	 * not referenced. The least recently used unreferenced resources beyond
+	 * this number are disposed.
+	 *
+	 * @param maxUnreferencedResources
+	 *            the maximum number of unreferenced resources
+	 */
+	public void setMaxUnreferencedResources(int maxUnreferencedResources) {
+		this.maxUnreferencedResources = maxUnreferencedResources;
+		evict();
+	}
+
+	/**
+	 * @return the maximum number of unreferenced resources kept in the cache
+	 */
+	public int getMaxUnreferencedResources() {
+		return maxUnreferencedResources;
+	}
+
+	/**
+	 * Returns the number of live SWT resources held by the registry, by
+	 * resource type.
+	 *
+	 * @return a map from resource type to the number of resources which are
+	 *         not disposed
+	 */
+	public Map<Object, Integer> getResourceCounts() {
+		Map<Object, Integer> counts = new HashMap<Object, Integer>();
+		for (Entry entry : entries.values()) {
+			if (entry.resource instanceof Resource
+					&& !isDisposed(entry.resource)) {
+				Integer count = counts.get(entry.type);
+				counts.put(entry.type, count == null ? 1 : count + 1);
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * Returns the number of slots referencing the resource.
+	 *
+	 * @param resource
+	 *            a resource of the registry
+	 * @return the number of references, or <code>0</code> if the resource is
+	 *         not referenced or not registered
+	 */
+	public int getReferenceCount(Object resource) {
+		Entry entry = entries.get(resource);
+		return entry == null ? 0 : entry.referenceCount;
+	}
+
+	private void acquire(Object resource) {
+		Entry entry = entries.get(resource);
+		if (entry == null) {
+			return;
+		}
+		if (acquisitions.isEmpty()) {
+			entry.pinned = true;
+			unreferenced.remove(entry);
+		} else if (acquisitions.get(acquisitions.size() - 1).resources
+				.add(resource)) {
+			entry.referenceCount++;
+			unreferenced.remove(entry);
+		} else {
+			return;
+		}
+		if (resource instanceof Gradient) {
+			// the colors of a cached gradient are used with the gradient
+			for (Object color : getColors((Gradient) resource)) {
+				acquire(color);
+			}
+		}
+	}
+
+	/**
+	 * Returns the registered colors of the gradient. The gradient only holds
+	 * the RGBs of its colors, the colors are registered by the converters
+	 * under the keys of the CSS values.
+	 */
+	private List<Object> getColors(Gradient gradient) {
+		List<Object> colors = new ArrayList<Object>();
+		List<?> rgbs = gradient.getRGBs();
+		if (rgbs.isEmpty()) {
+			return colors;
+		}
+		for (Entry entry : entries.values()) {
+			if (entry.resource instanceof Color
+					&& !isDisposed(entry.resource)
+					&& rgbs.contains(((Color) entry.resource).getRGB())) {
+				colors.add(entry.resource);
+			}
+		}
+		return colors;
+	}
+
+	private void release(Set<Object> resources) {
+		for (Object resource : resources) {
+			Entry entry = entries.get(resource);
+			if (entry != null && --entry.referenceCount == 0 && !entry.pinned) {
+				unreferenced.add(entry);
+			}
+		}
+		evict();
+	}
+
+	private void evict() {
+		Iterator<Entry> iter = unreferenced.iterator();
+		int count = unreferenced.size();
+		while (count > maxUnreferencedResources && iter.hasNext()) {
+			Entry entry = iter.next();
+			iter.remove();
+			count--;
+			entries.remove(entry.resource);
+			super.unregisterResource(entry.type, entry.key);
+			if (!isDisposed(entry.resource)) {
+				disposeResource(entry.type, entry.key, entry.resource);
+			}
+		}
+	}
+
+	/**
+	 * Stops tracking a resource which is removed from the cache without being
+	 * disposed by the registry.
+	 */
+	private void forget(Object resource) {
+		Entry entry = entries.remove(resource);
+		if (entry != null) {
+			unreferenced.remove(entry);
+		}
+	}
+
+	private boolean isSystemResource(Object resource) {
+		if (display == null || !(resource instanceof Color)) {
+			return false;
+		}
+		for (int id = SWT.COLOR_WHITE; id <= SWT.COLOR_LINK_FOREGROUND; id++) {
+			if (display.getSystemColor(id) == resource) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	/*
@@ -147,6 +444,8 @@ public class SWTResourcesRegistry extends AbstractResourcesRegistry {
 			while (iter.hasNext()) {
 				Map.Entry<?, ?> entry = iter.next();
 				if (keyType.isAssignableFrom(entry.getKey().getClass())) {
+					// the caller is responsible for the removed resources
+					forget(entry.getValue());
 					removedResources.add(entry.getValue());
 					iter.remove();
 				}
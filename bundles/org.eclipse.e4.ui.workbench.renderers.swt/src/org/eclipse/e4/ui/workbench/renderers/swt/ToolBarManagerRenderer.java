@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2014 IBM Corporation and others.
+ * Copyright (c) 2009, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -267,7 +267,7 @@ public class ToolBarManagerRenderer extends SWTPartRenderer {
 	@Optional
 	void dirtyChanged(
 			@UIEventTopic(UIEvents.Dirtyable.TOPIC_DIRTY) Event eventData) {
-		getUpdater().updateContributionItems(ALL_SELECTOR);
+		getUpdater().scheduleContributionItems(ALL_SELECTOR);
 	}
 
 	@Inject
@@ -364,7 +364,9 @@ public class ToolBarManagerRenderer extends SWTPartRenderer {
 				for (String var : updateVariables) {
 					context.get(var);
 				}
-				getUpdater().updateContributionItems(ALL_SELECTOR);
+				// the handlers may read these values without the item trackers seeing it, like
+				// the arguments of @CanExecute methods and the expressions of legacy handlers
+				getUpdater().scheduleContributionItems(ALL_SELECTOR);
 				return true;
 			}
 		};
@@ -513,7 +515,7 @@ public class ToolBarManagerRenderer extends SWTPartRenderer {
 						@Override
 						public void run() {
 							manager.update(false);
-							getUpdater().updateContributionItems(ALL_SELECTOR);
+							getUpdater().scheduleContributionItems(ALL_SELECTOR);
 						}
 					});
 					// disposeToolbarIfNecessary(toolbarModel);
@@ -1014,7 +1016,10 @@ public class ToolBarManagerRenderer extends SWTPartRenderer {
 		return super.getContext(el);
 	}
 
-	ToolItemUpdater getUpdater() {
+	/**
+	 * @return the updater of the enablement of the tool items of this renderer
+	 */
+	public ToolItemUpdater getUpdater() {
 		return enablementUpdater;
 	}
 
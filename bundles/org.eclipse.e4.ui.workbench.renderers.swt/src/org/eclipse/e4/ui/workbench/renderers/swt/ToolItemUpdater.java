@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014 IBM Corporation and others.
+ * Copyright (c) 2014, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,39 +12,204 @@
 package org.eclipse.e4.ui.workbench.renderers.swt;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.eclipse.e4.core.contexts.IEclipseContext;
+import org.eclipse.e4.core.contexts.RunAndTrack;
 import org.eclipse.e4.ui.workbench.Selector;
 import org.eclipse.swt.widgets.Display;
 
+/**
+ * Updates the enablement of the tool items of the toolbars of a renderer.
+ * <p>
+ * Explicit requests through {@link #updateContributionItems(Selector)} evaluate the selected items
+ * before returning. Requests made for changes of the context through
+ * {@link #scheduleContributionItems(Selector)} mark the selected items, which are evaluated once
+ * on the next turn of the event loop, however many requests selected them in between.
+ * </p>
+ * <p>
+ * Each evaluation is tracked in the context of its item, so a change of a value it read, like the
+ * handler of its command, marks that item again without updating the others.
+ * </p>
+ */
 public class ToolItemUpdater {
 	Display display = Display.getCurrent();
 
-	List<HandledContributionItem> itemsToCheck = new ArrayList<HandledContributionItem>();
+	final Set<HandledContributionItem> itemsToCheck = new LinkedHashSet<HandledContributionItem>();
 	final List<HandledContributionItem> orphanedToolItems = new ArrayList<HandledContributionItem>();
 
+	// the items to evaluate on the next update
+	final Set<HandledContributionItem> dirtyItems = new LinkedHashSet<HandledContributionItem>();
+	// the dirty items which a request selected, the others were marked by their tracker
+	private final Set<HandledContributionItem> requestedItems = new HashSet<HandledContributionItem>();
+	private final Map<HandledContributionItem, EnablementTracker> trackers = new HashMap<HandledContributionItem, EnablementTracker>();
+
+	private boolean updateScheduled = false;
+	private long savedEvaluations = 0;
+
+	private final Runnable updateRunner = new Runnable() {
+		@Override
+		public void run() {
+			updateDirtyItems();
+		}
+	};
+
+	/**
+	 * Evaluates the enablement of an item and marks it again when one of the values read by the
+	 * evaluation changes.
+	 */
+	private final class EnablementTracker extends RunAndTrack {
+		private final HandledContributionItem item;
+		private boolean evaluated = false;
+		boolean disposed = false;
+
+		EnablementTracker(HandledContributionItem item) {
+			this.item = item;
+		}
+
+		@Override
+		public boolean changed(IEclipseContext context) {
+			if (disposed) {
+				return false;
+			}
+			if (!evaluated) {
+				evaluated = true;
+				item.updateItemEnablement();
+				return true;
+			}
+			// an input of the enablement changed, it is evaluated again with a new tracker
+			disposed = true;
+			if (trackers.get(item) == this) {
+				trackers.remove(item);
+				markDirty(item);
+			}
+			return false;
+		}
+	}
+
 	void registerItem(HandledContributionItem item) {
-		if (!itemsToCheck.contains(item)) {
-			itemsToCheck.add(item);
+		if (itemsToCheck.add(item)) {
+			markDirty(item);
 		}
 	}
 
 	void removeItem(HandledContributionItem item) {
 		itemsToCheck.remove(item);
+		dirtyItems.remove(item);
+		requestedItems.remove(item);
+		EnablementTracker tracker = trackers.remove(item);
+		if (tracker != null) {
+			tracker.disposed = true;
+		}
 	}
 
+	/**
+	 * Evaluates the enablement of the selected items now.
+	 *
+	 * @param selector
+	 *            selects the items to update
+	 */
 	public void updateContributionItems(Selector selector) {
+		for (HandledContributionItem hci : select(selector)) {
+			dirtyItems.remove(hci);
+			if (requestedItems.remove(hci)) {
+				// the pending evaluation of an earlier request is done by this one
+				savedEvaluations++;
+			}
+			evaluate(hci);
+		}
+	}
+
+	/**
+	 * Marks the selected items, their enablement is evaluated on the next turn of the event loop.
+	 * An item which is selected by several requests before it is evaluated is evaluated once.
+	 *
+	 * @param selector
+	 *            selects the items to update
+	 */
+	public void scheduleContributionItems(Selector selector) {
+		for (HandledContributionItem hci : select(selector)) {
+			if (!requestedItems.add(hci)) {
+				savedEvaluations++;
+			}
+			markDirty(hci);
+		}
+	}
+
+	private List<HandledContributionItem> select(Selector selector) {
+		List<HandledContributionItem> selected = new ArrayList<HandledContributionItem>();
 		for (final HandledContributionItem hci : itemsToCheck) {
-			if (hci.model != null && hci.model.getParent() != null
-					&& selector.select(hci.model)) {
-				hci.updateItemEnablement();
-			} else {
+			if (hci.model == null || hci.model.getParent() == null) {
 				orphanedToolItems.add(hci);
+			} else if (selector.select(hci.model)) {
+				selected.add(hci);
 			}
 		}
 		if (!orphanedToolItems.isEmpty()) {
-			itemsToCheck.removeAll(orphanedToolItems);
+			for (HandledContributionItem hci : orphanedToolItems) {
+				removeItem(hci);
+			}
 			orphanedToolItems.clear();
 		}
+		return selected;
+	}
+
+	/**
+	 * Returns the number of enablement evaluations which were requested for an item whose
+	 * evaluation, requested before, was still pending, and so were not performed. Evaluations of
+	 * items whose tracked context values changed are not counted, they were not requested.
+	 *
+	 * @return the number of saved evaluations
+	 */
+	public long getSavedEvaluations() {
+		return savedEvaluations;
+	}
+
+	private void markDirty(HandledContributionItem item) {
+		if (!dirtyItems.add(item) || updateScheduled) {
+			return;
+		}
+		if (display == null || display.isDisposed()) {
+			updateDirtyItems();
+			return;
+		}
+		updateScheduled = true;
+		display.asyncExec(updateRunner);
+	}
 
+	void updateDirtyItems() {
+		updateScheduled = false;
+		HandledContributionItem[] items = dirtyItems
+				.toArray(new HandledContributionItem[dirtyItems.size()]);
+		dirtyItems.clear();
+		requestedItems.clear();
+		for (HandledContributionItem hci : items) {
+			if (!itemsToCheck.contains(hci)) {
+				continue;
+			}
+			if (hci.model == null || hci.model.getParent() == null) {
+				removeItem(hci);
+				continue;
+			}
+			evaluate(hci);
+		}
+	}
+	private void evaluate(HandledContributionItem item) {
+		EnablementTracker tracker = trackers.remove(item);
+		if (tracker != null) {
+			tracker.disposed = true;
+		}
+		IEclipseContext context = item.getContext(item.model);
+		if (context == null) {
+			item.updateItemEnablement();
+			return;
+		}
+		tracker = new EnablementTracker(item);
+		trackers.put(item, tracker);
+		context.runAndTrack(tracker);
 	}
 }
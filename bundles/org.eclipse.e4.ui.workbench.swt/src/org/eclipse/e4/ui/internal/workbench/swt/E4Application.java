@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2014 IBM Corporation and others.
+ * Copyright (c) 2009, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -417,6 +417,16 @@ public class E4Application implements IApplication {
 		eclipseContext.set(E4Workbench.DELTA_RESTORE,
 				Boolean.valueOf(deltaRestore));
 
+		// Binary persistence of the model
+		value = getArgValue(E4Workbench.BINARY_MODEL, appContext, true);
+		eclipseContext.set(E4Workbench.BINARY_MODEL,
+				Boolean.valueOf(value != null && Boolean.parseBoolean(value)));
+
+		// Parallel loading of the model fragments
+		value = getArgValue(E4Workbench.PARALLEL_FRAGMENTS, appContext, true);
+		eclipseContext.set(E4Workbench.PARALLEL_FRAGMENTS,
+				Boolean.valueOf(value != null && Boolean.parseBoolean(value)));
+
 		String resourceHandler = getArgValue(IWorkbench.MODEL_RESOURCE_HANDLER,
 				appContext, false);
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2014 IBM Corporation and others.
+ * Copyright (c) 2008, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -1294,13 +1294,13 @@ public class PartRenderingEngine implements IPresentationEngine {
 				@Override
 				public void setClassname(Object widget, String classname) {
 					WidgetElement.setCSSClass((Widget) widget, classname);
-					themeEngine.applyStyles(widget, true);
+					WidgetElement.markDirty((Widget) widget);
 				}
 
 				@Override
 				public void setId(Object widget, String id) {
 					WidgetElement.setID((Widget) widget, id);
-					themeEngine.applyStyles(widget, true);
+					WidgetElement.markDirty((Widget) widget);
 				}
 
 				@Override
@@ -1318,7 +1318,7 @@ public class PartRenderingEngine implements IPresentationEngine {
 						String id) {
 					WidgetElement.setCSSClass((Widget) widget, classname);
 					WidgetElement.setID((Widget) widget, id);
-					themeEngine.applyStyles(widget, true);
+					WidgetElement.markDirty((Widget) widget);
 				}
 			});
 
@@ -1340,13 +1340,13 @@ public class PartRenderingEngine implements IPresentationEngine {
 				@Override
 				public void setClassname(Object widget, String classname) {
 					WidgetElement.setCSSClass((Widget) widget, classname);
-					cssEngine.applyStyles(widget, true);
+					cssEngine.markDirty((Widget) widget);
 				}
 
 				@Override
 				public void setId(Object widget, String id) {
 					WidgetElement.setID((Widget) widget, id);
-					cssEngine.applyStyles(widget, true);
+					cssEngine.markDirty((Widget) widget);
 				}
 
 				@Override
@@ -1369,7 +1369,7 @@ public class PartRenderingEngine implements IPresentationEngine {
 						String id) {
 					WidgetElement.setCSSClass((Widget) widget, classname);
 					WidgetElement.setID((Widget) widget, id);
-					cssEngine.applyStyles(widget, true);
+					cssEngine.markDirty((Widget) widget);
 				}
 			});
 
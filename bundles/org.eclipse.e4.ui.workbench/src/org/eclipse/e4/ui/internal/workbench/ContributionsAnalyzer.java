@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010, 2014 IBM Corporation and others.
+ * Copyright (c) 2010, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,9 +13,12 @@
 package org.eclipse.e4.ui.internal.workbench;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import org.eclipse.core.expressions.EvaluationResult;
 import org.eclipse.core.expressions.Expression;
@@ -62,6 +65,10 @@ public final class ContributionsAnalyzer {
 		if (elementId == null || elementId.length() == 0) {
 			return;
 		}
+		ContributionsIndex index = ContributionsIndex.getIndex(trimContributions);
+		if (index != null) {
+			trimContributions = index.getTrimContributions(elementId);
+		}
 		for (MTrimContribution contribution : trimContributions) {
 			String parentId = contribution.getParentId();
 			boolean filtered = isFiltered(trimModel, contribution);
@@ -82,7 +89,8 @@ public final class ContributionsAnalyzer {
 		if (id == null || id.length() == 0) {
 			return;
 		}
-		for (MToolBarContribution toolBarContribution : toolbarContributionList) {
+		for (MToolBarContribution toolBarContribution : getToolBarContributions(
+				toolbarContributionList, id)) {
 			String parentID = toolBarContribution.getParentId();
 			boolean filtered = isFiltered(toolbarModel, toolBarContribution);
 			if (filtered || !id.equals(parentID) || !toolBarContribution.isToBeRendered()) {
@@ -98,7 +106,8 @@ public final class ContributionsAnalyzer {
 		if (id == null || id.length() == 0) {
 			return;
 		}
-		for (MToolBarContribution toolBarContribution : toolbarContributionList) {
+		for (MToolBarContribution toolBarContribution : getToolBarContributions(
+				toolbarContributionList, id)) {
 			String parentID = toolBarContribution.getParentId();
 			boolean filtered = isFiltered(toolbarModel, toolBarContribution);
 			if (filtered || !id.equals(parentID) || !toolBarContribution.isToBeRendered()) {
@@ -112,6 +121,15 @@ public final class ContributionsAnalyzer {
 		return false;
 	}
 
+	private static List<MToolBarContribution> getToolBarContributions(
+			List<MToolBarContribution> toolbarContributionList, String id) {
+		ContributionsIndex index = ContributionsIndex.getIndex(toolbarContributionList);
+		if (index == null) {
+			return toolbarContributionList;
+		}
+		return index.getToolBarContributions(id);
+	}
+
 	public static void XXXgatherMenuContributions(final MMenu menuModel,
 			final List<MMenuContribution> menuContributionList, final String id,
 			final ArrayList<MMenuContribution> toContribute, final ExpressionContext eContext,
@@ -131,8 +149,14 @@ public final class ContributionsAnalyzer {
 				}
 			}
 		}
+		LinkedHashSet<String> parentIds = new LinkedHashSet<String>(popupIds);
+		parentIds.add(id);
+		if (includePopups && menuModel instanceof MPopupMenu) {
+			parentIds.add(POPUP_PARENT_ID);
+		}
 		ArrayList<MMenuContribution> includedPopups = new ArrayList<MMenuContribution>();
-		for (MMenuContribution menuContribution : menuContributionList) {
+		for (MMenuContribution menuContribution : getMenuContributions(menuModel,
+				menuContributionList, parentIds, includePopups)) {
 			String parentID = menuContribution.getParentId();
 			if (parentID == null) {
 				// it doesn't make sense for this to be null, temporary workaround for bug 320790
@@ -164,7 +188,13 @@ public final class ContributionsAnalyzer {
 			return;
 		}
 		boolean menuBar = (((MUIElement) ((EObject) menuModel).eContainer()) instanceof MWindow);
-		for (MMenuContribution menuContribution : menuContributionList) {
+		Collection<String> parentIds = Collections.singleton(id);
+		if (includePopups && menuModel instanceof MPopupMenu) {
+			parentIds = new LinkedHashSet<String>(parentIds);
+			parentIds.add(POPUP_PARENT_ID);
+		}
+		for (MMenuContribution menuContribution : getMenuContributions(menuModel,
+				menuContributionList, parentIds, includePopups)) {
 			String parentID = menuContribution.getParentId();
 			if (parentID == null) {
 				// it doesn't make sense for this to be null, temporary workaround for bug 320790
@@ -184,22 +214,50 @@ public final class ContributionsAnalyzer {
 
 	static boolean isFiltered(MMenu menuModel, MMenuContribution menuContribution,
 			boolean includePopups) {
+		List<String> tags = menuContribution.getTags();
+		return isFiltered(menuModel, tags.contains(ContributionsAnalyzer.MC_POPUP),
+				tags.contains(ContributionsAnalyzer.MC_MENU), includePopups);
+	}
+
+	/**
+	 * Returns whether a menu contribution with the given tags is filtered out for a menu.
+	 *
+	 * @param popupTag
+	 *            whether the contribution is tagged with {@link #MC_POPUP}
+	 * @param menuTag
+	 *            whether the contribution is tagged with {@link #MC_MENU}
+	 */
+	static boolean isFiltered(MMenu menuModel, boolean popupTag, boolean menuTag,
+			boolean includePopups) {
 		if (includePopups || menuModel.getTags().contains(ContributionsAnalyzer.MC_POPUP)) {
-			return !menuContribution.getTags().contains(ContributionsAnalyzer.MC_POPUP)
-					&& menuContribution.getTags().contains(ContributionsAnalyzer.MC_MENU);
+			return !popupTag && menuTag;
 		}
 		if (menuModel.getTags().contains(ContributionsAnalyzer.MC_MENU)) {
-			return !menuContribution.getTags().contains(ContributionsAnalyzer.MC_MENU)
-					&& menuContribution.getTags().contains(ContributionsAnalyzer.MC_POPUP);
+			return !menuTag && popupTag;
 		}
 		if (!includePopups) {
 			// not including popups, so filter out popup menu contributions if the menu is a regular
 			// menu
-			return menuContribution.getTags().contains(ContributionsAnalyzer.MC_POPUP);
+			return popupTag;
 		}
 		return false;
 	}
 
+	/**
+	 * Returns the menu contributions to one of the given parents, in the order of the given list.
+	 * Only the contributions which may be included are returned if the list is indexed, all of
+	 * them otherwise.
+	 */
+	private static List<MMenuContribution> getMenuContributions(MMenu menuModel,
+			List<MMenuContribution> menuContributionList, Collection<String> parentIds,
+			boolean includePopups) {
+		ContributionsIndex index = ContributionsIndex.getIndex(menuContributionList);
+		if (index == null) {
+			return menuContributionList;
+		}
+		return index.getMenuContributions(menuModel, parentIds, includePopups);
+	}
+
 	public static void collectInfo(ExpressionInfo info, MExpression exp) {
 		if (!(exp instanceof MCoreExpression)) {
 			return;
@@ -405,13 +463,7 @@ public final class ContributionsAnalyzer {
 	}
 
 	public static MCommand getCommandById(MApplication app, String cmdId) {
-		final List<MCommand> cmds = app.getCommands();
-		for (MCommand cmd : cmds) {
-			if (cmdId.equals(cmd.getElementId())) {
-				return cmd;
-			}
-		}
-		return null;
+		return ContributionsIndex.getIndex((EObject) app).getCommand(cmdId);
 	}
 
 	static class Key {
@@ -0,0 +1,287 @@
+/*******************************************************************************
+ * Copyright (c) 2015 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.e4.ui.internal.workbench;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.eclipse.e4.ui.model.application.MApplicationElement;
+import org.eclipse.e4.ui.model.application.commands.MCommand;
+import org.eclipse.e4.ui.model.application.impl.ApplicationPackageImpl;
+import org.eclipse.e4.ui.model.application.ui.menu.MMenu;
+import org.eclipse.e4.ui.model.application.ui.menu.MMenuContribution;
+import org.eclipse.e4.ui.model.application.ui.menu.MToolBarContribution;
+import org.eclipse.e4.ui.model.application.ui.menu.MTrimContribution;
+import org.eclipse.e4.ui.model.application.ui.menu.impl.MenuPackageImpl;
+import org.eclipse.emf.common.notify.Adapter;
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.common.notify.Notifier;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+
+/**
+ * An index of the menu, toolbar and trim contributions of an element by parent id, and of its
+ * commands by element id, for the lookups of {@link ContributionsAnalyzer}.
+ * <p>
+ * The index is attached as an adapter to the element owning the contributions and to each indexed
+ * element. A change of one of the lists, of a parent id, of the tags of a menu contribution or of
+ * the id of a command invalidates the affected table, which is rebuilt on its next lookup. The
+ * contributions are returned in the order of their list, as when scanning it.
+ * </p>
+ */
+final class ContributionsIndex implements Adapter {
+
+	// the classes of menu contributions by their popup and menu tags
+	private static final int UNTAGGED = 0;
+	private static final int POPUP = 1;
+	private static final int MENU = 2;
+	private static final int POPUP_AND_MENU = 3;
+
+	/**
+	 * The elements of a list of the owner, by key.
+	 */
+	private static final class Table {
+		final EReference list;
+		final EAttribute key;
+		final boolean tagged;
+
+		// the indexed elements, which this index is an adapter of
+		Set<EObject> tracked = Collections.emptySet();
+		Object[] elements;
+		// the positions in the list by key, null when the table must be rebuilt
+		Map<String, List<Integer>> positions;
+
+		Table(EReference list, EAttribute key, boolean tagged) {
+			this.list = list;
+			this.key = key;
+			this.tagged = tagged;
+		}
+	}
+
+	private final EObject owner;
+
+	private final Table menuContributions = new Table(
+			MenuPackageImpl.Literals.MENU_CONTRIBUTIONS__MENU_CONTRIBUTIONS,
+			MenuPackageImpl.Literals.MENU_CONTRIBUTION__PARENT_ID, true);
+	private final Table toolBarContributions = new Table(
+			MenuPackageImpl.Literals.TOOL_BAR_CONTRIBUTIONS__TOOL_BAR_CONTRIBUTIONS,
+			MenuPackageImpl.Literals.TOOL_BAR_CONTRIBUTION__PARENT_ID, false);
+	private final Table trimContributions = new Table(
+			MenuPackageImpl.Literals.TRIM_CONTRIBUTIONS__TRIM_CONTRIBUTIONS,
+			MenuPackageImpl.Literals.TRIM_CONTRIBUTION__PARENT_ID, false);
+	private final Table commands = new Table(ApplicationPackageImpl.Literals.APPLICATION__COMMANDS,
+			ApplicationPackageImpl.Literals.APPLICATION_ELEMENT__ELEMENT_ID, false);
+
+	private final Table[] tables = { menuContributions, toolBarContributions, trimContributions,
+			commands };
+
+	private ContributionsIndex(EObject owner) {
+		this.owner = owner;
+	}
+
+	/**
+	 * Returns the index of the element owning the given list of contributions.
+	 *
+	 * @param contributions
+	 *            a list of menu, toolbar or trim contributions
+	 * @return the index, or <code>null</code> if the list is not the contributions feature of a
+	 *         model element
+	 */
+	static ContributionsIndex getIndex(List<?> contributions) {
+		if (!(contributions instanceof EStructuralFeature.Setting)) {
+			return null;
+		}
+		EStructuralFeature.Setting setting = (EStructuralFeature.Setting) contributions;
+		EStructuralFeature feature = setting.getEStructuralFeature();
+		if (feature != MenuPackageImpl.Literals.MENU_CONTRIBUTIONS__MENU_CONTRIBUTIONS
+				&& feature != MenuPackageImpl.Literals.TOOL_BAR_CONTRIBUTIONS__TOOL_BAR_CONTRIBUTIONS
+				&& feature != MenuPackageImpl.Literals.TRIM_CONTRIBUTIONS__TRIM_CONTRIBUTIONS) {
+			return null;
+		}
+		return getIndex(setting.getEObject());
+	}
+
+	/**
+	 * Returns the index of the given element, creating it on first use.
+	 */
+	static ContributionsIndex getIndex(EObject owner) {
+		ContributionsIndex index = (ContributionsIndex) EcoreUtil.getExistingAdapter(owner,
+				ContributionsIndex.class);
+		if (index == null) {
+			index = new ContributionsIndex(owner);
+			owner.eAdapters().add(index);
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the menu contributions to one of the given parents which are not filtered out for
+	 * the given menu by their tags.
+	 *
+	 * @see ContributionsAnalyzer#isFiltered(MMenu, MMenuContribution, boolean)
+	 */
+	List<MMenuContribution> getMenuContributions(MMenu menuModel, Collection<String> parentIds,
+			boolean includePopups) {
+		List<String> keys = new ArrayList<String>();
+		for (int tagClass = UNTAGGED; tagClass <= POPUP_AND_MENU; tagClass++) {
+			if (ContributionsAnalyzer.isFiltered(menuModel, (tagClass & POPUP) != 0,
+					(tagClass & MENU) != 0, includePopups)) {
+				continue;
+			}
+			for (String parentId : parentIds) {
+				keys.add(getTaggedKey(tagClass, parentId));
+			}
+		}
+		return get(menuContributions, keys);
+	}
+
+	/**
+	 * Returns the toolbar contributions to the given parent.
+	 */
+	List<MToolBarContribution> getToolBarContributions(String parentId) {
+		return get(toolBarContributions, Collections.singletonList(parentId));
+	}
+
+	/**
+	 * Returns the trim contributions to the given parent.
+	 */
+	List<MTrimContribution> getTrimContributions(String parentId) {
+		return get(trimContributions, Collections.singletonList(parentId));
+	}
+
+	/**
+	 * Returns the first command with the given id.
+	 */
+	MCommand getCommand(String id) {
+		List<MCommand> found = get(commands, Collections.singletonList(id));
+		return found.isEmpty() ? null : found.get(0);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> List<T> get(Table table, Collection<String> keys) {
+		validate(table);
+		List<Integer> found = new ArrayList<Integer>();
+		for (String key : keys) {
+			List<Integer> positions = table.positions.get(key);
+			if (positions != null) {
+				found.addAll(positions);
+			}
+		}
+		if (keys.size() > 1) {
+			Collections.sort(found);
+		}
+		List<T> result = new ArrayList<T>(found.size());
+		for (Integer position : found) {
+			result.add((T) table.elements[position.intValue()]);
+		}
+		return result;
+	}
+
+	private void validate(Table table) {
+		if (table.positions != null) {
+			return;
+		}
+		Object[] elements = ((List<?>) owner.eGet(table.list)).toArray();
+		Map<String, List<Integer>> positions = new HashMap<String, List<Integer>>();
+		Set<EObject> tracked = Collections.newSetFromMap(new IdentityHashMap<EObject, Boolean>());
+		for (int i = 0; i < elements.length; i++) {
+			EObject element = (EObject) elements[i];
+			tracked.add(element);
+			if (!table.tracked.remove(element)) {
+				element.eAdapters().add(this);
+			}
+			String key = getKey(table, element);
+			if (key == null) {
+				continue;
+			}
+			List<Integer> slot = positions.get(key);
+			if (slot == null) {
+				slot = new ArrayList<Integer>(1);
+				positions.put(key, slot);
+			}
+			slot.add(Integer.valueOf(i));
+		}
+		for (EObject removed : table.tracked) {
+			removed.eAdapters().remove(this);
+		}
+		table.tracked = tracked;
+		table.elements = elements;
+		table.positions = positions;
+	}
+
+	private static String getKey(Table table, EObject element) {
+		String key = (String) element.eGet(table.key);
+		if (key == null || !table.tagged) {
+			return key;
+		}
+		List<String> tags = ((MApplicationElement) element).getTags();
+		int tagClass = UNTAGGED;
+		if (tags.contains(ContributionsAnalyzer.MC_POPUP)) {
+			tagClass |= POPUP;
+		}
+		if (tags.contains(ContributionsAnalyzer.MC_MENU)) {
+			tagClass |= MENU;
+		}
+		return getTaggedKey(tagClass, key);
+	}
+
+	private static String getTaggedKey(int tagClass, String key) {
+		return (char) ('0' + tagClass) + key;
+	}
+
+	@Override
+	public void notifyChanged(Notification notification) {
+		if (notification.isTouch()) {
+			return;
+		}
+		Object notifier = notification.getNotifier();
+		Object feature = notification.getFeature();
+		for (Table table : tables) {
+			if (table.positions == null) {
+				continue;
+			}
+			if (notifier == owner) {
+				if (feature == table.list) {
+					table.positions = null;
+				}
+			} else if (table.tracked.contains(notifier)) {
+				if (feature == table.key
+						|| (table.tagged && feature == ApplicationPackageImpl.Literals.APPLICATION_ELEMENT__TAGS)) {
+					table.positions = null;
+				}
+			}
+		}
+	}
+
+	@Override
+	public Notifier getTarget() {
+		return owner;
+	}
+
+	@Override
+	public void setTarget(Notifier newTarget) {
+		// the index is attached to the indexed elements as well, its target is the owner
+	}
+
+	@Override
+	public boolean isAdapterForType(Object type) {
+		return type == ContributionsIndex.class;
+	}
+}
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2015 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.e4.ui.internal.workbench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.resource.impl.BinaryResourceImpl;
+
+/**
+ * An {@link E4XMIResource} stored in the binary format of EMF instead of XMI. The binary format is
+ * much faster to read and write for large models, such as the persisted workbench model.
+ * <p>
+ * The binary format of EMF does not keep the ids of the objects, so they are written after the
+ * contents, in the order of the contents tree. Objects held by transient containment features,
+ * such as the transient data of the model elements, are not written by the binary format and are
+ * skipped.
+ * </p>
+ */
+public class E4BinaryResource extends E4XMIResource {
+
+	/**
+	 * The file extension of binary models.
+	 */
+	public static final String FILE_EXTENSION = "e4bin"; //$NON-NLS-1$
+
+	/**
+	 * @param uri
+	 */
+	public E4BinaryResource(URI uri) {
+		super(uri);
+	}
+
+	@Override
+	protected void doSave(OutputStream outputStream, Map<?, ?> options) throws IOException {
+		BinaryResourceImpl.EObjectOutputStream out = new BinaryResourceImpl.EObjectOutputStream(
+				outputStream, options);
+		out.saveResource(this);
+
+		List<EObject> objects = getAllObjects();
+		out.writeCompressedInt(objects.size());
+		for (EObject object : objects) {
+			String id = getID(object);
+			out.writeString(id == null ? "" : id); //$NON-NLS-1$
+		}
+		out.flush();
+	}
+
+	@Override
+	protected void doLoad(InputStream inputStream, Map<?, ?> options) throws IOException {
+		BinaryResourceImpl.EObjectInputStream in = new BinaryResourceImpl.EObjectInputStream(
+				inputStream, options);
+		in.loadResource(this);
+
+		List<EObject> objects = getAllObjects();
+		int count = in.readCompressedInt();
+		if (count != objects.size()) {
+			throw new IOException("The ids do not match the contents of " + getURI()); //$NON-NLS-1$
+		}
+		for (EObject object : objects) {
+			String id = in.readString();
+			if (id.length() > 0) {
+				setID(object, id);
+			}
+		}
+	}
+
+	/**
+	 * Returns the objects written by the binary format, in a stable order: the contents of the
+	 * resource and the objects they contain through non-transient containment features.
+	 */
+	private List<EObject> getAllObjects() {
+		List<EObject> objects = new ArrayList<EObject>();
+		for (EObject root : getContents()) {
+			collectObjects(root, objects);
+		}
+		return objects;
+	}
+
+	private static void collectObjects(EObject object, List<EObject> objects) {
+		objects.add(object);
+		for (EReference containment : object.eClass().getEAllContainments()) {
+			if (containment.isTransient() || !object.eIsSet(containment)) {
+				continue;
+			}
+			Object value = object.eGet(containment, false);
+			if (containment.isMany()) {
+				for (Object child : (List<?>) value) {
+					collectObjects((EObject) child, objects);
+				}
+			} else if (value != null) {
+				collectObjects((EObject) value, objects);
+			}
+		}
+	}
+}
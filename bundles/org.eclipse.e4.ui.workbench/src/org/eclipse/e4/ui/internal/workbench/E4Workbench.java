@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2013 BestSolution.at and others.
+ * Copyright (c) 2008, 2015 BestSolution.at and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -66,6 +66,19 @@ public class E4Workbench implements IWorkbench {
 	 */
 	@Deprecated
 	public static final String DELTA_RESTORE = "deltaRestore"; //$NON-NLS-1$
+	/**
+	 * The argument for loading the model fragments in parallel, and caching them for an unchanged
+	 * set of contributing bundles <br>
+	 * <br>
+	 * Value is: <code>parallelFragments</code>
+	 */
+	public static final String PARALLEL_FRAGMENTS = "parallelFragments"; //$NON-NLS-1$
+	/**
+	 * The argument for persisting the workbench model in a binary format instead of XMI <br>
+	 * <br>
+	 * Value is: <code>binaryModel</code>
+	 */
+	public static final String BINARY_MODEL = "binaryModel"; //$NON-NLS-1$
 	/**
 	 * The argument for setting RTL mode <br>
 	 * <br>
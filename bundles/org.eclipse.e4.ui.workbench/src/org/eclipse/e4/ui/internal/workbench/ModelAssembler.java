@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010, 2014 BestSolution.at and others.
+ * Copyright (c) 2010, 2015 BestSolution.at and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,6 +14,8 @@
 
 package org.eclipse.e4.ui.internal.workbench;
 
+import java.io.File;
+import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -24,6 +26,7 @@ import org.eclipse.core.runtime.IContributor;
 import org.eclipse.core.runtime.IExtension;
 import org.eclipse.core.runtime.IExtensionPoint;
 import org.eclipse.core.runtime.IExtensionRegistry;
+import org.eclipse.core.runtime.URIUtil;
 import org.eclipse.e4.core.contexts.ContextInjectionFactory;
 import org.eclipse.e4.core.contexts.EclipseContextFactory;
 import org.eclipse.e4.core.contexts.IEclipseContext;
@@ -45,6 +48,9 @@ import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.ResourceSet;
 import org.eclipse.emf.ecore.util.EContentsEList;
 import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.osgi.service.datalocation.Location;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Version;
 
 /**
  *
@@ -95,59 +101,143 @@ public class ModelAssembler {
 	private void processFragments(IExtension[] extensions, List<MApplicationElement> imports,
 			List<MApplicationElement> addedElements, boolean initial) {
 
+		List<IConfigurationElement> fragmentElements = new ArrayList<IConfigurationElement>();
 		for (IExtension extension : extensions) {
 			IConfigurationElement[] ces = extension.getConfigurationElements();
 			for (IConfigurationElement ce : ces) {
 				if ("fragment".equals(ce.getName())) { //$NON-NLS-1$
 					if (initial || !INITIAL.equals(ce.getAttribute("apply"))) { //$NON-NLS-1$ 
-						processFragment(ce, imports, addedElements, initial);
+						fragmentElements.add(ce);
 					}
 				}
 			}
 		}
+
+		int count = fragmentElements.size();
+		URI[] uris = new URI[count];
+		String[] bundleNames = new String[count];
+		for (int i = 0; i < count; i++) {
+			IConfigurationElement ce = fragmentElements.get(i);
+			bundleNames[i] = ce.getContributor().getName();
+			uris[i] = getFragmentURI(ce, bundleNames[i]);
+		}
+
+		if (count > 1 && Boolean.TRUE.equals(context.get(E4Workbench.PARALLEL_FRAGMENTS))) {
+			E4XMIResource applicationResource = (E4XMIResource) ((EObject) application)
+					.eResource();
+			ModelFragmentsLoader loader = new ModelFragmentsLoader(
+					applicationResource.getResourceSet(), logger);
+			Object[] roots = loader.load(uris, bundleNames, getCacheDirectory(),
+					getFragmentsKey(fragmentElements));
+			for (int i = 0; i < count; i++) {
+				if (roots[i] != null) {
+					processFragment(fragmentElements.get(i), uris[i], roots[i], imports,
+							addedElements, initial);
+				}
+			}
+			return;
+		}
+
+		for (int i = 0; i < count; i++) {
+			if (uris[i] != null) {
+				Object extensionRoot = loadFragment(uris[i], bundleNames[i]);
+				if (extensionRoot != null) {
+					processFragment(fragmentElements.get(i), uris[i], extensionRoot, imports,
+							addedElements, initial);
+				}
+			}
+		}
 	}
 
-	private void processFragment(IConfigurationElement ce, List<MApplicationElement> imports,
-			List<MApplicationElement> addedElements, boolean initial) {
-		E4XMIResource applicationResource = (E4XMIResource) ((EObject) application).eResource();
-		ResourceSet resourceSet = applicationResource.getResourceSet();
-		IContributor contributor = ce.getContributor();
+	private URI getFragmentURI(IConfigurationElement ce, String bundleName) {
 		String attrURI = ce.getAttribute("uri"); //$NON-NLS-1$
-		String bundleName = contributor.getName();
 		if (attrURI == null) {
 			logger.warn("Unable to find location for the model extension \"{0}\"", bundleName); //$NON-NLS-1$
-			return;
+			return null;
 		}
 
-		URI uri;
 		try {
 			// check if the attrURI is already a platform URI
 			if (URIHelper.isPlatformURI(attrURI)) {
-				uri = URI.createURI(attrURI);
-			} else {
-				String path = bundleName + '/' + attrURI;
-				uri = URI.createPlatformPluginURI(path, false);
+				return URI.createURI(attrURI);
 			}
+			String path = bundleName + '/' + attrURI;
+			return URI.createPlatformPluginURI(path, false);
 		} catch (RuntimeException e) {
 			logger.warn(e, "Invalid location \"" + attrURI + "\" of model extension \"" + bundleName + "\""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-			return;
+			return null;
 		}
+	}
 
-		String contributorURI = URIHelper.constructPlatformURI(contributor);
+	private Object loadFragment(URI uri, String bundleName) {
+		ResourceSet resourceSet = ((EObject) application).eResource().getResourceSet();
 		Resource resource;
 		try {
 			resource = resourceSet.getResource(uri, true);
 		} catch (RuntimeException e) {
 			logger.warn(e, "Unable to read model extension from \"" + uri.toString() +"\" of \"" + bundleName + "\""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-			return;
+			return null;
 		}
 
 		EList<?> contents = resource.getContents();
 		if (contents.isEmpty()) {
-			return;
+			return null;
+		}
+		return contents.get(0);
+	}
+
+	/**
+	 * @return the directory of the cached fragments, or <code>null</code> if there is no instance
+	 *         location
+	 */
+	private File getCacheDirectory() {
+		Object location = context.get(E4Workbench.INSTANCE_LOCATION);
+		if (!(location instanceof Location) || ((Location) location).getURL() == null) {
+			return null;
+		}
+		File baseLocation;
+		try {
+			baseLocation = new File(URIUtil.toURI(((Location) location).getURL()));
+		} catch (URISyntaxException e) {
+			return null;
+		}
+		baseLocation = new File(baseLocation, ".metadata"); //$NON-NLS-1$
+		baseLocation = new File(baseLocation, ".plugins"); //$NON-NLS-1$
+		return new File(baseLocation, "org.eclipse.e4.workbench"); //$NON-NLS-1$
+	}
+
+	/**
+	 * Computes the key of the cached fragments, identifying the versions of the contributing
+	 * bundles and their fragment declarations.
+	 *
+	 * @return the key, or <code>null</code> if the fragments can not be cached
+	 */
+	private String getFragmentsKey(List<IConfigurationElement> fragmentElements) {
+		StringBuilder key = new StringBuilder();
+		for (IConfigurationElement ce : fragmentElements) {
+			Bundle bundle = Activator.getDefault().getBundleForName(ce.getContributor().getName());
+			if (bundle == null) {
+				return null;
+			}
+			Version version = bundle.getVersion();
+			// bundles of a development workspace change without a new version
+			if ("qualifier".equals(version.getQualifier())) { //$NON-NLS-1$
+				return null;
+			}
+			key.append(bundle.getSymbolicName()).append('_').append(version).append('_')
+					.append(bundle.getLastModified()).append(' ').append(ce.getAttribute("uri")) //$NON-NLS-1$
+					.append(' ').append(ce.getAttribute("apply")).append('\n'); //$NON-NLS-1$
 		}
+		return key.toString();
+	}
 
-		Object extensionRoot = contents.get(0);
+	private void processFragment(IConfigurationElement ce, URI uri, Object extensionRoot,
+			List<MApplicationElement> imports, List<MApplicationElement> addedElements,
+			boolean initial) {
+		E4XMIResource applicationResource = (E4XMIResource) ((EObject) application).eResource();
+		IContributor contributor = ce.getContributor();
+		String bundleName = contributor.getName();
+		String contributorURI = URIHelper.constructPlatformURI(contributor);
 
 		if (!(extensionRoot instanceof MModelFragments)) {
 			logger.warn("Unable to create model extension \"{0}\"", bundleName); //$NON-NLS-1$
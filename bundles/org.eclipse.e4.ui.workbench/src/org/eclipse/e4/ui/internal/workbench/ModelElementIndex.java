@@ -0,0 +1,531 @@
+/*******************************************************************************
+ * Copyright (c) 2015 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.e4.ui.internal.workbench;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.eclipse.e4.ui.model.application.MApplication;
+import org.eclipse.e4.ui.model.application.MApplicationElement;
+import org.eclipse.e4.ui.model.application.commands.MBindingContext;
+import org.eclipse.e4.ui.model.application.commands.MBindingTable;
+import org.eclipse.e4.ui.model.application.commands.MCommand;
+import org.eclipse.e4.ui.model.application.commands.MHandler;
+import org.eclipse.e4.ui.model.application.commands.MKeyBinding;
+import org.eclipse.e4.ui.model.application.commands.impl.CommandsPackageImpl;
+import org.eclipse.e4.ui.model.application.impl.ApplicationPackageImpl;
+import org.eclipse.e4.ui.model.application.ui.MUIElement;
+import org.eclipse.e4.ui.model.application.ui.advanced.MArea;
+import org.eclipse.e4.ui.model.application.ui.advanced.MPerspectiveStack;
+import org.eclipse.e4.ui.model.application.ui.advanced.MPlaceholder;
+import org.eclipse.e4.ui.model.application.ui.advanced.impl.AdvancedPackageImpl;
+import org.eclipse.e4.ui.model.application.ui.basic.MPart;
+import org.eclipse.e4.ui.model.application.ui.basic.MWindow;
+import org.eclipse.e4.ui.model.application.ui.basic.impl.BasicPackageImpl;
+import org.eclipse.e4.ui.model.application.ui.impl.UiPackageImpl;
+import org.eclipse.e4.ui.workbench.modeling.EModelService;
+import org.eclipse.emf.common.notify.Adapter;
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.common.notify.Notifier;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.util.EContentAdapter;
+
+/**
+ * An index of the elements of an application by element id, by tag and by class, kept up to date
+ * from the notifications of the model.
+ * <p>
+ * The index answers the queries of {@link ModelServiceImpl#findElements} without walking the
+ * model: the elements of the smallest matching bucket are checked for whether the walk from the
+ * search root would reach them, and sorted into the order the walk would find them in. The order
+ * is given by the path from the search root to each element, where every step is ranked by the
+ * order in which the walk visits the features of an element.
+ * </p>
+ */
+final class ModelElementIndex extends EContentAdapter {
+
+	// the rank of the features, in the order the walk visits them
+	private static final int APPLICATION_LISTS = 0;
+	private static final int CHILDREN = 1;
+	private static final int TRIM_BARS = 2;
+	private static final int WINDOWS = 3;
+	private static final int MAIN_MENU = 4;
+	private static final int WINDOW_HANDLERS = 5;
+	private static final int REF = 6;
+	private static final int PART_MENUS = 7;
+	private static final int PART_TOOLBAR = 8;
+	private static final int PART_HANDLERS = 9;
+
+	private static final int NOT_VISITED = -1;
+	private static final int UNDECIDED = -2;
+
+	/**
+	 * The indexed values of an element.
+	 */
+	private static final class Entry {
+		String id;
+		List<String> tags;
+		MUIElement ref;
+	}
+
+	private final MApplication application;
+
+	private final Map<MApplicationElement, Entry> entries = new IdentityHashMap<MApplicationElement, Entry>();
+	private final Map<String, Set<MApplicationElement>> elementsById = new HashMap<String, Set<MApplicationElement>>();
+	private final Map<String, Set<MApplicationElement>> elementsByTag = new HashMap<String, Set<MApplicationElement>>();
+	private final Map<Class<?>, Set<MApplicationElement>> elementsByClass = new HashMap<Class<?>, Set<MApplicationElement>>();
+
+	// the placeholders referencing an element
+	private final Map<MUIElement, Set<MPlaceholder>> placeholdersByRef = new IdentityHashMap<MUIElement, Set<MPlaceholder>>();
+
+	// elements referenced by placeholders which are not part of the application, the walk can
+	// reach elements the index does not know about through them
+	private final Set<MUIElement> foreignRefs = Collections
+			.newSetFromMap(new IdentityHashMap<MUIElement, Boolean>());
+
+	/**
+	 * Creates the index of the given application and starts tracking its changes.
+	 */
+	ModelElementIndex(MApplication application) {
+		this.application = application;
+		addAdapter(application);
+	}
+
+	@Override
+	protected void addAdapter(Notifier notifier) {
+		// update the index before other adapters, whose listeners may search the model
+		List<Adapter> adapters = notifier.eAdapters();
+		if (!adapters.contains(this)) {
+			adapters.add(0, this);
+		}
+	}
+
+	MApplication getApplication() {
+		return application;
+	}
+
+	/**
+	 * Stops tracking the changes of the application.
+	 */
+	void dispose() {
+		((EObject) application).eAdapters().remove(this);
+	}
+
+	@Override
+	public void setTarget(Notifier target) {
+		super.setTarget(target);
+		if (target instanceof MApplicationElement) {
+			index((MApplicationElement) target);
+		}
+	}
+
+	@Override
+	public void unsetTarget(Notifier target) {
+		super.unsetTarget(target);
+		if (target instanceof MApplicationElement) {
+			unindex((MApplicationElement) target);
+		}
+	}
+
+	@Override
+	public void notifyChanged(Notification notification) {
+		super.notifyChanged(notification);
+		if (notification.isTouch()) {
+			return;
+		}
+		Object notifier = notification.getNotifier();
+		if (!(notifier instanceof MApplicationElement)) {
+			return;
+		}
+		MApplicationElement element = (MApplicationElement) notifier;
+		Entry entry = entries.get(element);
+		if (entry == null) {
+			return;
+		}
+		Object feature = notification.getFeature();
+		if (feature == ApplicationPackageImpl.Literals.APPLICATION_ELEMENT__ELEMENT_ID) {
+			remove(elementsById, entry.id, element);
+			entry.id = element.getElementId();
+			add(elementsById, entry.id, element);
+		} else if (feature == ApplicationPackageImpl.Literals.APPLICATION_ELEMENT__TAGS) {
+			for (String tag : entry.tags) {
+				remove(elementsByTag, tag, element);
+			}
+			entry.tags = new ArrayList<String>(element.getTags());
+			for (String tag : entry.tags) {
+				add(elementsByTag, tag, element);
+			}
+		} else if (feature == AdvancedPackageImpl.Literals.PLACEHOLDER__REF) {
+			MPlaceholder placeholder = (MPlaceholder) element;
+			removeRef(placeholder, entry.ref);
+			entry.ref = placeholder.getRef();
+			addRef(placeholder, entry.ref);
+		}
+	}
+
+	private void index(MApplicationElement element) {
+		if (entries.containsKey(element)) {
+			return;
+		}
+		Entry entry = new Entry();
+		entry.id = element.getElementId();
+		entry.tags = new ArrayList<String>(element.getTags());
+		entries.put(element, entry);
+		add(elementsById, entry.id, element);
+		for (String tag : entry.tags) {
+			add(elementsByTag, tag, element);
+		}
+		add(elementsByClass, element.getClass(), element);
+		if (element instanceof MPlaceholder) {
+			entry.ref = ((MPlaceholder) element).getRef();
+			addRef((MPlaceholder) element, entry.ref);
+		}
+		foreignRefs.remove(element);
+	}
+
+	private void unindex(MApplicationElement element) {
+		Entry entry = entries.remove(element);
+		if (entry == null) {
+			return;
+		}
+		remove(elementsById, entry.id, element);
+		for (String tag : entry.tags) {
+			remove(elementsByTag, tag, element);
+		}
+		remove(elementsByClass, element.getClass(), element);
+		if (element instanceof MPlaceholder) {
+			removeRef((MPlaceholder) element, entry.ref);
+		}
+		if (placeholdersByRef.containsKey(element)) {
+			foreignRefs.add((MUIElement) element);
+		}
+	}
+
+	private void addRef(MPlaceholder placeholder, MUIElement ref) {
+		if (ref == null) {
+			return;
+		}
+		Set<MPlaceholder> placeholders = placeholdersByRef.get(ref);
+		if (placeholders == null) {
+			placeholders = new HashSet<MPlaceholder>(2);
+			placeholdersByRef.put(ref, placeholders);
+		}
+		placeholders.add(placeholder);
+		if (!entries.containsKey(ref)) {
+			foreignRefs.add(ref);
+		}
+	}
+
+	private void removeRef(MPlaceholder placeholder, MUIElement ref) {
+		if (ref == null) {
+			return;
+		}
+		Set<MPlaceholder> placeholders = placeholdersByRef.get(ref);
+		if (placeholders != null && placeholders.remove(placeholder) && placeholders.isEmpty()) {
+			placeholdersByRef.remove(ref);
+			foreignRefs.remove(ref);
+		}
+	}
+
+	private static <K> void add(Map<K, Set<MApplicationElement>> map, K key,
+			MApplicationElement element) {
+		if (key == null) {
+			return;
+		}
+		Set<MApplicationElement> elements = map.get(key);
+		if (elements == null) {
+			elements = new HashSet<MApplicationElement>(2);
+			map.put(key, elements);
+		}
+		elements.add(element);
+	}
+
+	private static <K> void remove(Map<K, Set<MApplicationElement>> map, K key,
+			MApplicationElement element) {
+		if (key == null) {
+			return;
+		}
+		Set<MApplicationElement> elements = map.get(key);
+		if (elements != null && elements.remove(element) && elements.isEmpty()) {
+			map.remove(key);
+		}
+	}
+
+	/**
+	 * Finds the elements the walk of {@link ModelServiceImpl} would find.
+	 *
+	 * @return the elements, in the order the walk finds them, or <code>null</code> if the index
+	 *         can not answer the query
+	 */
+	<T> List<T> findElements(MApplicationElement searchRoot, String id, Class<T> clazz,
+			List<String> tagsToMatch, int searchFlags) {
+		if (!foreignRefs.isEmpty() || !entries.containsKey(searchRoot)) {
+			return null;
+		}
+		if (MBindingContext.class.equals(clazz)) {
+			// the walk follows the binding contexts of the application, which are not contained
+			// in it
+			return null;
+		}
+		if (searchFlags == 0) {
+			return new ArrayList<T>();
+		}
+		Collection<MApplicationElement> candidates = getCandidates(id, clazz, tagsToMatch);
+		if (candidates == null) {
+			return null;
+		}
+
+		PathFinder finder = new PathFinder(searchRoot, clazz, searchFlags);
+		final Map<MApplicationElement, int[]> paths = new IdentityHashMap<MApplicationElement, int[]>();
+		for (MApplicationElement candidate : candidates) {
+			if (!matches(candidate, id, clazz, tagsToMatch)) {
+				continue;
+			}
+			int[] path = finder.getPath(candidate);
+			if (finder.undecided) {
+				return null;
+			}
+			if (path != null) {
+				paths.put(candidate, path);
+			}
+		}
+
+		List<MApplicationElement> found = new ArrayList<MApplicationElement>(paths.keySet());
+		Collections.sort(found, new Comparator<MApplicationElement>() {
+			@Override
+			public int compare(MApplicationElement e1, MApplicationElement e2) {
+				return comparePaths(paths.get(e1), paths.get(e2));
+			}
+		});
+		List<T> elements = new ArrayList<T>(found.size());
+		for (MApplicationElement element : found) {
+			elements.add((T) element);
+		}
+		return elements;
+	}
+
+	/**
+	 * Returns the smallest bucket of elements which may match, or <code>null</code> if every
+	 * element may match.
+	 */
+	private Collection<MApplicationElement> getCandidates(String id, Class<?> clazz,
+			List<String> tagsToMatch) {
+		if (id != null) {
+			Set<MApplicationElement> elements = elementsById.get(id);
+			return elements == null ? Collections.<MApplicationElement> emptySet() : elements;
+		}
+		if (tagsToMatch != null && !tagsToMatch.isEmpty()) {
+			Set<MApplicationElement> smallest = null;
+			for (String tag : tagsToMatch) {
+				Set<MApplicationElement> elements = elementsByTag.get(tag);
+				if (elements == null) {
+					return Collections.emptySet();
+				}
+				if (smallest == null || elements.size() < smallest.size()) {
+					smallest = elements;
+				}
+			}
+			return smallest;
+		}
+		if (clazz != null) {
+			List<MApplicationElement> elements = new ArrayList<MApplicationElement>();
+			for (Map.Entry<Class<?>, Set<MApplicationElement>> e : elementsByClass.entrySet()) {
+				if (clazz.isAssignableFrom(e.getKey())) {
+					elements.addAll(e.getValue());
+				}
+			}
+			return elements;
+		}
+		return null;
+	}
+
+	private static boolean matches(MApplicationElement element, String id, Class<?> clazz,
+			List<String> tagsToMatch) {
+		if (id != null && !id.equals(element.getElementId())) {
+			return false;
+		}
+		if (clazz != null && !clazz.isInstance(element)) {
+			return false;
+		}
+		return tagsToMatch == null || element.getTags().containsAll(tagsToMatch);
+	}
+
+	private static int comparePaths(int[] path1, int[] path2) {
+		int length = Math.min(path1.length, path2.length);
+		for (int i = 0; i < length; i++) {
+			if (path1[i] != path2[i]) {
+				return path1[i] < path2[i] ? -1 : 1;
+			}
+		}
+		return path1.length - path2.length;
+	}
+
+	/**
+	 * Computes the first path on which the walk from the search root reaches an element. A path
+	 * holds the rank of the feature and the index in the feature of every step.
+	 */
+	private final class PathFinder {
+		private final MApplicationElement searchRoot;
+		private final Class<?> clazz;
+		private final int searchFlags;
+
+		// paths of the elements looked at so far, null if the walk does not reach the element
+		private final Map<Object, int[]> paths = new IdentityHashMap<Object, int[]>();
+		private final Set<Object> inProgress = Collections
+				.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+
+		// whether the path of an element can not be computed
+		boolean undecided;
+
+		PathFinder(MApplicationElement searchRoot, Class<?> clazz, int searchFlags) {
+			this.searchRoot = searchRoot;
+			this.clazz = clazz;
+			this.searchFlags = searchFlags;
+		}
+
+		int[] getPath(Object element) {
+			if (element == searchRoot) {
+				return new int[0];
+			}
+			if (paths.containsKey(element)) {
+				return paths.get(element);
+			}
+			if (!inProgress.add(element)) {
+				// placeholders referencing their own ancestors
+				undecided = true;
+				return null;
+			}
+			int[] path = null;
+
+			EObject eObject = (EObject) element;
+			EObject container = eObject.eContainer();
+			if (container instanceof MApplicationElement) {
+				EStructuralFeature feature = eObject.eContainmentFeature();
+				int rank = getRank(container, feature, element);
+				if (rank == UNDECIDED) {
+					undecided = true;
+				} else if (rank != NOT_VISITED) {
+					int[] containerPath = getPath(container);
+					if (containerPath != null) {
+						int index = feature.isMany() ? ((List<?>) container.eGet(feature))
+								.indexOf(element) : 0;
+						path = append(containerPath, rank, index);
+					}
+				}
+			}
+
+			Set<MPlaceholder> placeholders = placeholdersByRef.get(element);
+			if (placeholders != null
+					&& (!(element instanceof MArea) || (searchFlags & EModelService.IN_SHARED_AREA) != 0)) {
+				for (MPlaceholder placeholder : placeholders) {
+					int[] placeholderPath = getPath(placeholder);
+					if (placeholderPath != null) {
+						int[] refPath = append(placeholderPath, REF, 0);
+						if (path == null || comparePaths(refPath, path) < 0) {
+							path = refPath;
+						}
+					}
+				}
+			}
+
+			inProgress.remove(element);
+			paths.put(element, path);
+			return path;
+		}
+
+		/**
+		 * Returns the rank of the feature holding the child if the walk visits it, or
+		 * {@link #NOT_VISITED} or {@link #UNDECIDED}.
+		 */
+		private int getRank(Object container, EStructuralFeature feature, Object child) {
+			boolean anywhere = searchFlags == EModelService.ANYWHERE;
+			if (feature == UiPackageImpl.Literals.ELEMENT_CONTAINER__CHILDREN) {
+				if (!(container instanceof MPerspectiveStack)) {
+					return CHILDREN;
+				}
+				if ((searchFlags & EModelService.IN_ANY_PERSPECTIVE) != 0) {
+					return CHILDREN;
+				}
+				if ((searchFlags & EModelService.IN_ACTIVE_PERSPECTIVE) != 0) {
+					return ((MPerspectiveStack) container).getSelectedElement() == child ? CHILDREN
+							: NOT_VISITED;
+				}
+				// the walk searches the shared areas below the stack
+				return (searchFlags & EModelService.IN_SHARED_AREA) != 0 ? UNDECIDED : NOT_VISITED;
+			}
+			if (feature == BasicPackageImpl.Literals.TRIMMED_WINDOW__TRIM_BARS) {
+				return (searchFlags & EModelService.IN_TRIM) != 0 ? TRIM_BARS : NOT_VISITED;
+			}
+			if (feature == BasicPackageImpl.Literals.WINDOW__WINDOWS
+					|| feature == AdvancedPackageImpl.Literals.PERSPECTIVE__WINDOWS) {
+				return WINDOWS;
+			}
+			if (feature == BasicPackageImpl.Literals.WINDOW__MAIN_MENU) {
+				return (searchFlags & EModelService.IN_MAIN_MENU) != 0 ? MAIN_MENU : NOT_VISITED;
+			}
+			if (feature == BasicPackageImpl.Literals.PART__MENUS) {
+				return (searchFlags & EModelService.IN_PART) != 0 ? PART_MENUS : NOT_VISITED;
+			}
+			if (feature == BasicPackageImpl.Literals.PART__TOOLBAR) {
+				return (searchFlags & EModelService.IN_PART) != 0 ? PART_TOOLBAR : NOT_VISITED;
+			}
+			if (feature == CommandsPackageImpl.Literals.HANDLER_CONTAINER__HANDLERS) {
+				if (!MHandler.class.equals(clazz)) {
+					return NOT_VISITED;
+				}
+				if (container instanceof MApplication) {
+					return anywhere ? APPLICATION_LISTS : NOT_VISITED;
+				}
+				if (container instanceof MWindow) {
+					return anywhere ? WINDOW_HANDLERS : NOT_VISITED;
+				}
+				if (container instanceof MPart) {
+					return (searchFlags & EModelService.IN_PART) != 0 ? PART_HANDLERS
+							: NOT_VISITED;
+				}
+				return NOT_VISITED;
+			}
+			if (feature == ApplicationPackageImpl.Literals.APPLICATION__COMMANDS) {
+				return anywhere && MCommand.class.equals(clazz) ? APPLICATION_LISTS : NOT_VISITED;
+			}
+			if (feature == CommandsPackageImpl.Literals.BINDING_CONTEXT__CHILDREN) {
+				return anywhere ? APPLICATION_LISTS : NOT_VISITED;
+			}
+			if (feature == CommandsPackageImpl.Literals.BINDING_TABLE_CONTAINER__BINDING_TABLES
+					&& container instanceof MApplication) {
+				return anywhere
+						&& (MBindingTable.class.equals(clazz) || MKeyBinding.class.equals(clazz)) ? APPLICATION_LISTS
+						: NOT_VISITED;
+			}
+			if (feature == CommandsPackageImpl.Literals.BINDING_TABLE__BINDINGS) {
+				return APPLICATION_LISTS;
+			}
+			// the walk does not visit any other feature
+			return NOT_VISITED;
+		}
+
+		private int[] append(int[] path, int rank, int index) {
+			int[] result = new int[path.length + 2];
+			System.arraycopy(path, 0, result, 0, path.length);
+			result[path.length] = rank;
+			result[path.length + 1] = index;
+			return result;
+		}
+	}
+}
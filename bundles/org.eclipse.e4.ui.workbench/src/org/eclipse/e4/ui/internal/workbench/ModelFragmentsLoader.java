@@ -0,0 +1,264 @@
+/*******************************************************************************
+ * Copyright (c) 2015 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.e4.ui.internal.workbench;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import org.eclipse.e4.core.services.log.Logger;
+import org.eclipse.emf.common.util.EList;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+
+/**
+ * Loads the model fragments of the contributing bundles on a pool of worker threads, and caches
+ * them in a single resource for an unchanged set of contributing bundles.
+ * <p>
+ * The fragments are returned in the order of their locations, so they are merged in the same
+ * order as when loading them one after the other.
+ * </p>
+ */
+public final class ModelFragmentsLoader {
+
+	private static final String CACHE_FILE = "fragments.xmi"; //$NON-NLS-1$
+	private static final String KEY_FILE = "fragments.key"; //$NON-NLS-1$
+	private static final String ENCODING = "UTF-8"; //$NON-NLS-1$
+
+	private final ResourceSet resourceSet;
+	private final Logger logger;
+
+	/**
+	 * @param resourceSet
+	 *            the resource set of the application, the loaded resources are added to it
+	 * @param logger
+	 */
+	public ModelFragmentsLoader(ResourceSet resourceSet, Logger logger) {
+		this.resourceSet = resourceSet;
+		this.logger = logger;
+	}
+
+	/**
+	 * Loads the roots of the fragment resources.
+	 *
+	 * @param uris
+	 *            the locations of the fragments, <code>null</code> for invalid locations
+	 * @param bundleNames
+	 *            the names of the contributing bundles
+	 * @param cacheDirectory
+	 *            the directory of the cache, or <code>null</code>
+	 * @param key
+	 *            the key of the fragments in the cache, or <code>null</code> to not use the cache
+	 * @return the root of each fragment resource, <code>null</code> for the fragments which could
+	 *         not be loaded or are empty
+	 */
+	public Object[] load(URI[] uris, String[] bundleNames, File cacheDirectory, String key) {
+		boolean useCache = cacheDirectory != null && key != null;
+		if (useCache) {
+			Object[] roots = loadCache(cacheDirectory, key, uris.length);
+			if (roots != null) {
+				return roots;
+			}
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Math.max(1, Math.min(uris.length, Runtime.getRuntime().availableProcessors())),
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, "Model Fragments Loader"); //$NON-NLS-1$
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		Object[] roots;
+		try {
+			roots = loadParallel(executor, uris, bundleNames);
+		} finally {
+			executor.shutdown();
+		}
+		if (useCache && isComplete(roots)) {
+			writeCache(cacheDirectory, key, roots);
+		}
+		return roots;
+	}
+
+	private Object[] loadParallel(ExecutorService executor, URI[] uris, String[] bundleNames) {
+		List<Future<Resource>> futures = new ArrayList<Future<Resource>>(uris.length);
+		for (final URI uri : uris) {
+			if (uri == null) {
+				futures.add(null);
+				continue;
+			}
+			// resource sets are not thread safe, each fragment is loaded in its own one
+			final ResourceSetImpl workerSet = new ResourceSetImpl();
+			workerSet.setResourceFactoryRegistry(resourceSet.getResourceFactoryRegistry());
+			workerSet.setPackageRegistry(resourceSet.getPackageRegistry());
+			workerSet.getLoadOptions().putAll(resourceSet.getLoadOptions());
+			futures.add(executor.submit(new Callable<Resource>() {
+				@Override
+				public Resource call() throws Exception {
+					return workerSet.getResource(uri, true);
+				}
+			}));
+		}
+
+		Object[] roots = new Object[uris.length];
+		for (int i = 0; i < uris.length; i++) {
+			Future<Resource> future = futures.get(i);
+			if (future == null) {
+				continue;
+			}
+			Resource resource;
+			try {
+				resource = future.get();
+			} catch (ExecutionException e) {
+				logger.warn(e.getCause(), "Unable to read model extension from \"" + uris[i].toString() + "\" of \"" + bundleNames[i] + "\""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				continue;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				logger.warn(e, "Interrupted while reading model extension from \"" + uris[i].toString() + "\" of \"" + bundleNames[i] + "\""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				continue;
+			}
+			// moves the resource to the resource set of the application
+			resourceSet.getResources().add(resource);
+			EList<EObject> contents = resource.getContents();
+			if (!contents.isEmpty()) {
+				roots[i] = contents.get(0);
+			}
+		}
+		return roots;
+	}
+
+	private static boolean isComplete(Object[] roots) {
+		for (Object root : roots) {
+			if (root == null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private Object[] loadCache(File cacheDirectory, String key, int count) {
+		File keyFile = new File(cacheDirectory, KEY_FILE);
+		File cacheFile = new File(cacheDirectory, CACHE_FILE);
+		if (!keyFile.isFile() || !cacheFile.isFile()) {
+			return null;
+		}
+		try {
+			if (!key.equals(readKey(keyFile))) {
+				return null;
+			}
+			URI uri = URI.createFileURI(cacheFile.getAbsolutePath());
+			Resource resource = resourceSet.getResourceFactoryRegistry().getFactory(uri)
+					.createResource(uri);
+			resource.load(resourceSet.getLoadOptions());
+			if (resource.getContents().size() != count) {
+				return null;
+			}
+			resourceSet.getResources().add(resource);
+			return resource.getContents().toArray();
+		} catch (IOException e) {
+			logger.warn(e, "Unable to read the cached model extensions"); //$NON-NLS-1$
+		} catch (RuntimeException e) {
+			logger.warn(e, "Unable to read the cached model extensions"); //$NON-NLS-1$
+		}
+		keyFile.delete();
+		return null;
+	}
+
+	/**
+	 * Copies the fragments, they are changed while merging, and writes the copies. The copies
+	 * may reference elements of the application, whose ids are looked up while saving, so the
+	 * cache is written before the fragments are merged.
+	 */
+	private void writeCache(File cacheDirectory, String key, Object[] roots) {
+		File keyFile = new File(cacheDirectory, KEY_FILE);
+		File cacheFile = new File(cacheDirectory, CACHE_FILE);
+		URI uri = URI.createFileURI(cacheFile.getAbsolutePath());
+		Resource resource = resourceSet.getResourceFactoryRegistry().getFactory(uri)
+				.createResource(uri);
+		if (!(resource instanceof E4XMIResource)) {
+			return;
+		}
+		E4XMIResource cache = (E4XMIResource) resource;
+
+		EcoreUtil.Copier copier = new EcoreUtil.Copier();
+		for (Object root : roots) {
+			cache.getContents().add(copier.copy((EObject) root));
+		}
+		copier.copyReferences();
+		// keep the ids, they identify the elements in the application model
+		for (Map.Entry<EObject, EObject> entry : copier.entrySet()) {
+			Resource original = entry.getKey().eResource();
+			if (original instanceof E4XMIResource) {
+				String id = ((E4XMIResource) original).getInternalId(entry.getKey());
+				if (id != null) {
+					cache.setID(entry.getValue(), id);
+				}
+			}
+		}
+
+		try {
+			if (!cacheDirectory.isDirectory() && !cacheDirectory.mkdirs()) {
+				return;
+			}
+			// the cache is valid once the key is written
+			keyFile.delete();
+			cache.save(null);
+			writeKey(keyFile, key);
+		} catch (IOException e) {
+			logger.warn(e, "Unable to cache the model extensions"); //$NON-NLS-1$
+			keyFile.delete();
+		}
+	}
+
+	private static String readKey(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			byte[] bytes = new byte[(int) file.length()];
+			int offset = 0;
+			int read;
+			while (offset < bytes.length
+					&& (read = in.read(bytes, offset, bytes.length - offset)) != -1) {
+				offset += read;
+			}
+			return new String(bytes, 0, offset, ENCODING);
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void writeKey(File file, String key) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(key.getBytes(ENCODING));
+		} finally {
+			out.close();
+		}
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010, 2014 IBM Corporation and others.
+ * Copyright (c) 2010, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,7 +13,9 @@
 package org.eclipse.e4.ui.internal.workbench;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.IExtensionRegistry;
 import org.eclipse.e4.core.contexts.IEclipseContext;
@@ -73,6 +75,9 @@ public class ModelServiceImpl implements EModelService {
 	/** Factory which is able to create {@link MApplicationElement}s in a generic way. */
 	private GenericMApplicationElementFactoryImpl mApplicationElementFactory;
 
+	/** Index of the application searched last, used instead of walking the model. */
+	private ModelElementIndex index;
+
 	// Cleans up after a hosted element is disposed
 	private EventHandler hostedElementHandler = new EventHandler() {
 
@@ -138,7 +143,7 @@ public class ModelServiceImpl implements EModelService {
 	}
 
 	private <T> void findElementsRecursive(MApplicationElement searchRoot, Class<T> clazz,
-			Selector matcher, List<T> elements, int searchFlags) {
+			Selector matcher, Set<T> elements, int searchFlags) {
 		Assert.isLegal(searchRoot != null);
 		if (searchFlags == 0) {
 			return;
@@ -147,9 +152,7 @@ public class ModelServiceImpl implements EModelService {
 		// are *we* a match ?
 		boolean classMatch = clazz == null ? true : clazz.isInstance(searchRoot);
 		if (classMatch && matcher.select(searchRoot)) {
-			if (!elements.contains(searchRoot)) {
-				elements.add((T) searchRoot);
-			}
+			elements.add((T) searchRoot);
 		}
 		if (searchRoot instanceof MApplication && (searchFlags == ANYWHERE)) {
 			MApplication app = (MApplication) searchRoot;
@@ -291,13 +294,16 @@ public class ModelServiceImpl implements EModelService {
 	@Override
 	public <T> List<T> findElements(MUIElement searchRoot, String id, Class<T> clazz,
 			List<String> tagsToMatch) {
-		ElementMatcher matcher = new ElementMatcher(id, clazz, tagsToMatch);
-		return findElements(searchRoot, clazz, ANYWHERE, matcher);
+		return findElements(searchRoot, id, clazz, tagsToMatch, ANYWHERE);
 	}
 
 	@Override
 	public <T> List<T> findElements(MUIElement searchRoot, String id, Class<T> clazz,
 			List<String> tagsToMatch, int searchFlags) {
+		List<T> elements = findIndexedElements(searchRoot, id, clazz, tagsToMatch, searchFlags);
+		if (elements != null) {
+			return elements;
+		}
 		ElementMatcher matcher = new ElementMatcher(id, clazz, tagsToMatch);
 		return findElements(searchRoot, clazz, searchFlags, matcher);
 	}
@@ -305,18 +311,37 @@ public class ModelServiceImpl implements EModelService {
 	@Override
 	public <T> List<T> findElements(MApplicationElement searchRoot, Class<T> clazz,
 			int searchFlags, Selector matcher) {
-		List<T> elements = new ArrayList<T>();
+		Set<T> elements = new LinkedHashSet<T>();
 		findElementsRecursive(searchRoot, clazz, matcher, elements, searchFlags);
-		return elements;
+		return new ArrayList<T>(elements);
 	}
 
 	private <T> List<T> findPerspectiveElements(MUIElement searchRoot, String id,
 			Class<T> clazz,
 			List<String> tagsToMatch) {
-		List<T> elements = new ArrayList<T>();
-		ElementMatcher matcher = new ElementMatcher(id, clazz, tagsToMatch);
-		findElementsRecursive(searchRoot, clazz, matcher, elements, PRESENTATION);
-		return elements;
+		return findElements(searchRoot, id, clazz, tagsToMatch, PRESENTATION);
+	}
+
+	/**
+	 * Finds the elements matching the id, class and tags in the index of the application
+	 * containing the search root.
+	 *
+	 * @return the elements, or <code>null</code> if the model has to be walked
+	 */
+	private <T> List<T> findIndexedElements(MUIElement searchRoot, String id, Class<T> clazz,
+			List<String> tagsToMatch, int searchFlags) {
+		Assert.isLegal(searchRoot != null);
+		EObject root = EcoreUtil.getRootContainer((EObject) searchRoot);
+		if (!(root instanceof MApplication)) {
+			return null;
+		}
+		if (index == null || index.getApplication() != root) {
+			if (index != null) {
+				index.dispose();
+			}
+			index = new ModelElementIndex((MApplication) root);
+		}
+		return index.findElements(searchRoot, id, clazz, tagsToMatch, searchFlags);
 	}
 
 	@Override
@@ -718,7 +743,18 @@ public class ModelServiceImpl implements EModelService {
 
 	@Override
 	public void resetPerspectiveModel(MPerspective persp, MWindow window) {
-		resetPerspectiveModel(persp, window, true);
+		// deliver the events of the reset together
+		UIEventPublisher publisher = appContext.get(UIEventPublisher.class);
+		if (publisher != null) {
+			publisher.beginBatch();
+		}
+		try {
+			resetPerspectiveModel(persp, window, true);
+		} finally {
+			if (publisher != null) {
+				publisher.endBatch();
+			}
+		}
 	}
 
 	private void resetPerspectiveModel(MPerspective persp, MWindow window,
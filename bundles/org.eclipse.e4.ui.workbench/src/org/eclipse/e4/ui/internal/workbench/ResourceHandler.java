@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2014 IBM Corporation and others.
+ * Copyright (c) 2009, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -22,6 +22,7 @@ import java.net.URL;
 import java.net.URLConnection;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
@@ -46,12 +47,15 @@ import org.eclipse.e4.ui.workbench.IWorkbench;
 import org.eclipse.e4.ui.workbench.modeling.IModelReconcilingService;
 import org.eclipse.e4.ui.workbench.modeling.ModelDelta;
 import org.eclipse.e4.ui.workbench.modeling.ModelReconciler;
+import org.eclipse.emf.common.notify.Notification;
 import org.eclipse.emf.common.util.TreeIterator;
 import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EStructuralFeature;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.URIConverter;
 import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.EContentAdapter;
 import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.osgi.service.datalocation.Location;
 import org.osgi.framework.Bundle;
@@ -62,6 +66,9 @@ import org.w3c.dom.Document;
  */
 public class ResourceHandler implements IModelResourceHandler {
 
+	private static final String XMI_FILE = "workbench.xmi"; //$NON-NLS-1$
+	private static final String BINARY_FILE = "workbench." + E4BinaryResource.FILE_EXTENSION; //$NON-NLS-1$
+
 	private ResourceSetImpl resourceSetImpl;
 	private Resource resource;
 
@@ -80,6 +87,17 @@ public class ResourceHandler implements IModelResourceHandler {
 	@Named(E4Workbench.INSTANCE_LOCATION)
 	private Location instanceLocation;
 
+	@Inject
+	@Optional
+	@Named(E4Workbench.BINARY_MODEL)
+	private Boolean binaryModel;
+
+	/**
+	 * Tracks the changes of the persisted model in the binary format, to only save it when it
+	 * changed.
+	 */
+	private ModificationTracker modificationTracker;
+
 	/**
 	 * Dictates whether the model should be stored using EMF or with the merging algorithm.
 	 * https://bugs.eclipse.org/bugs/show_bug.cgi?id=295524
@@ -110,6 +128,8 @@ public class ResourceHandler implements IModelResourceHandler {
 		resourceSetImpl = new ResourceSetImpl();
 		resourceSetImpl.getResourceFactoryRegistry().getExtensionToFactoryMap()
 				.put(Resource.Factory.Registry.DEFAULT_EXTENSION, new E4XMIResourceFactory());
+		resourceSetImpl.getResourceFactoryRegistry().getExtensionToFactoryMap()
+				.put(E4BinaryResource.FILE_EXTENSION, new E4BinaryResourceFactory());
 
 		resourceSetImpl.getPackageRegistry().put(ApplicationPackageImpl.eNS_URI,
 				ApplicationPackageImpl.eINSTANCE);
@@ -208,14 +228,14 @@ public class ResourceHandler implements IModelResourceHandler {
 		URI restoreLocation = null;
 
 		if (saveAndRestore) {
-			workbenchData = getWorkbenchSaveLocation();
+			if (clearPersistedState) {
+				new File(getBaseLocation(), XMI_FILE).delete();
+				new File(getBaseLocation(), BINARY_FILE).delete();
+			}
+			workbenchData = getWorkbenchRestoreLocation();
 			restoreLocation = URI.createFileURI(workbenchData.getAbsolutePath());
 		}
 
-		if (clearPersistedState && workbenchData != null && workbenchData.exists()) {
-			workbenchData.delete();
-		}
-
 		// last stored time-stamp
 		long restoreLastModified = restoreLocation == null ? 0L : new File(
 				restoreLocation.toFileString()).lastModified();
@@ -237,6 +257,9 @@ public class ResourceHandler implements IModelResourceHandler {
 							"The persisted workbench has no top-level windows, so reinitializing with defaults."); //$NON-NLS-1$
 				}
 				resource = null;
+			} else if (!workbenchData.equals(getWorkbenchSaveLocation())) {
+				// the model was saved in the other format
+				resource = convertResource(resource);
 			}
 		}
 		if (resource == null) {
@@ -270,13 +293,27 @@ public class ResourceHandler implements IModelResourceHandler {
 			processor.process();
 		}
 
+		if (saveAndRestore && isBinaryModel()) {
+			modificationTracker = new ModificationTracker((EObject) appElement);
+			((EObject) appElement).eAdapters().add(modificationTracker);
+		}
+
 		return resource;
 	}
 
 	@Override
 	public void save() throws IOException {
-		if (saveAndRestore)
+		if (saveAndRestore) {
+			// the binary model is only written when it changed
+			if (modificationTracker != null && !modificationTracker.modified
+					&& resource.getContents().contains(modificationTracker.application)) {
+				return;
+			}
 			resource.save(null);
+			if (modificationTracker != null) {
+				modificationTracker.modified = false;
+			}
+		}
 	}
 
 	/**
@@ -301,11 +338,56 @@ public class ResourceHandler implements IModelResourceHandler {
 		return resourceSetImpl.createResource(URI.createURI("workbench.xmi")); //$NON-NLS-1$
 	}
 
+	private boolean isBinaryModel() {
+		return binaryModel != null && binaryModel.booleanValue();
+	}
+
 	private File getWorkbenchSaveLocation() {
-		File workbenchData = new File(getBaseLocation(), "workbench.xmi"); //$NON-NLS-1$
+		File workbenchData = new File(getBaseLocation(), isBinaryModel() ? BINARY_FILE : XMI_FILE);
 		return workbenchData;
 	}
 
+	/**
+	 * @return the most recently saved model, in either format
+	 */
+	private File getWorkbenchRestoreLocation() {
+		File xmiData = new File(getBaseLocation(), XMI_FILE);
+		File binaryData = new File(getBaseLocation(), BINARY_FILE);
+		if (binaryData.lastModified() > xmiData.lastModified()) {
+			return binaryData;
+		}
+		if (xmiData.exists()) {
+			return xmiData;
+		}
+		return getWorkbenchSaveLocation();
+	}
+
+	/**
+	 * Moves the contents of the resource to a resource of the save location, keeping the ids.
+	 */
+	private Resource convertResource(Resource source) {
+		Map<EObject, String> ids = new HashMap<EObject, String>();
+		if (source instanceof E4XMIResource) {
+			TreeIterator<EObject> it = source.getAllContents();
+			while (it.hasNext()) {
+				EObject object = it.next();
+				String id = ((E4XMIResource) source).getID(object);
+				if (id != null) {
+					ids.put(object, id);
+				}
+			}
+		}
+		Resource target = createResource();
+		target.getContents().addAll(source.getContents());
+		if (target instanceof E4XMIResource) {
+			for (Map.Entry<EObject, String> entry : ids.entrySet()) {
+				((E4XMIResource) target).setID(entry.getKey(), entry.getValue());
+			}
+		}
+		resourceSetImpl.getResources().remove(source);
+		return target;
+	}
+
 	private File getBaseLocation() {
 		File baseLocation;
 		try {
@@ -398,4 +480,44 @@ public class ResourceHandler implements IModelResourceHandler {
 
 		return appLastModified;
 	}
+
+	/**
+	 * Records whether a persisted feature of the model changed. Changes of transient features, and
+	 * in transient containments, are ignored.
+	 */
+	private static class ModificationTracker extends EContentAdapter {
+		final EObject application;
+		boolean modified = true;
+
+		ModificationTracker(EObject application) {
+			this.application = application;
+		}
+
+		@Override
+		public void notifyChanged(Notification notification) {
+			super.notifyChanged(notification);
+			if (modified || notification.isTouch()) {
+				return;
+			}
+			int eventType = notification.getEventType();
+			if (eventType == Notification.REMOVING_ADAPTER || eventType == Notification.RESOLVE) {
+				return;
+			}
+			Object feature = notification.getFeature();
+			if (feature instanceof EStructuralFeature
+					&& ((EStructuralFeature) feature).isTransient()) {
+				return;
+			}
+			Object notifier = notification.getNotifier();
+			if (notifier instanceof EObject) {
+				for (EObject object = (EObject) notifier; object.eContainer() != null; object = object
+						.eContainer()) {
+					if (object.eContainmentFeature().isTransient()) {
+						return;
+					}
+				}
+			}
+			modified = true;
+		}
+	}
 }
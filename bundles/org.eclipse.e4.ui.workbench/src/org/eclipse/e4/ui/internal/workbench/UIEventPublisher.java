@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2012 IBM Corporation and others.
+ * Copyright (c) 2009, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,8 +10,15 @@
  *******************************************************************************/
 package org.eclipse.e4.ui.internal.workbench;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.e4.core.contexts.IEclipseContext;
 import org.eclipse.e4.core.services.events.IEventBroker;
@@ -23,6 +30,7 @@ import org.eclipse.e4.ui.workbench.UIEvents;
 import org.eclipse.e4.ui.workbench.UIEvents.EventTags;
 import org.eclipse.e4.ui.workbench.UIEvents.EventTypes;
 import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.ecore.EAttribute;
 import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.EStructuralFeature;
 import org.eclipse.emf.ecore.util.EContentAdapter;
@@ -32,8 +40,87 @@ import org.eclipse.emf.ecore.util.EContentAdapter;
  */
 public class UIEventPublisher extends EContentAdapter {
 
+	/**
+	 * The name of the event property holding the number of model notifications folded into an
+	 * event delivered at the end of a batch, as an {@link Integer}.
+	 *
+	 * @see #beginBatch()
+	 */
+	public static final String NOTIFICATION_COUNT = "NotificationCount"; //$NON-NLS-1$
+
+	/**
+	 * The attributes the renderers react to with the state of the model at the time of the change,
+	 * their events are never deferred.
+	 */
+	private static final Set<String> LIFECYCLE_ATTRIBUTES = new HashSet<String>(Arrays.asList(
+			UIEvents.UIElement.TOBERENDERED, UIEvents.UIElement.VISIBLE,
+			UIEvents.UIElement.WIDGET, UIEvents.UIElement.RENDERER,
+			UIEvents.Contribution.OBJECT, UIEvents.Context.CONTEXT));
+
+	/**
+	 * An event collected during a batch.
+	 */
+	private static final class PendingEvent {
+		String topic;
+		final Map<String, Object> argMap;
+		final Object oldValue;
+		int notificationCount = 1;
+
+		// the element and feature of an event folding the values of list changes
+		Object element;
+		Object feature;
+
+		PendingEvent(String topic, Map<String, Object> argMap, Object oldValue) {
+			this.topic = topic;
+			this.argMap = argMap;
+			this.oldValue = oldValue;
+		}
+	}
+
+	/**
+	 * The key of the SET events of an attribute of an element, which are folded into one event.
+	 */
+	private static final class SetKey {
+		private final Object element;
+		private final String topic;
+
+		SetKey(Object element, String topic) {
+			this.element = element;
+			this.topic = topic;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(element) * 31 + topic.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof SetKey)) {
+				return false;
+			}
+			SetKey other = (SetKey) obj;
+			return element == other.element && topic.equals(other.topic);
+		}
+	}
+
 	private IEclipseContext context;
 
+	// the topics of the features, by EMF event type
+	private final Map<EStructuralFeature, String[]> featureTopics = new HashMap<EStructuralFeature, String[]>();
+
+	// reused for the synchronous events, the broker copies it into the event
+	private final Map<String, Object> sharedArgMap = new HashMap<String, Object>();
+	private boolean sharedArgMapInUse;
+
+	private int batchDepth;
+	private boolean asyncDelivery;
+
+	// the events of the current batch, in the order of their last change
+	private final Map<Object, PendingEvent> pendingEvents = new LinkedHashMap<Object, PendingEvent>();
+	// the event of the last change of the current batch
+	private PendingEvent lastEvent;
+
 	/**
 	 * @param e4Context
 	 */
@@ -41,6 +128,64 @@ public class UIEventPublisher extends EContentAdapter {
 		this.context = e4Context;
 	}
 
+	/**
+	 * Starts collecting the events of the model changes instead of sending them. The events are
+	 * delivered when the outermost batch ends.
+	 * <p>
+	 * The SET events of an attribute of an element are folded into one event, holding the value
+	 * before the first and after the last change, and the number of notifications in the
+	 * {@link #NOTIFICATION_COUNT} property. Attributes which end with their original value send no
+	 * event. Successive additions to, or removals from, a list attribute of an element, like its
+	 * tags, are folded into one ADD_MANY or REMOVE_MANY event without a position. The other events
+	 * are delivered one by one, in the order of the changes.
+	 * </p>
+	 * <p>
+	 * The renderers handle the structural changes of the model, and the changes of the attributes
+	 * like toBeRendered or visible, with the state of the model at the time of the change. These
+	 * events are sent immediately, after the events collected before them, so that the order of
+	 * the events is kept.
+	 * </p>
+	 *
+	 * @see #endBatch()
+	 */
+	public void beginBatch() {
+		batchDepth++;
+	}
+
+	/**
+	 * Ends a batch, delivering the collected events if it is the outermost one.
+	 *
+	 * @throws IllegalStateException
+	 *             if no batch was started
+	 * @see #beginBatch()
+	 */
+	public void endBatch() {
+		if (batchDepth == 0) {
+			throw new IllegalStateException("No batch was started"); //$NON-NLS-1$
+		}
+		if (--batchDepth == 0) {
+			deliverPendingEvents();
+		}
+	}
+
+	/**
+	 * @return whether the events of the model changes are collected
+	 */
+	public boolean isBatching() {
+		return batchDepth > 0;
+	}
+
+	/**
+	 * Sets whether the events collected during a batch are posted, and delivered asynchronously,
+	 * instead of being sent when the batch ends.
+	 *
+	 * @param asyncDelivery
+	 *            <code>true</code> to post the events
+	 */
+	public void setAsyncDelivery(boolean asyncDelivery) {
+		this.asyncDelivery = asyncDelivery;
+	}
+
 	@Override
 	public void notifyChanged(Notification notification) {
 		super.notifyChanged(notification);
@@ -49,14 +194,181 @@ public class UIEventPublisher extends EContentAdapter {
 		if (notification.isTouch())
 			return;
 
+		if (batchDepth > 0) {
+			if (isDeferrable(notification)) {
+				collect(notification);
+				return;
+			}
+			deliverPendingEvents();
+		}
+
 		// Format the EMF event as an E4 UIEvent
-		Map<String, Object> argMap = new HashMap<String, Object>();
+		Map<String, Object> argMap;
+		if (sharedArgMapInUse) {
+			// a subscriber changed the model
+			argMap = new HashMap<String, Object>();
+		} else {
+			argMap = sharedArgMap;
+			sharedArgMapInUse = true;
+		}
+		try {
+			String topic = formatData(notification, argMap);
 
+			if (topic != null) {
+				IEventBroker eventManager = context.get(IEventBroker.class);
+				eventManager.send(topic, argMap);
+			}
+		} finally {
+			if (argMap == sharedArgMap) {
+				sharedArgMap.clear();
+				sharedArgMapInUse = false;
+			}
+		}
+	}
+
+	/**
+	 * @return whether the event of the notification may be delivered after later changes of the
+	 *         model
+	 */
+	private boolean isDeferrable(Notification notification) {
+		if (!(notification.getNotifier() instanceof MApplicationElement)) {
+			// the changes of the persisted state and transient data values
+			return true;
+		}
+		Object feature = notification.getFeature();
+		return feature instanceof EAttribute
+				&& !LIFECYCLE_ATTRIBUTES.contains(((EAttribute) feature).getName());
+	}
+
+	private void collect(Notification notification) {
+		Map<String, Object> argMap = new HashMap<String, Object>();
 		String topic = formatData(notification, argMap);
+		if (topic == null) {
+			return;
+		}
+		Object notifier = notification.getNotifier();
+		int eventType = notification.getEventType();
+		if (!(notifier instanceof MApplicationElement)) {
+			addPendingEvent(new Object(), new PendingEvent(topic, argMap, null));
+			return;
+		}
+		if (eventType != Notification.SET || notification.getPosition() != Notification.NO_INDEX) {
+			if (!foldListChange(notification, argMap)) {
+				PendingEvent event = new PendingEvent(topic, argMap, null);
+				event.element = notifier;
+				event.feature = notification.getFeature();
+				addPendingEvent(new Object(), event);
+			}
+			return;
+		}
+
+		SetKey key = new SetKey(notifier, topic);
+		PendingEvent event = pendingEvents.remove(key);
+		if (event == null) {
+			addPendingEvent(key, new PendingEvent(topic, argMap, notification.getOldValue()));
+			return;
+		}
+		Object newValue = notification.getNewValue();
+		if (event.oldValue == null ? newValue == null : event.oldValue.equals(newValue)) {
+			// back to the original value
+			if (lastEvent == event) {
+				lastEvent = null;
+			}
+			return;
+		}
+		if (newValue != null) {
+			event.argMap.put(EventTags.NEW_VALUE, newValue);
+		} else {
+			event.argMap.remove(EventTags.NEW_VALUE);
+		}
+		if (argMap.containsKey(EventTags.WIDGET)) {
+			event.argMap.put(EventTags.WIDGET, argMap.get(EventTags.WIDGET));
+		}
+		event.notificationCount++;
+		// deliver it in the place of the last change
+		addPendingEvent(key, event);
+	}
 
-		if (topic != null) {
-			IEventBroker eventManager = context.get(IEventBroker.class);
-			eventManager.send(topic, argMap);
+	private void addPendingEvent(Object key, PendingEvent event) {
+		pendingEvents.put(key, event);
+		lastEvent = event;
+	}
+
+	/**
+	 * Folds an addition to or a removal from a list attribute into the event of the previous
+	 * change, if it was of the same kind and changed the same list.
+	 *
+	 * @return whether the change was folded
+	 */
+	private boolean foldListChange(Notification notification, Map<String, Object> argMap) {
+		Object feature = notification.getFeature();
+		if (lastEvent == null || lastEvent.element != notification.getNotifier()
+				|| lastEvent.feature != feature || !(feature instanceof EAttribute)
+				|| !((EAttribute) feature).isMany()) {
+			return false;
+		}
+		Object lastType = lastEvent.argMap.get(EventTags.TYPE);
+		int changeType = notification.getEventType();
+		String valueTag;
+		int eventType;
+		String type;
+		if (isAddition(changeType)
+				&& (EventTypes.ADD.equals(lastType) || EventTypes.ADD_MANY.equals(lastType))) {
+			valueTag = EventTags.NEW_VALUE;
+			eventType = Notification.ADD_MANY;
+			type = EventTypes.ADD_MANY;
+		} else if (isRemoval(changeType)
+				&& (EventTypes.REMOVE.equals(lastType) || EventTypes.REMOVE_MANY.equals(lastType))) {
+			valueTag = EventTags.OLD_VALUE;
+			eventType = Notification.REMOVE_MANY;
+			type = EventTypes.REMOVE_MANY;
+		} else {
+			return false;
+		}
+
+		List<Object> values = new ArrayList<Object>();
+		addValues(values, lastEvent.argMap.get(valueTag));
+		addValues(values, argMap.get(valueTag));
+		lastEvent.argMap.put(valueTag, values);
+		lastEvent.argMap.put(EventTags.TYPE, type);
+		// the positions of the folded changes are not kept
+		lastEvent.argMap.remove(EventTags.POSITION);
+		lastEvent.topic = getTopic((EStructuralFeature) feature, eventType, type);
+		lastEvent.notificationCount++;
+		return true;
+	}
+
+	private static boolean isAddition(int eventType) {
+		return eventType == Notification.ADD || eventType == Notification.ADD_MANY;
+	}
+
+	private static boolean isRemoval(int eventType) {
+		return eventType == Notification.REMOVE || eventType == Notification.REMOVE_MANY;
+	}
+
+	private static void addValues(List<Object> values, Object value) {
+		if (value instanceof Collection<?>) {
+			values.addAll((Collection<?>) value);
+		} else if (value != null) {
+			values.add(value);
+		}
+	}
+
+	private void deliverPendingEvents() {
+		lastEvent = null;
+		if (pendingEvents.isEmpty()) {
+			return;
+		}
+		List<PendingEvent> events = new ArrayList<PendingEvent>(pendingEvents.values());
+		pendingEvents.clear();
+		IEventBroker eventManager = context.get(IEventBroker.class);
+		for (PendingEvent event : events) {
+			event.argMap.put(NOTIFICATION_COUNT, Integer.valueOf(event.notificationCount));
+			if (asyncDelivery) {
+				eventManager.post(event.topic, event.argMap);
+			} else {
+				eventManager.send(event.topic, event.argMap);
+			}
 		}
 	}
 
@@ -114,7 +426,7 @@ public class UIEventPublisher extends EContentAdapter {
 			appElement = (MApplicationElement) notifier;
 			feature = (EStructuralFeature) notification.getFeature();
 			attributeName = feature.getName();
-			topic = getTopic(feature, getEventType(notification));
+			topic = getTopic(feature, notification.getEventType(), getEventType(notification));
 			switch (notification.getEventType()) {
 			case Notification.MOVE:
 				// for MOVE, oldValue is actually the source position
@@ -268,6 +580,23 @@ public class UIEventPublisher extends EContentAdapter {
 		};
 	}
 
+	private String getTopic(EStructuralFeature eFeature, int eventType, String type) {
+		String[] topics = featureTopics.get(eFeature);
+		if (topics == null) {
+			topics = new String[Notification.EVENT_TYPE_COUNT];
+			featureTopics.put(eFeature, topics);
+		}
+		if (eventType < 0 || eventType >= topics.length) {
+			return getTopic(eFeature, type);
+		}
+		String topic = topics[eventType];
+		if (topic == null) {
+			topic = getTopic(eFeature, type);
+			topics[eventType] = topic;
+		}
+		return topic;
+	}
+
 	private String getTopic(EStructuralFeature eFeature, String type) {
 		EClass eContainingClass = eFeature.getEContainingClass();
 		return UIEvents.UIModelTopicBase + UIEvents.TOPIC_SEP
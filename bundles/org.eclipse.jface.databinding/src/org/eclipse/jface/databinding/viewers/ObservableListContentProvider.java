@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2010 IBM Corporation and others.
+ * Copyright (c) 2006, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -17,14 +17,18 @@ package org.eclipse.jface.databinding.viewers;
 import java.util.Set;
 
 import org.eclipse.core.databinding.observable.IObservableCollection;
+import org.eclipse.core.databinding.observable.Realm;
 import org.eclipse.core.databinding.observable.list.IListChangeListener;
 import org.eclipse.core.databinding.observable.list.IObservableList;
 import org.eclipse.core.databinding.observable.list.ListChangeEvent;
+import org.eclipse.core.databinding.observable.list.ListDiff;
+import org.eclipse.core.databinding.observable.list.ListDiffEntry;
 import org.eclipse.core.databinding.observable.list.ListDiffVisitor;
 import org.eclipse.core.databinding.observable.set.IObservableSet;
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.jface.internal.databinding.viewers.ObservableCollectionContentProvider;
 import org.eclipse.jface.internal.databinding.viewers.ViewerElementSet;
+import org.eclipse.jface.internal.databinding.viewers.ViewerUpdater;
 import org.eclipse.jface.viewers.AbstractListViewer;
 import org.eclipse.jface.viewers.AbstractTableViewer;
 import org.eclipse.jface.viewers.IStructuredContentProvider;
@@ -114,25 +118,10 @@ public class ObservableListContentProvider implements
 			if (suspendRedraw[0])
 				viewer.getControl().setRedraw(false);
 			try {
-				event.diff.accept(new ListDiffVisitor() {
-					public void handleAdd(int index, Object element) {
-						viewerUpdater.insert(element, index);
-					}
-
-					public void handleRemove(int index, Object element) {
-						viewerUpdater.remove(element, index);
-					}
-
-					public void handleReplace(int index, Object oldElement,
-							Object newElement) {
-						viewerUpdater.replace(oldElement, newElement, index);
-					}
-
-					public void handleMove(int oldIndex, int newIndex,
-							Object element) {
-						viewerUpdater.move(element, oldIndex, newIndex);
-					}
-				});
+				if (suspendRedraw[0]
+						|| !updateViewerInBulk(event.diff.getDifferences(),
+								event.getObservableList().size()))
+					updateViewer(event.diff);
 			} finally {
 				if (suspendRedraw[0])
 					viewer.getControl().setRedraw(true);
@@ -143,6 +132,64 @@ public class ObservableListContentProvider implements
 			}
 			knownElements.removeAll(knownElementRemovals);
 		}
+
+		private void updateViewer(ListDiff diff) {
+			diff.accept(new ListDiffVisitor() {
+				public void handleAdd(int index, Object element) {
+					viewerUpdater.insert(element, index);
+				}
+
+				public void handleRemove(int index, Object element) {
+					viewerUpdater.remove(element, index);
+				}
+
+				public void handleReplace(int index, Object oldElement,
+						Object newElement) {
+					viewerUpdater.replace(oldElement, newElement, index);
+				}
+
+				public void handleMove(int oldIndex, int newIndex,
+						Object element) {
+					viewerUpdater.move(element, oldIndex, newIndex);
+				}
+			});
+		}
+
+		/**
+		 * Applies a diff which consists only of removals, or only of additions
+		 * appended to the end of the list, with a single call to the viewer.
+		 * This is the common shape of diffs merged by
+		 * {@link Realm#runBatched(Runnable)}. Only done for the built-in
+		 * viewer updaters, which remove elements regardless of their position.
+		 * 
+		 * @return <code>true</code> if the viewer was updated,
+		 *         <code>false</code> if the diff has to be applied entry by
+		 *         entry
+		 */
+		private boolean updateViewerInBulk(ListDiffEntry[] differences,
+				int newSize) {
+			if (!(viewerUpdater instanceof ViewerUpdater)
+					|| differences.length < 2)
+				return false;
+
+			boolean addition = differences[0].isAddition();
+			int firstPosition = newSize - differences.length;
+			Object[] elements = new Object[differences.length];
+			for (int i = 0; i < differences.length; i++) {
+				ListDiffEntry entry = differences[i];
+				if (entry.isAddition() != addition)
+					return false;
+				if (addition && entry.getPosition() != firstPosition + i)
+					return false;
+				elements[i] = entry.getElement();
+			}
+
+			if (addition)
+				viewerUpdater.add(elements);
+			else
+				viewerUpdater.remove(elements);
+			return true;
+		}
 	}
 
 	/**
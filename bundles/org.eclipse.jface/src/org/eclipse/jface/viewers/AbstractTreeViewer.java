@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2013 IBM Corporation and others.
+ * Copyright (c) 2000, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -21,9 +21,11 @@ package org.eclipse.jface.viewers;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.IStatus;
@@ -359,9 +361,20 @@ public abstract class AbstractTreeViewer<E,I> extends ColumnViewer<E,I> {
 
 		// Optimize for no comparator
 		if (comparator == null) {
+			// Without the element map, itemExists scans all items for every
+			// element. Index the existing elements once instead.
+			Set<Object> existingElements = null;
+			if (!usingElementMap() && elements.length > 1) {
+				existingElements = new HashSet<Object>(items.length * 2);
+				for (int i = 0; i < items.length; i++) {
+					existingElements.add(items[i].getData());
+				}
+			}
 			for (int i = 0; i < elements.length; i++) {
 				E element = elements[i];
-				if (itemExists(items, element)) {
+				boolean exists = existingElements == null ? itemExists(items,
+						element) : existingElements.contains(element);
+				if (exists) {
 					internalRefresh(element);
 				} else {
 					createTreeItem(widget, element, -1);
@@ -456,6 +469,11 @@ public abstract class AbstractTreeViewer<E,I> extends ColumnViewer<E,I> {
 	 * Returns the index where the item should be inserted. It uses sorter to
 	 * determine the correct position, if sorter is not assigned, returns the
 	 * index of the element after the last.
+	 * <p>
+	 * The search gallops forward from <code>lastInsertion</code> before
+	 * bisecting, so inserting a sorted batch of m elements into n items takes
+	 * O(m log(n/m)) comparisons, and never more than a linear merge.
+	 * </p>
 	 *
 	 * @param items
 	 *            the items to search
@@ -471,7 +489,8 @@ public abstract class AbstractTreeViewer<E,I> extends ColumnViewer<E,I> {
 	 *            the tree path for the element's parent or <code>null</code>
 	 *            if the element is a root element or the sorter is not a
 	 *            {@link TreePathViewerSorter}
-	 * @return the index to use when inserting the element.
+	 * @return the index of the first item which does not sort before the
+	 *         element, or the number of items if there is none
 	 *
 	 */
 
@@ -482,20 +501,29 @@ public abstract class AbstractTreeViewer<E,I> extends ColumnViewer<E,I> {
 		if (comparator == null) {
 			return size;
 		}
+
+		// gallop to find a range [min, max] which contains the position
 		int min = lastInsertion, max = size - 1;
+		for (int step = 1; min <= max; step <<= 1) {
+			int probe = Math.min(min + step - 1, max);
+			@SuppressWarnings("unchecked")
+			E data = (E) items[probe].getData();
+			if (internalCompare(comparator, parentPath, data, element) >= 0) {
+				max = probe;
+				break;
+			}
+			min = probe + 1;
+		}
 
-		while (min <= max) {
-			int mid = (min + max) / 2;
+		// bisect for the first item which does not sort before the element
+		while (min < max) {
+			int mid = (min + max) >>> 1;
 			@SuppressWarnings("unchecked")
 			E data = (E) items[mid].getData();
-			int compare = internalCompare(comparator, parentPath, data, element);
-			if (compare == 0) {
-				return mid;// Return if we already match
-			}
-			if (compare < 0) {
+			if (internalCompare(comparator, parentPath, data, element) < 0) {
 				min = mid + 1;
 			} else {
-				max = mid - 1;
+				max = mid;
 			}
 		}
 		return min;
@@ -0,0 +1,342 @@
+/*******************************************************************************
+ * Copyright (c) 2015 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.jface.viewers;
+
+import org.eclipse.swt.widgets.Widget;
+
+/**
+ * Maps the elements of a structured viewer to the widgets representing them.
+ * An element may be represented by several widgets, e.g. when it appears under
+ * several parents in a tree.
+ * <p>
+ * Elements are compared using the viewer's {@link IElementComparer}, or their
+ * own <code>equals</code> and <code>hashCode</code> methods if there is no
+ * comparer. The map is an open-addressing hash table with linear probing that
+ * grows and shrinks with the number of elements. An element mapped to a single
+ * widget stores the widget directly; additional widgets are appended to a
+ * growable array, so mapping an element to many widgets takes amortized
+ * constant time per widget.
+ * </p>
+ *
+ * @since 3.11
+ */
+/* package */final class ElementItemMap {
+
+	/**
+	 * The widgets of an element which is represented by more than one widget.
+	 */
+	private static final class Widgets {
+		Widget[] widgets;
+
+		int count;
+
+		/**
+		 * The widgets as an array of exact length, or <code>null</code> if the
+		 * widgets changed since it was last requested.
+		 */
+		Widget[] snapshot;
+
+		Widgets(Widget first, Widget second) {
+			widgets = new Widget[] { first, second, null, null };
+			count = 2;
+		}
+
+		int indexOf(Widget widget) {
+			for (int i = 0; i < count; i++) {
+				if (widgets[i] == widget) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		void add(Widget widget) {
+			if (count == widgets.length) {
+				Widget[] grown = new Widget[count * 2];
+				System.arraycopy(widgets, 0, grown, 0, count);
+				widgets = grown;
+			}
+			widgets[count++] = widget;
+			snapshot = null;
+		}
+
+		void removeAt(int index) {
+			System.arraycopy(widgets, index + 1, widgets, index, count - index
+					- 1);
+			widgets[--count] = null;
+			snapshot = null;
+		}
+
+		Widget[] toArray() {
+			if (snapshot == null) {
+				snapshot = new Widget[count];
+				System.arraycopy(widgets, 0, snapshot, 0, count);
+			}
+			return snapshot;
+		}
+	}
+
+	private static final int MINIMUM_CAPACITY = 16;
+
+	private final IElementComparer comparer;
+
+	private Object[] keys;
+
+	/**
+	 * The value for the key at the same index: a {@link Widget} or
+	 * {@link Widgets}.
+	 */
+	private Object[] values;
+
+	/**
+	 * The hash code of the key at the same index.
+	 */
+	private int[] hashes;
+
+	private int size;
+
+	/**
+	 * Creates an empty map.
+	 *
+	 * @param comparer
+	 *            the comparer used to compare elements, or <code>null</code>
+	 *            to use the elements' own <code>equals</code> and
+	 *            <code>hashCode</code> methods
+	 */
+	ElementItemMap(IElementComparer comparer) {
+		this.comparer = comparer;
+		allocate(MINIMUM_CAPACITY);
+	}
+
+	/**
+	 * Creates a map containing the same mappings as the given map, but
+	 * comparing elements with the given comparer.
+	 *
+	 * @param map
+	 *            the map to copy
+	 * @param comparer
+	 *            the comparer used to compare elements, or <code>null</code>
+	 */
+	ElementItemMap(ElementItemMap map, IElementComparer comparer) {
+		this(comparer);
+		for (int i = 0; i < map.keys.length; i++) {
+			Object key = map.keys[i];
+			if (key == null) {
+				continue;
+			}
+			Object value = map.values[i];
+			if (value instanceof Widget) {
+				add(key, (Widget) value);
+			} else {
+				Widgets widgets = (Widgets) value;
+				for (int j = 0; j < widgets.count; j++) {
+					add(key, widgets.widgets[j]);
+				}
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new Object[capacity];
+		values = new Object[capacity];
+		hashes = new int[capacity];
+	}
+
+	/**
+	 * @return the comparer used to compare elements, or <code>null</code>
+	 */
+	IElementComparer getComparer() {
+		return comparer;
+	}
+
+	/**
+	 * @return the number of mapped elements
+	 */
+	int size() {
+		return size;
+	}
+
+	private int hash(Object element) {
+		int hash = comparer == null ? element.hashCode() : comparer
+				.hashCode(element);
+		// spread the bits, many hash codes differ only in their upper bits
+		return hash ^ (hash >>> 16);
+	}
+
+	private boolean keyEquals(Object a, Object b) {
+		if (a == b) {
+			return true;
+		}
+		return comparer == null ? a.equals(b) : comparer.equals(a, b);
+	}
+
+	private int indexOf(Object element, int hash) {
+		int mask = keys.length - 1;
+		for (int i = hash & mask;; i = (i + 1) & mask) {
+			Object key = keys[i];
+			if (key == null) {
+				return -1;
+			}
+			if (hashes[i] == hash && keyEquals(key, element)) {
+				return i;
+			}
+		}
+	}
+
+	/**
+	 * Returns the widgets representing the given element. The returned array
+	 * must not be modified.
+	 *
+	 * @param element
+	 *            the element
+	 * @return the widgets, or <code>null</code> if the element is not mapped
+	 */
+	Widget[] get(Object element) {
+		int index = indexOf(element, hash(element));
+		if (index == -1) {
+			return null;
+		}
+		Object value = values[index];
+		if (value instanceof Widget) {
+			return new Widget[] { (Widget) value };
+		}
+		return ((Widgets) value).toArray();
+	}
+
+	/**
+	 * Adds a widget to the widgets representing the given element. Does
+	 * nothing if the element is already mapped to the widget.
+	 *
+	 * @param element
+	 *            the element
+	 * @param widget
+	 *            the widget
+	 */
+	void add(Object element, Widget widget) {
+		int hash = hash(element);
+		int mask = keys.length - 1;
+		int i = hash & mask;
+		for (;; i = (i + 1) & mask) {
+			Object key = keys[i];
+			if (key == null) {
+				break;
+			}
+			if (hashes[i] == hash && keyEquals(key, element)) {
+				Object value = values[i];
+				if (value instanceof Widget) {
+					if (value != widget) {
+						values[i] = new Widgets((Widget) value, widget);
+					}
+				} else {
+					Widgets widgets = (Widgets) value;
+					if (widgets.indexOf(widget) == -1) {
+						widgets.add(widget);
+					}
+				}
+				return;
+			}
+		}
+		keys[i] = element;
+		values[i] = widget;
+		hashes[i] = hash;
+		if (++size * 4 > keys.length * 3) {
+			rehash(keys.length * 2);
+		}
+	}
+
+	/**
+	 * Removes the given element and all its widgets from the map.
+	 *
+	 * @param element
+	 *            the element
+	 */
+	void remove(Object element) {
+		int index = indexOf(element, hash(element));
+		if (index != -1) {
+			removeAt(index);
+		}
+	}
+
+	/**
+	 * Removes a widget from the widgets representing the given element. Does
+	 * nothing if the element is not mapped to the widget.
+	 *
+	 * @param element
+	 *            the element
+	 * @param widget
+	 *            the widget
+	 */
+	void remove(Object element, Widget widget) {
+		int index = indexOf(element, hash(element));
+		if (index == -1) {
+			return;
+		}
+		Object value = values[index];
+		if (value instanceof Widget) {
+			if (value == widget) {
+				removeAt(index);
+			}
+		} else {
+			Widgets widgets = (Widgets) value;
+			int widgetIndex = widgets.indexOf(widget);
+			if (widgetIndex != -1) {
+				widgets.removeAt(widgetIndex);
+				if (widgets.count == 1) {
+					values[index] = widgets.widgets[0];
+				}
+			}
+		}
+	}
+
+	private void removeAt(int index) {
+		int mask = keys.length - 1;
+		// shift back the following entries of the probe run so that no
+		// lookup stops at the freed slot too early
+		int free = index;
+		for (int i = (free + 1) & mask; keys[i] != null; i = (i + 1) & mask) {
+			int home = hashes[i] & mask;
+			boolean movable = free <= i ? (home <= free || home > i)
+					: (home <= free && home > i);
+			if (movable) {
+				keys[free] = keys[i];
+				values[free] = values[i];
+				hashes[free] = hashes[i];
+				free = i;
+			}
+		}
+		keys[free] = null;
+		values[free] = null;
+		hashes[free] = 0;
+		if (--size * 8 < keys.length && keys.length > MINIMUM_CAPACITY) {
+			rehash(keys.length / 2);
+		}
+	}
+
+	private void rehash(int capacity) {
+		Object[] oldKeys = keys;
+		Object[] oldValues = values;
+		int[] oldHashes = hashes;
+		allocate(capacity);
+		int mask = capacity - 1;
+		for (int j = 0; j < oldKeys.length; j++) {
+			if (oldKeys[j] != null) {
+				int i = oldHashes[j] & mask;
+				while (keys[i] != null) {
+					i = (i + 1) & mask;
+				}
+				keys[i] = oldKeys[j];
+				values[i] = oldValues[j];
+				hashes[i] = oldHashes[j];
+			}
+		}
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2014 IBM Corporation and others.
+ * Copyright (c) 2000, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -1043,6 +1043,23 @@ public class FilteredResourcesSelectionDialog extends
 					&& (this.showDerived || !resource.isDerived());
 		}
 
+		/**
+		 * The name of a matching resource must match the pattern unless the
+		 * name and extension are matched separately.
+		 * 
+		 * @see org.eclipse.ui.dialogs.FilteredItemsSelectionDialog.ItemsFilter#isNameMatchRequired()
+		 */
+		public boolean isNameMatchRequired() {
+			return namePattern == null;
+		}
+
+		/**
+		 * @see org.eclipse.ui.dialogs.FilteredItemsSelectionDialog.ItemsFilter#isConcurrentMatchingSupported()
+		 */
+		public boolean isConcurrentMatchingSupported() {
+			return true;
+		}
+
 		private boolean matchName(IResource resource) {
 			String name = resource.getName();
 			if (nameMatches(name)) {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2009 IBM Corporation and others.
+ * Copyright (c) 2000, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -466,11 +466,12 @@ public class CachedMarkerBuilder {
 				// ensure cancellation before calling the method
 				// updateJob.cancel();
 			} else {
-				/*
-				 * updateJob = isIncremental() ? new IncrementUpdateJob(this):
-				 * new MarkerUpdateJob(this);
-				 */
-				updateJob = new MarkerUpdateJob(this);
+				if (isIncremental()) {
+					incrementJob = new IncrementUpdateJob(this);
+					updateJob = incrementJob;
+				} else {
+					updateJob = new MarkerUpdateJob(this);
+				}
 				updateJob.setPriority(Job.LONG);
 				updateJob.setSystem(true);
 			}
@@ -615,18 +616,14 @@ public class CachedMarkerBuilder {
 ///////	<Incremental update code>///////
 		private IncrementUpdateJob incrementJob;
 	/**
-	 * Checks whether the builder should perform incrementally Note : Incremental
-	 * updating method is NOT used and tested yet but left out for further
-	 * investigation(*).
+	 * Checks whether the builder should perform incrementally. Marker changes
+	 * are then applied to the sorted and grouped markers collected by the
+	 * last clean update, instead of collecting all of the markers again.
 	 * 
 	 * @return Returns true if we should collect markers incrementally.
 	 */
 	boolean isIncremental() {
-		/*
-		 * We do not update incrementally. We have 
-		 * code for further investigation(*) for this anyway.
-		 */
-		return false;
+		return true;
 	}
 	
 	/**
@@ -657,11 +654,15 @@ public class CachedMarkerBuilder {
 	 */
 	void incrementalUpdate(MarkerUpdate update) {
 		synchronized (getUpdateScheduler().getSchedulingLock()) {
-			if (incrementJob == null) {
-				scheduleUpdateJob(MarkerUpdateScheduler.SHORT_DELAY, true);
+			if (incrementJob != null) {
+				incrementJob.addUpdate(update);
+				scheduleUpdateJob(MarkerUpdateScheduler.SHORT_DELAY, false,
+						new boolean[] { false, false, false });
+				return;
 			}
 		}
-		incrementJob.addUpdate(update);
+		// the clean update collects the change as well
+		getUpdateScheduler().scheduleUpdate();
 	}
 ///////	</Incremental update code>///////
 	
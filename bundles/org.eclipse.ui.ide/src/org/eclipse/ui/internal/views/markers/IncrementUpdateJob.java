@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009 IBM Corporation and others.
+ * Copyright (c) 2009, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,7 +13,9 @@ package org.eclipse.ui.internal.views.markers;
 
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.Map;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -21,25 +23,24 @@ import org.eclipse.core.runtime.Status;
 import org.eclipse.ui.views.markers.internal.MarkerMessages;
 
 /**
- * The job that performs incremental update. Once the processing is complete it
- * schedules an UI update. If it'll be possible and beneficial switch to
- * incremental updatation, this has been left out for further investigation(*).
- * only, and not used currently.
+ * The job that performs incremental update. When a clean update is requested
+ * it collects, sorts and groups all of the markers, otherwise it applies the
+ * queued marker changes to the sorted and grouped entries of the
+ * {@link Markers}. Once the processing is complete it schedules an UI update.
  * 
  * @since 3.6
  * 
  */
 class IncrementUpdateJob extends MarkerUpdateJob {
 
-	private LinkedList incrementEntryList;
 	private LinkedList updateQueue;
+	private volatile boolean rebuild = true;
 
 	/**
 	 * @param builder
 	 */
 	public IncrementUpdateJob(CachedMarkerBuilder builder) {
 		super(builder);
-		incrementEntryList = new LinkedList();
 	}
 
 	/*
@@ -51,220 +52,98 @@ class IncrementUpdateJob extends MarkerUpdateJob {
 	protected IStatus run(IProgressMonitor monitor) {
 		monitor.beginTask(MarkerMessages.MarkerView_processUpdates,
 				IProgressMonitor.UNKNOWN);
-		boolean clean= isClean();
-		if (clean) {
-			clearEntries();
-		}
-		Collection markerEntries = incrementalEntries();
-		if (clean) {
+		if (rebuild || !processUpdates(monitor)) {
+			rebuild = false;
 			/*
-			 * Unfortunately we cannot lock marker operations between gathering
-			 * and updation. We have this code in place only for further
-			 * investigation
+			 * Marker operations cannot be locked between gathering and
+			 * updating. Changes made meanwhile are queued, and applying them
+			 * again on the next run is harmless.
 			 */
-			clean = !clean(markerEntries, monitor);
-			LinkedList queue = getUpdatesQueue();
-			synchronized (queue) {
-				queue.clear();
-			}
-		}
-		if (monitor.isCanceled()) {
-			return Status.CANCEL_STATUS;
-		}
-		if (!clean) {
-			builder.registerTypesToListener();
-			if (!processUpdates(monitor)) {
+			clearEntries();
+			Collection markerEntries = new LinkedList();
+			if (!clean(markerEntries, monitor)
+					|| !processMarkerEntries(markerEntries, monitor)) {
+				rebuild = true;
 				return Status.CANCEL_STATUS;
 			}
 		}
-		if (!processMarkerEntries(markerEntries, monitor)) {
-			return Status.CANCEL_STATUS;
-		}
-		if (monitor.isCanceled()) {
-			return Status.CANCEL_STATUS;
-		}
-		// update with sorted entries
-		updateIncrementalList(markerEntries);
-
 		if (monitor.isCanceled()) {
 			return Status.CANCEL_STATUS;
 		}
 		builder.getUpdateScheduler().scheduleUIUpdate(
 				MarkerUpdateScheduler.SHORT_DELAY);
-		if (monitor.isCanceled()) {
-			return Status.CANCEL_STATUS;
-		}
 		builder.setBuilding(false);
 		updateDone();
 		return Status.OK_STATUS;
 	}
 
 	/**
-	 * Update the list
-	 * 
-	 * @param markerEntries
-	 */
-	private boolean updateIncrementalList(Collection markerEntries) {
-		markerEntries.clear();
-		Markers clone = builder.getMarkers();
-		synchronized (clone) {
-			clone = clone.getClone();
-		}
-		MarkerEntry[] entries = clone.getMarkerEntryArray();
-		for (int i = 0; i < entries.length; i++) {
-			markerEntries.add(entries[i]);
-		}
-		return true;
-	}
-
-	/**
-	 * Process the incremental updates
+	 * Apply the queued updates to the markers.
 	 * 
 	 * @param monitor
+	 * @return <code>false</code> if the markers have to be collected again
 	 */
 	private boolean processUpdates(IProgressMonitor monitor) {
-		Collection markerEntries = incrementalEntries();
-		int addCount = 0, removedCount = 0, changedCount = 0, size = 0, newSize = 0;
-		LinkedList queue = getUpdatesQueue();
-		MarkerUpdate next = null;
-		do {
-			synchronized (queue) {
-				if (!queue.isEmpty()) {
-					next = (MarkerUpdate) queue.removeFirst();
-				} else {
-					next = null;
-				}
-			}
-			if (monitor.isCanceled() || next == null) {
-				break;
-			}
-			/**
-			 * The following performs incremental updation of the markers that
-			 * were gathered intially, and keeps them synched at any point with
-			 * the markers of interest in Workspace
-			 */
-			// unfortunately marker operations cannot be locked
-			// so locking between gathering of markers and
-			// marker deltas is not possible
-			size = markerEntries.size();
-			handleRemovedEntries(markerEntries, next.removed, monitor);
-			newSize = markerEntries.size();
-			removedCount += size - newSize;
-
-			handleChangedEntries(markerEntries, next.changed, monitor);
-			changedCount += next.changed.size();
-
-			size = newSize;
-			handleAddedEntries(markerEntries, next.added, monitor);
-			newSize = markerEntries.size();
-			removedCount += newSize - size;
-		} while (next != null);
-		boolean[] changeFlags = new boolean[] { addCount > 0, removedCount > 0,
-				changedCount > 0 };
-		for (int i = 0; i < changeFlags.length; i++) {
-			if (changeFlags[i]) {
-				builder.updateChangeFlags(changeFlags);
-				return true;
-			}
-		}
-		return false;
-	}
-
-	/**
-	 * @param added
-	 * @param monitor
-	 */
-	private void handleAddedEntries(Collection markerEntries, Collection added,
-			IProgressMonitor monitor) {
 		MarkerContentGenerator generator = builder.getGenerator();
-		Iterator iterator = added.iterator();
-		while (iterator.hasNext()) {
-			MarkerEntry entry = (MarkerEntry) iterator.next();
-			if (generator.select(entry)) {
-				markerEntries.add(entry);
-			}
+		if (monitor.isCanceled() || generator == null) {
+			return false;
 		}
-	}
-
-	/**
-	 * @param changed
-	 * @param monitor
-	 */
-	private void handleChangedEntries(Collection markerEntries,
-			Collection changed, IProgressMonitor monitor) {
-		MarkerContentGenerator generator = builder.getGenerator();
-		Iterator iterator = changed.iterator();
-		while (iterator.hasNext()) {
-			MarkerEntry entry = (MarkerEntry) iterator.next();
-			Iterator iterator2 = markerEntries.iterator();
-			while (iterator2.hasNext()) {
-				MarkerEntry oldEntry = (MarkerEntry) iterator2.next();
-				if (oldEntry.getMarker().equals(entry.getMarker())) {
-					iterator2.remove();
+		// the latest entry of each marker, null if the marker was removed
+		Map latestEntries = new LinkedHashMap();
+		boolean[] changeFlags = new boolean[3];
+		LinkedList queue = getUpdatesQueue();
+		synchronized (queue) {
+			while (!queue.isEmpty()) {
+				MarkerUpdate next = (MarkerUpdate) queue.removeFirst();
+				changeFlags[0] |= !next.added.isEmpty();
+				changeFlags[1] |= !next.removed.isEmpty();
+				changeFlags[2] |= !next.changed.isEmpty();
+				Iterator iterator = next.removed.iterator();
+				while (iterator.hasNext()) {
+					latestEntries.put(iterator.next(), null);
+				}
+				iterator = next.added.iterator();
+				while (iterator.hasNext()) {
+					Object entry = iterator.next();
+					latestEntries.put(entry, entry);
+				}
+				iterator = next.changed.iterator();
+				while (iterator.hasNext()) {
+					Object entry = iterator.next();
+					latestEntries.put(entry, entry);
 				}
-			}
-			if (!generator.select(entry)) {
-				iterator.remove();
 			}
 		}
-		markerEntries.addAll(changed);
-	}
-
-	/**
-	 * @param removed
-	 * @param monitor
-	 */
-	private void handleRemovedEntries(Collection markerEntries,
-			Collection removed, IProgressMonitor monitor) {
-		boolean found = false;
-		Iterator iterator = markerEntries.iterator();
+		Collection removed = new LinkedList();
+		Collection updated = new LinkedList();
+		Iterator iterator = latestEntries.entrySet().iterator();
 		while (iterator.hasNext()) {
-			MarkerEntry entry = (MarkerEntry) iterator.next();
-			found = entry.getStaleState();
-			if (found) {
-				iterator.remove();
-			}
-			if (removed.isEmpty()) {
-				continue;
-			}
-			Iterator iterator2 = removed.iterator();
-			while (iterator2.hasNext()) {
-				MarkerEntry stale = (MarkerEntry) iterator2.next();
-				if (stale.getMarker().equals(entry.getMarker())) {
-					iterator2.remove();
-					if (!found) {
-						iterator.remove();
-					}
-					break;
-				}
+			Map.Entry next = (Map.Entry) iterator.next();
+			MarkerEntry entry = (MarkerEntry) next.getValue();
+			if (entry != null && generator.select(entry)) {
+				updated.add(entry);
+			} else {
+				removed.add(next.getKey());
 			}
 		}
-		if (removed.isEmpty()) {
-			// TODO: do we check for residuals?
-			return;
+		if (monitor.isCanceled()) {
+			return false;
 		}
-		// TODO: do we check for residuals?
-		iterator = markerEntries.iterator();
-		while (iterator.hasNext()) {
-			MarkerEntry entry = (MarkerEntry) iterator.next();
-			if (entry.getMarker() != null && !entry.getMarker().exists()) {
-				iterator.remove();
-			}
+		if (!builder.getMarkers().updateWithChanges(removed, updated)) {
+			return false;
 		}
+		builder.updateChangeFlags(changeFlags);
+		return true;
 	}
 
 	/**
-	 * Clean
+	 * Clear the queued updates
 	 */
 	void clearEntries() {
-		incrementEntryList = new LinkedList();
-	}
-
-	/**
-	 * @return Returns the incrementEntryies.
-	 */
-	Collection incrementalEntries() {
-		return incrementEntryList;
+		LinkedList queue = getUpdatesQueue();
+		synchronized (queue) {
+			queue.clear();
+		}
 	}
 
 	/**
@@ -291,6 +170,24 @@ class IncrementUpdateJob extends MarkerUpdateJob {
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.eclipse.ui.internal.views.markers.MarkerUpdateJob#isClean()
+	 */
+	boolean isClean() {
+		return rebuild;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.eclipse.ui.internal.views.markers.MarkerUpdateJob#setClean()
+	 */
+	void setClean() {
+		rebuild = true;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -302,4 +199,4 @@ class IncrementUpdateJob extends MarkerUpdateJob {
 		}
 		return super.belongsTo(family);
 	}
-}
\ No newline at end of file
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2011 IBM Corporation and others.
+ * Copyright (c) 2007, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,7 +13,6 @@ package org.eclipse.ui.internal.views.markers;
 
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.osgi.util.NLS;
-import org.eclipse.ui.views.markers.MarkerItem;
 import org.eclipse.ui.views.markers.internal.MarkerMessages;
 
 class MarkerCategory extends MarkerSupportItem {
@@ -32,18 +31,22 @@ class MarkerCategory extends MarkerSupportItem {
 
 	private Markers markers;
 
+	private MarkerEntry[] entries;
+
 	/**
 	 * Create a new instance of the receiver that has the markers between
 	 * startIndex and endIndex showing.
 	 * 
 	 * @param markers
+	 * @param entries
+	 *            the sorted entries the children are taken from lazily.
 	 * @param startIndex
 	 * @param endIndex
-	 *            the builder used to generate the children lazily.
 	 */
-	MarkerCategory(Markers markers, int startIndex,
+	MarkerCategory(Markers markers, MarkerEntry[] entries, int startIndex,
 			int endIndex, String categoryName) {
 		this.markers = markers;
+		this.entries = entries;
 		start = startIndex;
 		end = endIndex;
 		refreshing=false;
@@ -58,10 +61,9 @@ class MarkerCategory extends MarkerSupportItem {
 	 */
 	MarkerSupportItem[] getChildren() {
 		if (children == null) {
-			MarkerItem[] allMarkers = markers.getMarkerEntryArray();
 			int totalSize = getChildrenCount();
 			children = new MarkerEntry[totalSize];
-			System.arraycopy(allMarkers, start, children, 0, totalSize);
+			System.arraycopy(entries, start, children, 0, totalSize);
 			for (int i = 0; i < children.length; i++) {
 				children[i].setCategory(this);
 			}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2009 IBM Corporation and others.
+ * Copyright (c) 2007, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,6 +11,7 @@
 
 package org.eclipse.ui.internal.views.markers;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -67,14 +68,16 @@ class MarkerEntry extends MarkerSupportItem implements IAdaptable {
 	// The key for the string we built for display
 	private static final Object LOCATION_STRING = "LOCATION_STRING"; //$NON-NLS-1$
 	private MarkerCategory category;
-	private Map cache = null;
+	// The entry is shared by the update job, which clears the cache and fills
+	// it while sorting, and the viewer, which reads it for the labels
+	private volatile Map cache = null;
 	
 	/**
 	 * Set the MarkerEntry to be stale, if discovered at any point of time
 	 * of its use.This will greatly speed up a lot of parts of the view.
 	 * @since 3.6
 	 */
-	private boolean stale;
+	private volatile boolean stale;
 	/**
 	 * Important:
 	 * access to these fields must be via methods, they must be in sync and their
@@ -139,7 +142,8 @@ class MarkerEntry extends MarkerSupportItem implements IAdaptable {
 	 * @return Object or <code>null</code>
 	 */
 	Object getAttributeValue(String attribute) {
-		Object value = getCache().get(attribute);
+		Map cache = getCache();
+		Object value = cache.get(attribute);
 		if(value == null) {
 			if(stale){
 				return value;
@@ -151,7 +155,7 @@ class MarkerEntry extends MarkerSupportItem implements IAdaptable {
 				value = null;
 			}
 			if(value != null) {
-				getCache().put(attribute, value);
+				cache.put(attribute, value);
 			}
 		}
 		if (value instanceof CollationKey)
@@ -203,7 +207,8 @@ class MarkerEntry extends MarkerSupportItem implements IAdaptable {
 	 */
 	CollationKey getCollationKey(String attribute, String defaultValue) {
 		String attributeValue;
-		Object value = getCache().get(attribute);
+		Map cache = getCache();
+		Object value = cache.get(attribute);
 		if (value != null) {
 			// Only return a collation key otherwise 
 			//use the value to generate it
@@ -219,7 +224,7 @@ class MarkerEntry extends MarkerSupportItem implements IAdaptable {
 			return MarkerSupportInternalUtilities.EMPTY_COLLATION_KEY;
 		CollationKey key = Collator.getInstance().getCollationKey(
 				attributeValue);
-		getCache().put(attribute, key);
+		cache.put(attribute, key);
 		return key;
 	}
 
@@ -269,8 +274,9 @@ class MarkerEntry extends MarkerSupportItem implements IAdaptable {
 		if(stale||checkIfMarkerStale()){
 			return MarkerSupportInternalUtilities.UNKNOWN_ATRRIBTE_VALUE_STRING;
 		}
-		if (getCache().containsKey(LOCATION_STRING)) {
-			Object value = getCache().get(LOCATION_STRING);
+		Map cache = getCache();
+		Object value = cache.get(LOCATION_STRING);
+		if (value != null) {
 			if (value instanceof CollationKey)
 				return ((CollationKey) value).getSourceString();
 			return (String) value;
@@ -281,7 +287,7 @@ class MarkerEntry extends MarkerSupportItem implements IAdaptable {
 		String locationString = getAttributeValue(IMarker.LOCATION,
 				MarkerSupportInternalUtilities.EMPTY_STRING);
 		if (locationString.length() > 0) {
-			getCache().put(LOCATION_STRING, locationString);
+			cache.put(LOCATION_STRING, locationString);
 			return locationString;
 		}
 
@@ -294,7 +300,7 @@ class MarkerEntry extends MarkerSupportItem implements IAdaptable {
 			lineNumberString = NLS.bind(MarkerMessages.label_lineNumber,
 					Integer.toString(lineNumber));
 
-		getCache().put(LOCATION_STRING, lineNumberString);
+		cache.put(LOCATION_STRING, lineNumberString);
 		return lineNumberString;
 
 	}
@@ -410,21 +416,41 @@ class MarkerEntry extends MarkerSupportItem implements IAdaptable {
 	}
 
 	/**
-	 * Get the cache for the receiver. Create if neccessary.
+	 * Get the cache for the receiver. Create if neccessary. The cache may be
+	 * cleared by another thread while it is used, callers should get it once
+	 * and use the returned map.
 	 * 
-	 * @return {@link HashMap}
+	 * @return {@link Map} that is safe for concurrent access
 	 */
 	Map getCache() {
-		if (cache == null)
-			cache = new HashMap(2);
-		return cache;
+		Map current = cache;
+		if (current == null) {
+			synchronized (this) {
+				current = cache;
+				if (current == null) {
+					current = Collections.synchronizedMap(new HashMap(2));
+					cache = current;
+				}
+			}
+		}
+		return current;
 	}
 
 	/**
 	 * Clear the cached values for performance reasons.
 	 */
 	void clearCache() {
-		cache = null;		
+		cache = null;
+	}
+
+	/**
+	 * Create a copy of the receiver with the values the marker has now, that
+	 * compares the same even once the marker has changed.
+	 * 
+	 * @return {@link MarkerEntry}
+	 */
+	MarkerEntry createSortKey() {
+		return new SortKey(marker);
 	}
 
 	/**
@@ -485,4 +511,44 @@ class MarkerEntry extends MarkerSupportItem implements IAdaptable {
 		}
 		return true;
 	}
+
+	/**
+	 * The SortKey is an entry that keeps the attributes its marker had when it
+	 * was created. Its values are never read from the marker again.
+	 */
+	private static final class SortKey extends MarkerEntry {
+
+		private final long creationTime;
+
+		SortKey(IMarker marker) {
+			super(marker);
+			Map cache = getCache();
+			try {
+				Map attributes = marker.getAttributes();
+				if (attributes != null) {
+					cache.putAll(attributes);
+				}
+			} catch (CoreException e) {
+				checkIfMarkerStale();
+			}
+			creationTime = super.getCreationTime();
+			// the path comes from the resource, remember it as well
+			getPath();
+		}
+
+		Object getAttributeValue(String attribute) {
+			Object value = getCache().get(attribute);
+			if (value instanceof CollationKey)
+				return ((CollationKey) value).getSourceString();
+			return value;
+		}
+
+		long getCreationTime() {
+			return creationTime;
+		}
+
+		void clearCache() {
+			// the values of the marker are kept
+		}
+	}
 }
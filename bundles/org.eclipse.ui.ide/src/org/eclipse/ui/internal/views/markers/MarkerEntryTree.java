@@ -0,0 +1,456 @@
+/*******************************************************************************
+ * Copyright (c) 2015 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.ui.internal.views.markers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * The MarkerEntryTree keeps marker entries sorted while they are added and
+ * removed one at a time. It is an order statistic tree: every node knows the
+ * size of its subtree, so the position of an entry is found, and an entry is
+ * added at or removed from its position, in O(log N).
+ * <p>
+ * Each entry is recorded with the category, the severity and the sort key it
+ * had when it was added, so that the number of entries of each category and of
+ * each severity is known at any time, and new entries find their position,
+ * even once the attributes of a marker have changed. Entries that compare
+ * equal are kept in the order they were added.
+ * </p>
+ *
+ * @since 3.10
+ *
+ */
+public class MarkerEntryTree {
+
+	/**
+	 * The index of the count of entries with no known severity in
+	 * {@link #getSeverityCounts()}.
+	 */
+	public static final int OTHER_SEVERITY = 3;
+
+	/**
+	 * A node of the tree, which is a treap: it is ordered by the entries and a
+	 * heap by the random priorities, which keeps it balanced.
+	 */
+	private static final class Node {
+		final MarkerEntry entry;
+		final MarkerEntry key;
+		final Object category;
+		final int severity;
+		final int priority;
+		Node left;
+		Node right;
+		Node parent;
+		int size = 1;
+
+		Node(MarkerEntry entry, Object category, int severity, int priority) {
+			this.entry = entry;
+			this.key = entry.createSortKey();
+			this.category = category;
+			this.severity = severity;
+			this.priority = priority;
+		}
+	}
+
+	// the seed of the priorities of new trees, if set by tests
+	private static Long seed;
+
+	private final Comparator comparator;
+	private final Random random = seed == null ? new Random() : new Random(
+			seed.longValue());
+	private Node root;
+	// the node of each entry
+	private final Map nodes = new HashMap();
+	// the number of entries of each category, in the order of the categories
+	private final TreeMap categoryCounts;
+	private final int[] severityCounts = new int[OTHER_SEVERITY + 1];
+
+	/**
+	 * Create a new empty tree.
+	 *
+	 * @param comparator
+	 *            the order of the entries within a category
+	 * @param categoryComparator
+	 *            the order of the categories, or <code>null</code> if the
+	 *            entries are not categorized
+	 */
+	public MarkerEntryTree(Comparator comparator, Comparator categoryComparator) {
+		this.comparator = comparator;
+		categoryCounts = categoryComparator == null ? null : new TreeMap(
+				categoryComparator);
+	}
+
+	/**
+	 * Set the seed of the random priorities of the trees created from now on,
+	 * so that their shape is the same on every run. For tests only.
+	 *
+	 * @param newSeed
+	 *            the seed or <code>null</code> for a random one
+	 */
+	public static void setSeed(Long newSeed) {
+		seed = newSeed;
+	}
+
+	/**
+	 * @return the number of entries
+	 */
+	public int size() {
+		return size(root);
+	}
+
+	/**
+	 * Return whether the tree contains an entry equal to the given one.
+	 *
+	 * @param entry
+	 * @return boolean
+	 */
+	public boolean contains(MarkerEntry entry) {
+		return nodes.containsKey(entry);
+	}
+
+	/**
+	 * Return the entry of the tree equal to the given one.
+	 *
+	 * @param entry
+	 * @return the entry or <code>null</code> if there is none
+	 */
+	public MarkerEntry get(MarkerEntry entry) {
+		Node node = (Node) nodes.get(entry);
+		return node == null ? null : node.entry;
+	}
+
+	/**
+	 * Return the entry at the given position.
+	 *
+	 * @param index
+	 *            a position between 0 and size() - 1
+	 * @return MarkerEntry
+	 */
+	public MarkerEntry get(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException(String.valueOf(index));
+		}
+		Node node = root;
+		while (true) {
+			int leftSize = size(node.left);
+			if (index < leftSize) {
+				node = node.left;
+			} else if (index > leftSize) {
+				index -= leftSize + 1;
+				node = node.right;
+			} else {
+				return node.entry;
+			}
+		}
+	}
+
+	/**
+	 * Return the position of the entry equal to the given one.
+	 *
+	 * @param entry
+	 * @return the position or -1 if there is no such entry
+	 */
+	public int indexOf(MarkerEntry entry) {
+		Node node = (Node) nodes.get(entry);
+		return node == null ? -1 : rank(node);
+	}
+
+	/**
+	 * Add an entry at its position, replacing any entry equal to it.
+	 *
+	 * @param entry
+	 * @param category
+	 *            the category of the entry, ignored if the entries are not
+	 *            categorized
+	 * @param severity
+	 *            the severity of the entry, or {@link #OTHER_SEVERITY}
+	 * @return the position of the entry
+	 */
+	public int add(MarkerEntry entry, Object category, int severity) {
+		remove(entry);
+		Node node = createNode(entry, category, severity);
+		int index = 0;
+		Node next = root;
+		while (next != null) {
+			if (compare(node, next) < 0) {
+				next = next.left;
+			} else {
+				index += size(next.left) + 1;
+				next = next.right;
+			}
+		}
+		Node[] parts = split(root, index);
+		setRoot(merge(merge(parts[0], node), parts[1]));
+		return index;
+	}
+
+	/**
+	 * Remove the entry equal to the given one.
+	 *
+	 * @param entry
+	 * @return the position the entry had, or -1 if there was no such entry
+	 */
+	public int remove(MarkerEntry entry) {
+		Node node = (Node) nodes.remove(entry);
+		if (node == null) {
+			return -1;
+		}
+		int index = rank(node);
+		Node[] parts = split(root, index);
+		Node[] rest = split(parts[1], 1);
+		setRoot(merge(parts[0], rest[1]));
+		count(node, -1);
+		return index;
+	}
+
+	/**
+	 * Replace the contents of the tree with the given entries. They are sorted
+	 * once by the keys they are recorded with and the tree is built from them
+	 * in O(N), rather than adding them one at a time.
+	 *
+	 * @param entries
+	 * @param categories
+	 *            the category of each entry, or <code>null</code>
+	 * @param severities
+	 *            the severity of each entry
+	 */
+	public void build(MarkerEntry[] entries, Object[] categories,
+			int[] severities) {
+		clear();
+		ArrayList sortedNodes = new ArrayList(entries.length);
+		for (int i = 0; i < entries.length; i++) {
+			if (!nodes.containsKey(entries[i])) {
+				sortedNodes.add(createNode(entries[i],
+						categories == null ? null : categories[i],
+						severities[i]));
+			}
+		}
+		// stable, so that equal entries keep their order
+		Collections.sort(sortedNodes, new Comparator() {
+			public int compare(Object o1, Object o2) {
+				return MarkerEntryTree.this.compare((Node) o1, (Node) o2);
+			}
+		});
+		// the right spine of the treap built so far
+		ArrayList spine = new ArrayList();
+		for (int i = 0; i < sortedNodes.size(); i++) {
+			Node node = (Node) sortedNodes.get(i);
+			Node last = null;
+			while (!spine.isEmpty()
+					&& ((Node) spine.get(spine.size() - 1)).priority < node.priority) {
+				last = (Node) spine.remove(spine.size() - 1);
+			}
+			node.left = last;
+			if (!spine.isEmpty()) {
+				((Node) spine.get(spine.size() - 1)).right = node;
+			}
+			spine.add(node);
+		}
+		if (!spine.isEmpty()) {
+			setRoot((Node) spine.get(0));
+			updateSizes(root);
+		}
+	}
+
+	/**
+	 * Remove all entries.
+	 */
+	public void clear() {
+		root = null;
+		nodes.clear();
+		if (categoryCounts != null) {
+			categoryCounts.clear();
+		}
+		for (int i = 0; i < severityCounts.length; i++) {
+			severityCounts[i] = 0;
+		}
+	}
+
+	/**
+	 * @return the entries in their order
+	 */
+	public MarkerEntry[] toArray() {
+		MarkerEntry[] entries = new MarkerEntry[size()];
+		ArrayList stack = new ArrayList();
+		Node node = root;
+		int i = 0;
+		while (node != null || !stack.isEmpty()) {
+			while (node != null) {
+				stack.add(node);
+				node = node.left;
+			}
+			node = (Node) stack.remove(stack.size() - 1);
+			entries[i++] = node.entry;
+			node = node.right;
+		}
+		return entries;
+	}
+
+	/**
+	 * Return the number of entries of each category, in the order of the
+	 * categories. The map must not be modified.
+	 *
+	 * @return a {@link Map} of categories to {@link Integer}s, empty if the
+	 *         entries are not categorized
+	 */
+	public Map getCategoryCounts() {
+		return categoryCounts == null ? new TreeMap() : categoryCounts;
+	}
+
+	/**
+	 * Return the number of entries of each severity.
+	 *
+	 * @return an array where the count at index i is the number of entries of
+	 *         severity i, and at {@link #OTHER_SEVERITY} the number of other
+	 *         entries
+	 */
+	public int[] getSeverityCounts() {
+		return (int[]) severityCounts.clone();
+	}
+
+	private Node createNode(MarkerEntry entry, Object category, int severity) {
+		if (severity < 0 || severity > OTHER_SEVERITY) {
+			severity = OTHER_SEVERITY;
+		}
+		Node node = new Node(entry, categoryCounts == null ? null : category,
+				severity, random.nextInt());
+		nodes.put(entry, node);
+		count(node, 1);
+		return node;
+	}
+
+	/**
+	 * Compare the nodes by their categories, then by their sort keys.
+	 */
+	private int compare(Node node, Node other) {
+		if (categoryCounts != null && node.category != null
+				&& other.category != null) {
+			int result = categoryCounts.comparator().compare(node.category,
+					other.category);
+			if (result != 0) {
+				return result;
+			}
+		}
+		return comparator.compare(node.key, other.key);
+	}
+
+	private void count(Node node, int delta) {
+		severityCounts[node.severity] += delta;
+		if (categoryCounts == null || node.category == null) {
+			return;
+		}
+		Integer count = (Integer) categoryCounts.get(node.category);
+		int newCount = (count == null ? 0 : count.intValue()) + delta;
+		if (newCount > 0) {
+			categoryCounts.put(node.category, new Integer(newCount));
+		} else {
+			categoryCounts.remove(node.category);
+		}
+	}
+
+	private static int size(Node node) {
+		return node == null ? 0 : node.size;
+	}
+
+	/**
+	 * Update the size of the node and the parent of its children.
+	 */
+	private static void update(Node node) {
+		node.size = 1 + size(node.left) + size(node.right);
+		if (node.left != null) {
+			node.left.parent = node;
+		}
+		if (node.right != null) {
+			node.right.parent = node;
+		}
+	}
+
+	private static int updateSizes(Node node) {
+		if (node == null) {
+			return 0;
+		}
+		updateSizes(node.left);
+		updateSizes(node.right);
+		update(node);
+		return node.size;
+	}
+
+	private void setRoot(Node node) {
+		root = node;
+		if (node != null) {
+			node.parent = null;
+		}
+	}
+
+	/**
+	 * Return the position of the node, from the sizes of the subtrees on its
+	 * left up to the root.
+	 */
+	private static int rank(Node node) {
+		int index = size(node.left);
+		while (node.parent != null) {
+			if (node == node.parent.right) {
+				index += size(node.parent.left) + 1;
+			}
+			node = node.parent;
+		}
+		return index;
+	}
+
+	/**
+	 * Split the tree into its first count nodes and the others.
+	 */
+	private static Node[] split(Node node, int count) {
+		if (node == null) {
+			return new Node[2];
+		}
+		Node[] parts;
+		if (size(node.left) >= count) {
+			parts = split(node.left, count);
+			node.left = parts[1];
+			update(node);
+			parts[1] = node;
+		} else {
+			parts = split(node.right, count - size(node.left) - 1);
+			node.right = parts[0];
+			update(node);
+			parts[0] = node;
+		}
+		return parts;
+	}
+
+	/**
+	 * Merge two trees, all nodes of the first preceding those of the second.
+	 */
+	private static Node merge(Node first, Node second) {
+		if (first == null) {
+			return second;
+		}
+		if (second == null) {
+			return first;
+		}
+		if (first.priority > second.priority) {
+			first.right = merge(first.right, second);
+			update(first);
+			return first;
+		}
+		second.left = merge(first, second.left);
+		update(second);
+		return second;
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2011 IBM Corporation and others.
+ * Copyright (c) 2009, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -15,9 +15,12 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 
 import org.eclipse.core.resources.IMarker;
@@ -32,6 +35,11 @@ import org.eclipse.ui.views.markers.internal.MarkerMessages;
  * The Markers object contains the MarkerEntry(s) collected and updated by the
  * system, also maintains the categories that markers are grouped into.
  * 
+ * When the builder updates incrementally the entries are also kept in a
+ * {@link MarkerEntryTree}, sorted and grouped, so that marker changes are
+ * applied to it without collecting, sorting and grouping all of the markers
+ * again.
+ * 
  * @since 3.6
  * 
  */
@@ -54,6 +62,18 @@ class Markers {
 	private Map markerToEntryMap = null;
 	private Integer[] markerCounts;
 
+	// the sorted and grouped entries, when updating incrementally
+	private MarkerEntryTree index;
+	// the version of the entries, increased on every update
+	private long version = 0;
+	// the version of the last update that was not applied entry by entry
+	private long rebuildVersion = 0;
+	// the version of the last change of each entry changed since the last
+	// rebuild
+	private Map changedVersions = new HashMap();
+	// the group the index was built with
+	private MarkerGroup indexGroup;
+
 	Markers(CachedMarkerBuilder builder) {
 		this.builder = builder;
 		inChange = false;
@@ -78,9 +98,13 @@ class Markers {
 				markerToEntryMap = null;
 			}
 			markerCounts = null;
+			rebuilt();
 			if (markerEntries.size() == 0) {
 				categories = EMPTY_CATEGORY_ARRAY;
 				markerEntryArray = EMPTY_ENTRY_ARRAY;
+				if (builder.isIncremental()) {
+					index = createIndex();
+				}
 				return true;
 			}
 			if (monitor.isCanceled()) {
@@ -88,6 +112,10 @@ class Markers {
 			}
 			markerEntryArray = new MarkerEntry[markerEntries.size()];
 			markerEntries.toArray(markerEntryArray);
+			if (sortAndGroup && builder.isIncremental()) {
+				return buildIndex(monitor);
+			}
+			index = null;
 			if (sortAndGroup) {
 				if (monitor.isCanceled()) {
 					return false;
@@ -112,6 +140,9 @@ class Markers {
 	 * @param monitor
 	 */
 	synchronized boolean sortAndMakeCategories(IProgressMonitor monitor) {
+		if (index != null) {
+			return buildIndex(monitor);
+		}
 		boolean initialVal = inChange;
 		try {
 			inChange = true;
@@ -142,9 +173,13 @@ class Markers {
 		if (monitor.isCanceled()) {
 			return false;
 		}
+		if (index != null) {
+			return buildIndex(monitor);
+		}
 		boolean initialVal = inChange;
 		try {
 			inChange = true;
+			rebuilt();
 			if (builder.isShowingHierarchy()) {
 				Comparator comparator = builder.getComparator()
 						.getFieldsComparator();
@@ -219,7 +254,8 @@ class Markers {
 		while (iterator.hasNext()) {
 			Object key = iterator.next();
 			end = ((Integer) boundaryInfoMap.get(key)).intValue();
-			markerCategories[i++] = new MarkerCategory(this, start, end,
+			markerCategories[i++] = new MarkerCategory(this, newMarkers,
+					start, end,
 					builder.getCategoryGroup().getMarkerField()
 							.getValue(newMarkers[start]));
 			start = end + 1;
@@ -283,6 +319,265 @@ class Markers {
 		return map;
 	}
 
+	/**
+	 * Sort and group the marker entries into a new index, and update the
+	 * entries and categories from it.
+	 * 
+	 * @param monitor
+	 * @return <code>true</code> if the index was built
+	 */
+	private boolean buildIndex(IProgressMonitor monitor) {
+		boolean initialVal = inChange;
+		try {
+			inChange = true;
+			rebuilt();
+			index = null;
+			MarkerEntry[] entries = (MarkerEntry[]) markerEntryArray.clone();
+			MarkerGroup group = builder.getCategoryGroup();
+			Object[] entryCategories = new Object[entries.length];
+			int[] severities = new int[entries.length];
+			int count = 0;
+			for (int i = 0; i < entries.length; i++) {
+				if (group != null) {
+					entryCategories[count] = findCategory(group, entries[i]);
+					if (entryCategories[count] == null) {
+						continue;// skip stale markers
+					}
+				}
+				severities[count] = getSeverity(entries[i]);
+				entries[count++] = entries[i];
+			}
+			if (count < entries.length) {
+				MarkerEntry[] groupedEntries = new MarkerEntry[count];
+				System.arraycopy(entries, 0, groupedEntries, 0, count);
+				entries = groupedEntries;
+			}
+			if (monitor.isCanceled()) {
+				return false;
+			}
+			index = createIndex();
+			index.build(entries, entryCategories, severities);
+			updateFromIndex();
+			monitor.worked(50);
+			return true;
+		} finally {
+			inChange = initialVal;
+		}
+	}
+
+	/**
+	 * Apply marker changes to the index and update the entries and categories
+	 * from it. The entries of changed markers are reused, so that the viewer
+	 * only has to update their labels.
+	 * 
+	 * @param removedEntries
+	 *            the entries of the markers that were removed or are not shown
+	 *            anymore
+	 * @param updatedEntries
+	 *            the entries of the markers that were added or changed
+	 * @return <code>false</code> if there is no index to apply the changes to,
+	 *         and the markers have to be collected again
+	 */
+	synchronized boolean updateWithChanges(Collection removedEntries,
+			Collection updatedEntries) {
+		if (index == null || indexGroup != builder.getCategoryGroup()) {
+			return false;
+		}
+		boolean initialVal = inChange;
+		try {
+			inChange = true;
+			version++;
+			Iterator iterator = removedEntries.iterator();
+			while (iterator.hasNext()) {
+				index.remove((MarkerEntry) iterator.next());
+			}
+			// remove all changed entries before adding any, so that none is
+			// compared with an entry that is about to move
+			Set entries = new LinkedHashSet();
+			Set changed = new HashSet();
+			iterator = updatedEntries.iterator();
+			while (iterator.hasNext()) {
+				MarkerEntry entry = (MarkerEntry) iterator.next();
+				MarkerEntry existing = index.get(entry);
+				if (existing != null) {
+					index.remove(existing);
+					existing.clearCache();
+					entry = existing;
+					changed.add(entry);
+				}
+				entries.add(entry);
+			}
+			iterator = entries.iterator();
+			while (iterator.hasNext()) {
+				MarkerEntry entry = (MarkerEntry) iterator.next();
+				Object category = null;
+				if (indexGroup != null) {
+					category = findCategory(indexGroup, entry);
+					if (category == null) {
+						continue;// skip stale markers
+					}
+				}
+				index.add(entry, category, getSeverity(entry));
+				if (changed.contains(entry)) {
+					changedVersions.put(entry, new Long(version));
+				}
+			}
+			if (changedVersions.size() > index.size()) {
+				// cheaper to refresh everything than to update each entry
+				forgetChanges();
+			}
+			updateFromIndex();
+			return true;
+		} finally {
+			inChange = initialVal;
+		}
+	}
+
+	/**
+	 * Update the entries, categories and counts from the index.
+	 */
+	private void updateFromIndex() {
+		if (markerToEntryMap != null) {
+			markerToEntryMap.clear();
+			markerToEntryMap = null;
+		}
+		markerEntryArray = index.toArray();
+		int[] counts = index.getSeverityCounts();
+		markerCounts = new Integer[] {
+				new Integer(counts[IMarker.SEVERITY_ERROR]),
+				new Integer(counts[IMarker.SEVERITY_WARNING]),
+				new Integer(counts[IMarker.SEVERITY_INFO]),
+				new Integer(counts[MarkerEntryTree.OTHER_SEVERITY]) };
+		if (indexGroup == null) {
+			categories = EMPTY_CATEGORY_ARRAY;
+			return;
+		}
+		Map categoryCounts = index.getCategoryCounts();
+		MarkerCategory[] markerCategories = new MarkerCategory[categoryCounts
+				.size()];
+		Iterator iterator = categoryCounts.values().iterator();
+		int start = 0;
+		int i = 0;
+		while (iterator.hasNext()) {
+			int end = start + ((Integer) iterator.next()).intValue() - 1;
+			markerCategories[i++] = new MarkerCategory(this, markerEntryArray,
+					start, end, indexGroup.getMarkerField().getValue(
+							markerEntryArray[start]));
+			start = end + 1;
+		}
+		categories = markerCategories;
+	}
+
+	/**
+	 * Create an empty index for the current comparator and category group.
+	 * 
+	 * @return MarkerEntryTree
+	 */
+	private MarkerEntryTree createIndex() {
+		indexGroup = builder.getCategoryGroup();
+		return new MarkerEntryTree(builder.getComparator().getFieldsComparator(),
+				indexGroup == null ? null : indexGroup.getEntriesComparator());
+	}
+
+	/**
+	 * Return the category of the entry in the given group.
+	 * 
+	 * @param group
+	 * @param entry
+	 * @return {@link MarkerGroupingEntry} or <code>null</code> if the marker
+	 *         is stale
+	 */
+	private static MarkerGroupingEntry findCategory(MarkerGroup group,
+			MarkerEntry entry) {
+		IMarker marker = entry.getMarker();
+		if (marker == null) {
+			return null;
+		}
+		try {
+			return group.findGroupValue(marker.getType(), marker);
+		} catch (CoreException e) {
+			entry.checkIfMarkerStale();
+			return null;
+		}
+	}
+
+	/**
+	 * Return the severity of the entry.
+	 * 
+	 * @param entry
+	 * @return the severity, or {@link MarkerEntryTree#OTHER_SEVERITY} if it
+	 *         has none
+	 */
+	private static int getSeverity(MarkerEntry entry) {
+		IMarker marker = entry.getMarker();
+		Object value = null;
+		if (marker != null) {
+			try {
+				value = marker.getAttribute(IMarker.SEVERITY);
+			} catch (CoreException e) {
+				entry.checkIfMarkerStale();
+			}
+		}
+		if (value instanceof Integer) {
+			int severity = ((Integer) value).intValue();
+			if (severity >= IMarker.SEVERITY_INFO
+					&& severity <= IMarker.SEVERITY_ERROR) {
+				return severity;
+			}
+		}
+		return MarkerEntryTree.OTHER_SEVERITY;
+	}
+
+	/**
+	 * Record that the entries were not updated entry by entry.
+	 */
+	private void rebuilt() {
+		version++;
+		forgetChanges();
+	}
+
+	private void forgetChanges() {
+		rebuildVersion = version;
+		changedVersions.clear();
+	}
+
+	/**
+	 * Return the entries of the markers that were changed after the given
+	 * version and up to the new version. Besides refreshing the structure, a
+	 * viewer that showed the entries of the older version only has to update
+	 * the labels of these entries.
+	 * 
+	 * @param shownVersion
+	 *            the version shown
+	 * @param newVersion
+	 *            the version to show
+	 * @return MarkerEntry[] or <code>null</code> if the entries were rebuilt
+	 *         since the version shown, and have to be refreshed
+	 */
+	synchronized MarkerEntry[] getChangedEntries(long shownVersion,
+			long newVersion) {
+		Collection changed = new ArrayList();
+		Iterator iterator = changedVersions.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry next = (Map.Entry) iterator.next();
+			if (((Long) next.getValue()).longValue() <= newVersion) {
+				changed.add(next.getKey());
+				iterator.remove();
+			}
+		}
+		if (rebuildVersion > shownVersion) {
+			return null;
+		}
+		return (MarkerEntry[]) changed.toArray(new MarkerEntry[changed.size()]);
+	}
+
+	/**
+	 * @return Returns the version of the entries.
+	 */
+	long getVersion() {
+		return version;
+	}
+
 	/**
 	 * Returns an array of marker counts where getMarkerCounts()[severity] is
 	 * the number of markers in the list with the given severity.
@@ -309,22 +604,7 @@ class Markers {
 	static Integer[] getMarkerCounts(MarkerEntry[] entries) {
 		int[] ints = new int[] { 0, 0, 0, 0 };
 		for (int idx = 0; idx < entries.length; idx++) {
-			IMarker marker = entries[idx].getMarker();
-			int severity = -1;
-			Object value = null;
-			try {
-				value = marker.getAttribute(IMarker.SEVERITY);
-			} catch (CoreException e) {
-				entries[idx].checkIfMarkerStale();
-			}
-			if (value instanceof Integer) {
-				severity = ((Integer) value).intValue();
-			}
-			if (severity >= IMarker.SEVERITY_INFO) {
-				ints[severity]++;
-			} else {
-				ints[3]++;
-			}
+			ints[getSeverity(entries[idx])]++;
 		}
 
 		return new Integer[] { new Integer(ints[2]), new Integer(ints[1]),
@@ -392,6 +672,8 @@ class Markers {
 		if (!inChange) {
 			markers.markerEntryArray = markerEntryArray;
 			markers.categories = categories;
+			markers.markerCounts = markerCounts;
+			markers.version = version;
 		}
 		return markers;
 	}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009 IBM Corporation and others.
+ * Copyright (c) 2009, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -184,10 +184,8 @@ class MarkersChangeListener implements IResourceChangeListener {
 	 * of the markers that were gathered initially, and keeps them synched at
 	 * any point with the markers of interest in Workspace. Unfortunately marker
 	 * operations cannot be locked so locking between gathering of markers and
-	 * marker deltas is not possible.
-	 * 
-	 * Note : this method of updating is NOT used and tested yet and has holes
-	 * but left out SOLELY for further investigation(*).
+	 * marker deltas is not possible, changes received while gathering are
+	 * applied again after it.
 	 * 
 	 * @param event
 	 */
@@ -231,7 +229,6 @@ class MarkersChangeListener implements IResourceChangeListener {
 		if (removed.size() > 0 || added.size() > 0 || changed.size() > 0) {
 			MarkerUpdate update = new MarkerUpdate(added, removed, changed);
 			builder.incrementalUpdate(update);
-			builder.getUpdateScheduler().scheduleUpdate();
 		} else {
 			handleNoMarkerChange();
 		}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010 IBM Corporation and others.
+ * Copyright (c) 2010, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -32,4 +32,17 @@ public class MockMarkerEntry extends MarkerEntry{
 		// TODO Auto-generated method stub
 		return name.equals(((MockMarkerEntry)obj).name);
 	}
+	/* (non-Javadoc)
+	 * @see java.lang.Object#hashCode()
+	 */
+	public int hashCode() {
+		return name.hashCode();
+	}
+	/* (non-Javadoc)
+	 * @see org.eclipse.ui.internal.views.markers.MarkerEntry#createSortKey()
+	 */
+	MarkerEntry createSortKey() {
+		// the name never changes
+		return this;
+	}
 }
\ No newline at end of file
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2014 IBM Corporation and others.
+ * Copyright (c) 2009, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -36,6 +36,9 @@ class UIUpdateJob extends WorkbenchJob {
 
 	private long lastUpdateTime=-1;
 
+	// the version of the markers shown by the viewer
+	private long shownVersion = -1;
+
 	/**
 	 * @param view
 	 *            the markers view base class
@@ -107,8 +110,18 @@ class UIUpdateJob extends WorkbenchJob {
 				IContentProvider contentProvider= viewer.getContentProvider();
 				contentProvider.inputChanged(viewer, view.getViewerInput(), clone);
 
+				MarkerEntry[] changedEntries = view.getBuilder().getMarkers()
+						.getChangedEntries(shownVersion, clone.getVersion());
 				viewer.getTree().setRedraw(false);
-				viewer.refresh(true);
+				if (changedEntries == null) {
+					viewer.refresh(true);
+				} else {
+					// only the moved, new and changed items need new labels
+					viewer.refresh(false);
+					viewer.update(changedEntries, null);
+					viewer.update(clone.getCategories(), null);
+				}
+				shownVersion = clone.getVersion();
 				if (!monitor.isCanceled()) {
 					//do not expand if canceled
 					view.reexpandCategories();
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2012 IBM Corporation and others.
+ * Copyright (c) 2005, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -132,6 +132,9 @@ public class CommonNavigatorMessages extends NLS {
 	
 	/** */
 	public static String NavigatorContentService_problemSavingPreferences;
+
+	/** */
+	public static String NavigatorContentServiceContentProvider_Computing_children_of_0_;
 	
 
 	static {
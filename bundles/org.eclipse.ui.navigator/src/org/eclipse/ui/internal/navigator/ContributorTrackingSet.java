@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2010 IBM Corporation and others.
+ * Copyright (c) 2009, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -58,13 +58,13 @@ public class ContributorTrackingSet extends LinkedHashSet {
 	
 	public boolean add(Object o) { 
 		if (contributor != null) {
-			contentService.rememberContribution(contributor, firstClassContributor, o);
+			rememberContribution(o);
 		}
 		return super.add(o);
 	}
 	
 	public boolean remove(Object o) { 
-		contentService.forgetContribution(o);
+		forgetContribution(o);
 		return super.remove(o);
 	}
 
@@ -72,10 +72,28 @@ public class ContributorTrackingSet extends LinkedHashSet {
 	public void clear() { 
 		Iterator it = iterator();
 		while (it.hasNext())
-			contentService.forgetContribution(it.next());
+			forgetContribution(it.next());
 		super.clear();
 	}
 
+	/**
+	 * Remember that the current contributor contributed the element.
+	 * 
+	 * @param element
+	 */
+	protected void rememberContribution(Object element) {
+		contentService.rememberContribution(contributor, firstClassContributor, element);
+	}
+
+	/**
+	 * Forget the contributor of the element.
+	 * 
+	 * @param element
+	 */
+	protected void forgetContribution(Object element) {
+		contentService.forgetContribution(element);
+	}
+
 	/**
 	 * 
 	 * @return The current contributor.
@@ -130,7 +148,7 @@ public class ContributorTrackingSet extends LinkedHashSet {
 
 			public void remove() {
 				delegateIterator.remove();
-				contentService.forgetContribution(current);
+				forgetContribution(current);
 			}
 		};
 	}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2011 IBM Corporation and others.
+ * Copyright (c) 2003, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -15,19 +15,32 @@
 package org.eclipse.ui.internal.navigator;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.SafeRunner;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.viewers.AbstractTreeViewer;
 import org.eclipse.jface.viewers.ITreeContentProvider;
 import org.eclipse.jface.viewers.ITreePathContentProvider;
+import org.eclipse.jface.viewers.ITreeViewerListener;
+import org.eclipse.jface.viewers.TreeExpansionEvent;
 import org.eclipse.jface.viewers.TreePath;
 import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.osgi.util.NLS;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Display;
 import org.eclipse.ui.internal.navigator.extensions.NavigatorContentDescriptor;
 import org.eclipse.ui.internal.navigator.extensions.NavigatorContentExtension;
 import org.eclipse.ui.internal.navigator.extensions.NavigatorViewerDescriptor;
@@ -37,6 +50,7 @@ import org.eclipse.ui.navigator.INavigatorContentDescriptor;
 import org.eclipse.ui.navigator.INavigatorViewerDescriptor;
 import org.eclipse.ui.navigator.IPipelinedTreeContentProvider;
 import org.eclipse.ui.navigator.OverridePolicy;
+import org.eclipse.ui.progress.PendingUpdateAdapter;
 
 /**
  * <p>
@@ -53,6 +67,19 @@ import org.eclipse.ui.navigator.OverridePolicy;
  * functionality (filters, sorting, etc) may choose to use this class, in effect
  * using an extensible, aggregating, delegate content provider.
  * </p>
+ * <p>
+ * When the viewer is configured with
+ * {@link NavigatorViewerDescriptor#PROP_COMPUTE_CHILDREN_CONCURRENTLY}, the
+ * children of an element with more than one first class content extension
+ * are computed by each extension, with its pipeline, in a separate job. The
+ * viewer is handed a {@link PendingUpdateAdapter} until all of them are done,
+ * and then refreshed with their results, merged in the order of the
+ * extensions as when computed sequentially. The contributors of the children
+ * are remembered on merge in the same order. When the children are computed
+ * again, the viewer keeps being handed the children computed last until the
+ * new ones are available. The children computed last are forgotten when the
+ * parent is collapsed or is no longer among the children of its parent.
+ * </p>
  * 
  * @see org.eclipse.ui.internal.navigator.NavigatorContentService
  * @see org.eclipse.ui.internal.navigator.NavigatorContentServiceLabelProvider
@@ -70,8 +97,30 @@ public class NavigatorContentServiceContentProvider implements ITreeContentProvi
 
 	private final boolean enforceHasChildren;
 
+	private final boolean computeChildrenConcurrently;
+
+	/* Map of (parent element or path, PendingChildren)-pairs */
+	private final Map pendingChildren = new HashMap();
+
+	/* Map of (parent element or path, Object[])-pairs of the children last computed */
+	private final Map computedChildren = new HashMap();
+
+	/* True while the viewer is refreshed with computed children */
+	private boolean deliveringChildren;
+
 	private Viewer viewer;
 
+	/* Forgets the children computed for collapsed parents */
+	private final ITreeViewerListener collapseListener = new ITreeViewerListener() {
+		public void treeExpanded(TreeExpansionEvent event) {
+			// the children are computed when asked for
+		}
+
+		public void treeCollapsed(TreeExpansionEvent event) {
+			forgetComputedChildren(Collections.singleton(event.getElement()));
+		}
+	};
+
 	/**
 	 * <p>
 	 * Creates a cached {@link NavigatorContentService}&nbsp;from the given
@@ -102,9 +151,17 @@ public class NavigatorContentServiceContentProvider implements ITreeContentProvi
 		contentService = aContentService;
 		INavigatorViewerDescriptor vDesc = contentService.getViewerDescriptor();
 		enforceHasChildren = vDesc.getBooleanConfigProperty(NavigatorViewerDescriptor.PROP_ENFORCE_HAS_CHILDREN);
+		computeChildrenConcurrently = vDesc.getBooleanConfigProperty(NavigatorViewerDescriptor.PROP_COMPUTE_CHILDREN_CONCURRENTLY);
 	}
 
 	public void inputChanged(Viewer aViewer, Object anOldInput, Object aNewInput) {
+		cancelPendingChildren();
+		if (computeChildrenConcurrently && viewer != aViewer) {
+			if (viewer instanceof AbstractTreeViewer)
+				((AbstractTreeViewer) viewer).removeTreeListener(collapseListener);
+			if (aViewer instanceof AbstractTreeViewer)
+				((AbstractTreeViewer) aViewer).addTreeListener(collapseListener);
+		}
 		viewer = aViewer;
 		contentService.updateService(aViewer, anOldInput, aNewInput);
 	}
@@ -116,12 +173,16 @@ public class NavigatorContentServiceContentProvider implements ITreeContentProvi
 
 	public Object[] getChildren(Object aParentElement) {
 		Set enabledExtensions = contentService.findContentExtensionsByTriggerPoint(aParentElement);
+		if (isComputingChildrenConcurrently())
+			return internalGetChildrenConcurrently(aParentElement, aParentElement, enabledExtensions);
 		return internalGetChildren(aParentElement, aParentElement, enabledExtensions, !ELEMENTS);
 	}
 
 	public Object[] getChildren(TreePath parentPath) {
 		Object aParentElement = internalAsElement(parentPath);
 		Set enabledExtensions = contentService.findContentExtensionsByTriggerPoint(aParentElement);
+		if (isComputingChildrenConcurrently())
+			return internalGetChildrenConcurrently(aParentElement, parentPath, enabledExtensions);
 		return internalGetChildren(aParentElement, parentPath, enabledExtensions, !ELEMENTS);
 	}
 	
@@ -136,44 +197,305 @@ public class NavigatorContentServiceContentProvider implements ITreeContentProvi
 		final ContributorTrackingSet localSet = new ContributorTrackingSet(contentService);
 
 		for (final Iterator itr = enabledExtensions.iterator(); itr.hasNext();) {
-			SafeRunner.run(new NavigatorSafeRunnable() {
-				NavigatorContentExtension foundExtension = (NavigatorContentExtension) itr.next();
-				Object[] contributedChildren = null;
-				NavigatorContentExtension[] overridingExtensions;
+			NavigatorContentExtension foundExtension = (NavigatorContentExtension) itr.next();
+			if (!isOverridingExtensionInSet(foundExtension.getDescriptor(), enabledExtensions)) {
+				collectChildren(foundExtension, aParentElement, aParentElementOrPath, localSet,
+						finalSet, elements);
+			}
+		}		
 
-				public void run() throws Exception {
-					if (!isOverridingExtensionInSet(foundExtension.getDescriptor(),
-							enabledExtensions)) {
-						if (elements)
-							contributedChildren = foundExtension.internalGetContentProvider()
-									.getElements(aParentElementOrPath);
-						else
-							contributedChildren = foundExtension.internalGetContentProvider()
-									.getChildren(aParentElementOrPath);
-						overridingExtensions = foundExtension
-								.getOverridingExtensionsForTriggerPoint(aParentElement);
-						INavigatorContentDescriptor foundDescriptor = foundExtension
-								.getDescriptor();
-						localSet.setContributor(foundDescriptor, foundDescriptor);
-						localSet.setContents(contributedChildren);
+		return finalSet.toArray();
+	}
 
-						if (overridingExtensions.length > 0) {
-							pipelineChildren(aParentElement, overridingExtensions, foundDescriptor,
-									localSet, elements);
+	/**
+	 * Add the children contributed by the given first class extension,
+	 * piped through its overriding extensions, to <code>finalSet</code>.
+	 */
+	private void collectChildren(final NavigatorContentExtension foundExtension,
+			final Object aParentElement, final Object aParentElementOrPath,
+			final ContributorTrackingSet localSet, final Set finalSet, final boolean elements) {
+		SafeRunner.run(new NavigatorSafeRunnable() {
+			Object[] contributedChildren = null;
+			NavigatorContentExtension[] overridingExtensions;
+
+			public void run() throws Exception {
+				if (elements)
+					contributedChildren = foundExtension.internalGetContentProvider()
+							.getElements(aParentElementOrPath);
+				else
+					contributedChildren = foundExtension.internalGetContentProvider()
+							.getChildren(aParentElementOrPath);
+				overridingExtensions = foundExtension
+						.getOverridingExtensionsForTriggerPoint(aParentElement);
+				INavigatorContentDescriptor foundDescriptor = foundExtension
+						.getDescriptor();
+				localSet.setContributor(foundDescriptor, foundDescriptor);
+				localSet.setContents(contributedChildren);
+
+				if (overridingExtensions.length > 0) {
+					pipelineChildren(aParentElement, overridingExtensions, foundDescriptor,
+							localSet, elements);
+				}
+				finalSet.addAll(localSet);
+			}
+
+			public void handleException(Throwable e) {
+				NavigatorPlugin.logError(0, NLS.bind(
+						CommonNavigatorMessages.Exception_Invoking_Extension, new Object[] {
+								foundExtension.getDescriptor().getId(), aParentElement }), e);
+			}
+		});
+	}
+
+	/**
+	 * @return True if children are requested by the UI thread of a tree viewer
+	 *         configured to compute them concurrently.
+	 */
+	private boolean isComputingChildrenConcurrently() {
+		if (!computeChildrenConcurrently || !(viewer instanceof AbstractTreeViewer))
+			return false;
+		Control control = viewer.getControl();
+		return control != null && !control.isDisposed()
+				&& control.getDisplay() == Display.getCurrent();
+	}
+
+	/**
+	 * Return the children last computed for the given parent, or a pending node
+	 * if they were never computed, and start a job per first class extension to
+	 * compute them again if this was not done yet. Once all jobs are done, their
+	 * results are merged in the order of the extensions and the parent is
+	 * refreshed in the viewer, which asks for its children again.
+	 */
+	private Object[] internalGetChildrenConcurrently(final Object aParentElement,
+			final Object aParentElementOrPath, Set enabledExtensions) {
+		Object[] children = (Object[]) computedChildren.get(aParentElementOrPath);
+		if (deliveringChildren && children != null) {
+			// the refreshed element may appear at other paths, which are
+			// answered with what was computed for them without starting over
+			return children;
+		}
+		PendingChildren pending = (PendingChildren) pendingChildren.get(aParentElementOrPath);
+		if (pending != null) {
+			if (!deliveringChildren) {
+				// the parent was refreshed after its children were requested
+				pending.outdated = true;
+			}
+			return children != null ? children : new Object[] { pending.placeholder };
+		}
+
+		List firstClassExtensions = findFirstClassExtensions(enabledExtensions);
+		if (firstClassExtensions.size() < 2) {
+			// nothing to compute concurrently
+			computedChildren.remove(aParentElementOrPath);
+			return internalGetChildren(aParentElement, aParentElementOrPath, enabledExtensions,
+					!ELEMENTS);
+		}
+
+		pending = scheduleChildren(aParentElement, aParentElementOrPath, firstClassExtensions);
+		return children != null ? children : new Object[] { pending.placeholder };
+	}
+
+	private List findFirstClassExtensions(Set enabledExtensions) {
+		List firstClassExtensions = new ArrayList();
+		for (Iterator itr = enabledExtensions.iterator(); itr.hasNext();) {
+			NavigatorContentExtension foundExtension = (NavigatorContentExtension) itr.next();
+			if (!isOverridingExtensionInSet(foundExtension.getDescriptor(), enabledExtensions)) {
+				firstClassExtensions.add(foundExtension);
+			}
+		}
+		return firstClassExtensions;
+	}
+
+	/**
+	 * Schedule a job per first class extension computing its children of the
+	 * given parent, the last one to finish handing the merged children to
+	 * {@link #setComputedChildren(Object, Object, PendingChildren, Object[])}.
+	 */
+	private PendingChildren scheduleChildren(final Object aParentElement,
+			final Object aParentElementOrPath, List firstClassExtensions) {
+		final PendingChildren pending = new PendingChildren();
+		pendingChildren.put(aParentElementOrPath, pending);
+		final Set[] contributions = new Set[firstClassExtensions.size()];
+		final DeferredTrackingSet[] trackingSets = new DeferredTrackingSet[contributions.length];
+		final int[] remaining = new int[] { contributions.length };
+		final Display display = viewer.getControl().getDisplay();
+		for (int i = 0; i < contributions.length; i++) {
+			final int index = i;
+			final NavigatorContentExtension foundExtension = (NavigatorContentExtension) firstClassExtensions
+					.get(i);
+			Job job = new Job(NLS.bind(
+					CommonNavigatorMessages.NavigatorContentServiceContentProvider_Computing_children_of_0_,
+					aParentElement)) {
+				protected IStatus run(IProgressMonitor monitor) {
+					if (monitor.isCanceled()) {
+						return Status.CANCEL_STATUS;
+					}
+					Set contribution = new LinkedHashSet();
+					DeferredTrackingSet trackingSet = new DeferredTrackingSet(contentService);
+					collectChildren(foundExtension, aParentElement, aParentElementOrPath,
+							trackingSet, contribution, !ELEMENTS);
+					synchronized (contributions) {
+						contributions[index] = contribution;
+						trackingSets[index] = trackingSet;
+						if (--remaining[0] > 0) {
+							return Status.OK_STATUS;
 						}
-						finalSet.addAll(localSet);
 					}
+					// as if computed sequentially, the first extension wins
+					final Set finalSet = new LinkedHashSet();
+					for (int j = 0; j < contributions.length; j++) {
+						trackingSets[j].replayContributions();
+						finalSet.addAll(contributions[j]);
+					}
+					if (!display.isDisposed()) {
+						display.asyncExec(new Runnable() {
+							public void run() {
+								setComputedChildren(aParentElement, aParentElementOrPath,
+										pending, finalSet.toArray());
+							}
+						});
+					}
+					return Status.OK_STATUS;
 				}
 
-				public void handleException(Throwable e) {
-					NavigatorPlugin.logError(0, NLS.bind(
-							CommonNavigatorMessages.Exception_Invoking_Extension, new Object[] {
-									foundExtension.getDescriptor().getId(), aParentElement }), e);
+				public boolean belongsTo(Object family) {
+					return family == NavigatorContentServiceContentProvider.this;
 				}
-			});
-		}		
+			};
+			job.setSystem(true);
+			job.schedule();
+		}
+		return pending;
+	}
 
-		return finalSet.toArray();
+	/**
+	 * Refresh the parent in the viewer with its computed children, unless its
+	 * computation was cancelled or the viewer disposed meanwhile, and compute
+	 * them again if the parent was refreshed while they were computed.
+	 */
+	private void setComputedChildren(Object aParentElement, Object aParentElementOrPath,
+			PendingChildren pending, Object[] children) {
+		if (pendingChildren.get(aParentElementOrPath) != pending) {
+			return;
+		}
+		pendingChildren.remove(aParentElementOrPath);
+		Control control = viewer.getControl();
+		if (control == null || control.isDisposed()) {
+			return;
+		}
+		Object[] oldChildren = (Object[]) computedChildren.put(aParentElementOrPath, children);
+		if (oldChildren != null) {
+			Set removedChildren = new HashSet(Arrays.asList(oldChildren));
+			removedChildren.removeAll(Arrays.asList(children));
+			forgetComputedChildren(removedChildren);
+		}
+		deliveringChildren = true;
+		try {
+			((AbstractTreeViewer) viewer).refresh(aParentElement, false);
+		} finally {
+			deliveringChildren = false;
+		}
+		if (pending.outdated) {
+			List firstClassExtensions = findFirstClassExtensions(contentService
+					.findContentExtensionsByTriggerPoint(aParentElement));
+			if (firstClassExtensions.size() < 2) {
+				computedChildren.remove(aParentElementOrPath);
+			} else {
+				scheduleChildren(aParentElement, aParentElementOrPath, firstClassExtensions);
+			}
+		}
+	}
+
+	/**
+	 * Forget the children computed for the given elements, at any path, and
+	 * for the paths through them.
+	 */
+	private void forgetComputedChildren(Set elements) {
+		if (elements.isEmpty())
+			return;
+		for (Iterator itr = computedChildren.keySet().iterator(); itr.hasNext();) {
+			Object parentElementOrPath = itr.next();
+			if (parentElementOrPath instanceof TreePath) {
+				TreePath path = (TreePath) parentElementOrPath;
+				for (int i = 0; i < path.getSegmentCount(); i++) {
+					if (elements.contains(path.getSegment(i))) {
+						itr.remove();
+						break;
+					}
+				}
+			} else if (elements.contains(parentElementOrPath)) {
+				itr.remove();
+			}
+		}
+	}
+
+	/**
+	 * Cancel the jobs computing children and forget their placeholders.
+	 */
+	private void cancelPendingChildren() {
+		if (!computeChildrenConcurrently)
+			return;
+		Job.getJobManager().cancel(this);
+		pendingChildren.clear();
+		computedChildren.clear();
+	}
+
+	/**
+	 * A tracking set used by the jobs computing children. It records the
+	 * contributions instead of remembering them, so that they are remembered
+	 * once all jobs are done, in the order of the extensions.
+	 */
+	private static class DeferredTrackingSet extends ContributorTrackingSet {
+
+		private static final long serialVersionUID = 1L;
+
+		private final NavigatorContentService contentService;
+
+		/* The contributions, as {contributor, first class contributor, element}; no contributor forgets the element */
+		private final List contributions = new ArrayList();
+
+		DeferredTrackingSet(NavigatorContentService aContentService) {
+			super(aContentService);
+			contentService = aContentService;
+		}
+
+		protected void rememberContribution(Object element) {
+			contributions.add(new Object[] { getContributor(), getFirstClassContributor(), element });
+		}
+
+		protected void forgetContribution(Object element) {
+			contributions.add(new Object[] { null, null, element });
+		}
+
+		/**
+		 * Remember and forget the recorded contributions in the order they
+		 * were recorded.
+		 */
+		void replayContributions() {
+			for (Iterator itr = contributions.iterator(); itr.hasNext();) {
+				Object[] contribution = (Object[]) itr.next();
+				if (contribution[0] == null) {
+					contentService.forgetContribution(contribution[2]);
+				} else {
+					contentService.rememberContribution(
+							(INavigatorContentDescriptor) contribution[0],
+							(INavigatorContentDescriptor) contribution[1], contribution[2]);
+				}
+			}
+			contributions.clear();
+		}
+	}
+
+	/**
+	 * The children of a parent being computed by jobs.
+	 */
+	private static class PendingChildren {
+
+		/* The node shown in place of the children until they are computed */
+		final PendingUpdateAdapter placeholder = new PendingUpdateAdapter();
+
+		/* Whether the parent was refreshed while its children were computed */
+		boolean outdated;
 	}
 
 	/**
@@ -466,6 +788,9 @@ public class NavigatorContentServiceContentProvider implements ITreeContentProvi
 	 * @see org.eclipse.jface.viewers.IContentProvider#dispose()
 	 */
 	public void dispose() {
+		cancelPendingChildren();
+		if (computeChildrenConcurrently && viewer instanceof AbstractTreeViewer)
+			((AbstractTreeViewer) viewer).removeTreeListener(collapseListener);
 		if (disposeContentService) {
 			contentService.dispose();
 		}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2010 IBM Corporation and others.
+ * Copyright (c) 2003, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -37,6 +37,7 @@ import org.eclipse.ui.internal.navigator.extensions.NavigatorContentExtension;
 import org.eclipse.ui.navigator.CommonViewer;
 import org.eclipse.ui.navigator.ICommonLabelProvider;
 import org.eclipse.ui.navigator.INavigatorContentService;
+import org.eclipse.ui.progress.PendingUpdateAdapter;
 
 /**
  * <p>
@@ -123,6 +124,8 @@ public class NavigatorContentServiceLabelProvider extends EventManager
 	}
 
 	public String getColumnText(Object anElement, int aColumn) {
+		if (anElement instanceof PendingUpdateAdapter)
+			return ((PendingUpdateAdapter) anElement).getLabel(anElement);
 		ILabelProvider[] labelProviders = contentService.findRelevantLabelProviders(anElement);
 		if (labelProviders.length == 0)
 			return NLS.bind(CommonNavigatorMessages.NavigatorContentServiceLabelProvider_Error_no_label_provider_for_0_, makeSmallString(anElement));	
@@ -142,6 +145,8 @@ public class NavigatorContentServiceLabelProvider extends EventManager
 	 * @see org.eclipse.jface.viewers.DelegatingStyledCellLabelProvider.IStyledLabelProvider#getStyledText(java.lang.Object)
 	 */
 	public StyledString getStyledText(Object anElement) {
+		if (anElement instanceof PendingUpdateAdapter)
+			return new StyledString(((PendingUpdateAdapter) anElement).getLabel(anElement));
 		Collection extensions = contentService.findPossibleLabelExtensions(anElement);
 		if (extensions.size() == 0)
 			return new StyledString(NLS.bind(CommonNavigatorMessages.NavigatorContentServiceLabelProvider_Error_no_label_provider_for_0_, makeSmallString(anElement)));	
@@ -347,6 +352,10 @@ public class NavigatorContentServiceLabelProvider extends EventManager
 	 * @see org.eclipse.jface.viewers.ITreePathLabelProvider#updateLabel(org.eclipse.jface.viewers.ViewerLabel, org.eclipse.jface.viewers.TreePath)
 	 */
 	public void updateLabel(ViewerLabel label, TreePath elementPath) { 
+		if (elementPath.getLastSegment() instanceof PendingUpdateAdapter) {
+			label.setText(getText(elementPath.getLastSegment()));
+			return;
+		}
 		 
 		Collection contentExtensions = contentService.findPossibleLabelExtensions(elementPath.getLastSegment());
 		reusableLabel.reset(label);
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2010 IBM Corporation and others.
+ * Copyright (c) 2003, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -76,6 +76,12 @@ public final class NavigatorContentDescriptor implements
 
 	private Expression possibleChildren;
 
+	/* the results of enablement by type, if it only tests the type */
+	private TypeExpressionCache enablementTypes;
+
+	/* the results of possibleChildren by type, if it only tests the type */
+	private TypeExpressionCache possibleChildrenTypes;
+
 	private Expression initialActivation;
 	
 	private String icon;
@@ -264,6 +270,9 @@ public final class NavigatorContentDescriptor implements
 			children = configElement.getChildren(TAG_TRIGGER_POINTS);
 			if (children.length == 1) {
 				enablement = new CustomAndExpression(children[0]);
+				if (TypeExpressionCache.isTypeOnly(children[0])) {
+					enablementTypes = new TypeExpressionCache(enablement);
+				}
 			} else {
 				throw new WorkbenchException(NLS.bind(
 						CommonNavigatorMessages.Attribute_Missing_Warning,
@@ -277,6 +286,9 @@ public final class NavigatorContentDescriptor implements
 			children = configElement.getChildren(TAG_POSSIBLE_CHILDREN);
 			if (children.length == 1) {
 				possibleChildren = new CustomAndExpression(children[0]);
+				if (TypeExpressionCache.isTypeOnly(children[0])) {
+					possibleChildrenTypes = new TypeExpressionCache(possibleChildren);
+				}
 			} else if(children.length > 1){
 				throw new WorkbenchException(NLS.bind(
 						CommonNavigatorMessages.Attribute_Missing_Warning,
@@ -290,6 +302,9 @@ public final class NavigatorContentDescriptor implements
 			try {
 				enablement = ElementHandler.getDefault().create(
 						ExpressionConverter.getDefault(), children[0]);
+				if (TypeExpressionCache.isTypeOnly(children[0])) {
+					enablementTypes = new TypeExpressionCache(enablement);
+				}
 			} catch (CoreException e) {
 				NavigatorPlugin.log(IStatus.ERROR, 0, e.getMessage(), e);
 			}
@@ -421,6 +436,9 @@ public final class NavigatorContentDescriptor implements
 		if (enablement == null || anElement == null) {
 			return false;
 		}
+		if (enablementTypes != null) {
+			return enablementTypes.evaluate(anElement);
+		}
 
 		IEvaluationContext context = NavigatorPlugin.getEvalContext(anElement);
 		return NavigatorPlugin.safeEvaluate(enablement, context) == EvaluationResult.TRUE;
@@ -448,6 +466,11 @@ public final class NavigatorContentDescriptor implements
 		} else if(anElement instanceof IStructuredSelection) {
 			return arePossibleChildren((IStructuredSelection) anElement);
 		}
+		if (possibleChildren != null && possibleChildrenTypes != null) {
+			return possibleChildrenTypes.evaluate(anElement);
+		} else if (possibleChildren == null && enablementTypes != null) {
+			return enablementTypes.evaluate(anElement);
+		}
 
 		IEvaluationContext context = NavigatorPlugin.getEvalContext(anElement);
 		if (possibleChildren != null) {
@@ -457,6 +480,28 @@ public final class NavigatorContentDescriptor implements
 		}
 		return false;
 	}
+
+	/**
+	 * 
+	 * @return True if and only if the result of {@link #isTriggerPoint(Object)}
+	 *         only depends on the class of the element.
+	 */
+	public boolean isTriggerPointTypeOnly() {
+		return enablement == null || enablementTypes != null;
+	}
+
+	/**
+	 * 
+	 * @return True if and only if the result of
+	 *         {@link #isPossibleChild(Object)} only depends on the class of
+	 *         the element, which is not a selection.
+	 */
+	public boolean isPossibleChildTypeOnly() {
+		if (possibleChildren != null) {
+			return possibleChildrenTypes != null;
+		}
+		return enablement == null || enablementTypes != null;
+	}
 	
 	/**
 	 * A convenience method to check all elements in a selection.
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2011 IBM Corporation and others.
+ * Copyright (c) 2003, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,7 +11,6 @@
  *******************************************************************************/
 package org.eclipse.ui.internal.navigator.extensions;
 
-import java.lang.ref.SoftReference;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -28,6 +27,7 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.SafeRunner;
 import org.eclipse.jface.resource.ImageDescriptor;
 import org.eclipse.jface.resource.ImageRegistry;
+import org.eclipse.jface.viewers.IStructuredSelection;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.ui.internal.navigator.NavigatorPlugin;
 import org.eclipse.ui.internal.navigator.NavigatorSafeRunnable;
@@ -49,48 +49,35 @@ public class NavigatorContentDescriptorManager {
 
 	private final Map allDescriptors = new HashMap();
 
+	/**
+	 * Caches the descriptors found for the elements of a class, when they only
+	 * depend on the class of the element.
+	 */
 	private class EvaluationCache implements VisibilityListener {
 
-		private final Map evaluations/* <Object, NavigatorContentDescriptor[]> */= new HashMap();
-		private final Map evaluationsWithOverrides/*<Object, NavigatorContentDescriptor[]>*/ = new HashMap();
+		private final Map evaluations/* <Class, NavigatorContentDescriptor[]> */= new WeakHashMap();
+		private final Map evaluationsWithOverrides/*<Class, NavigatorContentDescriptor[]>*/ = new WeakHashMap();
 
 		EvaluationCache(VisibilityAssistant anAssistant) {
 			anAssistant.addListener(this);
 		}
 
-		protected final NavigatorContentDescriptor[] getDescriptors(Object anElement) {
-			return getDescriptors(anElement, true);
-		}
-
-		protected final void setDescriptors(Object anElement, NavigatorContentDescriptor[] theDescriptors) {
-			setDescriptors(anElement, theDescriptors, true);
-		}
-
-		protected final NavigatorContentDescriptor[] getDescriptors(Object anElement, boolean toComputeOverrides) {
+		protected final synchronized NavigatorContentDescriptor[] getDescriptors(Object anElement, boolean considerOverrides) {
 
 			if (anElement == null)
 				return null;
 
-			NavigatorContentDescriptor[] cachedDescriptors = null;
-			if (toComputeOverrides) {
-				SoftReference cache = (SoftReference) evaluations.get(anElement);
-				if (cache != null && (cachedDescriptors = (NavigatorContentDescriptor[]) cache.get()) == null)
-					evaluations.remove(anElement);
-				return cachedDescriptors;
-			}
-			SoftReference cache = (SoftReference) evaluationsWithOverrides.get(anElement);
-			if (cache != null && (cachedDescriptors = (NavigatorContentDescriptor[]) cache.get()) == null)
-				evaluationsWithOverrides.remove(anElement);
-			return cachedDescriptors;
-
+			if (considerOverrides)
+				return (NavigatorContentDescriptor[]) evaluationsWithOverrides.get(anElement.getClass());
+			return (NavigatorContentDescriptor[]) evaluations.get(anElement.getClass());
 		}
 
-		protected final void setDescriptors(Object anElement, NavigatorContentDescriptor[] theDescriptors, boolean toComputeOverrides) {
+		protected final synchronized void setDescriptors(Object anElement, NavigatorContentDescriptor[] theDescriptors, boolean considerOverrides) {
 			if (anElement != null) {
-				if (toComputeOverrides)
-					evaluations.put(new EvalutationReference(anElement), new SoftReference(theDescriptors));
+				if (considerOverrides)
+					evaluationsWithOverrides.put(anElement.getClass(), theDescriptors);
 				else
-					evaluationsWithOverrides.put(new EvalutationReference(anElement), new SoftReference(theDescriptors));
+					evaluations.put(anElement.getClass(), theDescriptors);
 			}
 		}
 
@@ -99,7 +86,7 @@ public class NavigatorContentDescriptorManager {
 		 * 
 		 * @see org.eclipse.ui.internal.navigator.VisibilityAssistant.VisibilityListener#onVisibilityOrActivationChange()
 		 */
-		public void onVisibilityOrActivationChange() {
+		public synchronized void onVisibilityOrActivationChange() {
 			evaluations.clear();
 			evaluationsWithOverrides.clear();
 		}
@@ -216,12 +203,15 @@ public class NavigatorContentDescriptorManager {
 
 		Set descriptors = new TreeSet(ExtensionSequenceNumberComparator.INSTANCE);
 		NavigatorContentDescriptor[] cachedDescriptors = null;
-		if ((cachedDescriptors = cache.getDescriptors(anElement)) != null) {
+		if ((cachedDescriptors = cache.getDescriptors(anElement, considerOverrides)) != null) {
 			descriptors.addAll(Arrays.asList(cachedDescriptors));
+			return descriptors;
 		}
 
+		/* whether the result only depends on the class of the element */
+		boolean[] typeOnly = new boolean[] { !(anElement instanceof IStructuredSelection) };
 		if (considerOverrides) {
-			addDescriptorsConsideringOverrides(anElement, firstClassDescriptorsSet, aVisibilityAssistant, descriptors, possibleChild);
+			addDescriptorsConsideringOverrides(anElement, firstClassDescriptorsSet, aVisibilityAssistant, descriptors, possibleChild, typeOnly);
 			if (Policy.DEBUG_RESOLUTION) {
 				System.out.println("Find descriptors for: " + Policy.getObjectString(anElement) + //$NON-NLS-1$
 						": " + descriptors); //$NON-NLS-1$
@@ -232,17 +222,43 @@ public class NavigatorContentDescriptorManager {
 			for (Iterator contentDescriptorsItr = firstClassDescriptorsSet.iterator(); contentDescriptorsItr.hasNext();) {
 				NavigatorContentDescriptor descriptor = (NavigatorContentDescriptor) contentDescriptorsItr.next();
 
-				if (aVisibilityAssistant.isActive(descriptor) && aVisibilityAssistant.isVisible(descriptor)
-						&& (possibleChild ? descriptor.isPossibleChild(anElement) : descriptor.isTriggerPoint(anElement))) {
+				if (isApplicable(anElement, descriptor, aVisibilityAssistant, possibleChild, typeOnly)) {
 					descriptors.add(descriptor);
 				}
 			}
 		}
-		cache.setDescriptors(anElement, (NavigatorContentDescriptor[]) descriptors.toArray(new NavigatorContentDescriptor[descriptors.size()]));
+		if (typeOnly[0]) {
+			cache.setDescriptors(anElement, (NavigatorContentDescriptor[]) descriptors.toArray(new NavigatorContentDescriptor[descriptors.size()]), considerOverrides);
+		}
 
 		return descriptors;
 	}
 
+	/**
+	 * Determine if the descriptor is active and visible, and enables for the
+	 * given element.
+	 * 
+	 * @param typeOnly
+	 *            set to false when the evaluation depends on more than the
+	 *            class of the element
+	 */
+	private boolean isApplicable(Object anElement, NavigatorContentDescriptor descriptor,
+			VisibilityAssistant aVisibilityAssistant, boolean possibleChild, boolean[] typeOnly) {
+		if (!aVisibilityAssistant.isActive(descriptor) || !aVisibilityAssistant.isVisible(descriptor)) {
+			return false;
+		}
+		if (possibleChild) {
+			if (!descriptor.isPossibleChildTypeOnly()) {
+				typeOnly[0] = false;
+			}
+			return descriptor.isPossibleChild(anElement);
+		}
+		if (!descriptor.isTriggerPointTypeOnly()) {
+			typeOnly[0] = false;
+		}
+		return descriptor.isTriggerPoint(anElement);
+	}
+
 	private EvaluationCache getEvaluationCache(Map anEvaluationMap,
 			VisibilityAssistant aVisibilityAssistant) {
 		EvaluationCache c = (EvaluationCache) anEvaluationMap
@@ -257,7 +273,7 @@ public class NavigatorContentDescriptorManager {
 
 	private boolean addDescriptorsConsideringOverrides(Object anElement,
 			Set theChildDescriptors, VisibilityAssistant aVisibilityAssistant,
-			Set theFoundDescriptors, boolean possibleChild) {
+			Set theFoundDescriptors, boolean possibleChild, boolean[] typeOnly) {
 		int initialSize = theFoundDescriptors.size();
 
 		NavigatorContentDescriptor descriptor;
@@ -267,9 +283,7 @@ public class NavigatorContentDescriptorManager {
 			descriptor = (NavigatorContentDescriptor) contentDescriptorsItr
 					.next();
 
-			boolean isApplicable = aVisibilityAssistant.isActive(descriptor)
-					&& aVisibilityAssistant.isVisible(descriptor)
-					&& (possibleChild ? descriptor.isPossibleChild(anElement) : descriptor.isTriggerPoint(anElement));
+			boolean isApplicable = isApplicable(anElement, descriptor, aVisibilityAssistant, possibleChild, typeOnly);
 
 			if (descriptor.hasOverridingExtensions()) {
 
@@ -277,7 +291,7 @@ public class NavigatorContentDescriptorManager {
 
 				Set overridingDescriptors = new TreeSet(ExtensionSequenceNumberComparator.INSTANCE);
 				isOverridden = addDescriptorsConsideringOverrides(anElement, descriptor.getOverriddingExtensions(),
-						aVisibilityAssistant, overridingDescriptors, possibleChild);
+						aVisibilityAssistant, overridingDescriptors, possibleChild, typeOnly);
 
 				if (!isOverridden && isApplicable) {
 					theFoundDescriptors.add(descriptor);
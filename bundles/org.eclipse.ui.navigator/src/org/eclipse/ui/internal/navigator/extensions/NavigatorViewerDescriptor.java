@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2010 IBM Corporation and others.
+ * Copyright (c) 2003, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -40,6 +40,15 @@ public final class NavigatorViewerDescriptor implements
 	 */
 	public static final String PROP_ENFORCE_HAS_CHILDREN = "org.eclipse.ui.navigator.enforceHasChildren"; //$NON-NLS-1$
 
+	/**
+	 * {@value} (boolean): True indicates the children of an element are
+	 * computed by each of its content extensions concurrently, in background
+	 * jobs, while the viewer shows a pending node in their place
+	 * (<b>false</b>). The content providers of the viewer must support being
+	 * called from a thread other than the UI thread.
+	 */
+	public static final String PROP_COMPUTE_CHILDREN_CONCURRENTLY = "org.eclipse.ui.navigator.computeChildrenConcurrently"; //$NON-NLS-1$
+
 	static final String TAG_INCLUDES = "includes"; //$NON-NLS-1$
 
 	static final String TAG_EXCLUDES = "excludes"; //$NON-NLS-1$
@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) 2015 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.internal.navigator.extensions;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.eclipse.core.expressions.EvaluationResult;
+import org.eclipse.core.expressions.Expression;
+import org.eclipse.core.runtime.IConfigurationElement;
+import org.eclipse.ui.internal.navigator.NavigatorPlugin;
+
+/**
+ * Caches the results of an expression which only tests the type of the
+ * element it is evaluated for, by the class of the element.
+ *
+ * @since 3.5
+ */
+final class TypeExpressionCache {
+
+	private static final String TAG_INSTANCEOF = "instanceof"; //$NON-NLS-1$
+	private static final String TAG_AND = "and"; //$NON-NLS-1$
+	private static final String TAG_OR = "or"; //$NON-NLS-1$
+	private static final String TAG_NOT = "not"; //$NON-NLS-1$
+	private static final String ATT_VALUE = "value"; //$NON-NLS-1$
+
+	private final Expression expression;
+
+	/* Map of (Class, Boolean)-pairs */
+	private final Map results = new WeakHashMap();
+
+	/**
+	 * @param anExpression
+	 *            An expression which only tests the type of the element
+	 */
+	TypeExpressionCache(Expression anExpression) {
+		expression = anExpression;
+	}
+
+	/**
+	 * @param anElement
+	 *            A non-null element
+	 * @return True if and only if the expression is true for the element.
+	 */
+	boolean evaluate(Object anElement) {
+		Class type = anElement.getClass();
+		synchronized (results) {
+			Boolean result = (Boolean) results.get(type);
+			if (result != null) {
+				return result.booleanValue();
+			}
+		}
+		boolean result = NavigatorPlugin.safeEvaluate(expression,
+				NavigatorPlugin.getEvalContext(anElement)) == EvaluationResult.TRUE;
+		synchronized (results) {
+			results.put(type, result ? Boolean.TRUE : Boolean.FALSE);
+		}
+		return result;
+	}
+
+	/**
+	 * Determine if the expression made of the children of the given element,
+	 * combined with AND semantics, only tests the type of the default
+	 * variable.
+	 *
+	 * @param anElement
+	 *            The element of the expression, like
+	 *            <code>triggerPoints</code> or <code>enablement</code>
+	 * @return True if and only if the children are <code>instanceof</code>
+	 *         tests, possibly combined with <code>and</code>,
+	 *         <code>or</code> and <code>not</code>.
+	 */
+	static boolean isTypeOnly(IConfigurationElement anElement) {
+		IConfigurationElement[] children = anElement.getChildren();
+		for (int i = 0; i < children.length; i++) {
+			if (!isTypeTest(children[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isTypeTest(IConfigurationElement anElement) {
+		String name = anElement.getName();
+		if (TAG_INSTANCEOF.equals(name)) {
+			return anElement.getAttribute(ATT_VALUE) != null;
+		}
+		if (TAG_AND.equals(name) || TAG_OR.equals(name) || TAG_NOT.equals(name)) {
+			return isTypeOnly(anElement);
+		}
+		return false;
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -122,6 +122,7 @@ import org.eclipse.ui.internal.IWorkbenchGraphicConstants;
 import org.eclipse.ui.internal.WorkbenchImages;
 import org.eclipse.ui.internal.WorkbenchMessages;
 import org.eclipse.ui.internal.WorkbenchPlugin;
+import org.eclipse.ui.internal.dialogs.FilteredItemsIndex;
 import org.eclipse.ui.progress.UIJob;
 import org.eclipse.ui.statushandlers.StatusManager;
 
@@ -213,8 +214,28 @@ public abstract class FilteredItemsSelectionDialog extends
 
 	private List lastCompletedResult;
 
+	/**
+	 * The filter of the last full search. Filters which are sub-filters of it
+	 * are matched against its result instead of searching again.
+	 */
 	private ItemsFilter lastCompletedFilter;
 
+	/**
+	 * The last filter matched against the result of the last full search, and
+	 * its result, which is matched instead when a filter is a sub-filter of it.
+	 */
+	private ItemsFilter lastRefinedFilter;
+
+	private List lastRefinedResult;
+
+	/**
+	 * The items found by the last full search, and an index of their names
+	 * which is created when it is first needed.
+	 */
+	private Object[] lastSearchedItems;
+
+	private FilteredItemsIndex lastSearchedIndex;
+
 	private String initialPatternText;
 
 	private int selectionMode;
@@ -2104,9 +2125,21 @@ public abstract class FilteredItemsSelectionDialog extends
 	 * of the last, then <code>FilterJob</code> only filters in the cache. If
 	 * it is the first filtering or the new filter isn't a sub-filter of the
 	 * last one, a full search is run.
+	 * <p>
+	 * When filtering in the cache, the items are looked up in an index of the
+	 * names of the last full search if the filter requires its pattern to
+	 * match the names of the items, and matched in parallel if the filter
+	 * supports concurrent matching.
+	 * </p>
 	 */
 	private class FilterJob extends Job {
 
+		/**
+		 * The minimum number of items matched by one job when matching in
+		 * parallel.
+		 */
+		private static final int MIN_CHUNK_SIZE = 5000;
+
 		/**
 		 * Filter used during the filtering process.
 		 */
@@ -2194,28 +2227,43 @@ public abstract class FilteredItemsSelectionDialog extends
 			if (lastCompletedFilter != null
 					&& lastCompletedFilter.isSubFilter(this.itemsFilter)) {
 
-				int length = lastCompletedResult.size() / 500;
+				// the items matching the new filter are among the items
+				// matching the last full search, or among those matching
+				// the last refinement of it
+				Object[] candidates;
+				if (lastRefinedFilter != null
+						&& lastRefinedFilter.isSubFilter(this.itemsFilter)) {
+					candidates = lastRefinedResult.toArray();
+				} else {
+					candidates = lastCompletedResult.toArray();
+				}
+				Object[] indexedCandidates = getIndexedCandidates(itemsFilter);
+				if (indexedCandidates != null
+						&& indexedCandidates.length < candidates.length) {
+					candidates = indexedCandidates;
+				}
+
 				monitor
 						.beginTask(
 								WorkbenchMessages.FilteredItemsSelectionDialog_cacheSearchJob_taskName,
-								length);
+								candidates.length / 500 + 1);
 
-				for (int pos = 0; pos < lastCompletedResult.size(); pos++) {
+				matchItems(candidates, monitor);
 
-					Object item = lastCompletedResult.get(pos);
-					if (monitor.isCanceled())
-						break;
-					contentProvider.add(item, itemsFilter);
-
-					if ((pos % 500) == 0) {
-						monitor.worked(1);
-					}
+				if (!monitor.isCanceled()) {
+					// narrowing the filter further refines this result, while
+					// widening it is still answered by the last full search
+					contentProvider.rememberResult(itemsFilter, false);
 				}
 
 			} else {
 
 				lastCompletedFilter = null;
 				lastCompletedResult = null;
+				lastRefinedFilter = null;
+				lastRefinedResult = null;
+				lastSearchedItems = null;
+				lastSearchedIndex = null;
 
 				SubProgressMonitor subMonitor = null;
 				if (monitor != null) {
@@ -2231,13 +2279,100 @@ public abstract class FilteredItemsSelectionDialog extends
 
 				if (monitor != null && !monitor.isCanceled()) {
 					monitor.worked(2);
-					contentProvider.rememberResult(itemsFilter);
+					contentProvider.rememberResult(itemsFilter, true);
 					monitor.worked(3);
 				}
 			}
 
 		}
 
+		/**
+		 * Returns the items of the last full search which can match the given
+		 * filter, looking them up in an index of their names.
+		 * 
+		 * @param itemsFilter
+		 *            the filter
+		 * @return the candidate items, or <code>null</code> if the index can
+		 *         not be used for the filter
+		 */
+		private Object[] getIndexedCandidates(ItemsFilter itemsFilter) {
+			Object[] items = lastSearchedItems;
+			if (items == null || !itemsFilter.isNameMatchRequired()) {
+				return null;
+			}
+			if (lastSearchedIndex == null) {
+				String[] names = new String[items.length];
+				for (int i = 0; i < items.length; i++) {
+					names[i] = getElementName(items[i]);
+				}
+				lastSearchedIndex = new FilteredItemsIndex(items, names);
+			}
+			return lastSearchedIndex.getCandidates(itemsFilter.patternMatcher);
+		}
+
+		/**
+		 * Adds the given items matching the filter to the content provider.
+		 * Large arrays are split into chunks which are matched by several
+		 * jobs if the filter supports concurrent matching.
+		 * 
+		 * @param items
+		 *            the items to match
+		 * @param monitor
+		 *            for monitoring progress
+		 */
+		private void matchItems(final Object[] items,
+				final GranualProgressMonitor monitor) {
+			int chunks = 1;
+			if (itemsFilter.isConcurrentMatchingSupported()) {
+				chunks = Math.min(Runtime.getRuntime().availableProcessors(),
+						items.length / MIN_CHUNK_SIZE);
+			}
+			if (chunks <= 1) {
+				for (int pos = 0; pos < items.length; pos++) {
+					if (monitor.isCanceled())
+						break;
+					contentProvider.add(items[pos], itemsFilter);
+
+					if ((pos % 500) == 0) {
+						monitor.worked(1);
+					}
+				}
+				return;
+			}
+
+			final ItemsFilter chunkFilter = itemsFilter;
+			Job[] jobs = new Job[chunks];
+			int chunkSize = (items.length + chunks - 1) / chunks;
+			for (int i = 0; i < chunks; i++) {
+				final int start = i * chunkSize;
+				final int end = Math.min(start + chunkSize, items.length);
+				jobs[i] = new Job(
+						WorkbenchMessages.FilteredItemsSelectionDialog_jobLabel) {
+					@Override
+					protected IStatus run(IProgressMonitor chunkMonitor) {
+						for (int pos = start; pos < end; pos++) {
+							if (monitor.isCanceled()
+									|| chunkMonitor.isCanceled())
+								return Status.CANCEL_STATUS;
+							contentProvider.add(items[pos], chunkFilter);
+						}
+						return Status.OK_STATUS;
+					}
+				};
+				jobs[i].setSystem(true);
+				jobs[i].schedule();
+			}
+			for (int i = 0; i < chunks; i++) {
+				try {
+					jobs[i].join();
+				} catch (InterruptedException e) {
+					// stop waiting, the chunks check the monitor
+					monitor.setCanceled(true);
+				}
+				monitor.worked(chunkSize / 500 + 1);
+			}
+		}
+
 	}
 
 	/**
@@ -2578,6 +2713,37 @@ public abstract class FilteredItemsSelectionDialog extends
 		 */
 		public abstract boolean matchItem(Object item);
 
+		/**
+		 * Checks whether an item can only match this filter if its name, as
+		 * returned by {@link FilteredItemsSelectionDialog#getElementName(Object)},
+		 * matches the pattern of this filter. If so, the dialog may look up
+		 * the items which can match a narrowed pattern in an index of their
+		 * names instead of matching every item. The default implementation
+		 * returns <code>false</code>.
+		 * 
+		 * @return <code>true</code> if {@link #matchItem(Object)} only
+		 *         returns <code>true</code> for items whose names match
+		 *         {@link #matches(String)}, <code>false</code> otherwise
+		 * @since 3.106
+		 */
+		public boolean isNameMatchRequired() {
+			return false;
+		}
+
+		/**
+		 * Checks whether {@link #matchItem(Object)} may be called for several
+		 * items concurrently. If so, the dialog may match large numbers of
+		 * items in parallel. The default implementation returns
+		 * <code>false</code>.
+		 * 
+		 * @return <code>true</code> if this filter is thread safe,
+		 *         <code>false</code> otherwise
+		 * @since 3.106
+		 */
+		public boolean isConcurrentMatchingSupported() {
+			return false;
+		}
+
 		/**
 		 * Checks consistency of an item. Item is inconsistent if was changed or
 		 * removed.
@@ -2896,14 +3062,28 @@ public abstract class FilteredItemsSelectionDialog extends
 		 * Remember result of filtering.
 		 * 
 		 * @param itemsFilter
+		 * @param fullSearch
+		 *            <code>true</code> if the result was found by a full
+		 *            search, <code>false</code> if it refines the result of
+		 *            the last full search
 		 */
-		public void rememberResult(ItemsFilter itemsFilter) {
+		public void rememberResult(ItemsFilter itemsFilter, boolean fullSearch) {
+			Object[] sortedItems = getSortedItems();
 			List itemsList = Collections.synchronizedList(Arrays
-					.asList(getSortedItems()));
+					.asList(sortedItems));
 			// synchronization
 			if (itemsFilter == filter) {
-				lastCompletedFilter = itemsFilter;
-				lastCompletedResult = itemsList;
+				if (fullSearch) {
+					lastCompletedFilter = itemsFilter;
+					lastCompletedResult = itemsList;
+					lastRefinedFilter = null;
+					lastRefinedResult = null;
+					lastSearchedItems = sortedItems;
+					lastSearchedIndex = null;
+				} else {
+					lastRefinedFilter = itemsFilter;
+					lastRefinedResult = itemsList;
+				}
 			}
 
 		}
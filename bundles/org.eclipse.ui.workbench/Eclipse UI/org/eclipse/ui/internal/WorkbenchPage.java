@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2014 IBM Corporation and others.
+ * Copyright (c) 2000, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -52,6 +52,7 @@ import org.eclipse.e4.core.di.annotations.Optional;
 import org.eclipse.e4.core.services.events.IEventBroker;
 import org.eclipse.e4.ui.di.UIEventTopic;
 import org.eclipse.e4.ui.internal.workbench.PartServiceImpl;
+import org.eclipse.e4.ui.internal.workbench.UIEventPublisher;
 import org.eclipse.e4.ui.model.application.MApplication;
 import org.eclipse.e4.ui.model.application.descriptor.basic.MPartDescriptor;
 import org.eclipse.e4.ui.model.application.ui.MElementContainer;
@@ -3350,92 +3351,103 @@ public class WorkbenchPage extends CompatibleWorkbenchPage implements
 			}
 		}
 
-		modelService.resetPerspectiveModel(persp, window);
-
-		if (saveablesList != null) {
-			saveablesList.postClose(postCloseInfo);
+		// deliver the events of the model changes together
+		UIEventPublisher publisher = application.getContext().get(UIEventPublisher.class);
+		if (publisher != null) {
+			publisher.beginBatch();
 		}
+		try {
+			modelService.resetPerspectiveModel(persp, window);
 
-		boolean revert = false;
-		if (desc instanceof PerspectiveDescriptor) {
-			PerspectiveDescriptor perspectiveDescriptor = (PerspectiveDescriptor) desc;
-			revert = perspectiveDescriptor.isPredefined()
-					&& !perspectiveDescriptor.hasCustomDefinition();
-		}
+			if (saveablesList != null) {
+				saveablesList.postClose(postCloseInfo);
+			}
+
+			boolean revert = false;
+			if (desc instanceof PerspectiveDescriptor) {
+				PerspectiveDescriptor perspectiveDescriptor = (PerspectiveDescriptor) desc;
+				revert = perspectiveDescriptor.isPredefined()
+						&& !perspectiveDescriptor.hasCustomDefinition();
+			}
 		
-		MPerspective dummyPerspective = null;
-		if (!revert) {
-			dummyPerspective = (MPerspective) modelService.cloneSnippet(application, desc.getId(),
-					window);
-		}
+			MPerspective dummyPerspective = null;
+			if (!revert) {
+				dummyPerspective = (MPerspective) modelService.cloneSnippet(application, desc.getId(),
+						window);
+			}
 
-		if (dummyPerspective == null) {
-			// instantiate a dummy perspective perspective
-			dummyPerspective = modelService.createModelElement(MPerspective.class);
-			dummyPerspective.setElementId(persp.getElementId());
+			if (dummyPerspective == null) {
+				// instantiate a dummy perspective perspective
+				dummyPerspective = modelService.createModelElement(MPerspective.class);
+				dummyPerspective.setElementId(persp.getElementId());
 
-			IPerspectiveFactory factory = ((PerspectiveDescriptor) desc).createFactory();
-			ModeledPageLayout modelLayout = new ModeledPageLayout(window, modelService,
-					partService, dummyPerspective, desc, this, true);
-			factory.createInitialLayout(modelLayout);
+				IPerspectiveFactory factory = ((PerspectiveDescriptor) desc).createFactory();
+				ModeledPageLayout modelLayout = new ModeledPageLayout(window, modelService,
+						partService, dummyPerspective, desc, this, true);
+				factory.createInitialLayout(modelLayout);
 
-			PerspectiveTagger.tagPerspective(dummyPerspective, modelService);
-			PerspectiveExtensionReader reader = new PerspectiveExtensionReader();
-			reader.extendLayout(getExtensionTracker(), desc.getId(), modelLayout);
-		}
+				PerspectiveTagger.tagPerspective(dummyPerspective, modelService);
+				PerspectiveExtensionReader reader = new PerspectiveExtensionReader();
+				reader.extendLayout(getExtensionTracker(), desc.getId(), modelLayout);
+			}
 
-		String hiddenItems = dummyPerspective.getPersistedState().get(ModeledPageLayout.HIDDEN_ITEMS_KEY);
-		persp.getPersistedState().put(ModeledPageLayout.HIDDEN_ITEMS_KEY, hiddenItems);
+			String hiddenItems = dummyPerspective.getPersistedState().get(ModeledPageLayout.HIDDEN_ITEMS_KEY);
+			persp.getPersistedState().put(ModeledPageLayout.HIDDEN_ITEMS_KEY, hiddenItems);
 		
-		// legacyWindow.getMenuManager().updateAll(true);
-		// ((ICoolBarManager2) ((WorkbenchWindow)
-		// getWorkbenchWindow()).getCoolBarManager2())
-		// .resetItemOrder();
+			// legacyWindow.getMenuManager().updateAll(true);
+			// ((ICoolBarManager2) ((WorkbenchWindow)
+			// getWorkbenchWindow()).getCoolBarManager2())
+			// .resetItemOrder();
 
-		// Hide placeholders for parts that exist in the 'global' areas
-		modelService.hideLocalPlaceholders(window, dummyPerspective);
+			// Hide placeholders for parts that exist in the 'global' areas
+			modelService.hideLocalPlaceholders(window, dummyPerspective);
 
-		int dCount = dummyPerspective.getChildren().size();
-		while (dummyPerspective.getChildren().size() > 0) {
-			MPartSashContainerElement dChild = dummyPerspective.getChildren().remove(0);
-			persp.getChildren().add(dChild);
-		}
+			int dCount = dummyPerspective.getChildren().size();
+			while (dummyPerspective.getChildren().size() > 0) {
+				MPartSashContainerElement dChild = dummyPerspective.getChildren().remove(0);
+				persp.getChildren().add(dChild);
+			}
 
-		while (persp.getChildren().size() > dCount) {
-			MUIElement child = persp.getChildren().get(0);
-			child.setToBeRendered(false);
-			persp.getChildren().remove(0);
-		}
+			while (persp.getChildren().size() > dCount) {
+				MUIElement child = persp.getChildren().get(0);
+				child.setToBeRendered(false);
+				persp.getChildren().remove(0);
+			}
 
-		List<MWindow> existingDetachedWindows = new ArrayList<MWindow>();
-		existingDetachedWindows.addAll(persp.getWindows());
+			List<MWindow> existingDetachedWindows = new ArrayList<MWindow>();
+			existingDetachedWindows.addAll(persp.getWindows());
 
-		// Move any detached windows from template to perspective
-		while (dummyPerspective.getWindows().size() > 0) {
-			MWindow detachedWindow = dummyPerspective.getWindows().remove(0);
-			persp.getWindows().add(detachedWindow);
-		}
+			// Move any detached windows from template to perspective
+			while (dummyPerspective.getWindows().size() > 0) {
+				MWindow detachedWindow = dummyPerspective.getWindows().remove(0);
+				persp.getWindows().add(detachedWindow);
+			}
 		
-		// Remove original windows.  Can't remove them first or the MParts will be disposed
-		for (MWindow detachedWindow : existingDetachedWindows) {
-			detachedWindow.setToBeRendered(false);
-			persp.getWindows().remove(detachedWindow);
-		}
+			// Remove original windows.  Can't remove them first or the MParts will be disposed
+			for (MWindow detachedWindow : existingDetachedWindows) {
+				detachedWindow.setToBeRendered(false);
+				persp.getWindows().remove(detachedWindow);
+			}
 
-		// deactivate and activate other action sets as
-		updateActionSets(getPerspective(persp), getPerspective(dummyPerspective));
-		modelToPerspectiveMapping.remove(dummyPerspective);
+			// deactivate and activate other action sets as
+			updateActionSets(getPerspective(persp), getPerspective(dummyPerspective));
+			modelToPerspectiveMapping.remove(dummyPerspective);
 
-		// migrate the tags
-		List<String> tags = persp.getTags();
-		tags.clear();
-		tags.addAll(dummyPerspective.getTags());
-
-		// remove HIDDEN_EXPLICITLY tag from trim elements
-		List<MTrimElement> trimElements = modelService.findElements(window, null,
-				MTrimElement.class, null);
-		for (MTrimElement mTrimElement : trimElements) {
-			mTrimElement.getTags().remove(IPresentationEngine.HIDDEN_EXPLICITLY);
+			// migrate the tags
+			List<String> tags = persp.getTags();
+			tags.clear();
+			tags.addAll(dummyPerspective.getTags());
+
+			// remove HIDDEN_EXPLICITLY tag from trim elements
+			List<MTrimElement> trimElements = modelService.findElements(window, null,
+					MTrimElement.class, null);
+			for (MTrimElement mTrimElement : trimElements) {
+				mTrimElement.getTags().remove(IPresentationEngine.HIDDEN_EXPLICITLY);
+			}
+		} finally {
+			if (publisher != null) {
+				publisher.endBatch();
+			}
 		}
 
 		partService.requestActivation();
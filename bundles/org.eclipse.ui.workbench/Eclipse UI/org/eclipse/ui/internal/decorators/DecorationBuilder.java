@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -44,6 +44,9 @@ public class DecorationBuilder implements IDecoration {
 
 	LightweightDecoratorDefinition currentDefinition;
 
+	// The ids of the definitions applied so far
+	private List decoratorIds = new ArrayList();
+
 	// A flag set if a value has been added
 	private boolean valueSet = false;
 
@@ -73,6 +76,9 @@ public class DecorationBuilder implements IDecoration {
 	 */
 	void setCurrentDefinition(LightweightDecoratorDefinition definition) {
 		this.currentDefinition = definition;
+		if (definition != null) {
+			decoratorIds.add(definition.getId());
+		}
 	}
 
 	/**
@@ -142,7 +148,8 @@ public class DecorationBuilder implements IDecoration {
 		}
 		DecorationResult newResult = new DecorationResult(new ArrayList(
 				prefixes), new ArrayList(suffixes), descriptors,
-				foregroundColor, backgroundColor, font);
+				foregroundColor, backgroundColor, font,
+				(String[]) decoratorIds.toArray(new String[decoratorIds.size()]));
 
 		return newResult;
 	}
@@ -154,6 +161,7 @@ public class DecorationBuilder implements IDecoration {
 		this.prefixes.clear();
 		this.suffixes.clear();
 		this.descriptors = new ImageDescriptor[DECORATOR_ARRAY_SIZE];
+		this.decoratorIds.clear();
 		valueSet = false;
 	}
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2006 IBM Corporation and others.
+ * Copyright (c) 2000, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -30,6 +30,11 @@ class DecorationReference {
 
 	IDecorationContext[] contexts;
 
+	/**
+	 * The time this reference was queued, in milliseconds.
+	 */
+	final long queuedTime = System.currentTimeMillis();
+
     DecorationReference(Object object, Object adaptedObject, IDecorationContext context) {
         this.contexts = new IDecorationContext[] { context} ;
 		Assert.isNotNull(object);
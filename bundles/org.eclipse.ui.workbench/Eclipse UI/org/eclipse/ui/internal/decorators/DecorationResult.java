@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -39,9 +39,13 @@ public class DecorationResult {
 
 	private Font font;
 
+	// The ids of the decorators which were applied to compute the result
+	private String[] decoratorIds;
+
 	DecorationResult(List prefixList, List suffixList,
 			ImageDescriptor[] imageDescriptors, Color resultForegroundColor,
-			Color resultBackgroundColor, Font resultFont) {
+			Color resultBackgroundColor, Font resultFont,
+			String[] decoratorIdArray) {
 		prefixes = prefixList;
 		suffixes = suffixList;
 
@@ -52,6 +56,7 @@ public class DecorationResult {
 		foregroundColor = resultForegroundColor;
 		backgroundColor = resultBackgroundColor;
 		font = resultFont;
+		decoratorIds = decoratorIdArray;
 	}
 
 	/**
@@ -175,4 +180,20 @@ public class DecorationResult {
 	Color getForegroundColor() {
 		return foregroundColor;
 	}
+
+	/**
+	 * Return whether the decorator with the supplied id was applied to
+	 * compute the result.
+	 * 
+	 * @param decoratorId
+	 * @return boolean
+	 */
+	boolean isDecoratedBy(String decoratorId) {
+		for (int i = 0; i < decoratorIds.length; i++) {
+			if (decoratorIds[i].equals(decoratorId)) {
+				return true;
+			}
+		}
+		return false;
+	}
 }
@@ -0,0 +1,437 @@
+/*******************************************************************************
+ * Copyright (c) 2015 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.internal.decorators;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jface.resource.ImageDescriptor;
+import org.eclipse.jface.viewers.IDecorationContext;
+
+/**
+ * The cache of the decoration results computed by the
+ * {@link DecorationScheduler}.
+ * <p>
+ * Results are keyed on the decorated element and the decoration context. The
+ * elements are only weakly referenced, so results of elements which are no
+ * longer used elsewhere are dropped. The cache is bounded by a capacity: every
+ * result has a weight of one plus the number of image overlays it references,
+ * and once the total weight exceeds the capacity the least recently used
+ * results are evicted.
+ * </p>
+ * <p>
+ * Elements can be pinned while their labels are waiting to be updated. The
+ * results of pinned elements are never evicted, so that the label update
+ * finds them; they become evictable again once the elements are unpinned.
+ * </p>
+ * <p>
+ * The cache is thread safe. Access is synchronized on the receiver.
+ * </p>
+ *
+ * @since 3.106
+ */
+class DecorationResultCache {
+
+	/**
+	 * The default capacity, in weight units.
+	 */
+	static final int DEFAULT_CAPACITY = 10000;
+
+	/**
+	 * The key of a cached result. The element is only weakly referenced.
+	 */
+	private static final class WeakKey extends WeakReference {
+		final int hash;
+
+		final IDecorationContext context;
+
+		WeakKey(Object element, IDecorationContext context, int hash,
+				ReferenceQueue queue) {
+			super(element, queue);
+			this.context = context;
+			this.hash = hash;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			}
+			if (obj instanceof LookupKey) {
+				return obj.equals(this);
+			}
+			if (obj instanceof WeakKey) {
+				WeakKey other = (WeakKey) obj;
+				Object element = get();
+				return element != null && hash == other.hash
+						&& context.equals(other.context)
+						&& element.equals(other.get());
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * The key used to look up results, so that lookups do not create weak
+	 * references.
+	 */
+	private static final class LookupKey {
+		final Object element;
+
+		final IDecorationContext context;
+
+		final int hash;
+
+		LookupKey(Object element, IDecorationContext context) {
+			this.element = element;
+			this.context = context;
+			this.hash = element.hashCode() * 31 + context.hashCode();
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj instanceof WeakKey) {
+				WeakKey other = (WeakKey) obj;
+				return hash == other.hash && context.equals(other.context)
+						&& element.equals(other.get());
+			}
+			return false;
+		}
+	}
+
+	// WeakKey -> DecorationResult, in access order
+	private final LinkedHashMap results = new LinkedHashMap(16, 0.75f, true);
+
+	// WeakKey -> DecorationResult, of pinned elements found by evict()
+	private final Map pinnedResults = new HashMap();
+
+	// the pinned elements
+	private final Set pinnedElements = new HashSet();
+
+	private final ReferenceQueue queue = new ReferenceQueue();
+
+	private int capacity = DEFAULT_CAPACITY;
+
+	private long weight;
+
+	private long hits;
+
+	private long misses;
+
+	private long evictions;
+
+	/**
+	 * Return the result cached for the element in the given context and
+	 * count the lookup as a hit or miss.
+	 *
+	 * @param element
+	 *            the decorated element
+	 * @param context
+	 *            the decoration context
+	 * @return the result or <code>null</code> if there is none
+	 */
+	synchronized DecorationResult get(Object element,
+			IDecorationContext context) {
+		DecorationResult result = peek(element, context);
+		if (result == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		return result;
+	}
+
+	/**
+	 * Return the result cached for the element in the given context without
+	 * counting the lookup.
+	 *
+	 * @param element
+	 *            the decorated element
+	 * @param context
+	 *            the decoration context
+	 * @return the result or <code>null</code> if there is none
+	 */
+	synchronized DecorationResult peek(Object element,
+			IDecorationContext context) {
+		expungeStaleEntries();
+		LookupKey lookup = new LookupKey(element, context);
+		DecorationResult result = (DecorationResult) results.get(lookup);
+		if (result == null) {
+			result = (DecorationResult) pinnedResults.get(lookup);
+		}
+		return result;
+	}
+
+	/**
+	 * Cache the result for the element in the given context, evicting the
+	 * least recently used results if the cache is full.
+	 *
+	 * @param element
+	 *            the decorated element
+	 * @param context
+	 *            the decoration context
+	 * @param result
+	 *            the result
+	 */
+	synchronized void put(Object element, IDecorationContext context,
+			DecorationResult result) {
+		expungeStaleEntries();
+		LookupKey lookup = new LookupKey(element, context);
+		DecorationResult old = (DecorationResult) results.remove(lookup);
+		if (old == null) {
+			old = (DecorationResult) pinnedResults.remove(lookup);
+		}
+		if (old != null) {
+			weight -= weightOf(old);
+		}
+		results.put(new WeakKey(element, context, lookup.hash, queue), result);
+		weight += weightOf(result);
+		evict();
+	}
+
+	/**
+	 * Remove the results which were computed using the given decorator.
+	 *
+	 * @param decoratorId
+	 *            the id of the decorator
+	 */
+	synchronized void invalidate(String decoratorId) {
+		invalidate(results, decoratorId);
+		invalidate(pinnedResults, decoratorId);
+	}
+
+	private void invalidate(Map map, String decoratorId) {
+		for (Iterator iterator = map.values().iterator(); iterator.hasNext();) {
+			DecorationResult result = (DecorationResult) iterator.next();
+			if (result.isDecoratedBy(decoratorId)) {
+				weight -= weightOf(result);
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Remove the results of the given elements in all contexts.
+	 *
+	 * @param elements
+	 *            the elements
+	 */
+	synchronized void invalidate(Collection elements) {
+		if (elements.isEmpty()) {
+			return;
+		}
+		Set invalid = new HashSet(elements);
+		invalidate(results, invalid);
+		invalidate(pinnedResults, invalid);
+	}
+
+	private void invalidate(Map map, Set elements) {
+		for (Iterator iterator = map.entrySet().iterator(); iterator.hasNext();) {
+			Map.Entry entry = (Map.Entry) iterator.next();
+			if (elements.contains(((WeakKey) entry.getKey()).get())) {
+				weight -= weightOf((DecorationResult) entry.getValue());
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Return the elements which have results whose decorations do not come
+	 * from the given decorator.
+	 *
+	 * @param decoratorId
+	 *            the id of the decorator
+	 * @return the elements
+	 */
+	synchronized Collection getElementsNotDecoratedBy(String decoratorId) {
+		expungeStaleEntries();
+		Set elements = new HashSet();
+		addElementsNotDecoratedBy(results, decoratorId, elements);
+		addElementsNotDecoratedBy(pinnedResults, decoratorId, elements);
+		return elements;
+	}
+
+	private static void addElementsNotDecoratedBy(Map map,
+			String decoratorId, Set elements) {
+		for (Iterator iterator = map.entrySet().iterator(); iterator.hasNext();) {
+			Map.Entry entry = (Map.Entry) iterator.next();
+			Object element = ((WeakKey) entry.getKey()).get();
+			if (element != null
+					&& !((DecorationResult) entry.getValue())
+							.isDecoratedBy(decoratorId)) {
+				elements.add(element);
+			}
+		}
+	}
+
+	/**
+	 * Remove all results.
+	 */
+	synchronized void clear() {
+		results.clear();
+		pinnedResults.clear();
+		weight = 0;
+	}
+
+	/**
+	 * Pin the given elements, so that their results are not evicted until
+	 * they are unpinned.
+	 *
+	 * @param elements
+	 *            the elements
+	 */
+	synchronized void pin(Collection elements) {
+		pinnedElements.addAll(elements);
+	}
+
+	/**
+	 * Unpin the given elements, making their results the most recently used
+	 * ones, and evict results if the cache is full.
+	 *
+	 * @param elements
+	 *            the elements
+	 */
+	synchronized void unpin(Collection elements) {
+		pinnedElements.removeAll(elements);
+		for (Iterator iterator = pinnedResults.entrySet().iterator(); iterator
+				.hasNext();) {
+			Map.Entry entry = (Map.Entry) iterator.next();
+			Object element = ((WeakKey) entry.getKey()).get();
+			if (element == null || !pinnedElements.contains(element)) {
+				iterator.remove();
+				results.put(entry.getKey(), entry.getValue());
+			}
+		}
+		evict();
+	}
+
+	/**
+	 * Set the maximum total weight of the cached results.
+	 *
+	 * @param capacity
+	 *            the capacity, at least 1
+	 */
+	synchronized void setCapacity(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException();
+		}
+		this.capacity = capacity;
+		evict();
+	}
+
+	/**
+	 * @return the maximum total weight of the cached results
+	 */
+	synchronized int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the number of cached results
+	 */
+	synchronized int size() {
+		expungeStaleEntries();
+		return results.size() + pinnedResults.size();
+	}
+
+	/**
+	 * @return the total weight of the cached results
+	 */
+	synchronized long getWeight() {
+		expungeStaleEntries();
+		return weight;
+	}
+
+	/**
+	 * @return the number of lookups which found a result
+	 */
+	synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of lookups which found no result
+	 */
+	synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return the number of results evicted because the cache was full
+	 */
+	synchronized long getEvictions() {
+		return evictions;
+	}
+
+	private void evict() {
+		if (weight <= capacity) {
+			return;
+		}
+		for (Iterator iterator = results.entrySet().iterator(); iterator
+				.hasNext() && weight > capacity;) {
+			Map.Entry entry = (Map.Entry) iterator.next();
+			iterator.remove();
+			if (pinnedElements.contains(((WeakKey) entry.getKey()).get())) {
+				// set aside, so that it is not visited again until unpinned
+				pinnedResults.put(entry.getKey(), entry.getValue());
+			} else {
+				weight -= weightOf((DecorationResult) entry.getValue());
+				evictions++;
+			}
+		}
+	}
+
+	private void expungeStaleEntries() {
+		Reference reference;
+		while ((reference = queue.poll()) != null) {
+			// a cleared key only equals itself
+			DecorationResult result = (DecorationResult) results
+					.remove(reference);
+			if (result == null) {
+				result = (DecorationResult) pinnedResults.remove(reference);
+			}
+			if (result != null) {
+				weight -= weightOf(result);
+			}
+		}
+	}
+
+	private static int weightOf(DecorationResult result) {
+		int weight = 1;
+		ImageDescriptor[] descriptors = result.getDescriptors();
+		if (descriptors != null) {
+			for (int i = 0; i < descriptors.length; i++) {
+				if (descriptors[i] != null) {
+					weight++;
+				}
+			}
+		}
+		return weight;
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2009 IBM Corporation and others.
+ * Copyright (c) 2000, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -17,6 +17,8 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -41,18 +43,20 @@ import org.eclipse.ui.progress.WorkbenchJob;
 
 /**
  * The DecorationScheduler is the class that handles the decoration of elements
- * using a background thread.
+ * using background jobs. Queued elements are handed out in batches to a
+ * configurable number of decoration jobs, which publish their results to the
+ * result cache one batch at a time.
  */
 public class DecorationScheduler {
 
 	static final ILabelProviderListener[] EMPTY_LISTENER_LIST = new ILabelProviderListener[0];
 
 	// When decorations are computed they are added to this cache via
-	// decorated() method
-	Map resultCache = new HashMap();
+	// publishResults(). Access is synchronized on the cache itself.
+	final DecorationResultCache resultCache = new DecorationResultCache();
 
 	// Objects that need an icon and text computed for display to the user
-	List awaitingDecoration = new ArrayList();
+	List awaitingDecoration = new LinkedList();
 
 	// Objects that are awaiting a label update.
 	Set pendingUpdate = new HashSet();
@@ -66,7 +70,8 @@ public class DecorationScheduler {
 
 	boolean shutdown = false;
 
-	Job decorationJob;
+	// The jobs computing decorations, one per worker
+	Job[] decorationJobs = new Job[0];
 
 	UIJob updateJob;
 
@@ -81,6 +86,25 @@ public class DecorationScheduler {
 	/** Amount of time to delay the update notification when max reached. */
 	static final int UPDATE_DELAY = 100;
 
+	/** The maximum number of elements a decoration job takes at once. */
+	static final int BATCH_SIZE = 20;
+
+	/**
+	 * The default number of decoration jobs. Lightweight decorators are not
+	 * required to be thread safe, so they are only run concurrently if
+	 * requested by {@link DecoratorManager#setDecorationWorkerCount(int)}.
+	 */
+	static final int DEFAULT_WORKER_COUNT = 1;
+
+	// Statistics, guarded by pendingKey
+	private long decoratedCount;
+
+	private long totalLatency;
+
+	private long maximumLatency;
+
+	private long computeTime;
+
 	/**
 	 * Return a new instance of the receiver configured for the supplied
 	 * DecoratorManager.
@@ -89,7 +113,49 @@ public class DecorationScheduler {
 	 */
 	DecorationScheduler(DecoratorManager manager) {
 		decoratorManager = manager;
-		createDecorationJob();
+		setWorkerCount(DEFAULT_WORKER_COUNT);
+	}
+
+	/**
+	 * Set the number of jobs which compute decorations concurrently.
+	 *
+	 * @param count
+	 *            the number of jobs, at least 1
+	 */
+	synchronized void setWorkerCount(int count) {
+		Assert.isTrue(count > 0);
+		Job[] jobs = new Job[count];
+		System.arraycopy(decorationJobs, 0, jobs, 0, Math.min(count,
+				decorationJobs.length));
+		for (int i = decorationJobs.length; i < count; i++) {
+			jobs[i] = new DecorationJob();
+		}
+		// Surplus jobs stop once the queue is drained and are not rescheduled
+		decorationJobs = jobs;
+		scheduleDecorationJobs();
+	}
+
+	/**
+	 * @return the number of jobs which compute decorations concurrently
+	 */
+	synchronized int getWorkerCount() {
+		return decorationJobs.length;
+	}
+
+	/**
+	 * Schedule as many decoration jobs as there are batches waiting, up to the
+	 * number of workers.
+	 */
+	private void scheduleDecorationJobs() {
+		if (shutdown) {
+			return;
+		}
+		int batches = (awaitingDecoration.size() + BATCH_SIZE - 1)
+				/ BATCH_SIZE;
+		int count = Math.max(1, Math.min(batches, decorationJobs.length));
+		for (int i = 0; i < count; i++) {
+			decorationJobs[i].schedule();
+		}
 	}
 
 	/**
@@ -153,10 +219,7 @@ public class DecorationScheduler {
 			reference.setUndecoratedText(undecoratedText);
 			awaitingDecorationValues.put(element, reference);
 			awaitingDecoration.add(element);
-			if (shutdown) {
-				return;
-			}
-			decorationJob.schedule();
+			scheduleDecorationJobs();
 		}
 
 	}
@@ -207,7 +270,7 @@ public class DecorationScheduler {
 			return null;
 		}
 
-		DecorationResult decoration = internalGetResult(element, context);
+		DecorationResult decoration = resultCache.get(element, context);
 
 		if (decoration == null) {
 			queueForDecoration(element, adaptedElement, false, null, context);
@@ -219,21 +282,107 @@ public class DecorationScheduler {
 
 	private DecorationResult internalGetResult(Object element,
 			IDecorationContext context) {
-		Map results = (Map) resultCache.get(context);
-		if (results != null) {
-			return (DecorationResult) results.get(element);
-		}
-		return null;
+		return resultCache.peek(element, context);
 	}
 
 	protected void internalPutResult(Object element,
 			IDecorationContext context, DecorationResult result) {
-		Map results = (Map) resultCache.get(context);
-		if (results == null) {
-			results = new HashMap();
-			resultCache.put(context, results);
+		resultCache.put(element, context, result);
+	}
+
+	/**
+	 * Publish the results computed for a batch of elements and queue the
+	 * elements for a label update.
+	 *
+	 * @param results
+	 *            the computed results
+	 * @param updatedElements
+	 *            the elements whose labels need updating
+	 * @param references
+	 *            the references of the batch
+	 * @param computeStart
+	 *            the time the computation of the batch started
+	 */
+	private void publishResults(List results, Collection updatedElements,
+			DecorationReference[] references, long computeStart) {
+		long now = System.currentTimeMillis();
+		synchronized (pendingKey) {
+			synchronized (resultCache) {
+				// Keep the results until the label update has used them
+				resultCache.pin(updatedElements);
+				for (int i = 0; i < results.size(); i++) {
+					ComputedResult result = (ComputedResult) results.get(i);
+					internalPutResult(result.element, result.context,
+							result.result);
+				}
+			}
+			pendingUpdate.addAll(updatedElements);
+			decoratedCount += references.length;
+			computeTime += now - computeStart;
+			for (int i = 0; i < references.length; i++) {
+				long latency = now - references[i].queuedTime;
+				totalLatency += latency;
+				maximumLatency = Math.max(maximumLatency, latency);
+			}
+		}
+	}
+
+	/**
+	 * The labels of the given elements were updated. Unpin the results of
+	 * those which are not waiting for another label update.
+	 *
+	 * @param elements
+	 *            the updated elements
+	 */
+	private void releaseUpdatedElements(Object[] elements) {
+		synchronized (pendingKey) {
+			List released = new ArrayList(elements.length);
+			for (int i = 0; i < elements.length; i++) {
+				if (!pendingUpdate.contains(elements[i])) {
+					released.add(elements[i]);
+				}
+			}
+			resultCache.unpin(released);
+		}
+	}
+
+	/**
+	 * @return a snapshot of the decoration counters
+	 */
+	DecorationStatistics getStatistics() {
+		synchronized (pendingKey) {
+			synchronized (resultCache) {
+				return new DecorationStatistics(decoratedCount, totalLatency,
+						maximumLatency, computeTime, resultCache.getHits(),
+						resultCache.getMisses(), resultCache.getEvictions(),
+						resultCache.size(), resultCache.getWeight());
+			}
 		}
-		results.put(element, result);
+	}
+
+	/**
+	 * Clear all cached results.
+	 */
+	private void clearResultCache() {
+		resultCache.clear();
+	}
+
+	/**
+	 * Set the maximum total weight of the cached results. A result weighs one
+	 * plus the number of image overlays it references.
+	 *
+	 * @param capacity
+	 *            the capacity, at least 1
+	 */
+	void setResultCacheCapacity(int capacity) {
+		resultCache.setCapacity(capacity);
+	}
+
+	/**
+	 * @return the maximum total weight of the cached results
+	 */
+	int getResultCacheCapacity() {
+		return resultCache.getCapacity();
 	}
 
 	/**
@@ -263,59 +412,95 @@ public class DecorationScheduler {
 	}
 
 	/**
-	 * Get the next resource to be decorated.
-	 * 
-	 * @return IResource
+	 * Get the next elements to be decorated.
+	 *
+	 * @param max
+	 *            the maximum number of elements to return
+	 * @return the references of the elements, empty if there are none
 	 */
-	synchronized DecorationReference nextElement() {
+	synchronized DecorationReference[] nextElements(int max) {
 
 		if (shutdown || awaitingDecoration.isEmpty()) {
-			return null;
+			return new DecorationReference[0];
+		}
+		int count = Math.min(max, awaitingDecoration.size());
+		DecorationReference[] references = new DecorationReference[count];
+		for (int i = 0; i < count; i++) {
+			Object element = awaitingDecoration.remove(0);
+			references[i] = (DecorationReference) awaitingDecorationValues
+					.remove(element);
 		}
-		Object element = awaitingDecoration.remove(0);
+		return references;
+	}
 
-		return (DecorationReference) awaitingDecorationValues.remove(element);
+	/**
+	 * A result computed by a decoration job which has not been published yet.
+	 */
+	private static class ComputedResult {
+		final Object element;
+
+		final IDecorationContext context;
+
+		final DecorationResult result;
+
+		ComputedResult(Object element, IDecorationContext context,
+				DecorationResult result) {
+			this.element = element;
+			this.context = context;
+			this.result = result;
+		}
 	}
 
 	/**
-	 * Create the Thread used for running decoration.
+	 * The job used for computing decorations. Several of these may run at the
+	 * same time, each taking batches of elements off the queue.
 	 */
-	private void createDecorationJob() {
-		decorationJob = new Job(
-				WorkbenchMessages.DecorationScheduler_CalculationJobName) {
-			/*
-			 * (non-Javadoc)
-			 * 
-			 * @see org.eclipse.core.runtime.jobs.Job#run(org.eclipse.core.runtime.IProgressMonitor)
-			 */
-			@Override
-			public IStatus run(IProgressMonitor monitor) {
+	private class DecorationJob extends Job {
 
-				synchronized (DecorationScheduler.this) {
-					if (shutdown) {
-						return Status.CANCEL_STATUS;
-					}
+		DecorationJob() {
+			super(WorkbenchMessages.DecorationScheduler_CalculationJobName);
+			setSystem(true);
+			setPriority(Job.DECORATE);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see org.eclipse.core.runtime.jobs.Job#run(org.eclipse.core.runtime.IProgressMonitor)
+		 */
+		@Override
+		public IStatus run(IProgressMonitor monitor) {
+
+			synchronized (DecorationScheduler.this) {
+				if (shutdown) {
+					return Status.CANCEL_STATUS;
 				}
+			}
 
-				while (updatesPending()) {
+			// Hold back while the labels are being updated, so that the
+			// UI thread is not flooded with updates
+			while (updatesPending()) {
 
-					try {
-						Thread.sleep(100);
-					} catch (InterruptedException e) {
-						// Cancel and try again if there was an error
-						schedule();
-						return Status.CANCEL_STATUS;
-					}
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException e) {
+					// Cancel and try again if there was an error
+					schedule();
+					return Status.CANCEL_STATUS;
 				}
+			}
 
-				monitor.beginTask(
-						WorkbenchMessages.DecorationScheduler_CalculatingTask,
-						100);
-				// will block if there are no resources to be decorated
-				DecorationReference reference;
-				monitor.worked(5);
-				int workCount = 5;
-				while ((reference = nextElement()) != null) {
+			monitor.beginTask(
+					WorkbenchMessages.DecorationScheduler_CalculatingTask, 100);
+			DecorationReference[] references;
+			monitor.worked(5);
+			int workCount = 5;
+			while ((references = nextElements(BATCH_SIZE)).length > 0) {
+				long computeStart = System.currentTimeMillis();
+				List results = new ArrayList(references.length);
+				Set updatedElements = new HashSet();
+				for (int i = 0; i < references.length; i++) {
+					DecorationReference reference = references[i];
 
 					// Count up to 90 to give the appearance of updating
 					if (workCount < 90) {
@@ -327,103 +512,88 @@ public class DecorationScheduler {
 					Object element = reference.getElement();
 					boolean force = reference.shouldForceUpdate();
 					IDecorationContext[] contexts = reference.getContexts();
-					for (int i = 0; i < contexts.length; i++) {
-						IDecorationContext context = contexts[i];
-						ensureResultCached(element, force, context);
-					}
-
-					// Only notify listeners when we have exhausted the
-					// queue of decoration requests.
-					synchronized (DecorationScheduler.this) {
-						if (awaitingDecoration.isEmpty()) {
-							decorated();
-						}
+					for (int j = 0; j < contexts.length; j++) {
+						computeResult(element, force, contexts[j], results,
+								updatedElements);
 					}
 				}
-				monitor.worked(100 - workCount);
-				monitor.done();
-				return Status.OK_STATUS;
-			}
-
-			/**
-			 * Ensure that a result is cached for the given element and context
-			 * 
-			 * @param element
-			 *            the elements
-			 * @param force
-			 *            whether an update should be forced
-			 * @param context
-			 *            the decoration context
-			 */
-			private void ensureResultCached(Object element, boolean force,
-					IDecorationContext context) {
-				boolean elementIsCached = internalGetResult(element, context) != null;
-				if (elementIsCached) {
-					synchronized (pendingKey) {
-						pendingUpdate.add(element);
-					}
-
-				}
-
-				if (!elementIsCached) {
-					DecorationBuilder cacheResult = new DecorationBuilder(
-							context);
-					// Calculate the decoration
-					decoratorManager.getLightweightManager().getDecorations(
-							element, cacheResult);
-
-					// If we should update regardless then put a result
-					// anyways
-					if (cacheResult.hasValue() || force) {
-
-						// Synchronize on the result lock as we want to
-						// be sure that we do not try and decorate during
-						// label update servicing.
-						// Note: resultCache and pendingUpdate modifications
-						// must be done atomically.
-
-						// Add the decoration even if it's empty in
-						// order to indicate that the decoration is
-						// ready
-						internalPutResult(element, context, cacheResult
-								.createResult());
-
-						// Add an update for only the original element
-						// to
-						// prevent multiple updates and clear the cache.
-						synchronized (pendingKey) {
-							pendingUpdate.add(element);
-						}
-						
+				publishResults(results, updatedElements, references,
+						computeStart);
 
+				// Only notify listeners when we have exhausted the
+				// queue of decoration requests.
+				synchronized (DecorationScheduler.this) {
+					if (awaitingDecoration.isEmpty()) {
+						decorated();
 					}
 				}
 			}
+			monitor.worked(100 - workCount);
+			monitor.done();
+			return Status.OK_STATUS;
+		}
 
-			/*
-			 * (non-Javadoc)
-			 * 
-			 * @see org.eclipse.core.runtime.jobs.Job#belongsTo(java.lang.Object)
-			 */
-			@Override
-			public boolean belongsTo(Object family) {
-				return DecoratorManager.FAMILY_DECORATE == family;
+		/**
+		 * Compute the result for the given element and context unless it is
+		 * cached already.
+		 * 
+		 * @param element
+		 *            the elements
+		 * @param force
+		 *            whether an update should be forced
+		 * @param context
+		 *            the decoration context
+		 * @param results
+		 *            the list to add the computed result to
+		 * @param updatedElements
+		 *            the set to add the element to if it needs an update
+		 */
+		private void computeResult(Object element, boolean force,
+				IDecorationContext context, List results, Set updatedElements) {
+			// A forced request asks for a fresh result
+			if (!force && internalGetResult(element, context) != null) {
+				updatedElements.add(element);
+				return;
 			}
 
-			/*
-			 * (non-Javadoc)
-			 * 
-			 * @see org.eclipse.core.runtime.jobs.Job#shouldRun()
-			 */
-			@Override
-			public boolean shouldRun() {
-				return PlatformUI.isWorkbenchRunning();
+			DecorationBuilder cacheResult = new DecorationBuilder(context);
+			// Calculate the decoration
+			decoratorManager.getLightweightManager().getDecorations(element,
+					cacheResult);
+
+			// If we should update regardless then put a result anyways
+			if (cacheResult.hasValue() || force) {
+				// Add the decoration even if it's empty in order to indicate
+				// that the decoration is ready. Results and updates are
+				// published together, see publishResults().
+				results.add(new ComputedResult(element, context, cacheResult
+						.createResult()));
+
+				// Add an update for only the original element to prevent
+				// multiple updates and clear the cache.
+				updatedElements.add(element);
 			}
-		};
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see org.eclipse.core.runtime.jobs.Job#belongsTo(java.lang.Object)
+		 */
+		@Override
+		public boolean belongsTo(Object family) {
+			return DecoratorManager.FAMILY_DECORATE == family;
+		}
 
-		decorationJob.setSystem(true);
-		decorationJob.setPriority(Job.DECORATE);
-		decorationJob.schedule();
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see org.eclipse.core.runtime.jobs.Job#shouldRun()
+		 */
+		@Override
+		public boolean shouldRun() {
+			return PlatformUI.isWorkbenchRunning();
+		}
 	}
 
 	/**
@@ -452,6 +622,34 @@ public class DecorationScheduler {
 		clearJob.schedule();
 	}
 
+	/**
+	 * A decorator requested an update. Clear only the results computed using
+	 * that decorator, and those of the elements it applies to now but did not
+	 * when their results were computed, as the others are still valid.
+	 *
+	 * @param decoratorId
+	 *            the id of the decorator
+	 */
+	void clearResults(String decoratorId) {
+		resultCache.invalidate(decoratorId);
+		LightweightDecoratorDefinition definition = decoratorManager
+				.getLightweightManager().getDecoratorDefinition(decoratorId);
+		if (definition == null || !definition.isEnabled()) {
+			return;
+		}
+		// The enablement is evaluated outside of the cache lock
+		Collection elements = resultCache
+				.getElementsNotDecoratedBy(decoratorId);
+		List enabled = new ArrayList();
+		for (Iterator iterator = elements.iterator(); iterator.hasNext();) {
+			Object element = iterator.next();
+			if (definition.isEnabledFor(element)) {
+				enabled.add(element);
+			}
+		}
+		resultCache.invalidate(enabled);
+	}
+
 	private Job getClearJob() {
 		Job clear = new Job(
 				WorkbenchMessages.DecorationScheduler_ClearResultsJob) {
@@ -463,7 +661,7 @@ public class DecorationScheduler {
 			 */
 			@Override
 			protected IStatus run(IProgressMonitor monitor) {
-				resultCache.clear();
+				clearResultCache();
 				return Status.OK_STATUS;
 			}
 
@@ -518,6 +716,8 @@ public class DecorationScheduler {
 				}
 
 				if (listeners.length == 0) {
+					releaseUpdatedElements(labelProviderChangedEvent
+							.getElements());
 				    resetState();
 				    return Status.OK_STATUS;
 				}
@@ -548,6 +748,8 @@ public class DecorationScheduler {
 				monitor.done();
 
 				if (currentIndex >= listeners.length) {
+					releaseUpdatedElements(labelProviderChangedEvent
+							.getElements());
 				    resetState();
 					if (!hasPendingUpdates()) {
 						decorated();
@@ -561,17 +763,12 @@ public class DecorationScheduler {
 			}
 
             /**
-             * Clear any cached information.
+             * Clear any cached information. The results are kept until they
+             * are evicted or invalidated by an update request.
              */
             private void resetState() {
                 currentIndex = NEEDS_INIT;// Reset
                 removedListeners.clear();
-                // Other decoration requests may have occurred due to
-                // updates or we may have timed out updating listeners.
-                // Only clear the results if there are none pending.
-                if (awaitingDecoration.isEmpty()) {
-                    resultCache.clear();
-                }
             }
             
 			private void setUpUpdates() {
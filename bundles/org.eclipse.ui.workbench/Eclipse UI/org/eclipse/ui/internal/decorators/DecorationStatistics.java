@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2015 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.internal.decorators;
+
+/**
+ * A snapshot of the counters kept by the {@link DecorationScheduler} and its
+ * result cache.
+ *
+ * @since 3.106
+ */
+public final class DecorationStatistics {
+
+	private final long decoratedCount;
+
+	private final long totalLatency;
+
+	private final long maximumLatency;
+
+	private final long computeTime;
+
+	private final long cacheHits;
+
+	private final long cacheMisses;
+
+	private final long cacheEvictions;
+
+	private final int cacheSize;
+
+	private final long cacheWeight;
+
+	DecorationStatistics(long decoratedCount, long totalLatency,
+			long maximumLatency, long computeTime, long cacheHits,
+			long cacheMisses, long cacheEvictions, int cacheSize,
+			long cacheWeight) {
+		this.decoratedCount = decoratedCount;
+		this.totalLatency = totalLatency;
+		this.maximumLatency = maximumLatency;
+		this.computeTime = computeTime;
+		this.cacheHits = cacheHits;
+		this.cacheMisses = cacheMisses;
+		this.cacheEvictions = cacheEvictions;
+		this.cacheSize = cacheSize;
+		this.cacheWeight = cacheWeight;
+	}
+
+	/**
+	 * @return the number of elements decorated since the scheduler was created
+	 */
+	public long getDecoratedCount() {
+		return decoratedCount;
+	}
+
+	/**
+	 * @return the average number of milliseconds between queuing an element
+	 *         and publishing its decoration
+	 */
+	public long getAverageLatency() {
+		return decoratedCount == 0 ? 0 : totalLatency / decoratedCount;
+	}
+
+	/**
+	 * @return the maximum number of milliseconds between queuing an element
+	 *         and publishing its decoration
+	 */
+	public long getMaximumLatency() {
+		return maximumLatency;
+	}
+
+	/**
+	 * @return the number of elements decorated per second of decoration work,
+	 *         summed over all decoration workers
+	 */
+	public long getThroughput() {
+		return computeTime == 0 ? decoratedCount : decoratedCount * 1000
+				/ computeTime;
+	}
+
+	/**
+	 * @return the number of label requests which found a cached decoration
+	 */
+	public long getCacheHits() {
+		return cacheHits;
+	}
+
+	/**
+	 * @return the number of label requests which found no cached decoration
+	 *         and queued the element for decoration
+	 */
+	public long getCacheMisses() {
+		return cacheMisses;
+	}
+
+	/**
+	 * @return the number of cached decorations evicted because the cache was
+	 *         full
+	 */
+	public long getCacheEvictions() {
+		return cacheEvictions;
+	}
+
+	/**
+	 * @return the number of cached decorations
+	 */
+	public int getCacheSize() {
+		return cacheSize;
+	}
+
+	/**
+	 * @return the total weight of the cached decorations, where each
+	 *         decoration weighs one plus the number of image overlays it
+	 *         references
+	 */
+	public long getCacheWeight() {
+		return cacheWeight;
+	}
+
+	@Override
+	public String toString() {
+		return "DecorationStatistics [decorated=" + decoratedCount //$NON-NLS-1$
+				+ ", averageLatency=" + getAverageLatency() //$NON-NLS-1$
+				+ "ms, maximumLatency=" + maximumLatency //$NON-NLS-1$
+				+ "ms, throughput=" + getThroughput() //$NON-NLS-1$
+				+ "/s, cacheHits=" + cacheHits //$NON-NLS-1$
+				+ ", cacheMisses=" + cacheMisses //$NON-NLS-1$
+				+ ", cacheEvictions=" + cacheEvictions //$NON-NLS-1$
+				+ ", cacheSize=" + cacheSize //$NON-NLS-1$
+				+ ", cacheWeight=" + cacheWeight + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+}
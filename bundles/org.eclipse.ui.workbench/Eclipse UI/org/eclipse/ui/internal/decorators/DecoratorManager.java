@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * Copyright (c) 2000, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -944,6 +944,60 @@ public class DecoratorManager implements ILabelProviderListener,
 		dispose();
 	}
 
+	/**
+	 * Set the number of background jobs which compute lightweight decorations
+	 * concurrently. More than one job should only be used if all contributed
+	 * lightweight decorators are thread safe.
+	 *
+	 * @param count
+	 *            the number of jobs, at least 1
+	 * @since 3.106
+	 */
+	public void setDecorationWorkerCount(int count) {
+		scheduler.setWorkerCount(count);
+	}
+
+	/**
+	 * @return the number of background jobs which compute lightweight
+	 *         decorations concurrently
+	 * @since 3.106
+	 */
+	public int getDecorationWorkerCount() {
+		return scheduler.getWorkerCount();
+	}
+
+	/**
+	 * @return a snapshot of the throughput and latency counters of the
+	 *         lightweight decoration jobs and of the hit, miss and eviction
+	 *         counters of their result cache
+	 * @since 3.106
+	 */
+	public DecorationStatistics getDecorationStatistics() {
+		return scheduler.getStatistics();
+	}
+
+	/**
+	 * Set the capacity of the cache of lightweight decoration results. Each
+	 * result weighs one plus the number of image overlays it references; once
+	 * the total weight exceeds the capacity the least recently used results
+	 * are evicted.
+	 *
+	 * @param capacity
+	 *            the capacity, at least 1
+	 * @since 3.106
+	 */
+	public void setDecorationCacheCapacity(int capacity) {
+		scheduler.setResultCacheCapacity(capacity);
+	}
+
+	/**
+	 * @return the capacity of the cache of lightweight decoration results
+	 * @since 3.106
+	 */
+	public int getDecorationCacheCapacity() {
+		return scheduler.getResultCacheCapacity();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -1136,7 +1190,8 @@ public class DecoratorManager implements ILabelProviderListener,
 
 		IBaseLabelProvider provider = getBaseLabelProvider(decoratorId);
 		if (provider != null) {
-			scheduler.clearResults();
+			// Only the results computed by this decorator are obsolete
+			scheduler.clearResults(decoratorId);
 			fireListeners(new LabelProviderChangedEvent(provider));
 		}
 
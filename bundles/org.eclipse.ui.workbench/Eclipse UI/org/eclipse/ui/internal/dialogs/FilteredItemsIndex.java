@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright (c) 2015 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.internal.dialogs;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.ui.dialogs.SearchPattern;
+
+/**
+ * An index of the names of the items shown by a
+ * {@link org.eclipse.ui.dialogs.FilteredItemsSelectionDialog}. It answers
+ * which items can match a {@link SearchPattern} without matching every item.
+ * <p>
+ * Items are indexed by the lower-cased first three characters of their name,
+ * and by the first three characters starting the camel case parts of their
+ * name. Since the names of items matching a prefix or camel case pattern must
+ * start with the same characters as the pattern, only the items of one or two
+ * buckets need to be matched against the pattern.
+ * </p>
+ *
+ * @since 3.106
+ */
+public class FilteredItemsIndex {
+
+	private static final int KEY_LENGTH = 3;
+
+	private static final Object[] EMPTY = new Object[0];
+
+	/**
+	 * A growable list of item indices, in ascending order.
+	 */
+	private static final class Bucket {
+		int[] indices = new int[4];
+
+		int size;
+
+		void add(int index) {
+			if (size == indices.length) {
+				int[] grown = new int[size * 2];
+				System.arraycopy(indices, 0, grown, 0, size);
+				indices = grown;
+			}
+			indices[size++] = index;
+		}
+	}
+
+	private final Object[] items;
+
+	// prefixes[i]: lower-cased name prefix of length i + 1 -> Bucket
+	private final Map[] prefixes = new Map[KEY_LENGTH];
+
+	// humps[i]: first i + 1 camel case characters of the name -> Bucket
+	private final Map[] humps = new Map[KEY_LENGTH];
+
+	/**
+	 * Creates an index of the given items.
+	 *
+	 * @param items
+	 *            the items
+	 * @param names
+	 *            the names of the items, in the same order. Items with a
+	 *            <code>null</code> name never match.
+	 */
+	public FilteredItemsIndex(Object[] items, String[] names) {
+		this.items = items;
+		for (int i = 0; i < KEY_LENGTH; i++) {
+			prefixes[i] = new HashMap();
+			humps[i] = new HashMap();
+		}
+		for (int i = 0; i < names.length; i++) {
+			String name = names[i];
+			if (name == null || name.length() == 0) {
+				continue;
+			}
+			String prefix = toLowerCase(name, KEY_LENGTH);
+			for (int length = 1; length <= prefix.length(); length++) {
+				addToBucket(prefixes[length - 1], prefix.substring(0, length),
+						i);
+			}
+			String hump = getHumps(name);
+			for (int length = 1; length <= hump.length(); length++) {
+				addToBucket(humps[length - 1], hump.substring(0, length), i);
+			}
+		}
+	}
+
+	private static void addToBucket(Map buckets, String key, int index) {
+		Bucket bucket = (Bucket) buckets.get(key);
+		if (bucket == null) {
+			bucket = new Bucket();
+			buckets.put(key, bucket);
+		}
+		bucket.add(index);
+	}
+
+	private static String toLowerCase(String text, int maxLength) {
+		int length = Math.min(text.length(), maxLength);
+		StringBuffer result = new StringBuffer(length);
+		for (int i = 0; i < length; i++) {
+			// SearchPattern compares character by character
+			result.append(Character.toLowerCase(text.charAt(i)));
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Returns the first character of the text followed by the upper case
+	 * characters, up to the key length. These are the characters a camel case
+	 * pattern must match in order.
+	 */
+	private static String getHumps(String text) {
+		StringBuffer result = new StringBuffer(KEY_LENGTH);
+		result.append(text.charAt(0));
+		for (int i = 1; i < text.length() && result.length() < KEY_LENGTH; i++) {
+			char c = text.charAt(i);
+			if (Character.isUpperCase(c)) {
+				result.append(c);
+			}
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Returns the items which can match the given pattern. Every item whose
+	 * name matches the pattern is returned, but not every returned item
+	 * matches it.
+	 *
+	 * @param pattern
+	 *            the pattern
+	 * @return the candidate items in the order they were indexed, or
+	 *         <code>null</code> if the index can not narrow down the items
+	 *         for the pattern
+	 */
+	public Object[] getCandidates(SearchPattern pattern) {
+		// subclasses may change how names are matched
+		if (pattern.getClass() != SearchPattern.class) {
+			return null;
+		}
+		String stringPattern = pattern.getPattern();
+		if (stringPattern.length() == 0) {
+			return null;
+		}
+		switch (pattern.getMatchRule()) {
+		case SearchPattern.RULE_PREFIX_MATCH:
+		case SearchPattern.RULE_EXACT_MATCH:
+			return toItems(getPrefixBucket(stringPattern), null);
+		case SearchPattern.RULE_CAMELCASE_MATCH:
+			// camel case patterns also match as a prefix
+			return toItems(getPrefixBucket(stringPattern),
+					getHumpBucket(stringPattern));
+		default:
+			return null;
+		}
+	}
+
+	private Bucket getPrefixBucket(String stringPattern) {
+		String key = toLowerCase(stringPattern, KEY_LENGTH);
+		return (Bucket) prefixes[key.length() - 1].get(key);
+	}
+
+	private Bucket getHumpBucket(String stringPattern) {
+		String key = getHumps(stringPattern);
+		return (Bucket) humps[key.length() - 1].get(key);
+	}
+
+	/**
+	 * Returns the items of both buckets, merging their indices.
+	 */
+	private Object[] toItems(Bucket first, Bucket second) {
+		int firstSize = first == null ? 0 : first.size;
+		int secondSize = second == null ? 0 : second.size;
+		if (firstSize + secondSize == 0) {
+			return EMPTY;
+		}
+		Object[] result = new Object[firstSize + secondSize];
+		int count = 0;
+		int i = 0;
+		int j = 0;
+		while (i < firstSize || j < secondSize) {
+			int index;
+			if (j == secondSize
+					|| (i < firstSize && first.indices[i] < second.indices[j])) {
+				index = first.indices[i++];
+			} else if (i == firstSize || second.indices[j] < first.indices[i]) {
+				index = second.indices[j++];
+			} else {
+				// in both buckets
+				index = first.indices[i++];
+				j++;
+			}
+			result[count++] = items[index];
+		}
+		if (count < result.length) {
+			Object[] trimmed = new Object[count];
+			System.arraycopy(result, 0, trimmed, 0, count);
+			result = trimmed;
+		}
+		return result;
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013 IBM Corporation and others.
+ * Copyright (c) 2013, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -362,6 +362,31 @@ public class BindingTableTests extends TestCase {
 		assertEquals(about, it.next());
 	}
 
+	public void testManagerMatchesAfterTableChange() throws Exception {
+		BindingTableManager manager = createManager();
+		ContextSet javaSet = createJavaSet(manager);
+		KeySequence refreshSeq = KeySequence.getInstance("CTRL+6 R");
+		KeySequence ctrl6 = KeySequence.getInstance("CTRL+6");
+		assertNull(manager.getPerfectMatch(javaSet, refreshSeq));
+		assertFalse(manager.isPartialMatch(javaSet, ctrl6));
+
+		Binding refresh = new KeyBinding(refreshSeq, getTestBinding(REFRESH_ID)
+				.getParameterizedCommand(),
+				"org.eclipse.ui.defaultAcceleratorConfiguration", ID_WINDOW,
+				null, null, null, Binding.USER);
+		BindingTable table = manager.getTable(ID_WINDOW);
+		table.addBinding(refresh);
+		try {
+			assertEquals(refresh, manager.getPerfectMatch(javaSet, refreshSeq));
+			assertTrue(manager.isPartialMatch(javaSet, ctrl6));
+			assertFalse(manager.isPartialMatch(javaSet, refreshSeq));
+		} finally {
+			table.removeBinding(refresh);
+		}
+		assertNull(manager.getPerfectMatch(javaSet, refreshSeq));
+		assertFalse(manager.isPartialMatch(javaSet, ctrl6));
+	}
+
 	private BindingTable loadTable(String contextId) {
 		Context context = contextManager.getContext(contextId);
 		BindingTable table = new BindingTable(context);
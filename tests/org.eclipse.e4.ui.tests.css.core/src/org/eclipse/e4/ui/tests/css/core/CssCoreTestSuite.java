@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013 IBM Corporation and others.
+ * Copyright (c) 2013, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,7 +14,9 @@ package org.eclipse.e4.ui.tests.css.core;
 import junit.framework.Test;
 import junit.framework.TestSuite;
 
+import org.eclipse.e4.ui.tests.css.core.parser.CSSStyleSheetCacheTest;
 import org.eclipse.e4.ui.tests.css.core.parser.CascadeTest;
+import org.eclipse.e4.ui.tests.css.core.parser.ComputedStyleCacheTest;
 import org.eclipse.e4.ui.tests.css.core.parser.FontFaceRulesTest;
 import org.eclipse.e4.ui.tests.css.core.parser.ImportTest;
 import org.eclipse.e4.ui.tests.css.core.parser.RGBColorImplTest;
@@ -37,10 +39,12 @@ public class CssCoreTestSuite extends TestSuite {
 		addTestSuite(RGBColorImplTest.class);
 		addTestSuite(StyleRuleTest.class);
 		addTestSuite(ViewCSSTest.class);
+		addTestSuite(ComputedStyleCacheTest.class);
 		addTestSuite(ValueTest.class);
 		addTestSuite(SelectorTest.class);
 		addTestSuite(CSSEngineTest.class);
 		addTestSuite(ImportTest.class);
+		addTestSuite(CSSStyleSheetCacheTest.class);
 		// $JUnit-END$
 	}
 }
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2015 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.ui.tests.css.core.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+import org.eclipse.e4.ui.css.core.impl.dom.parsers.CSSStyleSheetCache;
+import org.eclipse.e4.ui.css.core.impl.engine.AbstractCSSEngine;
+import org.eclipse.e4.ui.tests.css.core.util.ParserTestUtil;
+import org.w3c.css.sac.InputSource;
+import org.w3c.dom.css.CSSRuleList;
+import org.w3c.dom.css.CSSStyleSheet;
+
+public class CSSStyleSheetCacheTest extends TestCase {
+
+	private static final String URI = "platform:/plugin/org.eclipse.e4.ui.tests.css.core/cached.css";
+
+	private static final String CSS = "Shell, Composite > Label { color: #ff0000; font: bold 12px Arial; }\n"
+			+ "Button:checked#ok.primary { background-color: rgb(255, 0, 0); }\n"
+			+ "CTabFolder[style~='SWT.BORDER'] { swt-corner-radius: 4px; }\n"
+			+ ".MTrimBar { background-image: url(./images/bar.png); }\n"
+			+ "Label + Text:focus { border-color: white !important; }\n";
+
+	private File directory;
+
+	@Override
+	protected void setUp() throws Exception {
+		directory = File.createTempFile("stylesheets", "");
+		directory.delete();
+		directory.mkdirs();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	private CSSStyleSheet parse(String css) throws IOException {
+		AbstractCSSEngine engine = (AbstractCSSEngine) ParserTestUtil
+				.createEngine();
+		engine.setStyleSheetCache(new CSSStyleSheetCache(directory));
+		InputSource source = new InputSource();
+		source.setURI(URI);
+		source.setCharacterStream(new StringReader(css));
+		return (CSSStyleSheet) engine.parseStyleSheet(source);
+	}
+
+	private static String getCssText(CSSStyleSheet styleSheet) {
+		StringBuilder text = new StringBuilder();
+		CSSRuleList rules = styleSheet.getCssRules();
+		for (int i = 0; i < rules.getLength(); i++) {
+			text.append(rules.item(i).getCssText()).append('\n');
+		}
+		return text.toString();
+	}
+
+	private File getCompiledFile() {
+		File[] files = directory.listFiles();
+		assertNotNull(files);
+		assertEquals(1, files.length);
+		return files[0];
+	}
+
+	public void testReplayCompiledStyleSheet() throws Exception {
+		String parsed = getCssText(parse(CSS));
+		File file = getCompiledFile();
+		// a compiled style sheet which can not be replayed is written again
+		assertTrue(file.setLastModified(1000));
+
+		String replayed = getCssText(parse(CSS));
+		assertEquals(parsed, replayed);
+		assertEquals(file, getCompiledFile());
+		assertEquals(1000, file.lastModified());
+	}
+
+	public void testChangedStyleSheetParsed() throws Exception {
+		parse(CSS);
+		CSSStyleSheet styleSheet = parse("Label { color: blue; }");
+		assertEquals(1, styleSheet.getCssRules().getLength());
+		assertEquals(getCssText(styleSheet), getCssText(parse("Label { color: blue; }")));
+	}
+
+	public void testNoCacheWithoutURI() throws Exception {
+		AbstractCSSEngine engine = (AbstractCSSEngine) ParserTestUtil
+				.createEngine();
+		engine.setStyleSheetCache(new CSSStyleSheetCache(directory));
+		engine.parseStyleSheet(new StringReader(CSS));
+		assertEquals(0, directory.listFiles().length);
+	}
+}
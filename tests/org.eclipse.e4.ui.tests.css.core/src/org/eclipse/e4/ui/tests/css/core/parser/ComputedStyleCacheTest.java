@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2015 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.ui.tests.css.core.parser;
+
+import junit.framework.TestCase;
+
+import org.eclipse.e4.ui.css.core.impl.dom.ComputedStyleCache;
+import org.eclipse.e4.ui.css.core.impl.dom.DocumentCSSImpl;
+import org.eclipse.e4.ui.css.core.impl.dom.ViewCSSImpl;
+import org.eclipse.e4.ui.css.swt.engine.CSSSWTEngineImpl;
+import org.eclipse.e4.ui.tests.css.core.util.ParserTestUtil;
+import org.eclipse.e4.ui.tests.css.core.util.TestElement;
+import org.eclipse.swt.widgets.Display;
+import org.w3c.dom.css.CSSStyleDeclaration;
+
+public class ComputedStyleCacheTest extends TestCase {
+
+	private CSSSWTEngineImpl engine;
+	private DocumentCSSImpl docCss;
+	private ComputedStyleCache cache;
+
+	@Override
+	protected void setUp() throws Exception {
+		engine = new CSSSWTEngineImpl(Display.getDefault());
+		docCss = new DocumentCSSImpl();
+		cache = new ComputedStyleCache(docCss, new ViewCSSImpl(docCss));
+	}
+
+	private void addStyleSheet(String css) throws Exception {
+		docCss.addStyleSheet(ParserTestUtil.parseCss(css));
+	}
+
+	public void testSharedBySiblings() throws Exception {
+		addStyleSheet("ToolItem { color: black; }\n"
+				+ ".primary { font-weight: bold; }\n");
+		TestElement toolBar = new TestElement("ToolBar", engine);
+		TestElement item1 = new TestElement("ToolItem", toolBar, engine);
+		item1.setClass("primary");
+		TestElement item2 = new TestElement("ToolItem", toolBar, engine);
+		item2.setClass("primary");
+		TestElement item3 = new TestElement("ToolItem", toolBar, engine);
+
+		CSSStyleDeclaration style1 = cache.getComputedStyle(item1, null);
+		assertEquals(2, style1.getLength());
+		assertSame(style1, cache.getComputedStyle(item2, null));
+		CSSStyleDeclaration style3 = cache.getComputedStyle(item3, null);
+		assertNotSame(style1, style3);
+		assertEquals(1, style3.getLength());
+		assertNull(cache.getComputedStyle(toolBar, null));
+	}
+
+	public void testAttributes() throws Exception {
+		addStyleSheet("Button { color: black; }\n"
+				+ "Button[style~='SWT.CHECK'] { color: red; }\n");
+		TestElement push = new TestElement("Button", engine);
+		push.setAttribute("style", "SWT.PUSH");
+		TestElement check = new TestElement("Button", engine);
+		check.setAttribute("style", "SWT.CHECK");
+
+		assertEquals("black", cache.getComputedStyle(push, null)
+				.getPropertyCSSValue("color").getCssText());
+		assertEquals("red", cache.getComputedStyle(check, null)
+				.getPropertyCSSValue("color").getCssText());
+	}
+
+	public void testAncestors() throws Exception {
+		addStyleSheet("Label { color: black; }\n"
+				+ "Shell > Label { color: red; }\n");
+		TestElement shell = new TestElement("Shell", engine);
+		TestElement composite = new TestElement("Composite", shell, engine);
+		TestElement direct = new TestElement("Label", shell, engine);
+		TestElement nested = new TestElement("Label", composite, engine);
+
+		assertEquals("red", cache.getComputedStyle(direct, null)
+				.getPropertyCSSValue("color").getCssText());
+		assertEquals("black", cache.getComputedStyle(nested, null)
+				.getPropertyCSSValue("color").getCssText());
+	}
+
+	public void testChangedElementAndStyleSheets() throws Exception {
+		addStyleSheet("Label { color: black; }\n"
+				+ ".error { color: red; }\n");
+		TestElement label = new TestElement("Label", engine);
+		assertEquals("black", cache.getComputedStyle(label, null)
+				.getPropertyCSSValue("color").getCssText());
+
+		label.setClass("error");
+		cache.forgetSignatures();
+		assertEquals("red", cache.getComputedStyle(label, null)
+				.getPropertyCSSValue("color").getCssText());
+
+		docCss.removeAllStyleSheets();
+		addStyleSheet("Label { color: blue; }\n");
+		assertEquals("blue", cache.getComputedStyle(label, null)
+				.getPropertyCSSValue("color").getCssText());
+	}
+}
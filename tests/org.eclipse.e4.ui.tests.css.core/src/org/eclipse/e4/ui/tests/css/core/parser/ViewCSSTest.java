@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009 EclipseSource and others. All rights reserved.
+ * Copyright (c) 2009, 2015 EclipseSource and others. All rights reserved.
  * This program and the accompanying materials are made available under the
  * terms of the Eclipse Public License v1.0 which accompanies this distribution,
  * and is available at http://www.eclipse.org/legal/epl-v10.html
@@ -109,6 +109,53 @@ public class ViewCSSTest extends TestCase {
 		assertEquals("color: blue;", buttonStyle.getCssText());
 	}
 
+	public void testGetComputedStyleByIdAndClass() throws Exception {
+		String css = "* { color: black; }\n"
+				+ "#ok { color: red; }\n"
+				+ ".primary { color: blue; }\n"
+				+ "Button.primary { font-weight: bold; }\n"
+				+ "Shell .primary { color: green; }\n";
+		ViewCSS viewCSS = createViewCss(css);
+
+		final TestElement shell = new TestElement("Shell", engine);
+		final TestElement button = new TestElement("Button", shell, engine);
+		button.setClass("default  primary");
+		CSSStyleDeclaration buttonStyle = viewCSS
+				.getComputedStyle(button, null);
+		assertNotNull(buttonStyle);
+		assertEquals("green", buttonStyle.getPropertyCSSValue("color")
+				.getCssText());
+		assertEquals("bold", buttonStyle.getPropertyCSSValue("font-weight")
+				.getCssText());
+
+		button.setId("ok");
+		buttonStyle = viewCSS.getComputedStyle(button, null);
+		assertEquals("red", buttonStyle.getPropertyCSSValue("color")
+				.getCssText());
+
+		final TestElement label = new TestElement("Label", engine);
+		label.setClass("primaryLabel");
+		CSSStyleDeclaration labelStyle = viewCSS.getComputedStyle(label, null);
+		assertNotNull(labelStyle);
+		assertEquals(1, labelStyle.getLength());
+		assertEquals("black", labelStyle.getPropertyCSSValue("color")
+				.getCssText());
+	}
+
+	public void testGetComputedStyleAfterRuleDeleted() throws Exception {
+		CSSStyleSheet styleSheet = ParserTestUtil
+				.parseCss("Button { color: blue; }\n");
+		DocumentCSSImpl docCss = new DocumentCSSImpl();
+		docCss.addStyleSheet(styleSheet);
+		ViewCSS viewCSS = new ViewCSSImpl(docCss);
+
+		TestElement button = new TestElement("Button", engine);
+		assertNotNull(viewCSS.getComputedStyle(button, null));
+
+		styleSheet.deleteRule(0);
+		assertNull(viewCSS.getComputedStyle(button, null));
+	}
+
 	private static ViewCSS createViewCss(String css) throws IOException {
 		CSSStyleSheet styleSheet = ParserTestUtil.parseCss(css);
 		DocumentCSSImpl docCss = new DocumentCSSImpl();
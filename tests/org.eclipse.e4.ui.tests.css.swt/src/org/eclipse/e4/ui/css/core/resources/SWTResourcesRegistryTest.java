@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013 IBM Corporation and others. All rights reserved. This
+ * Copyright (c) 2013, 2015 IBM Corporation and others. All rights reserved. This
  * program and the accompanying materials are made available under the terms of
  * the Eclipse Public License v1.0 which accompanies this distribution, and is
  * available at http://www.eclipse.org/legal/epl-v10.html
@@ -20,10 +20,14 @@ import java.util.Map;
 
 import junit.framework.TestCase;
 
+import org.eclipse.e4.ui.css.core.dom.properties.Gradient;
 import org.eclipse.e4.ui.css.swt.resources.ResourceByDefinitionKey;
 import org.eclipse.e4.ui.css.swt.resources.SWTResourcesRegistry;
+import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.graphics.RGB;
 import org.eclipse.swt.graphics.Resource;
+import org.eclipse.swt.widgets.Display;
 
 @SuppressWarnings("restriction")
 public class SWTResourcesRegistryTest extends TestCase {
@@ -57,6 +61,102 @@ public class SWTResourcesRegistryTest extends TestCase {
 		assertTrue(resources.containsKey("key1"));
 	}
 
+	public void testUnreferencedResourcesDisposed() throws Exception {
+		Display display = Display.getDefault();
+		SWTResourcesRegistry registry = new SWTResourcesRegistry(null);
+		registry.setMaxUnreferencedResources(1);
+		Object widget = new Object();
+		Color[] colors = new Color[3];
+		for (int i = 0; i < colors.length; i++) {
+			colors[i] = new Color(display, i, 0, 0);
+			registry.beginAcquire(widget, "color");
+			registry.registerResource(Color.class, "key" + i, colors[i]);
+			registry.endAcquire();
+		}
+
+		// the slot references the last color only
+		assertEquals(0, registry.getReferenceCount(colors[0]));
+		assertEquals(0, registry.getReferenceCount(colors[1]));
+		assertEquals(1, registry.getReferenceCount(colors[2]));
+		// one unreferenced color is kept
+		assertTrue(colors[0].isDisposed());
+		assertFalse(colors[1].isDisposed());
+		assertNull(registry.getResource(Color.class, "key0"));
+		assertEquals(Integer.valueOf(2),
+				registry.getResourceCounts().get(Color.class));
+
+		registry.releaseResources(widget);
+		assertEquals(0, registry.getReferenceCount(colors[2]));
+		assertTrue(colors[1].isDisposed());
+		assertFalse(colors[2].isDisposed());
+		registry.dispose();
+	}
+
+	public void testSharedResourcesReferenced() throws Exception {
+		Display display = Display.getDefault();
+		SWTResourcesRegistry registry = new SWTResourcesRegistry(null);
+		registry.setMaxUnreferencedResources(0);
+		Color color = new Color(display, 1, 2, 3);
+		Object widget1 = new Object();
+		Object widget2 = new Object();
+		registry.beginAcquire(widget1, "color");
+		registry.registerResource(Color.class, "key", color);
+		registry.endAcquire();
+		registry.beginAcquire(widget2, "color");
+		assertSame(color, registry.getResource(Color.class, "key"));
+		registry.endAcquire();
+		assertEquals(2, registry.getReferenceCount(color));
+
+		registry.releaseResources(widget1);
+		assertFalse(color.isDisposed());
+		registry.releaseResources(widget2);
+		assertTrue(color.isDisposed());
+		assertTrue(registry.getResourceCounts().isEmpty());
+	}
+
+	public void testResourcesOutsideOfSlotsNotDisposed() throws Exception {
+		Display display = Display.getDefault();
+		SWTResourcesRegistry registry = new SWTResourcesRegistry(null);
+		registry.setMaxUnreferencedResources(0);
+		Color color = new Color(display, 1, 2, 3);
+		registry.registerResource(Color.class, "key", color);
+		Object widget = new Object();
+		registry.beginAcquire(widget, "color");
+		registry.getResource(Color.class, "key");
+		registry.endAcquire();
+
+		registry.releaseResources(widget);
+		assertFalse(color.isDisposed());
+		registry.dispose();
+		assertTrue(color.isDisposed());
+	}
+
+	public void testGradientReferencesColors() throws Exception {
+		Display display = Display.getDefault();
+		SWTResourcesRegistry registry = new SWTResourcesRegistry(null);
+		registry.setMaxUnreferencedResources(0);
+		Color color = new Color(display, 1, 2, 3);
+		Gradient gradient = new Gradient();
+		gradient.addRGB(new RGB(1, 2, 3), null);
+		Object converter = new Object();
+		registry.beginAcquire(converter, "background-color");
+		registry.registerResource(Color.class, "color", color);
+		registry.registerResource(Gradient.class, "gradient", gradient);
+		registry.endAcquire();
+
+		Object widget = new Object();
+		registry.beginAcquire(widget, "background-color");
+		assertSame(gradient, registry.getResource(Gradient.class, "gradient"));
+		registry.endAcquire();
+		assertEquals(2, registry.getReferenceCount(color));
+
+		// the colors are kept while the cached gradient is used
+		registry.releaseResources(converter);
+		assertFalse(color.isDisposed());
+		registry.releaseResources(widget);
+		assertTrue(color.isDisposed());
+	}
+
 	public static class SWTResourcesRegistryTestable extends
 	SWTResourcesRegistry {
 		public SWTResourcesRegistryTestable() {
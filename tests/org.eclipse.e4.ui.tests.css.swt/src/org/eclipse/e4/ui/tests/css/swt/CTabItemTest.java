@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2013 Remy Chi Jian Suen and others.
+ * Copyright (c) 2009, 2015 Remy Chi Jian Suen and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,6 +12,7 @@ package org.eclipse.e4.ui.tests.css.swt;
 
 import org.eclipse.e4.ui.css.core.engine.CSSEngine;
 import org.eclipse.e4.ui.css.swt.dom.CTabItemElement;
+import org.eclipse.e4.ui.css.swt.resources.SWTResourcesRegistry;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.custom.CTabFolder;
 import org.eclipse.swt.custom.CTabItem;
@@ -675,4 +676,30 @@ public class CTabItemTest extends CSSSWTTestCase {
 			assertNotNull(element.getParentNode());
 		}
 	}
+
+	public void testColorsReferencedByFolder() throws Exception {
+		CTabFolder folder = createTestTabFolder(
+				"CTabItem { color: #010203 }\n"
+						+ "CTabItem:selected { color: #040506 }", false);
+		SWTResourcesRegistry registry = (SWTResourcesRegistry) engine
+				.getResourcesRegistry();
+		registry.setMaxUnreferencedResources(0);
+		Color color = folder.getForeground();
+		Color selectionColor = folder.getSelectionForeground();
+		assertEquals(new RGB(1, 2, 3), color.getRGB());
+		assertEquals(new RGB(4, 5, 6), selectionColor.getRGB());
+
+		// the colors are set on the folder, they outlive its items
+		for (CTabItem item : folder.getItems()) {
+			item.dispose();
+		}
+		assertFalse(color.isDisposed());
+		assertFalse(selectionColor.isDisposed());
+		assertEquals(1, registry.getReferenceCount(color));
+		assertEquals(1, registry.getReferenceCount(selectionColor));
+
+		folder.dispose();
+		assertTrue(color.isDisposed());
+		assertTrue(selectionColor.isDisposed());
+	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2014 IBM Corporation and others. All rights reserved. This
+ * Copyright (c) 2008, 2015 IBM Corporation and others. All rights reserved. This
  * program and the accompanying materials are made available under the terms of
  * the Eclipse Public License v1.0 which accompanies this distribution, and is
  * available at http://www.eclipse.org/legal/epl-v10.html
@@ -51,6 +51,7 @@ public class CssSwtTestSuite extends TestSuite {
 		//		addTestSuite(ETabFolderTest.class);
 		//		addTestSuite(ETabItemTest.class);
 		addTestSuite(IdClassLabelColorTest.class);
+		addTestSuite(IncrementalRestylingTest.class);
 		addTestSuite(ShellTest.class);
 		addTestSuite(ButtonTest.class);
 		//		addTestSuite(ShellActiveTest.class);  //TODO see bug #273582
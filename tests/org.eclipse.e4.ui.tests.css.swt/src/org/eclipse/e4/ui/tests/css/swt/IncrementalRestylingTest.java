@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2015 IBM Corporation and others. All rights reserved. This
+ * program and the accompanying materials are made available under the terms of
+ * the Eclipse Public License v1.0 which accompanies this distribution, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.ui.tests.css.swt;
+
+import org.eclipse.e4.ui.css.swt.dom.WidgetElement;
+import org.eclipse.e4.ui.css.swt.engine.CSSSWTEngineImpl;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.RGB;
+import org.eclipse.swt.layout.FillLayout;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Shell;
+
+/*
+ * Tests restyling the widgets marked dirty incrementally
+ */
+public class IncrementalRestylingTest extends CSSSWTTestCase {
+
+	static final RGB RED = new RGB(255, 0, 0);
+	static final RGB GREEN = new RGB(0, 255, 0);
+	static final RGB BLUE = new RGB(0, 0, 255);
+
+	static final String STYLE_SHEET = "Label { background-color: #FF0000; color: #0000FF }\n"
+			+ ".green { background-color: #00FF00 }\n"
+			+ ".greenText { color: #00FF00 }\n";
+
+	private Display display;
+	private CSSSWTEngineImpl engine;
+	private Label label;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		display = Display.getDefault();
+		engine = (CSSSWTEngineImpl) createEngine(STYLE_SHEET, display);
+		engine.setIncrementalRestyling(true);
+
+		Shell shell = new Shell(display, SWT.SHELL_TRIM);
+		shell.setLayout(new FillLayout());
+		Composite panel = new Composite(shell, SWT.NONE);
+		panel.setLayout(new FillLayout());
+		label = new Label(panel, SWT.NONE);
+		label.setText("Some label text");
+		engine.applyStyles(shell, true);
+	}
+
+	private void processEvents() {
+		while (display.readAndDispatch()) {
+			// process the restyle pass
+		}
+	}
+
+	public void testRestyledInNextPass() throws Exception {
+		assertEquals(RED, label.getBackground().getRGB());
+
+		WidgetElement.setCSSClass(label, "green");
+		engine.markDirty(label);
+		engine.markDirty(label.getParent());
+		assertEquals(RED, label.getBackground().getRGB());
+
+		processEvents();
+		assertEquals(GREEN, label.getBackground().getRGB());
+	}
+
+	public void testOnlyChangedPropertiesApplied() throws Exception {
+		assertEquals(BLUE, label.getForeground().getRGB());
+
+		// a property which is not changed by the new class is not applied
+		Color black = display.getSystemColor(SWT.COLOR_BLACK);
+		label.setBackground(black);
+		WidgetElement.setCSSClass(label, "greenText");
+		engine.markDirty(label);
+		processEvents();
+
+		assertEquals(GREEN, label.getForeground().getRGB());
+		assertEquals(black.getRGB(), label.getBackground().getRGB());
+	}
+
+	public void testImmediateWhenDisabled() throws Exception {
+		engine.setIncrementalRestyling(false);
+		WidgetElement.setCSSClass(label, "green");
+		engine.markDirty(label);
+		assertEquals(GREEN, label.getBackground().getRGB());
+	}
+}
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (c) 2015 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.e4.ui.tests.application;
+
+import java.io.File;
+import junit.framework.TestCase;
+import org.eclipse.e4.ui.internal.workbench.E4BinaryResource;
+import org.eclipse.e4.ui.internal.workbench.E4BinaryResourceFactory;
+import org.eclipse.e4.ui.model.application.MApplication;
+import org.eclipse.e4.ui.model.application.impl.ApplicationFactoryImpl;
+import org.eclipse.e4.ui.model.application.ui.advanced.MPerspective;
+import org.eclipse.e4.ui.model.application.ui.advanced.MPerspectiveStack;
+import org.eclipse.e4.ui.model.application.ui.advanced.impl.AdvancedFactoryImpl;
+import org.eclipse.e4.ui.model.application.ui.basic.MPart;
+import org.eclipse.e4.ui.model.application.ui.basic.MPartStack;
+import org.eclipse.e4.ui.model.application.ui.basic.MWindow;
+import org.eclipse.e4.ui.model.application.ui.basic.impl.BasicFactoryImpl;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+
+public class E4BinaryResourceTest extends TestCase {
+
+	private File file;
+
+	private URI uri;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		file = File.createTempFile("workbench", "." + E4BinaryResource.FILE_EXTENSION);
+		uri = URI.createFileURI(file.getAbsolutePath());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		file.delete();
+		super.tearDown();
+	}
+
+	private E4BinaryResource createResource() {
+		return (E4BinaryResource) new E4BinaryResourceFactory().createResource(uri);
+	}
+
+	public void testSaveAndLoad() throws Exception {
+		MApplication application = ApplicationFactoryImpl.eINSTANCE.createApplication();
+		MWindow window = BasicFactoryImpl.eINSTANCE.createWindow();
+		window.setElementId("window");
+		window.setWidth(800);
+		application.getChildren().add(window);
+		MPartStack stack = BasicFactoryImpl.eINSTANCE.createPartStack();
+		window.getChildren().add(stack);
+		MPart part = BasicFactoryImpl.eINSTANCE.createPart();
+		part.setElementId("part");
+		part.getPersistedState().put("memento", "<state/>");
+		part.getTags().add("tag");
+		stack.getChildren().add(part);
+		stack.setSelectedElement(part);
+
+		E4BinaryResource resource = createResource();
+		resource.getContents().add((EObject) application);
+		resource.setID((EObject) part, "_partId");
+		String windowId = resource.getID((EObject) window);
+		resource.save(null);
+		assertTrue(file.length() > 0);
+
+		E4BinaryResource loaded = createResource();
+		loaded.load(null);
+		assertEquals(1, loaded.getContents().size());
+		MApplication loadedApplication = (MApplication) loaded.getContents().get(0);
+		MWindow loadedWindow = loadedApplication.getChildren().get(0);
+		assertEquals("window", loadedWindow.getElementId());
+		assertEquals(800, loadedWindow.getWidth());
+		MPartStack loadedStack = (MPartStack) loadedWindow.getChildren().get(0);
+		MPart loadedPart = (MPart) loadedStack.getChildren().get(0);
+		assertSame(loadedPart, loadedStack.getSelectedElement());
+		assertEquals("part", loadedPart.getElementId());
+		assertEquals("<state/>", loadedPart.getPersistedState().get("memento"));
+		assertEquals("tag", loadedPart.getTags().get(0));
+
+		// the ids are kept
+		assertEquals("_partId", loaded.getID((EObject) loadedPart));
+		assertEquals(windowId, loaded.getID((EObject) loadedWindow));
+		assertSame(loadedPart, loaded.getEObject("_partId"));
+	}
+
+	public void testSaveAndLoadWithTransientData() throws Exception {
+		MApplication application = ApplicationFactoryImpl.eINSTANCE.createApplication();
+		application.getTransientData().put("rtlMode", Boolean.TRUE);
+		MWindow window = BasicFactoryImpl.eINSTANCE.createWindow();
+		window.getTransientData().put("key", "value");
+		application.getChildren().add(window);
+		MPerspectiveStack perspectiveStack = AdvancedFactoryImpl.eINSTANCE.createPerspectiveStack();
+		window.getChildren().add(perspectiveStack);
+		MPerspective perspective = AdvancedFactoryImpl.eINSTANCE.createPerspective();
+		perspective.setElementId("perspective");
+		perspectiveStack.getChildren().add(perspective);
+		perspectiveStack.setSelectedElement(perspective);
+		MPartStack stack = BasicFactoryImpl.eINSTANCE.createPartStack();
+		perspective.getChildren().add(stack);
+		MPart part = BasicFactoryImpl.eINSTANCE.createPart();
+		part.getTransientData().put("key", "value");
+		stack.getChildren().add(part);
+
+		E4BinaryResource resource = createResource();
+		resource.getContents().add((EObject) application);
+		String perspectiveId = resource.getID((EObject) perspective);
+		String partId = resource.getID((EObject) part);
+		resource.save(null);
+
+		E4BinaryResource loaded = createResource();
+		loaded.load(null);
+		MApplication loadedApplication = (MApplication) loaded.getContents().get(0);
+		assertTrue(loadedApplication.getTransientData().isEmpty());
+		MWindow loadedWindow = loadedApplication.getChildren().get(0);
+		MPerspectiveStack loadedPerspectiveStack = (MPerspectiveStack) loadedWindow
+				.getChildren().get(0);
+		MPerspective loadedPerspective = loadedPerspectiveStack.getChildren().get(0);
+		assertSame(loadedPerspective, loadedPerspectiveStack.getSelectedElement());
+		assertEquals("perspective", loadedPerspective.getElementId());
+		MPartStack loadedStack = (MPartStack) loadedPerspective.getChildren().get(0);
+		MPart loadedPart = (MPart) loadedStack.getChildren().get(0);
+
+		assertEquals(perspectiveId, loaded.getID((EObject) loadedPerspective));
+		assertEquals(partId, loaded.getID((EObject) loadedPart));
+	}
+}
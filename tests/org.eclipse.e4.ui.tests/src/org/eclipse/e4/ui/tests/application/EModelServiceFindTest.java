@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2014 IBM Corporation and others.
+ * Copyright (c) 2009, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,6 +12,7 @@
 package org.eclipse.e4.ui.tests.application;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import junit.framework.TestCase;
 import org.eclipse.e4.core.contexts.IEclipseContext;
@@ -33,6 +34,8 @@ import org.eclipse.e4.ui.model.application.ui.advanced.MPlaceholder;
 import org.eclipse.e4.ui.model.application.ui.basic.MPart;
 import org.eclipse.e4.ui.model.application.ui.basic.MPartSashContainer;
 import org.eclipse.e4.ui.model.application.ui.basic.MPartStack;
+import org.eclipse.e4.ui.model.application.ui.basic.MTrimBar;
+import org.eclipse.e4.ui.model.application.ui.basic.MTrimmedWindow;
 import org.eclipse.e4.ui.model.application.ui.basic.MWindow;
 import org.eclipse.e4.ui.model.application.ui.basic.impl.BasicFactoryImpl;
 import org.eclipse.e4.ui.model.application.ui.menu.MMenu;
@@ -43,6 +46,7 @@ import org.eclipse.e4.ui.model.application.ui.menu.MToolControl;
 import org.eclipse.e4.ui.model.application.ui.menu.impl.MenuFactoryImpl;
 import org.eclipse.e4.ui.workbench.Selector;
 import org.eclipse.e4.ui.workbench.modeling.EModelService;
+import org.eclipse.e4.ui.workbench.modeling.ElementMatcher;
 
 public class EModelServiceFindTest extends TestCase {
 
@@ -461,4 +465,154 @@ public class EModelServiceFindTest extends TestCase {
 		assertEquals(1, elements.size());
 		assertEquals(part, elements.get(0));
 	}
+
+	public void testFindElementsAfterChanges() {
+		MApplication application = createApplication();
+		MWindow window = application.getChildren().get(0);
+
+		MPart part = modelService.createModelElement(MPart.class);
+		part.setElementId("addedPart");
+		assertNull(modelService.find("addedPart", application));
+
+		MPartStack stack = modelService.findElements(application, null,
+				MPartStack.class, null).get(0);
+		stack.getChildren().add(part);
+		assertSame(part, modelService.find("addedPart", application));
+
+		part.setElementId("renamedPart");
+		assertNull(modelService.find("addedPart", application));
+		assertSame(part, modelService.find("renamedPart", application));
+
+		List<String> tags = new ArrayList<String>();
+		tags.add("addedTag");
+		assertTrue(modelService.findElements(application, null, null, tags)
+				.isEmpty());
+		part.getTags().add("addedTag");
+		assertEquals(1, modelService.findElements(application, null, null, tags)
+				.size());
+		part.getTags().remove("addedTag");
+		assertTrue(modelService.findElements(application, null, null, tags)
+				.isEmpty());
+
+		// shared elements are only found through their placeholders
+		stack.getChildren().remove(part);
+		window.getSharedElements().add(part);
+		assertNull(modelService.find("renamedPart", application));
+		MPlaceholder placeholder = modelService
+				.createModelElement(MPlaceholder.class);
+		stack.getChildren().add(placeholder);
+		placeholder.setRef(part);
+		assertSame(part, modelService.find("renamedPart", application));
+		placeholder.setRef(null);
+		assertNull(modelService.find("renamedPart", application));
+	}
+
+	public void testFindElementsInLargeModel() {
+		MApplication application = ApplicationFactoryImpl.eINSTANCE
+				.createApplication();
+		application.setContext(applicationContext);
+		MTrimmedWindow window = modelService
+				.createModelElement(MTrimmedWindow.class);
+		application.getChildren().add(window);
+		MMenu mainMenu = modelService.createModelElement(MMenu.class);
+		mainMenu.setElementId("element.1");
+		window.setMainMenu(mainMenu);
+
+		MPerspectiveStack perspectiveStack = modelService
+				.createModelElement(MPerspectiveStack.class);
+		window.getChildren().add(perspectiveStack);
+		for (int p = 0; p < 3; p++) {
+			MPerspective perspective = modelService
+					.createModelElement(MPerspective.class);
+			perspectiveStack.getChildren().add(perspective);
+			for (int s = 0; s < 20; s++) {
+				MPartStack stack = modelService
+						.createModelElement(MPartStack.class);
+				stack.getTags().add("stack");
+				perspective.getChildren().add(stack);
+				for (int i = 0; i < 20; i++) {
+					int n = (p * 20 + s) * 20 + i;
+					MPart part = modelService.createModelElement(MPart.class);
+					part.setElementId("element." + n % 500);
+					part.getTags().add("tag." + n % 7);
+					if (n % 3 == 0) {
+						window.getSharedElements().add(part);
+						MPlaceholder placeholder = modelService
+								.createModelElement(MPlaceholder.class);
+						placeholder.setElementId(part.getElementId());
+						placeholder.setRef(part);
+						stack.getChildren().add(placeholder);
+					} else {
+						stack.getChildren().add(part);
+					}
+					if (n % 5 == 0) {
+						MToolBar toolBar = modelService
+								.createModelElement(MToolBar.class);
+						toolBar.setElementId("element." + n % 400);
+						part.setToolbar(toolBar);
+					}
+				}
+			}
+		}
+		perspectiveStack.setSelectedElement(perspectiveStack.getChildren()
+				.get(1));
+
+		for (int b = 0; b < 4; b++) {
+			MTrimBar trimBar = modelService.createModelElement(MTrimBar.class);
+			window.getTrimBars().add(trimBar);
+			MToolBar toolBar = modelService.createModelElement(MToolBar.class);
+			trimBar.getChildren().add(toolBar);
+			for (int i = 0; i < 500; i++) {
+				MToolControl control = modelService
+						.createModelElement(MToolControl.class);
+				control.setElementId("element." + i % 300);
+				control.getTags().add("tag." + i % 11);
+				toolBar.getChildren().add(control);
+			}
+		}
+
+		int[] flags = { EModelService.ANYWHERE, EModelService.PRESENTATION,
+				EModelService.IN_ACTIVE_PERSPECTIVE,
+				EModelService.IN_ANY_PERSPECTIVE | EModelService.IN_TRIM,
+				EModelService.IN_PART | EModelService.IN_ANY_PERSPECTIVE,
+				EModelService.IN_MAIN_MENU | EModelService.IN_TRIM };
+		Class<?>[] classes = { null, MUIElement.class, MPart.class,
+				MPlaceholder.class, MToolControl.class };
+		MUIElement[] roots = { application, window, perspectiveStack,
+				perspectiveStack.getChildren().get(2) };
+		for (MUIElement root : roots) {
+			for (int flag : flags) {
+				for (Class<?> clazz : classes) {
+					for (int i = 0; i < 500; i += 37) {
+						assertFound(root, "element." + i, clazz, null, flag);
+					}
+					for (int i = 0; i < 11; i += 3) {
+						assertFound(root, null, clazz,
+								Collections.singletonList("tag." + i), flag);
+					}
+					assertFound(root, null, clazz,
+							Collections.singletonList("stack"), flag);
+					assertFound(root, null, clazz, null, flag);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks that the elements found are the ones the walk of the model finds,
+	 * in the same order.
+	 */
+	private void assertFound(MUIElement root, String id, Class<?> clazz,
+			List<String> tags, int flags) {
+		final ElementMatcher matcher = new ElementMatcher(id, clazz, tags);
+		List<?> expected = modelService.findElements(root, clazz, flags,
+				new Selector() {
+					@Override
+					public boolean select(MApplicationElement element) {
+						return matcher.select(element);
+					}
+				});
+		assertEquals(expected,
+				modelService.findElements(root, id, clazz, tags, flags));
+	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010, 2012 IBM Corporation and others.
+ * Copyright (c) 2010, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,6 +10,12 @@
  ******************************************************************************/
 package org.eclipse.e4.ui.tests.application;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.eclipse.e4.core.services.events.IEventBroker;
+import org.eclipse.e4.ui.internal.workbench.UIEventPublisher;
+import org.eclipse.e4.ui.model.application.ui.advanced.MArea;
 import org.eclipse.e4.ui.model.application.ui.advanced.MPerspective;
 import org.eclipse.e4.ui.model.application.ui.advanced.MPerspectiveStack;
 import org.eclipse.e4.ui.model.application.ui.advanced.MPlaceholder;
@@ -19,7 +25,14 @@ import org.eclipse.e4.ui.model.application.ui.basic.MPartSashContainer;
 import org.eclipse.e4.ui.model.application.ui.basic.MPartStack;
 import org.eclipse.e4.ui.model.application.ui.basic.MWindow;
 import org.eclipse.e4.ui.model.application.ui.basic.impl.BasicFactoryImpl;
+import org.eclipse.e4.ui.workbench.IPresentationEngine;
+import org.eclipse.e4.ui.workbench.UIEvents;
+import org.eclipse.e4.ui.workbench.UIEvents.ApplicationElement;
+import org.eclipse.e4.ui.workbench.UIEvents.EventTags;
 import org.eclipse.e4.ui.workbench.modeling.EModelService;
+import org.eclipse.emf.common.notify.Notifier;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventHandler;
 
 public class EModelServiceTest extends UITest {
 
@@ -223,4 +236,72 @@ public class EModelServiceTest extends UITest {
 		assertEquals(EModelService.NOT_IN_UI,
 				modelService.getElementLocation(innerWindow));
 	}
+
+	public void testResetPerspectiveModelBatchesEvents() {
+		MWindow window = BasicFactoryImpl.eINSTANCE.createWindow();
+		application.getChildren().add(window);
+		application.setSelectedElement(window);
+
+		MPerspectiveStack perspectiveStack = AdvancedFactoryImpl.eINSTANCE
+				.createPerspectiveStack();
+		window.getChildren().add(perspectiveStack);
+		window.setSelectedElement(perspectiveStack);
+
+		MPerspective perspective = AdvancedFactoryImpl.eINSTANCE
+				.createPerspective();
+		perspective.setElementId("perspective");
+		perspectiveStack.getChildren().add(perspective);
+		perspectiveStack.setSelectedElement(perspective);
+
+		MArea area = AdvancedFactoryImpl.eINSTANCE.createArea();
+		area.getTags().add(IPresentationEngine.MINIMIZED);
+		area.getTags().add(IPresentationEngine.MINIMIZED_BY_ZOOM);
+		window.getChildren().add(area);
+		MPartStack partStack = BasicFactoryImpl.eINSTANCE.createPartStack();
+		partStack.setElementId("stack");
+		area.getChildren().add(partStack);
+
+		getEngine().createGui(window);
+
+		UIEventPublisher publisher = new UIEventPublisher(applicationContext);
+		applicationContext.set(UIEventPublisher.class, publisher);
+		((Notifier) application).eAdapters().add(publisher);
+
+		final List<Event> events = new ArrayList<Event>();
+		EventHandler handler = new EventHandler() {
+			public void handleEvent(Event event) {
+				events.add(event);
+			}
+		};
+		IEventBroker eventBroker = applicationContext.get(IEventBroker.class);
+		eventBroker.subscribe(ApplicationElement.TOPIC_TAGS, handler);
+		eventBroker.subscribe(ApplicationElement.TOPIC_ELEMENTID, handler);
+
+		EModelService modelService = window.getContext().get(
+				EModelService.class);
+		modelService.resetPerspectiveModel(perspective, window);
+		eventBroker.unsubscribe(handler);
+		assertFalse(publisher.isBatching());
+
+		// the removals of the minimized tags were folded into one event
+		assertEquals(2, events.size());
+		Event tagsEvent = events.get(1);
+		assertEquals(area, tagsEvent.getProperty(EventTags.ELEMENT));
+		assertTrue(UIEvents.isREMOVE(tagsEvent));
+		assertEquals(UIEvents.EventTypes.REMOVE_MANY,
+				tagsEvent.getProperty(EventTags.TYPE));
+		Collection<?> removed = (Collection<?>) tagsEvent
+				.getProperty(EventTags.OLD_VALUE);
+		assertEquals(2, removed.size());
+		assertTrue(removed.contains(IPresentationEngine.MINIMIZED));
+		assertTrue(removed.contains(IPresentationEngine.MINIMIZED_BY_ZOOM));
+		assertEquals(Integer.valueOf(2),
+				tagsEvent.getProperty(UIEventPublisher.NOTIFICATION_COUNT));
+		assertTrue(area.getTags().isEmpty());
+
+		Event idEvent = events.get(0);
+		assertEquals(partStack, idEvent.getProperty(EventTags.ELEMENT));
+		assertEquals(Integer.valueOf(1),
+				idEvent.getProperty(UIEventPublisher.NOTIFICATION_COUNT));
+	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2013 IBM Corporation and others.
+ * Copyright (c) 2009, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -328,6 +328,67 @@ public class UIEventsTest extends HeadlessApplicationElementTest {
 		checkForFailures(allTesters, windowTester);
 	}
 
+	public void testBatchedEvents() {
+		IEventBroker eventBroker = applicationContext.get(IEventBroker.class);
+		final List<Event> events = new ArrayList<Event>();
+		EventHandler handler = new EventHandler() {
+			public void handleEvent(Event event) {
+				events.add(event);
+			}
+		};
+		eventBroker.subscribe(UILabel.TOPIC_ALL, handler);
+		eventBroker.subscribe(ApplicationElement.TOPIC_ALL, handler);
+
+		MTestHarness allData = MTestFactory.eINSTANCE.createTestHarness();
+		allData.setLabel("Initial");
+		allData.setTooltip("Initial");
+		UIEventPublisher ep = new UIEventPublisher(applicationContext);
+		((Notifier) allData).eAdapters().add(ep);
+
+		ep.beginBatch();
+		allData.setLabel("First");
+		allData.setTooltip("Changed");
+		allData.getTags().add("Testing");
+		ep.beginBatch();
+		allData.setLabel("Second");
+		ep.endBatch();
+		assertTrue(ep.isBatching());
+		allData.setLabel("Last");
+		allData.setTooltip("Initial");
+		assertEquals(0, events.size());
+		ep.endBatch();
+		assertFalse(ep.isBatching());
+
+		// the tooltip went back to its value, the label changes were folded
+		assertEquals(2, events.size());
+		Event tagEvent = events.get(0);
+		assertEquals(ApplicationElement.TAGS,
+				tagEvent.getProperty(EventTags.ATTNAME));
+		assertEquals(Integer.valueOf(1),
+				tagEvent.getProperty(UIEventPublisher.NOTIFICATION_COUNT));
+		Event labelEvent = events.get(1);
+		assertEquals(UILabel.LABEL, labelEvent.getProperty(EventTags.ATTNAME));
+		assertEquals("Initial", labelEvent.getProperty(EventTags.OLD_VALUE));
+		assertEquals("Last", labelEvent.getProperty(EventTags.NEW_VALUE));
+		assertEquals(Integer.valueOf(3),
+				labelEvent.getProperty(UIEventPublisher.NOTIFICATION_COUNT));
+
+		// outside of a batch the events are sent immediately
+		events.clear();
+		allData.setLabel("Unbatched");
+		assertEquals(1, events.size());
+		assertNull(events.get(0).getProperty(
+				UIEventPublisher.NOTIFICATION_COUNT));
+
+		try {
+			ep.endBatch();
+			fail("endBatch without beginBatch");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		eventBroker.unsubscribe(handler);
+	}
+
 	// Verify bug 374534
 	public void testBrokerCleanup() {
 		final String testTopic = "test/374534";
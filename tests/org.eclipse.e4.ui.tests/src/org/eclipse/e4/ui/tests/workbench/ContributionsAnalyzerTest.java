@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2015 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.e4.ui.tests.workbench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import junit.framework.TestCase;
+import org.eclipse.e4.ui.internal.workbench.ContributionsAnalyzer;
+import org.eclipse.e4.ui.model.application.MApplication;
+import org.eclipse.e4.ui.model.application.commands.MCommand;
+import org.eclipse.e4.ui.model.application.commands.impl.CommandsFactoryImpl;
+import org.eclipse.e4.ui.model.application.impl.ApplicationFactoryImpl;
+import org.eclipse.e4.ui.model.application.ui.menu.MMenu;
+import org.eclipse.e4.ui.model.application.ui.menu.MMenuContribution;
+import org.eclipse.e4.ui.model.application.ui.menu.MPopupMenu;
+import org.eclipse.e4.ui.model.application.ui.menu.MToolBar;
+import org.eclipse.e4.ui.model.application.ui.menu.MToolBarContribution;
+import org.eclipse.e4.ui.model.application.ui.menu.impl.MenuFactoryImpl;
+
+public class ContributionsAnalyzerTest extends TestCase {
+
+	private MApplication application;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		application = ApplicationFactoryImpl.eINSTANCE.createApplication();
+	}
+
+	private MMenuContribution addMenuContribution(String parentId, String tag) {
+		MMenuContribution contribution = MenuFactoryImpl.eINSTANCE.createMenuContribution();
+		contribution.setParentId(parentId);
+		if (tag != null) {
+			contribution.getTags().add(tag);
+		}
+		application.getMenuContributions().add(contribution);
+		return contribution;
+	}
+
+	private ArrayList<MMenuContribution> gather(MMenu menu, boolean includePopups) {
+		ArrayList<MMenuContribution> toContribute = new ArrayList<MMenuContribution>();
+		ContributionsAnalyzer.gatherMenuContributions(menu, application.getMenuContributions(),
+				menu.getElementId(), toContribute, null, includePopups);
+		return toContribute;
+	}
+
+	public void testGatherMenuContributions() {
+		MMenuContribution file = addMenuContribution("file", null);
+		MMenuContribution popup = addMenuContribution("popup", ContributionsAnalyzer.MC_POPUP);
+		addMenuContribution("edit", null);
+		MMenuContribution filePopup = addMenuContribution("file", ContributionsAnalyzer.MC_POPUP);
+		MMenuContribution fileMenu = addMenuContribution("file", ContributionsAnalyzer.MC_MENU);
+
+		MMenu menu = MenuFactoryImpl.eINSTANCE.createMenu();
+		menu.setElementId("file");
+		assertEquals(Arrays.asList(file, fileMenu), gather(menu, false));
+
+		MPopupMenu popupMenu = MenuFactoryImpl.eINSTANCE.createPopupMenu();
+		popupMenu.setElementId("file");
+		assertEquals(Arrays.asList(file, popup, filePopup), gather(popupMenu, true));
+	}
+
+	public void testGatherMenuContributionsAfterChanges() {
+		MMenuContribution first = addMenuContribution("file", null);
+		MMenu menu = MenuFactoryImpl.eINSTANCE.createMenu();
+		menu.setElementId("file");
+		assertEquals(Arrays.asList(first), gather(menu, false));
+
+		MMenuContribution second = addMenuContribution("edit", null);
+		assertEquals(Arrays.asList(first), gather(menu, false));
+
+		second.setParentId("file");
+		assertEquals(Arrays.asList(first, second), gather(menu, false));
+
+		first.getTags().add(ContributionsAnalyzer.MC_POPUP);
+		assertEquals(Arrays.asList(second), gather(menu, false));
+
+		application.getMenuContributions().move(0, second);
+		first.getTags().clear();
+		assertEquals(Arrays.asList(second, first), gather(menu, false));
+
+		application.getMenuContributions().remove(second);
+		second.setToBeRendered(false);
+		assertEquals(Arrays.asList(first), gather(menu, false));
+	}
+
+	public void testGatherToolBarContributions() {
+		MToolBarContribution contribution = MenuFactoryImpl.eINSTANCE
+				.createToolBarContribution();
+		contribution.setParentId("main");
+		application.getToolBarContributions().add(contribution);
+		MToolBar toolBar = MenuFactoryImpl.eINSTANCE.createToolBar();
+
+		ArrayList<MToolBarContribution> toContribute = new ArrayList<MToolBarContribution>();
+		ContributionsAnalyzer.gatherToolBarContributions(toolBar,
+				application.getToolBarContributions(), "main", toContribute, null);
+		assertEquals(Arrays.asList(contribution), toContribute);
+
+		contribution.setParentId("other");
+		toContribute.clear();
+		ContributionsAnalyzer.gatherToolBarContributions(toolBar,
+				application.getToolBarContributions(), "main", toContribute, null);
+		assertTrue(toContribute.isEmpty());
+	}
+
+	public void testGetCommandById() {
+		MCommand command = CommandsFactoryImpl.eINSTANCE.createCommand();
+		command.setElementId("command");
+		application.getCommands().add(command);
+		assertSame(command, ContributionsAnalyzer.getCommandById(application, "command"));
+		assertNull(ContributionsAnalyzer.getCommandById(application, "other"));
+
+		command.setElementId("renamed");
+		assertNull(ContributionsAnalyzer.getCommandById(application, "command"));
+		assertSame(command, ContributionsAnalyzer.getCommandById(application, "renamed"));
+
+		application.getCommands().remove(command);
+		assertNull(ContributionsAnalyzer.getCommandById(application, "renamed"));
+	}
+}
@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * Copyright (c) 2015 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.e4.ui.tests.workbench;
+
+import java.io.File;
+import java.util.List;
+import junit.framework.TestCase;
+import org.eclipse.e4.ui.internal.workbench.E4XMIResource;
+import org.eclipse.e4.ui.internal.workbench.E4XMIResourceFactory;
+import org.eclipse.e4.ui.internal.workbench.ModelFragmentsLoader;
+import org.eclipse.e4.ui.internal.workbench.WorkbenchLogger;
+import org.eclipse.e4.ui.model.application.MApplication;
+import org.eclipse.e4.ui.model.application.impl.ApplicationFactoryImpl;
+import org.eclipse.e4.ui.model.application.ui.basic.MPart;
+import org.eclipse.e4.ui.model.application.ui.basic.MWindow;
+import org.eclipse.e4.ui.model.application.ui.basic.impl.BasicFactoryImpl;
+import org.eclipse.e4.ui.model.fragment.MModelFragment;
+import org.eclipse.e4.ui.model.fragment.MModelFragments;
+import org.eclipse.e4.ui.model.fragment.MStringModelFragment;
+import org.eclipse.e4.ui.model.fragment.impl.FragmentFactoryImpl;
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+
+public class ModelFragmentsLoaderTest extends TestCase {
+
+	private static final int FRAGMENT_COUNT = 4;
+
+	private File directory;
+
+	private File cacheDirectory;
+
+	private URI[] uris;
+
+	private String[] bundleNames;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		directory = File.createTempFile("fragments", "");
+		directory.delete();
+		directory.mkdirs();
+		cacheDirectory = new File(directory, "cache");
+
+		uris = new URI[FRAGMENT_COUNT];
+		bundleNames = new String[FRAGMENT_COUNT];
+		for (int i = 0; i < FRAGMENT_COUNT; i++) {
+			File file = new File(directory, "fragment" + i + ".e4xmi");
+			uris[i] = URI.createFileURI(file.getAbsolutePath());
+			bundleNames[i] = "bundle" + i;
+			writeFragment(uris[i], i);
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		delete(directory);
+		super.tearDown();
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	private static ResourceSet createResourceSet() {
+		ResourceSet resourceSet = new ResourceSetImpl();
+		resourceSet.getResourceFactoryRegistry().getExtensionToFactoryMap()
+				.put(Resource.Factory.Registry.DEFAULT_EXTENSION, new E4XMIResourceFactory());
+		return resourceSet;
+	}
+
+	private static void writeFragment(URI uri, int index) throws Exception {
+		MModelFragments fragments = FragmentFactoryImpl.eINSTANCE.createModelFragments();
+		MStringModelFragment fragment = FragmentFactoryImpl.eINSTANCE
+				.createStringModelFragment();
+		fragment.setParentElementId("window");
+		fragment.setFeaturename("children");
+		MPart part = BasicFactoryImpl.eINSTANCE.createPart();
+		part.setElementId("part" + index);
+		part.setLabel("Part " + index);
+		fragment.getElements().add(part);
+		fragments.getFragments().add(fragment);
+
+		E4XMIResource resource = (E4XMIResource) createResourceSet().createResource(uri);
+		resource.getContents().add((EObject) fragments);
+		resource.setID((EObject) part, "_part" + index);
+		resource.save(null);
+	}
+
+	private Object[] load(ResourceSet resourceSet, String key) {
+		ModelFragmentsLoader loader = new ModelFragmentsLoader(resourceSet, new WorkbenchLogger(
+				"org.eclipse.e4.ui.tests"));
+		return loader.load(uris, bundleNames, cacheDirectory, key);
+	}
+
+	private Object[] loadSequential(ResourceSet resourceSet) {
+		Object[] roots = new Object[uris.length];
+		for (int i = 0; i < uris.length; i++) {
+			roots[i] = resourceSet.getResource(uris[i], true).getContents().get(0);
+		}
+		return roots;
+	}
+
+	private static void assertSameFragments(Object[] expected, Object[] actual) {
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++) {
+			EObject expectedRoot = (EObject) expected[i];
+			EObject actualRoot = (EObject) actual[i];
+			assertTrue(EcoreUtil.equals(expectedRoot, actualRoot));
+
+			TreeIterator<EObject> expectedContents = expectedRoot.eAllContents();
+			TreeIterator<EObject> actualContents = actualRoot.eAllContents();
+			while (expectedContents.hasNext()) {
+				EObject expectedObject = expectedContents.next();
+				EObject actualObject = actualContents.next();
+				assertEquals(getId(expectedObject), getId(actualObject));
+			}
+			assertFalse(actualContents.hasNext());
+		}
+	}
+
+	private static String getId(EObject object) {
+		return ((E4XMIResource) object.eResource()).getInternalId(object);
+	}
+
+	private static MApplication merge(Object[] roots) {
+		MApplication application = ApplicationFactoryImpl.eINSTANCE.createApplication();
+		MWindow window = BasicFactoryImpl.eINSTANCE.createWindow();
+		window.setElementId("window");
+		application.getChildren().add(window);
+		for (Object root : roots) {
+			for (MModelFragment fragment : ((MModelFragments) root).getFragments()) {
+				fragment.merge(application);
+			}
+		}
+		return application;
+	}
+
+	public void testCacheHit() throws Exception {
+		Object[] roots = load(createResourceSet(), "key");
+		assertEquals(FRAGMENT_COUNT, roots.length);
+		for (int i = 0; i < FRAGMENT_COUNT; i++) {
+			assertEquals(uris[i], ((EObject) roots[i]).eResource().getURI());
+		}
+		assertTrue(new File(cacheDirectory, "fragments.xmi").isFile());
+
+		Object[] cached = load(createResourceSet(), "key");
+		URI cacheURI = URI.createFileURI(new File(cacheDirectory, "fragments.xmi")
+				.getAbsolutePath());
+		for (Object root : cached) {
+			assertEquals(cacheURI, ((EObject) root).eResource().getURI());
+		}
+		assertSameFragments(roots, cached);
+	}
+
+	public void testCacheInvalidatedByBundleChange() throws Exception {
+		load(createResourceSet(), "key");
+
+		// a changed set of bundles has another key
+		bundleNames[0] = "changed";
+		MModelFragments fragments = (MModelFragments) loadSequential(createResourceSet())[0];
+		MModelFragment fragment = fragments.getFragments().get(0);
+		fragment.getElements().get(0).setElementId("changed");
+		((EObject) fragment).eResource().save(null);
+
+		Object[] roots = load(createResourceSet(), "changedKey");
+		assertEquals(uris[0], ((EObject) roots[0]).eResource().getURI());
+		List<?> elements = ((MModelFragments) roots[0]).getFragments().get(0).getElements();
+		assertEquals("changed", ((MPart) elements.get(0)).getElementId());
+
+		// the cache is written again for the changed bundles
+		Object[] cached = load(createResourceSet(), "changedKey");
+		assertEquals("fragments.xmi", ((EObject) cached[0]).eResource().getURI().lastSegment());
+		assertSameFragments(roots, cached);
+	}
+
+	public void testParallelMergeEqualsSequentialMerge() throws Exception {
+		Object[] sequential = loadSequential(createResourceSet());
+		Object[] parallel = load(createResourceSet(), null);
+		assertSameFragments(sequential, parallel);
+
+		MApplication sequentialApplication = merge(sequential);
+		MApplication parallelApplication = merge(parallel);
+		assertEquals(FRAGMENT_COUNT, sequentialApplication.getChildren().get(0).getChildren()
+				.size());
+		assertTrue(EcoreUtil.equals((EObject) sequentialApplication,
+				(EObject) parallelApplication));
+	}
+
+	public void testMergeCachedFragments() throws Exception {
+		MApplication expected = merge(loadSequential(createResourceSet()));
+
+		// the cache is written before the loaded fragments are merged
+		MApplication loaded = merge(load(createResourceSet(), "key"));
+		MApplication cached = merge(load(createResourceSet(), "key"));
+		assertTrue(EcoreUtil.equals((EObject) expected, (EObject) loaded));
+		assertTrue(EcoreUtil.equals((EObject) expected, (EObject) cached));
+	}
+}
@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * Copyright (c) 2015 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.e4.ui.tests.workbench;
+
+import junit.framework.TestCase;
+import org.eclipse.e4.core.commands.CommandServiceAddon;
+import org.eclipse.e4.core.commands.EHandlerService;
+import org.eclipse.e4.core.contexts.ContextInjectionFactory;
+import org.eclipse.e4.core.contexts.IEclipseContext;
+import org.eclipse.e4.core.di.annotations.CanExecute;
+import org.eclipse.e4.core.di.annotations.Execute;
+import org.eclipse.e4.core.services.events.IEventBroker;
+import org.eclipse.e4.ui.bindings.BindingServiceAddon;
+import org.eclipse.e4.ui.internal.workbench.E4Workbench;
+import org.eclipse.e4.ui.internal.workbench.addons.CommandProcessingAddon;
+import org.eclipse.e4.ui.internal.workbench.addons.HandlerProcessingAddon;
+import org.eclipse.e4.ui.internal.workbench.swt.E4Application;
+import org.eclipse.e4.ui.internal.workbench.swt.PartRenderingEngine;
+import org.eclipse.e4.ui.model.application.MApplication;
+import org.eclipse.e4.ui.model.application.commands.MCommand;
+import org.eclipse.e4.ui.model.application.commands.MHandler;
+import org.eclipse.e4.ui.model.application.commands.impl.CommandsFactoryImpl;
+import org.eclipse.e4.ui.model.application.impl.ApplicationFactoryImpl;
+import org.eclipse.e4.ui.model.application.ui.basic.MTrimBar;
+import org.eclipse.e4.ui.model.application.ui.basic.MTrimmedWindow;
+import org.eclipse.e4.ui.model.application.ui.basic.impl.BasicFactoryImpl;
+import org.eclipse.e4.ui.model.application.ui.menu.MHandledToolItem;
+import org.eclipse.e4.ui.model.application.ui.menu.MToolBar;
+import org.eclipse.e4.ui.model.application.ui.menu.impl.MenuFactoryImpl;
+import org.eclipse.e4.ui.services.ContextServiceAddon;
+import org.eclipse.e4.ui.services.IServiceConstants;
+import org.eclipse.e4.ui.workbench.UIEvents;
+import org.eclipse.e4.ui.workbench.renderers.swt.ToolBarManagerRenderer;
+import org.eclipse.swt.widgets.Display;
+
+public class ToolItemUpdaterTest extends TestCase {
+	private static final int ITEM_COUNT = 3;
+
+	protected IEclipseContext appContext;
+	protected E4Workbench wb;
+
+	private MTrimmedWindow window;
+	private MHandledToolItem[] firstItems;
+	private MHandledToolItem[] secondItems;
+	private CountingHandler firstHandler;
+	private CountingHandler secondHandler;
+
+	public static class CountingHandler {
+		int evaluations = 0;
+		boolean enabled = true;
+
+		@CanExecute
+		public boolean canExecute() {
+			evaluations++;
+			return enabled;
+		}
+
+		@Execute
+		public void execute() {
+			// nothing to do
+		}
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		appContext = E4Application.createDefaultContext();
+		ContextInjectionFactory.make(CommandServiceAddon.class, appContext);
+		ContextInjectionFactory.make(ContextServiceAddon.class, appContext);
+		ContextInjectionFactory.make(BindingServiceAddon.class, appContext);
+		appContext.set(E4Workbench.PRESENTATION_URI_ARG,
+				PartRenderingEngine.engineURI);
+
+		MApplication application = ApplicationFactoryImpl.eINSTANCE
+				.createApplication();
+		window = BasicFactoryImpl.eINSTANCE.createTrimmedWindow();
+		MTrimBar trimBar = BasicFactoryImpl.eINSTANCE.createTrimBar();
+		MToolBar toolBar = MenuFactoryImpl.eINSTANCE.createToolBar();
+		window.getTrimBars().add(trimBar);
+		trimBar.getChildren().add(toolBar);
+
+		firstHandler = new CountingHandler();
+		secondHandler = new CountingHandler();
+		firstItems = createItems(application, toolBar, "first", firstHandler);
+		secondItems = createItems(application, toolBar, "second",
+				secondHandler);
+
+		application.getChildren().add(window);
+		application.setContext(appContext);
+		appContext.set(MApplication.class.getName(), application);
+		ContextInjectionFactory.make(CommandProcessingAddon.class, appContext);
+		ContextInjectionFactory.make(HandlerProcessingAddon.class, appContext);
+
+		wb = new E4Workbench(window, appContext);
+		wb.createAndRunUI(window);
+		processEvents();
+		firstHandler.evaluations = 0;
+		secondHandler.evaluations = 0;
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (wb != null) {
+			wb.close();
+		}
+		appContext.dispose();
+	}
+
+	private MHandledToolItem[] createItems(MApplication application,
+			MToolBar toolBar, String id, CountingHandler handlerObject) {
+		MCommand command = CommandsFactoryImpl.eINSTANCE.createCommand();
+		command.setElementId("org.eclipse.e4.ui.tests.toolItemUpdater." + id);
+		command.setCommandName(id);
+		application.getCommands().add(command);
+
+		MHandler handler = CommandsFactoryImpl.eINSTANCE.createHandler();
+		handler.setCommand(command);
+		handler.setObject(handlerObject);
+		window.getHandlers().add(handler);
+
+		MHandledToolItem[] items = new MHandledToolItem[ITEM_COUNT];
+		for (int i = 0; i < ITEM_COUNT; i++) {
+			items[i] = MenuFactoryImpl.eINSTANCE.createHandledToolItem();
+			items[i].setElementId(id + i);
+			items[i].setLabel(id + i);
+			items[i].setCommand(command);
+			toolBar.getChildren().add(items[i]);
+		}
+		return items;
+	}
+
+	private static void processEvents() {
+		Display display = Display.getDefault();
+		while (display.readAndDispatch()) {
+			// process the pending updates
+		}
+	}
+
+	private static void assertEnabled(boolean enabled, MHandledToolItem[] items) {
+		for (MHandledToolItem item : items) {
+			assertEquals(enabled, item.isEnabled());
+		}
+	}
+
+	public void testSentRequestUpdatesSynchronously() {
+		assertEnabled(true, firstItems);
+
+		firstHandler.enabled = false;
+		IEventBroker eventBroker = appContext.get(IEventBroker.class);
+		eventBroker.send(UIEvents.REQUEST_ENABLEMENT_UPDATE_TOPIC,
+				UIEvents.ALL_ELEMENT_ID);
+
+		// the items are updated before send returns
+		assertEnabled(false, firstItems);
+		assertEnabled(true, secondItems);
+		assertEquals(ITEM_COUNT, firstHandler.evaluations);
+	}
+
+	public void testSentRequestForElementId() {
+		firstHandler.enabled = false;
+		IEventBroker eventBroker = appContext.get(IEventBroker.class);
+		eventBroker.send(UIEvents.REQUEST_ENABLEMENT_UPDATE_TOPIC,
+				firstItems[0].getElementId());
+
+		assertFalse(firstItems[0].isEnabled());
+		assertEquals(1, firstHandler.evaluations);
+		assertEquals(0, secondHandler.evaluations);
+	}
+
+	public void testContextChangesAreCoalesced() {
+		ToolBarManagerRenderer renderer = appContext
+				.get(ToolBarManagerRenderer.class);
+		assertNotNull(renderer);
+		long saved = getSavedEvaluations();
+
+		appContext.set(IServiceConstants.ACTIVE_SELECTION, "first");
+		appContext.set(IServiceConstants.ACTIVE_SELECTION, "second");
+		appContext.set(IServiceConstants.ACTIVE_SELECTION, "third");
+
+		// the items are evaluated on the next turn of the event loop
+		assertEquals(0, firstHandler.evaluations);
+		processEvents();
+
+		assertEquals(ITEM_COUNT, firstHandler.evaluations);
+		assertEquals(ITEM_COUNT, secondHandler.evaluations);
+		// the second and third change requested the six pending items again
+		assertEquals(saved + 2 * 2 * ITEM_COUNT, getSavedEvaluations());
+	}
+
+	public void testHandlerChangeUpdatesItsItems() {
+		CountingHandler disabledHandler = new CountingHandler();
+		disabledHandler.enabled = false;
+		EHandlerService handlerService = window.getContext().get(
+				EHandlerService.class);
+		handlerService.activateHandler(firstItems[0].getCommand()
+				.getElementId(), disabledHandler);
+		processEvents();
+
+		assertEnabled(false, firstItems);
+		assertEquals(ITEM_COUNT, disabledHandler.evaluations);
+		// the items of the other command are not evaluated again
+		assertEquals(0, secondHandler.evaluations);
+		assertEnabled(true, secondItems);
+	}
+
+	private long getSavedEvaluations() {
+		return appContext.get(ToolBarManagerRenderer.class).getUpdater()
+				.getSavedEvaluations();
+	}
+}
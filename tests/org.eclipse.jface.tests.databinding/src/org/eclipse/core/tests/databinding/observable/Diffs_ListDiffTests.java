@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2008 IBM Corporation and others.
+ * Copyright (c) 2007, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,7 +14,9 @@ package org.eclipse.core.tests.databinding.observable;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 import junit.framework.TestCase;
 
@@ -256,9 +258,96 @@ public class Diffs_ListDiffTests extends TestCase {
 				Arrays.asList(new Object[] { "c", "a", "b" }));
 	}
 
-	private static void checkComputedListDiff(List oldList, List newList) {
+	public void testComputeListDiff_LargeListInsertAndRemove() {
+		List oldList = createList(0, 1000);
+		List newList = new ArrayList(oldList);
+		newList.remove(10);
+		newList.add(500, "inserted");
+		newList.remove(900);
+
 		ListDiff diff = Diffs.computeListDiff(oldList, newList);
+		assertEquals(3, diff.getDifferences().length);
+		checkComputedListDiff(oldList, newList);
+	}
+
+	public void testComputeListDiff_LargeListShuffle() {
+		List oldList = createList(0, 1000);
+		List newList = new ArrayList(oldList);
+		Collections.shuffle(newList, new Random(0));
+		newList.addAll(200, createList(2000, 100));
+		newList.subList(700, 800).clear();
+
+		checkComputedListDiff(oldList, newList);
+		checkComputedListDiff(newList, oldList);
+	}
+
+	public void testComputeListDiff_LargeListDuplicatesAndNulls() {
+		Random random = new Random(0);
+		List oldList = new ArrayList();
+		List newList = new ArrayList();
+		for (int i = 0; i < 500; i++) {
+			oldList.add(i % 7 == 0 ? null : "e" + random.nextInt(20));
+			newList.add(i % 5 == 0 ? null : "e" + random.nextInt(20));
+		}
+
+		checkComputedListDiff(oldList, newList);
+		checkComputedListDiff(newList, oldList);
+	}
+
+	public void testComputeListDiff_DetectMoves() {
+		List oldList = Arrays.asList(new Object[] { "a", "b", "c", "d" });
+		List newList = Arrays.asList(new Object[] { "b", "c", "d", "a" });
+
+		ListDiff diff = Diffs.computeListDiff(oldList, newList, true);
+		final int[] moves = new int[1];
+		diff.accept(new ListDiffVisitor() {
+			public void handleAdd(int index, Object element) {
+				fail("Unexpected add of " + element);
+			}
+
+			public void handleRemove(int index, Object element) {
+				fail("Unexpected remove of " + element);
+			}
+
+			public void handleMove(int oldIndex, int newIndex, Object element) {
+				assertEquals(0, oldIndex);
+				assertEquals(3, newIndex);
+				assertEquals("a", element);
+				moves[0]++;
+			}
+		});
+		assertEquals(1, moves[0]);
+	}
+
+	public void testComputeListDiff_WithoutMoveDetection() {
+		List oldList = createList(0, 100);
+		List newList = new ArrayList(oldList);
+		Collections.reverse(newList);
+
+		ListDiff diff = Diffs.computeListDiff(oldList, newList, false);
+		List list = new ArrayList(oldList);
+		diff.applyTo(list);
+		assertEquals(newList, list);
+	}
+
+	private static List createList(int first, int count) {
+		List list = new ArrayList(count);
+		for (int i = first; i < first + count; i++) {
+			list.add("e" + i);
+		}
+		return list;
+	}
+
+	private static void checkComputedListDiff(List oldList, List newList) {
+		checkListDiff(oldList, newList, Diffs.computeListDiff(oldList,
+				newList));
+		checkListDiff(oldList, newList, Diffs.computeListDiff(oldList,
+				newList, true));
+		checkListDiff(oldList, newList, Diffs.computeListDiff(oldList,
+				newList, false));
+	}
 
+	private static void checkListDiff(List oldList, List newList, ListDiff diff) {
 		final List list = new ArrayList(oldList);
 		diff.accept(new ListDiffVisitor() {
 			public void handleAdd(int index, Object element) {
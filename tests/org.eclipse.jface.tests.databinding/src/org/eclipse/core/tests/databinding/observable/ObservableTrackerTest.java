@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2009 Matthew Hall and others.
+ * Copyright (c) 2007, 2015 Matthew Hall and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -18,6 +18,8 @@ import java.util.List;
 import java.util.Set;
 
 import org.eclipse.core.databinding.observable.AbstractObservable;
+import org.eclipse.core.databinding.observable.ChangeEvent;
+import org.eclipse.core.databinding.observable.IChangeListener;
 import org.eclipse.core.databinding.observable.IObservable;
 import org.eclipse.core.databinding.observable.ObservableTracker;
 import org.eclipse.core.databinding.observable.Realm;
@@ -222,6 +224,103 @@ public class ObservableTrackerTest extends AbstractDefaultRealmTestCase {
 		assertTrue(status.getMessage().indexOf("setIgnore") != -1);
 	}
 
+	public void testRunAndMonitor_ManyObservables() throws Exception {
+		final IObservable[] observables = new IObservable[1000];
+		for (int i = 0; i < observables.length; i++) {
+			observables[i] = new ObservableStub();
+		}
+		IObservable[] result = ObservableTracker.runAndMonitor(new Runnable() {
+			public void run() {
+				for (int i = 0; i < observables.length; i++) {
+					ObservableTracker.getterCalled(observables[i]);
+					ObservableTracker.getterCalled(observables[i / 2]);
+				}
+			}
+		}, null, null);
+		assertEquals(Arrays.asList(observables), Arrays.asList(result));
+	}
+
+	public void testRunAndMonitor_Nested() throws Exception {
+		final IObservable outer = new ObservableStub();
+		final IObservable inner = new ObservableStub();
+		final IObservable[][] innerResult = new IObservable[1][];
+		IObservable[] outerResult = ObservableTracker.runAndMonitor(
+				new Runnable() {
+					public void run() {
+						ObservableTracker.getterCalled(outer);
+						innerResult[0] = ObservableTracker.runAndMonitor(
+								new Runnable() {
+									public void run() {
+										ObservableTracker.getterCalled(inner);
+									}
+								}, null, null);
+						ObservableTracker.getterCalled(outer);
+					}
+				}, null, null);
+		assertEquals(Arrays.asList(new Object[] { outer }), Arrays
+				.asList(outerResult));
+		assertEquals(Arrays.asList(new Object[] { inner }), Arrays
+				.asList(innerResult[0]));
+	}
+
+	public void testRunAndMonitor_ResultDoesNotIncludePreviousRun()
+			throws Exception {
+		final IObservable first = new ObservableStub();
+		final IObservable second = new ObservableStub();
+		ObservableTracker.runAndMonitor(new Runnable() {
+			public void run() {
+				ObservableTracker.getterCalled(first);
+			}
+		}, null, null);
+		IObservable[] result = ObservableTracker.runAndMonitor(new Runnable() {
+			public void run() {
+				ObservableTracker.getterCalled(second);
+			}
+		}, null, null);
+		assertEquals(1, result.length);
+		assertSame(second, result[0]);
+	}
+
+	public void testRunAndMonitor_InsideRunAndCollect() throws Exception {
+		final IObservable[] created = new IObservable[1];
+		final IObservable[][] monitored = new IObservable[1][];
+		IObservable[] collected = ObservableTracker
+				.runAndCollect(new Runnable() {
+					public void run() {
+						monitored[0] = ObservableTracker.runAndMonitor(
+								new Runnable() {
+									public void run() {
+										created[0] = new ObservableStub();
+										ObservableTracker
+												.getterCalled(created[0]);
+									}
+								}, null, null);
+					}
+				});
+		assertEquals(1, collected.length);
+		assertSame(created[0], collected[0]);
+		assertEquals(1, monitored[0].length);
+		assertSame(created[0], monitored[0][0]);
+	}
+
+	public void testRunAndMonitor_RegistersListenersOnce() throws Exception {
+		final ObservableStub observable = new ObservableStub();
+		final int[] count = new int[1];
+		IChangeListener listener = new IChangeListener() {
+			public void handleChange(ChangeEvent event) {
+				count[0]++;
+			}
+		};
+		ObservableTracker.runAndMonitor(new Runnable() {
+			public void run() {
+				ObservableTracker.getterCalled(observable);
+				ObservableTracker.getterCalled(observable);
+			}
+		}, listener, null);
+		observable.fireChange();
+		assertEquals(1, count[0]);
+	}
+
 	public void testSetIgnore_UnmatchedUnignore() {
 		try {
 			ObservableTracker.setIgnore(false);
@@ -242,5 +341,9 @@ public class ObservableTrackerTest extends AbstractDefaultRealmTestCase {
 		public boolean isStale() {
 			return false;
 		}
+
+		protected void fireChange() {
+			super.fireChange();
+		}
 	}
 }
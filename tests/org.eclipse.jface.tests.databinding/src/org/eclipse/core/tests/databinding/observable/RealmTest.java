@@ -11,11 +11,27 @@
 
 package org.eclipse.core.tests.databinding.observable;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import junit.framework.TestCase;
 
+import org.eclipse.core.databinding.observable.DisposeEvent;
+import org.eclipse.core.databinding.observable.IDisposeListener;
 import org.eclipse.core.databinding.observable.Realm;
+import org.eclipse.core.databinding.observable.list.WritableList;
+import org.eclipse.core.databinding.observable.map.MapDiff;
+import org.eclipse.core.databinding.observable.map.WritableMap;
+import org.eclipse.core.databinding.observable.set.WritableSet;
+import org.eclipse.core.internal.databinding.identity.IdentityObservableSet;
+import org.eclipse.jface.databinding.conformance.util.ChangeEventTracker;
 import org.eclipse.jface.databinding.conformance.util.CurrentRealm;
+import org.eclipse.jface.databinding.conformance.util.ListChangeEventTracker;
+import org.eclipse.jface.databinding.conformance.util.MapChangeEventTracker;
 import org.eclipse.jface.databinding.conformance.util.RealmTester;
+import org.eclipse.jface.databinding.conformance.util.SetChangeEventTracker;
 
 /**
  * @since 3.2
@@ -34,4 +50,182 @@ public class RealmTest extends TestCase {
 		
 		assertEquals("old realm should have been restored", oldRealm, Realm.getDefault());
 	}
+
+	public void testRunBatched_MergesListChanges() throws Exception {
+		Realm realm = new CurrentRealm(true);
+		final WritableList list = new WritableList(realm);
+		list.add("a");
+		ChangeEventTracker changeTracker = ChangeEventTracker.observe(list);
+		ListChangeEventTracker listTracker = ListChangeEventTracker
+				.observe(list);
+
+		realm.runBatched(new Runnable() {
+			public void run() {
+				list.addAll(Arrays.asList(new Object[] { "b", "c", "d" }));
+				list.set(1, "x");
+				list.remove("a");
+			}
+		});
+
+		assertEquals(1, changeTracker.count);
+		assertEquals(1, listTracker.count);
+		List simulated = new ArrayList(Arrays.asList(new Object[] { "a" }));
+		listTracker.event.diff.applyTo(simulated);
+		assertEquals(list, simulated);
+	}
+
+	public void testRunBatched_MergesSetChanges() throws Exception {
+		Realm realm = new CurrentRealm(true);
+		final WritableSet set = new WritableSet(realm);
+		set.add("a");
+		SetChangeEventTracker tracker = SetChangeEventTracker.observe(set);
+
+		realm.runBatched(new Runnable() {
+			public void run() {
+				set.add("b");
+				set.add("c");
+				set.remove("b");
+				set.remove("a");
+			}
+		});
+
+		assertEquals(1, tracker.count);
+		assertEquals(Collections.singleton("c"), tracker.event.diff
+				.getAdditions());
+		assertEquals(Collections.singleton("a"), tracker.event.diff
+				.getRemovals());
+	}
+
+	public void testRunBatched_MergesMapChanges() throws Exception {
+		Realm realm = new CurrentRealm(true);
+		final WritableMap map = new WritableMap(realm);
+		map.put("a", "1");
+		map.put("b", "2");
+		MapChangeEventTracker tracker = MapChangeEventTracker.observe(map);
+
+		realm.runBatched(new Runnable() {
+			public void run() {
+				map.put("a", "3");
+				map.put("c", "4");
+				map.remove("b");
+				map.put("a", "5");
+			}
+		});
+
+		assertEquals(1, tracker.count);
+		MapDiff diff = tracker.event.diff;
+		assertEquals(Collections.singleton("c"), diff.getAddedKeys());
+		assertEquals(Collections.singleton("b"), diff.getRemovedKeys());
+		assertEquals(Collections.singleton("a"), diff.getChangedKeys());
+		assertEquals("1", diff.getOldValue("a"));
+		assertEquals("5", diff.getNewValue("a"));
+		assertEquals("2", diff.getOldValue("b"));
+		assertEquals("4", diff.getNewValue("c"));
+	}
+
+	public void testRunBatched_IdentitySetChangesAreNotMerged()
+			throws Exception {
+		Realm realm = new CurrentRealm(true);
+		final IdentityObservableSet set = new IdentityObservableSet(realm,
+				null);
+		final String first = new String("a");
+		final String second = new String("a");
+		SetChangeEventTracker tracker = SetChangeEventTracker.observe(set);
+
+		realm.runBatched(new Runnable() {
+			public void run() {
+				set.add(first);
+				set.add(second);
+			}
+		});
+
+		assertEquals(2, set.size());
+		assertEquals(2, tracker.count);
+		assertSame(second, tracker.event.diff.getAdditions().iterator()
+				.next());
+	}
+
+	public void testRunBatched_CancelledChangesAreNotFired() throws Exception {
+		Realm realm = new CurrentRealm(true);
+		final WritableSet set = new WritableSet(realm);
+		ChangeEventTracker changeTracker = ChangeEventTracker.observe(set);
+		SetChangeEventTracker setTracker = SetChangeEventTracker.observe(set);
+
+		realm.runBatched(new Runnable() {
+			public void run() {
+				set.add("a");
+				set.remove("a");
+			}
+		});
+
+		assertEquals(0, changeTracker.count);
+		assertEquals(0, setTracker.count);
+	}
+
+	public void testRunBatched_NestedBatchesFlushOnce() throws Exception {
+		final Realm realm = new CurrentRealm(true);
+		final WritableList list = new WritableList(realm);
+		final ListChangeEventTracker tracker = ListChangeEventTracker
+				.observe(list);
+
+		realm.runBatched(new Runnable() {
+			public void run() {
+				list.add("a");
+				realm.runBatched(new Runnable() {
+					public void run() {
+						list.add("b");
+					}
+				});
+				assertEquals(0, tracker.count);
+				list.add("c");
+			}
+		});
+
+		assertEquals(1, tracker.count);
+		assertEquals(3, tracker.event.diff.getDifferences().length);
+	}
+
+	public void testRunBatched_OtherEventsFlushPendingEventsFirst()
+			throws Exception {
+		Realm realm = new CurrentRealm(true);
+		final WritableList list = new WritableList(realm);
+		final List queue = new ArrayList();
+		final ListChangeEventTracker listTracker = new ListChangeEventTracker(
+				queue);
+		list.addListChangeListener(listTracker);
+		list.addDisposeListener(new IDisposeListener() {
+			public void handleDispose(DisposeEvent event) {
+				queue.add(this);
+			}
+		});
+
+		realm.runBatched(new Runnable() {
+			public void run() {
+				list.add("a");
+				list.dispose();
+			}
+		});
+
+		assertEquals(2, queue.size());
+		assertSame(listTracker, queue.get(0));
+	}
+
+	public void testRunBatched_FlushesWhenRunnableThrows() throws Exception {
+		Realm realm = new CurrentRealm(true);
+		final WritableList list = new WritableList(realm);
+		ListChangeEventTracker tracker = ListChangeEventTracker.observe(list);
+
+		try {
+			realm.runBatched(new Runnable() {
+				public void run() {
+					list.add("a");
+					throw new IllegalStateException();
+				}
+			});
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException expected) {
+		}
+
+		assertEquals(1, tracker.count);
+	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2009 Matthew Hall and others.
+ * Copyright (c) 2008, 2015 Matthew Hall and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -17,8 +17,10 @@ package org.eclipse.core.tests.internal.databinding;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 
 import junit.framework.TestCase;
@@ -463,6 +465,81 @@ public class IdentityMapTest extends TestCase {
 		assertEquals(hash, map.entrySet().iterator().next().hashCode());
 	}
 
+	public void testPut_NullKey() {
+		assertNull(map.put(null, value));
+		assertTrue(map.containsKey(null));
+		assertSame(value, map.get(null));
+		assertNull(map.keySet().iterator().next());
+
+		assertSame(value, map.remove(null));
+		assertFalse(map.containsKey(null));
+		assertTrue(map.isEmpty());
+	}
+
+	public void testPutRemove_ManyEntries() {
+		Object[] keys = new Object[1000];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = new String("key");
+			assertNull(map.put(keys[i], new Integer(i)));
+		}
+		assertEquals(keys.length, map.size());
+		for (int i = 0; i < keys.length; i++)
+			assertEquals(new Integer(i), map.get(keys[i]));
+
+		for (int i = 0; i < keys.length; i += 2)
+			assertEquals(new Integer(i), map.remove(keys[i]));
+		assertEquals(keys.length / 2, map.size());
+		for (int i = 0; i < keys.length; i++)
+			assertEquals(i % 2 == 1, map.containsKey(keys[i]));
+	}
+
+	public void testPutRemove_Churn() {
+		// Repeatedly put and remove entries; the map must keep agreeing with
+		// the JDK identity map.
+		Map expected = new IdentityHashMap();
+		Object[] keys = new Object[64];
+		for (int i = 0; i < keys.length; i++)
+			keys[i] = new Object();
+		Random random = new Random(42);
+		for (int i = 0; i < 20000; i++) {
+			Object key = keys[random.nextInt(keys.length)];
+			if (random.nextBoolean()) {
+				Integer value = new Integer(i);
+				assertEquals(expected.put(key, value), map.put(key, value));
+			} else {
+				assertEquals(expected.remove(key), map.remove(key));
+			}
+			assertEquals(expected.size(), map.size());
+		}
+		for (int i = 0; i < keys.length; i++)
+			assertEquals(expected.get(keys[i]), map.get(keys[i]));
+		assertTrue(map.entrySet().equals(expected.entrySet()));
+	}
+
+	public void testEntrySet_Iterator_Remove() {
+		for (int i = 0; i < 100; i++)
+			map.put(new Object(), new Integer(i));
+		int count = 0;
+		for (Iterator it = map.entrySet().iterator(); it.hasNext();) {
+			Map.Entry entry = (Map.Entry) it.next();
+			assertTrue(map.containsKey(entry.getKey()));
+			it.remove();
+			assertFalse(map.containsKey(entry.getKey()));
+			count++;
+		}
+		assertEquals(100, count);
+		assertTrue(map.isEmpty());
+	}
+
+	public void testEntrySet_Entry_GetValueAfterPut() {
+		map.put(key, value);
+		Map.Entry entry = (Map.Entry) map.entrySet().iterator().next();
+
+		Object newValue = new Object();
+		map.put(key, newValue);
+		assertSame(newValue, entry.getValue());
+	}
+
 	public void testEquals() {
 		assertFalse(map.equals(null));
 		assertTrue(map.equals(map));
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2009 Matthew Hall and others.
+ * Copyright (c) 2008, 2015 Matthew Hall and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -16,7 +16,11 @@ package org.eclipse.core.tests.internal.databinding;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
 
 import junit.framework.TestCase;
 
@@ -170,6 +174,83 @@ public class IdentitySetTest extends TestCase {
 		assertFalse(set.contains(o1));
 	}
 
+	public void testAdd_NullElement() {
+		assertTrue(set.add(null));
+		assertFalse(set.add(null));
+		assertTrue(set.contains(null));
+		assertEquals(1, set.size());
+		assertNull(set.iterator().next());
+
+		assertTrue(set.remove(null));
+		assertFalse(set.contains(null));
+		assertTrue(set.isEmpty());
+	}
+
+	public void testAddRemove_ManyElements() {
+		Object[] elements = new Object[1000];
+		for (int i = 0; i < elements.length; i++) {
+			elements[i] = new String("element");
+			assertTrue(set.add(elements[i]));
+		}
+		assertEquals(elements.length, set.size());
+		for (int i = 0; i < elements.length; i++)
+			assertTrue(set.contains(elements[i]));
+
+		for (int i = 0; i < elements.length; i += 2)
+			assertTrue(set.remove(elements[i]));
+		assertEquals(elements.length / 2, set.size());
+		for (int i = 0; i < elements.length; i++)
+			assertEquals(i % 2 == 1, set.contains(elements[i]));
+	}
+
+	public void testAddRemove_Churn() {
+		// Repeatedly add and remove elements; the set must keep agreeing with
+		// the JDK identity map.
+		Map expected = new IdentityHashMap();
+		Object[] elements = new Object[64];
+		for (int i = 0; i < elements.length; i++)
+			elements[i] = new Object();
+		Random random = new Random(42);
+		for (int i = 0; i < 20000; i++) {
+			Object element = elements[random.nextInt(elements.length)];
+			if (random.nextBoolean())
+				assertEquals(expected.put(element, element) == null, set
+						.add(element));
+			else
+				assertEquals(expected.remove(element) != null, set
+						.remove(element));
+			assertEquals(expected.size(), set.size());
+		}
+		assertTrue(set.containsAll(expected.keySet()));
+		assertEquals(expected.size(), set.toArray().length);
+	}
+
+	public void testIterator_Remove() {
+		for (int i = 0; i < 100; i++)
+			set.add(new Object());
+		int count = 0;
+		for (Iterator it = set.iterator(); it.hasNext();) {
+			Object element = it.next();
+			assertTrue(set.contains(element));
+			it.remove();
+			assertFalse(set.contains(element));
+			count++;
+		}
+		assertEquals(100, count);
+		assertTrue(set.isEmpty());
+	}
+
+	public void testIterator_ConcurrentModification() {
+		set.add(new Object());
+		Iterator it = set.iterator();
+		set.add(new Object());
+		try {
+			it.next();
+			fail("Expected ConcurrentModificationException");
+		} catch (ConcurrentModificationException expected) {
+		}
+	}
+
 	public void testSize() {
 		assertEquals(0, set.size());
 
@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright (c) 2015 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.core.tests.internal.databinding.observable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.databinding.observable.Realm;
+import org.eclipse.core.internal.databinding.observable.RealmScheduler;
+
+/**
+ * Tests for RealmScheduler
+ *
+ * @since 1.5
+ */
+public class RealmSchedulerTest extends TestCase {
+	private RealmScheduler scheduler;
+	private RecordingRealm realm;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		scheduler = RealmScheduler.getDefault();
+		realm = new RecordingRealm();
+	}
+
+	protected void tearDown() throws Exception {
+		scheduler.setMetricsListener(null);
+		super.tearDown();
+	}
+
+	public void testSchedule_DispatchesInDueOrder() throws Exception {
+		Runnable first = new NamedRunnable("first");
+		Runnable second = new NamedRunnable("second");
+		Runnable third = new NamedRunnable("third");
+		scheduler.schedule(realm, 60, third);
+		scheduler.schedule(realm, 20, first);
+		scheduler.schedule(realm, 40, second);
+		assertEquals(3, scheduler.getPendingCount(realm));
+
+		realm.waitForDispatches(3);
+
+		assertEquals(0, scheduler.getPendingCount(realm));
+		assertEquals(first, realm.dispatched.get(0));
+		assertEquals(second, realm.dispatched.get(1));
+		assertEquals(third, realm.dispatched.get(2));
+	}
+
+	public void testSchedule_SameDueTimeKeepsSchedulingOrder() throws Exception {
+		List expected = new ArrayList();
+		for (int i = 0; i < 20; i++) {
+			Runnable runnable = new NamedRunnable("runnable" + i);
+			expected.add(runnable);
+			scheduler.schedule(realm, 10, runnable);
+		}
+
+		realm.waitForDispatches(20);
+
+		assertEquals(expected, realm.dispatched);
+	}
+
+	public void testCancel() throws Exception {
+		Runnable cancelled = new NamedRunnable("cancelled");
+		Runnable kept = new NamedRunnable("kept");
+		RealmScheduler.ScheduledTask task = scheduler.schedule(realm, 10,
+				cancelled);
+		scheduler.schedule(realm, 30, kept);
+
+		assertTrue(task.cancel());
+		assertFalse(task.cancel());
+		assertEquals(1, scheduler.getPendingCount(realm));
+
+		realm.waitForDispatches(1);
+		Thread.sleep(50);
+
+		assertEquals(1, realm.dispatched.size());
+		assertEquals(kept, realm.dispatched.get(0));
+	}
+
+	public void testMetricsListener() throws Exception {
+		final List realms = new ArrayList();
+		final List pendingCounts = new ArrayList();
+		scheduler.setMetricsListener(new RealmScheduler.IMetricsListener() {
+			public void taskDispatched(Realm realm, int pendingCount,
+					long latency) {
+				synchronized (realms) {
+					realms.add(realm);
+					pendingCounts.add(new Integer(pendingCount));
+				}
+				assertTrue(latency >= 0);
+			}
+		});
+
+		scheduler.schedule(realm, 10, new NamedRunnable("first"));
+		scheduler.schedule(realm, 100, new NamedRunnable("second"));
+		realm.waitForDispatches(2);
+
+		synchronized (realms) {
+			assertEquals(2, realms.size());
+			assertSame(realm, realms.get(0));
+			assertEquals(new Integer(1), pendingCounts.get(0));
+			assertEquals(new Integer(0), pendingCounts.get(1));
+		}
+	}
+
+	public void testTimerExec_UsesSharedScheduler() throws Exception {
+		Runnable runnable = new NamedRunnable("runnable");
+		realm.timerExec(200, runnable);
+		assertEquals(1, scheduler.getPendingCount(realm));
+
+		realm.waitForDispatches(1);
+
+		assertEquals(runnable, realm.dispatched.get(0));
+	}
+
+	private static class NamedRunnable implements Runnable {
+		private final String name;
+
+		NamedRunnable(String name) {
+			this.name = name;
+		}
+
+		public void run() {
+		}
+
+		public String toString() {
+			return name;
+		}
+	}
+
+	private static class RecordingRealm extends Realm {
+		final List dispatched = new ArrayList();
+
+		public boolean isCurrent() {
+			return false;
+		}
+
+		public synchronized void asyncExec(Runnable runnable) {
+			dispatched.add(runnable);
+			notifyAll();
+		}
+
+		synchronized void waitForDispatches(int count)
+				throws InterruptedException {
+			long deadline = System.currentTimeMillis() + 5000;
+			while (dispatched.size() < count) {
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					fail("Expected " + count + " dispatches but got "
+							+ dispatched);
+				}
+				wait(remaining);
+			}
+		}
+	}
+}
@@ -133,6 +133,7 @@ import org.eclipse.core.tests.internal.databinding.observable.EmptyObservableLis
 import org.eclipse.core.tests.internal.databinding.observable.EmptyObservableSetTest;
 import org.eclipse.core.tests.internal.databinding.observable.IdentityObservableSetTest;
 import org.eclipse.core.tests.internal.databinding.observable.MapEntryObservableValueTest;
+import org.eclipse.core.tests.internal.databinding.observable.RealmSchedulerTest;
 import org.eclipse.core.tests.internal.databinding.observable.StalenessObservableValueTest;
 import org.eclipse.core.tests.internal.databinding.observable.UnmodifiableObservableListTest;
 import org.eclipse.core.tests.internal.databinding.observable.UnmodifiableObservableSetTest;
@@ -377,6 +378,7 @@ public class BindingTestSuite extends TestSuite {
 		addTest(EmptyObservableSetTest.suite());
 		addTest(IdentityObservableSetTest.suite());
 		addTest(MapEntryObservableValueTest.suite());
+		addTestSuite(RealmSchedulerTest.class);
 		addTest(StalenessObservableValueTest.suite());
 		addTest(UnmodifiableObservableValueTest.suite());
 		addTest(UnmodifiableObservableListTest.suite());
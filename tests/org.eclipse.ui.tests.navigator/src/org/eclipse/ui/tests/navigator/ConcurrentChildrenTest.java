@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * Copyright (c) 2015 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.tests.navigator;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.viewers.AbstractTreeViewer;
+import org.eclipse.jface.viewers.IStructuredSelection;
+import org.eclipse.jface.viewers.StructuredSelection;
+import org.eclipse.jface.viewers.TreeExpansionEvent;
+import org.eclipse.jface.viewers.TreePath;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.TreeItem;
+import org.eclipse.ui.internal.navigator.NavigatorContentService;
+import org.eclipse.ui.internal.navigator.NavigatorContentServiceContentProvider;
+import org.eclipse.ui.progress.PendingUpdateAdapter;
+import org.eclipse.ui.tests.navigator.extension.TestSimpleChildrenContentProvider;
+
+public class ConcurrentChildrenTest extends NavigatorTestBase {
+
+	public ConcurrentChildrenTest() {
+		_navigatorInstanceId = TEST_VIEWER_CONCURRENT_CHILDREN;
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		String[] extensions = new String[] { COMMON_NAVIGATOR_RESOURCE_EXT,
+				TEST_SIMPLE_CHILDREN1, TEST_SIMPLE_CHILDREN2, TEST_SIMPLE_CHILDREN3 };
+		_contentService.bindExtensions(extensions, false);
+		_contentService.getActivationService().activateExtensions(extensions, true);
+		refreshViewer();
+		waitForChildren();
+	}
+
+	private void waitForChildren() throws Exception {
+		Display display = Display.getCurrent();
+		Object family = _viewer.getContentProvider();
+		do {
+			Job.getJobManager().join(family, null);
+			while (display.readAndDispatch()) {
+				// process the computed children
+			}
+		} while (Job.getJobManager().find(family).length > 0);
+	}
+
+	private TreeItem getProjectItem() {
+		TreeItem[] rootItems = _viewer.getTree().getItems();
+		for (int i = 0; i < rootItems.length; i++) {
+			if (_project.equals(rootItems[i].getData()))
+				return rootItems[i];
+		}
+		fail("No item for " + _project);
+		return null;
+	}
+
+	private boolean hasPendingItem(TreeItem item) {
+		TreeItem[] children = item.getItems();
+		for (int i = 0; i < children.length; i++) {
+			if (children[i].getData() instanceof PendingUpdateAdapter)
+				return true;
+		}
+		return false;
+	}
+
+	private void checkChildrenOrder(TreeItem projectItem) {
+		TreeItem[] children = projectItem.getItems();
+		assertEquals(TestSimpleChildrenContentProvider.NUM_ITEMS * 3 + _expectedChildren.size(),
+				children.length);
+		assertEquals("30", children[0].getText());
+		assertEquals("20", children[TestSimpleChildrenContentProvider.NUM_ITEMS].getText());
+		assertEquals("10", children[TestSimpleChildrenContentProvider.NUM_ITEMS * 2].getText());
+	}
+
+	public void testChildrenOrder() throws Exception {
+		_viewer.expandToLevel(_project, 1);
+
+		TreeItem projectItem = getProjectItem();
+		assertTrue(hasPendingItem(projectItem));
+
+		waitForChildren();
+
+		assertFalse(hasPendingItem(projectItem));
+		checkChildrenOrder(projectItem);
+	}
+
+	public void testCancelOnInputChange() throws Exception {
+		_viewer.expandToLevel(_project, 1);
+		Object pending = getProjectItem().getItems()[0].getData();
+		assertTrue(pending instanceof PendingUpdateAdapter);
+
+		_viewer.setInput(_viewer.getInput());
+		_viewer.expandToLevel(_project, 1);
+
+		Object newPending = getProjectItem().getItems()[0].getData();
+		assertTrue(newPending instanceof PendingUpdateAdapter);
+		assertNotSame(pending, newPending);
+
+		waitForChildren();
+
+		TreeItem projectItem = getProjectItem();
+		assertFalse(hasPendingItem(projectItem));
+		checkChildrenOrder(projectItem);
+	}
+
+	public void testRefreshExpandedParent() throws Exception {
+		_viewer.expandToLevel(_project, 1);
+		waitForChildren();
+
+		IFolder src = _project.getFolder("src");
+		_viewer.setExpandedState(src, true);
+		IStructuredSelection selection = new StructuredSelection(_project
+				.getFile(".project"));
+		_viewer.setSelection(selection);
+		assertTrue(_viewer.getExpandedState(src));
+
+		_viewer.refresh(_project);
+
+		// the children computed last are kept while they are computed again
+		TreeItem projectItem = getProjectItem();
+		assertFalse(hasPendingItem(projectItem));
+		assertTrue(_viewer.getExpandedState(src));
+		assertEquals(selection, _viewer.getSelection());
+
+		waitForChildren();
+
+		assertFalse(hasPendingItem(projectItem));
+		assertTrue(_viewer.getExpandedState(src));
+		assertEquals(selection, _viewer.getSelection());
+		checkChildrenOrder(projectItem);
+	}
+
+	public void testContributionsInExtensionOrder() throws Exception {
+		_viewer.expandToLevel(_project, 1);
+		waitForChildren();
+
+		TreeItem[] children = getProjectItem().getItems();
+		String[] extensionIds = new String[] { TEST_SIMPLE_CHILDREN3, TEST_SIMPLE_CHILDREN2,
+				TEST_SIMPLE_CHILDREN1 };
+		NavigatorContentService contentService = (NavigatorContentService) _contentService;
+		for (int i = 0; i < extensionIds.length * TestSimpleChildrenContentProvider.NUM_ITEMS; i++) {
+			assertEquals(extensionIds[i / TestSimpleChildrenContentProvider.NUM_ITEMS],
+					contentService.getContribution(children[i].getData()).getId());
+		}
+	}
+
+	public void testCollapseForgetsChildren() throws Exception {
+		_viewer.expandToLevel(_project, 1);
+		waitForChildren();
+		assertTrue(hasComputedChildren(_project));
+
+		// as the user collapsing the project does
+		Method fireTreeCollapsed = AbstractTreeViewer.class.getDeclaredMethod(
+				"fireTreeCollapsed", new Class[] { TreeExpansionEvent.class });
+		fireTreeCollapsed.setAccessible(true);
+		fireTreeCollapsed.invoke(_viewer, new Object[] { new TreeExpansionEvent(_viewer,
+				_project) });
+
+		assertFalse(hasComputedChildren(_project));
+	}
+
+	private boolean hasComputedChildren(Object element) throws Exception {
+		Field field = NavigatorContentServiceContentProvider.class
+				.getDeclaredField("computedChildren");
+		field.setAccessible(true);
+		Map computedChildren = (Map) field.get(_viewer.getContentProvider());
+		for (Iterator itr = computedChildren.keySet().iterator(); itr.hasNext();) {
+			Object parentElementOrPath = itr.next();
+			if (parentElementOrPath instanceof TreePath)
+				parentElementOrPath = ((TreePath) parentElementOrPath).getLastSegment();
+			if (element.equals(parentElementOrPath))
+				return true;
+		}
+		return false;
+	}
+}
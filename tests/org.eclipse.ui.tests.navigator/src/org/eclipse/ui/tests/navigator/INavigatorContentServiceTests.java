@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2009 IBM Corporation and others.
+ * Copyright (c) 2003, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -111,6 +111,27 @@ public class INavigatorContentServiceTests extends NavigatorTestBase {
 
 	}
 
+	public void testFindExtensionsAfterActivationChange() {
+
+		_contentService.getActivationService().activateExtensions(
+				new String[] { TEST_CONTENT, COMMON_NAVIGATOR_RESOURCE_EXT },
+				true);
+
+		assertEquals("Ensure there are two content providers for an IProject.",
+				2, _contentService.findContentExtensionsByTriggerPoint(_project)
+						.size());
+		assertEquals("Ensure the content providers are found again.", 2,
+				_contentService.findContentExtensionsByTriggerPoint(_project)
+						.size());
+
+		_contentService.getActivationService().activateExtensions(
+				new String[] { COMMON_NAVIGATOR_RESOURCE_EXT }, true);
+
+		assertEquals("Ensure there is one content provider for an IProject.",
+				1, _contentService.findContentExtensionsByTriggerPoint(_project)
+						.size());
+	}
+
 	public void testBindTestExtension() {
 
 		INavigatorContentService contentServiceWithProgrammaticBindings = NavigatorContentServiceFactory.INSTANCE
@@ -56,6 +56,7 @@ public class NavigatorTestBase extends TestCase {
 
 	public static final String TEST_VIEWER = "org.eclipse.ui.tests.navigator.TestView";
 	public static final String TEST_VIEWER_PROGRAMMATIC = "org.eclipse.ui.tests.navigator.ProgrammaticTestView";
+	public static final String TEST_VIEWER_CONCURRENT_CHILDREN = "org.eclipse.ui.tests.navigator.ConcurrentChildrenTestView";
 	public static final String TEST_VIEWER_PIPELINE = "org.eclipse.ui.tests.navigator.PipelineTestView";
 	public static final String TEST_VIEWER_HIDE_EXTENSIONS = "org.eclipse.ui.tests.navigator.HideAvailableExtensionsTestView";
 	public static final String TEST_VIEWER_INHERITED = "org.eclipse.ui.tests.navigator.InheritedTestView";
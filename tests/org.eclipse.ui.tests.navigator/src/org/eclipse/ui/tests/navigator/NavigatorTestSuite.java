@@ -40,6 +40,7 @@ public final class NavigatorTestSuite extends TestSuite {
 		addTest(new TestSuite(OpenTest.class));
 		addTest(new TestSuite(INavigatorContentServiceTests.class));
 		addTest(new TestSuite(ProgrammaticOpenTest.class));
+		addTest(new TestSuite(ConcurrentChildrenTest.class));
 		addTest(new TestSuite(PipelineTest.class));
 		addTest(new TestSuite(PipelineChainTest.class));
 		addTest(new TestSuite(JstPipelineTest.class));
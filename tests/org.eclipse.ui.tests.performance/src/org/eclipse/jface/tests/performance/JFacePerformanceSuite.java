@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2009 IBM Corporation and others.
+ * Copyright (c) 2005, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -45,9 +45,14 @@ public class JFacePerformanceSuite extends FilteredTestSuite {
 		addTest(new TreeAddTest("testAddThousand"));
 		addTest(new FastTreeTest("testAddHundredTenTimes", BasicPerformanceTest.LOCAL));
 		addTest(new TreeAddTest("testAddThousandPreSort", BasicPerformanceTest.GLOBAL));
+		addTest(new TreeAddTest("testAddFiveThousand"));
 		addTest(new ProgressMonitorDialogPerformanceTest("testLongNames"));
 		addTest(new ShrinkingTreeTest("testTreeViewerRefresh"));
 		addTest(new CollatorPerformanceTest("testCollator"));
+		addTest(new TableViewerRefreshTest("testUpdateElements"));
+		addTest(new TableViewerRefreshTest("testUpdateElementsNoHashLookup"));
+		addTest(new TreeViewerRefreshTest("testUpdateElements"));
+		addTest(new TreeViewerRefreshTest("testUpdateElementsNoHashLookup"));
 
 	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2006 IBM Corporation and others.
+ * Copyright (c) 2005, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -174,4 +174,39 @@ public class TableViewerRefreshTest extends ViewerTest {
 		assertPerformance();
 	}
 
+	/**
+	 * Test the time for updating all elements using the element map.
+	 *
+	 * @throws Throwable
+	 */
+	public void testUpdateElements() throws Throwable {
+		doTestUpdateElements(true);
+	}
+
+	/**
+	 * Test the time for updating all elements without the element map.
+	 *
+	 * @throws Throwable
+	 */
+	public void testUpdateElementsNoHashLookup() throws Throwable {
+		doTestUpdateElements(false);
+	}
+
+	private void doTestUpdateElements(boolean useHashlookup) throws Throwable {
+		openBrowser(useHashlookup);
+
+		exercise(new TestRunnable() {
+			public void run() {
+				startMeasuring();
+				viewer.update(RefreshTestContentProvider.allElements, null);
+				processEvents();
+				stopMeasuring();
+			}
+		}, MIN_ITERATIONS, slowGTKIterations(),
+				JFacePerformanceSuite.MAX_TIME);
+
+		commitMeasurements();
+		assertPerformance();
+	}
+
 }
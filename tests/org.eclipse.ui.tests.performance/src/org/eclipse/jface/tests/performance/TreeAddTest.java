@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2009 IBM Corporation and others.
+ * Copyright (c) 2005, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -149,6 +149,17 @@ public class TreeAddTest extends TreeTest {
 
 	}
 
+	/**
+	 * @throws CoreException
+	 *             Test addition of a large batch to a tree which already
+	 *             has items.
+	 */
+	public void testAddFiveThousand() throws CoreException {
+
+		doTestAdd(5000, 10000, false);
+
+	}
+
 	/**
 	 * @throws CoreException
 	 *             Test addition to the tree with the items presorted.
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2006 IBM Corporation and others.
+ * Copyright (c) 2005, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -64,4 +64,34 @@ public class TreeViewerRefreshTest extends ViewerTest {
     }
     
 
+    /**
+     * Test the time for updating all elements using the element map.
+     * @throws Throwable
+     */
+    public void testUpdateElements() throws Throwable {
+        doTestUpdateElements(true);
+    }
+
+    /**
+     * Test the time for updating all elements without the element map.
+     * @throws Throwable
+     */
+    public void testUpdateElementsNoHashLookup() throws Throwable {
+        doTestUpdateElements(false);
+    }
+
+    private void doTestUpdateElements(boolean useHashlookup) throws Throwable {
+        openBrowser(useHashlookup);
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            startMeasuring();
+            viewer.update(RefreshTestTreeContentProvider.elements, null);
+            processEvents();
+            stopMeasuring();
+        }
+
+        commitMeasurements();
+        assertPerformance();
+    }
+
 }
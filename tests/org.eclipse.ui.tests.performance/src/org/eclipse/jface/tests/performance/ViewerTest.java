@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2008 IBM Corporation and others.
+ * Copyright (c) 2005, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -40,6 +40,15 @@ public abstract class ViewerTest extends BasicPerformanceTest {
 	}
 
 	protected void openBrowser() {
+		openBrowser(true);
+	}
+
+	/**
+	 * Open the browser shell with the viewer under test.
+	 * @param useHashlookup whether the viewer maps elements to items with
+	 * its internal hash table
+	 */
+	protected void openBrowser(boolean useHashlookup) {
 		Display display = Display.getCurrent();
 		if (display == null) {
 			display = new Display();
@@ -48,7 +57,7 @@ public abstract class ViewerTest extends BasicPerformanceTest {
 		browserShell.setSize(500, 500);
 		browserShell.setLayout(new FillLayout());
 		StructuredViewer viewer = createViewer(browserShell);
-		viewer.setUseHashlookup(true);
+		viewer.setUseHashlookup(useHashlookup);
 		viewer.setInput(getInitialInput());
 		browserShell.open();
 		// processEvents();
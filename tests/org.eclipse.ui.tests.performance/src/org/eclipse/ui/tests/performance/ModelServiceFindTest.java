@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2015 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ui.tests.performance;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.e4.ui.model.application.MApplication;
+import org.eclipse.e4.ui.model.application.impl.ApplicationFactoryImpl;
+import org.eclipse.e4.ui.model.application.ui.MUIElement;
+import org.eclipse.e4.ui.model.application.ui.SideValue;
+import org.eclipse.e4.ui.model.application.ui.advanced.MPerspective;
+import org.eclipse.e4.ui.model.application.ui.advanced.MPerspectiveStack;
+import org.eclipse.e4.ui.model.application.ui.advanced.MPlaceholder;
+import org.eclipse.e4.ui.model.application.ui.advanced.impl.AdvancedFactoryImpl;
+import org.eclipse.e4.ui.model.application.ui.basic.MPart;
+import org.eclipse.e4.ui.model.application.ui.basic.MPartStack;
+import org.eclipse.e4.ui.model.application.ui.basic.MTrimBar;
+import org.eclipse.e4.ui.model.application.ui.basic.MTrimmedWindow;
+import org.eclipse.e4.ui.model.application.ui.basic.impl.BasicFactoryImpl;
+import org.eclipse.e4.ui.model.application.ui.menu.MToolBar;
+import org.eclipse.e4.ui.model.application.ui.menu.MToolItem;
+import org.eclipse.e4.ui.model.application.ui.menu.impl.MenuFactoryImpl;
+import org.eclipse.e4.ui.workbench.modeling.EModelService;
+
+/**
+ * Measures finding elements by id and by tag in a model with thousands of
+ * parts and trim elements.
+ */
+public class ModelServiceFindTest extends BasicPerformanceTest {
+
+	private static final String TAG = "performanceTag";
+
+	private final int partCount;
+
+	private final int trimCount;
+
+	public ModelServiceFindTest(int partCount, int trimCount) {
+		super("Find elements among " + partCount + " parts and " + trimCount
+				+ " trim elements");
+		this.partCount = partCount;
+		this.trimCount = trimCount;
+	}
+
+	private MApplication createApplication() {
+		MApplication application = ApplicationFactoryImpl.eINSTANCE
+				.createApplication();
+		MTrimmedWindow window = BasicFactoryImpl.eINSTANCE
+				.createTrimmedWindow();
+		application.getChildren().add(window);
+
+		MPerspectiveStack perspectiveStack = AdvancedFactoryImpl.eINSTANCE
+				.createPerspectiveStack();
+		window.getChildren().add(perspectiveStack);
+		MPerspective perspective = AdvancedFactoryImpl.eINSTANCE
+				.createPerspective();
+		perspectiveStack.getChildren().add(perspective);
+		perspectiveStack.setSelectedElement(perspective);
+
+		MPartStack stack = null;
+		for (int i = 0; i < partCount; i++) {
+			if (i % 50 == 0) {
+				stack = BasicFactoryImpl.eINSTANCE.createPartStack();
+				perspective.getChildren().add(stack);
+			}
+			MPart part = BasicFactoryImpl.eINSTANCE.createPart();
+			part.setElementId("part." + i);
+			if (i % 10 == 0) {
+				part.getTags().add(TAG);
+			}
+			if (i % 2 == 0) {
+				// shared parts are shown through placeholders
+				window.getSharedElements().add(part);
+				MPlaceholder placeholder = AdvancedFactoryImpl.eINSTANCE
+						.createPlaceholder();
+				placeholder.setElementId(part.getElementId());
+				placeholder.setRef(part);
+				stack.getChildren().add(placeholder);
+			} else {
+				stack.getChildren().add(part);
+			}
+		}
+
+		SideValue[] sides = { SideValue.TOP, SideValue.BOTTOM, SideValue.LEFT,
+				SideValue.RIGHT };
+		for (int i = 0; i < sides.length; i++) {
+			MTrimBar trimBar = BasicFactoryImpl.eINSTANCE.createTrimBar();
+			trimBar.setSide(sides[i]);
+			window.getTrimBars().add(trimBar);
+			MToolBar toolBar = MenuFactoryImpl.eINSTANCE.createToolBar();
+			trimBar.getChildren().add(toolBar);
+			for (int j = i; j < trimCount; j += sides.length) {
+				MToolItem item = MenuFactoryImpl.eINSTANCE
+						.createDirectToolItem();
+				item.setElementId("trim." + j);
+				toolBar.getChildren().add(item);
+			}
+		}
+		return application;
+	}
+
+	protected void runTest() throws Throwable {
+		final EModelService modelService = (EModelService) fWorkbench
+				.getService(EModelService.class);
+		final MApplication application = createApplication();
+		final List tags = Collections.singletonList(TAG);
+
+		// check the model before measuring
+		assertEquals(1, modelService.findElements(application, "trim.1",
+				MUIElement.class, null).size());
+		assertEquals(partCount / 10, modelService.findElements(application,
+				null, MPart.class, tags).size());
+
+		exercise(new TestRunnable() {
+			public void run() throws Exception {
+				startMeasuring();
+				for (int i = 0; i < partCount; i++) {
+					modelService.find("part." + i, application);
+				}
+				for (int i = 0; i < trimCount; i++) {
+					modelService.findElements(application, "trim." + i,
+							MToolItem.class, null, EModelService.ANYWHERE);
+				}
+				for (int i = 0; i < 100; i++) {
+					modelService.findElements(application, null, MPart.class,
+							tags);
+				}
+				stopMeasuring();
+			}
+		});
+		commitMeasurements();
+		assertPerformance();
+	}
+}
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2015 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ui.tests.performance;
+
+import java.io.File;
+
+import org.eclipse.e4.ui.internal.workbench.E4BinaryResource;
+import org.eclipse.e4.ui.internal.workbench.E4BinaryResourceFactory;
+import org.eclipse.e4.ui.internal.workbench.E4XMIResourceFactory;
+import org.eclipse.e4.ui.model.application.MApplication;
+import org.eclipse.e4.ui.model.application.impl.ApplicationFactoryImpl;
+import org.eclipse.e4.ui.model.application.ui.advanced.MPerspective;
+import org.eclipse.e4.ui.model.application.ui.advanced.MPerspectiveStack;
+import org.eclipse.e4.ui.model.application.ui.advanced.impl.AdvancedFactoryImpl;
+import org.eclipse.e4.ui.model.application.ui.basic.MPart;
+import org.eclipse.e4.ui.model.application.ui.basic.MPartStack;
+import org.eclipse.e4.ui.model.application.ui.basic.MTrimmedWindow;
+import org.eclipse.e4.ui.model.application.ui.basic.impl.BasicFactoryImpl;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+
+/**
+ * Measures saving and loading a large workbench model, as done on shutdown
+ * and startup, in XMI or in the binary format.
+ */
+public class WorkbenchModelPersistenceTest extends BasicPerformanceTest {
+
+	private final boolean binary;
+
+	private final int perspectiveCount;
+
+	private final int partCount;
+
+	public WorkbenchModelPersistenceTest(boolean binary, int perspectiveCount,
+			int partCount) {
+		super("Save and load " + (binary ? "binary" : "XMI") + " model with "
+				+ perspectiveCount + " perspectives of " + partCount + " parts");
+		this.binary = binary;
+		this.perspectiveCount = perspectiveCount;
+		this.partCount = partCount;
+	}
+
+	private MApplication createApplication() {
+		MApplication application = ApplicationFactoryImpl.eINSTANCE
+				.createApplication();
+		MTrimmedWindow window = BasicFactoryImpl.eINSTANCE
+				.createTrimmedWindow();
+		application.getChildren().add(window);
+
+		MPerspectiveStack perspectiveStack = AdvancedFactoryImpl.eINSTANCE
+				.createPerspectiveStack();
+		window.getChildren().add(perspectiveStack);
+		for (int i = 0; i < perspectiveCount; i++) {
+			MPerspective perspective = AdvancedFactoryImpl.eINSTANCE
+					.createPerspective();
+			perspective.setElementId("perspective." + i);
+			perspectiveStack.getChildren().add(perspective);
+			MPartStack stack = BasicFactoryImpl.eINSTANCE.createPartStack();
+			perspective.getChildren().add(stack);
+			for (int j = 0; j < partCount; j++) {
+				MPart part = BasicFactoryImpl.eINSTANCE.createPart();
+				part.setElementId("part." + j);
+				part.setLabel("Part " + j);
+				part.getTags().add("View");
+				part.getPersistedState().put("memento",
+						"<memento id=\"part." + j + "\" state=\"" + i + "\"/>");
+				stack.getChildren().add(part);
+			}
+		}
+		return application;
+	}
+
+	private Resource createResource(URI uri) {
+		if (binary) {
+			return new E4BinaryResourceFactory().createResource(uri);
+		}
+		return new E4XMIResourceFactory().createResource(uri);
+	}
+
+	protected void runTest() throws Throwable {
+		final File file = File.createTempFile("workbench", binary ? "."
+				+ E4BinaryResource.FILE_EXTENSION : ".xmi");
+		try {
+			final URI uri = URI.createFileURI(file.getAbsolutePath());
+			final Resource resource = createResource(uri);
+			resource.getContents().add((EObject) createApplication());
+
+			exercise(new TestRunnable() {
+				public void run() throws Exception {
+					startMeasuring();
+					resource.save(null);
+					Resource loaded = createResource(uri);
+					loaded.load(null);
+					stopMeasuring();
+					assertEquals(1, loaded.getContents().size());
+				}
+			});
+			commitMeasurements();
+			assertPerformance();
+		} finally {
+			file.delete();
+		}
+	}
+}
@@ -84,8 +84,15 @@ class WorkbenchPerformanceSuite extends TestSuite {
         addPerspectiveOpenCloseScenarios();
         addWindowOpenCloseScenarios();
         addContributionScenarios();
+        addModelScenarios();
     }
 
+	private void addModelScenarios() {
+		addTest(new ModelServiceFindTest(5000, 2000));
+		addTest(new WorkbenchModelPersistenceTest(false, 20, 200));
+		addTest(new WorkbenchModelPersistenceTest(true, 20, 200));
+	}
+
     /**
 	 * 
 	 */
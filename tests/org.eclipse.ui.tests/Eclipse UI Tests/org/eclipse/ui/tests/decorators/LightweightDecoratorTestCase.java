@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2006 IBM Corporation and others.
+ * Copyright (c) 2000, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,8 +10,16 @@
  *******************************************************************************/
 package org.eclipse.ui.tests.decorators;
 
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.jface.viewers.ILabelProviderListener;
+import org.eclipse.jface.viewers.LabelProviderChangedEvent;
+import org.eclipse.ui.internal.decorators.DecorationStatistics;
+import org.eclipse.ui.internal.decorators.DecoratorManager;
 
 /**
  * @version 	1.0
@@ -42,4 +50,157 @@ public class LightweightDecoratorTestCase extends DecoratorEnablementTestCase
 
     }
 
+    /**
+     * Decorate elements with several decoration workers and check that all of
+     * them are counted in the statistics.
+     */
+    public void testDecorationWorkers() {
+        DecoratorManager manager = getDecoratorManager();
+        int workerCount = manager.getDecorationWorkerCount();
+        manager.setDecorationWorkerCount(3);
+        try {
+            assertEquals(3, manager.getDecorationWorkerCount());
+            for (int i = 0; i < 100; i++) {
+                manager.decorateText("element", new Object());
+            }
+
+            long timeout = System.currentTimeMillis() + 10000;
+            while (manager.getDecorationStatistics().getDecoratedCount() < decorated + 100
+                    && System.currentTimeMillis() < timeout) {
+                processEvents();
+            }
+            assertTrue("All elements were decorated", manager
+                    .getDecorationStatistics().getDecoratedCount() >= decorated + 100);
+        } finally {
+            manager.setDecorationWorkerCount(workerCount);
+        }
+    }
+
+    /**
+     * Decorate more elements than fit into the result cache and check that
+     * the cache stays within its capacity.
+     */
+    public void testDecorationCacheCapacity() {
+        DecoratorManager manager = getDecoratorManager();
+        int capacity = manager.getDecorationCacheCapacity();
+        manager.setDecorationCacheCapacity(10);
+        try {
+            assertEquals(10, manager.getDecorationCacheCapacity());
+            DecorationStatistics before = manager.getDecorationStatistics();
+            Object[] elements = new Object[100];
+            for (int i = 0; i < elements.length; i++) {
+                elements[i] = new Object();
+                manager.decorateText("element", elements[i]);
+            }
+
+            long timeout = System.currentTimeMillis() + 10000;
+            // results are kept until the labels are updated
+            while ((manager.getDecorationStatistics().getDecoratedCount() < before
+                    .getDecoratedCount() + elements.length || manager
+                    .getDecorationStatistics().getCacheWeight() > 10)
+                    && System.currentTimeMillis() < timeout) {
+                processEvents();
+            }
+            DecorationStatistics after = manager.getDecorationStatistics();
+            assertTrue("Cache exceeds its capacity",
+                    after.getCacheWeight() <= 10);
+            assertTrue("Uncached elements were not counted as misses", after
+                    .getCacheMisses() >= before.getCacheMisses()
+                    + elements.length);
+        } finally {
+            manager.setDecorationCacheCapacity(capacity);
+        }
+    }
+
+    /**
+     * Decorate more elements than fit into the result cache and check that
+     * the results of every element are kept until its label is updated, so
+     * that each element is decorated once.
+     */
+    public void testPendingDecorationsAreKept() {
+        final DecoratorManager manager = getDecoratorManager();
+        int capacity = manager.getDecorationCacheCapacity();
+        boolean enabled = definition.isEnabled();
+        final Map updates = new HashMap();
+        final Set missed = new HashSet();
+        ILabelProviderListener listener = new ILabelProviderListener() {
+            public void labelProviderChanged(LabelProviderChangedEvent event) {
+                Object[] elements = event.getElements();
+                if (elements == null) {
+                    return;
+                }
+                for (int i = 0; i < elements.length; i++) {
+                    if (!updates.containsKey(elements[i])) {
+                        continue;
+                    }
+                    // as a viewer does, use the result or queue again
+                    if (manager.prepareDecoration(elements[i], "element")) {
+                        updates.put(elements[i], Boolean.TRUE);
+                    } else {
+                        missed.add(elements[i]);
+                    }
+                }
+            }
+        };
+        definition.setEnabled(true);
+        manager.updateForEnablementChange();
+        manager.setDecorationCacheCapacity(10);
+        manager.addListener(listener);
+        try {
+            Object[] elements = new Object[100];
+            for (int i = 0; i < elements.length; i++) {
+                elements[i] = new Object();
+                updates.put(elements[i], Boolean.FALSE);
+            }
+            for (int i = 0; i < elements.length; i++) {
+                assertFalse(manager.prepareDecoration(elements[i], "element"));
+            }
+
+            long timeout = System.currentTimeMillis() + 10000;
+            while (updates.containsValue(Boolean.FALSE)
+                    && System.currentTimeMillis() < timeout) {
+                processEvents();
+            }
+            assertFalse("Some labels were not updated with a result",
+                    updates.containsValue(Boolean.FALSE));
+            assertTrue("Results were evicted before the label update",
+                    missed.isEmpty());
+        } finally {
+            manager.removeListener(listener);
+            manager.setDecorationCacheCapacity(capacity);
+            definition.setEnabled(enabled);
+            manager.updateForEnablementChange();
+        }
+    }
+
+    /**
+     * Decorate an element the decorator does not apply to, let the decorator
+     * apply to it and check that updating the decorator drops the result of
+     * the element although the decorator did not compute it.
+     */
+    public void testUpdateDropsResultsOfNewlyEnabledElements() {
+        DecoratorManager manager = getDecoratorManager();
+        boolean enabled = definition.isEnabled();
+        definition.setEnabled(false);
+        manager.updateForEnablementChange();
+        try {
+            long timeout = System.currentTimeMillis() + 10000;
+            while (!manager.prepareDecoration(testFile, "file")
+                    && System.currentTimeMillis() < timeout) {
+                processEvents();
+            }
+            assertTrue("The element was not decorated", manager
+                    .prepareDecoration(testFile, "file"));
+
+            // as a nature change would do
+            definition.setEnabled(true);
+            manager.update(definition.getId());
+            assertFalse("The result of the element was kept", manager
+                    .prepareDecoration(testFile, "file"));
+        } finally {
+            definition.setEnabled(enabled);
+            manager.updateForEnablementChange();
+        }
+    }
+
 }
@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (c) 2015 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ui.tests.dialogs;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.eclipse.ui.dialogs.SearchPattern;
+import org.eclipse.ui.internal.dialogs.FilteredItemsIndex;
+
+/**
+ * Tests that the index used by FilteredItemsSelectionDialog returns every item
+ * matching a pattern.
+ */
+public class FilteredItemsIndexAuto extends TestCase {
+
+	private static final String[] NAMES = { "AbstractBuilder.java",
+			"ABCFile.txt", "abc", "Abc", "AbCd", "ArrayBlockingCollection",
+			"aBC", "ab", "a", "Builder.java", "BuildCache", "bcd", "ACB",
+			"A1B2C3", "ABCD", "Other", "" };
+
+	private String[] names;
+
+	private Object[] items;
+
+	private FilteredItemsIndex index;
+
+	/**
+	 * @param name
+	 */
+	public FilteredItemsIndexAuto(String name) {
+		super(name);
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		names = new String[NAMES.length + 1];
+		System.arraycopy(NAMES, 0, names, 0, NAMES.length);
+		// items without a name never match
+		names[NAMES.length] = null;
+		items = new Object[names.length];
+		for (int i = 0; i < items.length; i++) {
+			items[i] = new Integer(i);
+		}
+		index = new FilteredItemsIndex(items, names);
+	}
+
+	public void testPrefixMatch() {
+		assertCandidates("ab", SearchPattern.RULE_PREFIX_MATCH);
+		assertCandidates("b", SearchPattern.RULE_PREFIX_MATCH);
+		assertCandidates("abcd", SearchPattern.RULE_PREFIX_MATCH);
+		assertCandidates("xyz", SearchPattern.RULE_PREFIX_MATCH);
+	}
+
+	public void testExactMatch() {
+		assertCandidates("abc<", SearchPattern.RULE_EXACT_MATCH);
+		assertCandidates("a ", SearchPattern.RULE_EXACT_MATCH);
+	}
+
+	public void testCamelCaseMatch() {
+		assertCandidates("ABC", SearchPattern.RULE_CAMELCASE_MATCH);
+		assertCandidates("AbC", SearchPattern.RULE_CAMELCASE_MATCH);
+		assertCandidates("AB", SearchPattern.RULE_CAMELCASE_MATCH);
+		assertCandidates("BC", SearchPattern.RULE_CAMELCASE_MATCH);
+		assertCandidates("ABCD<", SearchPattern.RULE_CAMELCASE_MATCH);
+	}
+
+	public void testPatternMatchIsNotIndexed() {
+		SearchPattern pattern = new SearchPattern();
+		pattern.setPattern("*bc");
+		assertEquals(SearchPattern.RULE_PATTERN_MATCH, pattern.getMatchRule());
+		assertNull(index.getCandidates(pattern));
+	}
+
+	public void testSearchPatternSubclassIsNotIndexed() {
+		SearchPattern pattern = new SearchPattern() {
+			protected boolean isNameCharAllowed(char nameChar) {
+				return Character.isDigit(nameChar);
+			}
+		};
+		pattern.setPattern("AB");
+		assertNull(index.getCandidates(pattern));
+	}
+
+	private void assertCandidates(String patternText, int rule) {
+		SearchPattern pattern = new SearchPattern();
+		pattern.setPattern(patternText);
+		assertEquals(rule, pattern.getMatchRule());
+		Object[] candidates = index.getCandidates(pattern);
+		assertNotNull(candidates);
+		assertTrue("Index did not narrow down the items for " + patternText,
+				candidates.length < items.length);
+		Set candidateSet = new HashSet(Arrays.asList(candidates));
+		assertEquals("Duplicate candidates", candidates.length, candidateSet
+				.size());
+		for (int i = 0; i < items.length; i++) {
+			if (names[i] != null && pattern.matches(names[i])) {
+				assertTrue(names[i] + " matches " + patternText
+						+ " but is no candidate", candidateSet
+						.contains(items[i]));
+			}
+		}
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2007 IBM Corporation and others.
+ * Copyright (c) 2006, 2015 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,13 +13,22 @@ package org.eclipse.ui.tests.dialogs;
 
 import java.util.*;
 import org.eclipse.core.resources.*;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.ShellAdapter;
 import org.eclipse.swt.events.ShellEvent;
 import org.eclipse.swt.graphics.Point;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Text;
 import org.eclipse.ui.IWorkbenchWindow;
 import org.eclipse.ui.PlatformUI;
 import org.eclipse.ui.dialogs.FilteredResourcesSelectionDialog;
+import org.eclipse.ui.internal.WorkbenchMessages;
 
 public class UIFilteredResourcesSelectionDialogAuto extends
 		UIAbstractFilteredResourcesSelectionDialog {
@@ -46,6 +55,80 @@ public class UIFilteredResourcesSelectionDialogAuto extends
 
 		closeDialog(dialog);
 	}
+
+	/**
+	 * Checks that patterns matching fewer items than the pattern of the last
+	 * full search are matched against its result, also after the pattern was
+	 * narrowed further.
+	 * 
+	 * @throws Exception
+	 */
+	public void testRefineLastSearch() throws Exception {
+
+		final MockedFilteredResourcesSelectionDialog dialog = createDialog();
+
+		dialog.open();
+
+		Text pattern = findPatternText(dialog.getShell());
+		assertNotNull(pattern);
+
+		setPattern(pattern, "file");
+		assertEquals(1, dialog.fullSearches);
+
+		// narrowing
+		setPattern(pattern, "file1");
+		assertEquals(1, dialog.fullSearches);
+
+		// widening back to the pattern of the full search
+		setPattern(pattern, "file");
+		assertEquals(1, dialog.fullSearches);
+
+		// widening beyond it
+		setPattern(pattern, "fil");
+		assertEquals(2, dialog.fullSearches);
+
+		closeDialog(dialog);
+	}
+
+	private static Text findPatternText(Composite composite) {
+		Control[] children = composite.getChildren();
+		for (int i = 0; i < children.length; i++) {
+			if (children[i] instanceof Text
+					&& (children[i].getStyle() & SWT.SEARCH) != 0) {
+				return (Text) children[i];
+			}
+			if (children[i] instanceof Composite) {
+				Text text = findPatternText((Composite) children[i]);
+				if (text != null) {
+					return text;
+				}
+			}
+		}
+		return null;
+	}
+
+	private static void setPattern(Text pattern, String text) {
+		pattern.setText(text);
+		Display display = pattern.getDisplay();
+		long timeout = System.currentTimeMillis() + 10000;
+		while (isFiltering() && System.currentTimeMillis() < timeout) {
+			while (display.readAndDispatch()) {
+				// process the refreshes of the dialog
+			}
+		}
+		assertFalse(isFiltering());
+	}
+
+	private static boolean isFiltering() {
+		Job[] jobs = Job.getJobManager().find(null);
+		for (int i = 0; i < jobs.length; i++) {
+			if (WorkbenchMessages.FilteredItemsSelectionDialog_jobLabel
+					.equals(jobs[i].getName())) {
+				return true;
+			}
+		}
+		return false;
+	}
 	
 	private static MockedFilteredResourcesSelectionDialog createDialog() {
 		final IWorkbenchWindow window = PlatformUI.getWorkbench()
@@ -81,11 +164,22 @@ public class UIFilteredResourcesSelectionDialogAuto extends
 	private static class MockedFilteredResourcesSelectionDialog extends
 			FilteredResourcesSelectionDialog {
 
+		volatile int fullSearches;
+
 		public MockedFilteredResourcesSelectionDialog(Shell shell,
 				boolean multi, IContainer container, int typesMask) {
 			super(shell, multi, container, typesMask);
 		}
 
+		protected void fillContentProvider(
+				AbstractContentProvider contentProvider,
+				ItemsFilter itemsFilter, IProgressMonitor progressMonitor)
+				throws CoreException {
+			fullSearches++;
+			super.fillContentProvider(contentProvider, itemsFilter,
+					progressMonitor);
+		}
+
 		// override protected modifiers ...
 
 		public Object[] getHistoryItems() {
@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright (c) 2015 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.ui.tests.markers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.eclipse.ui.internal.views.markers.MarkerEntryTree;
+import org.eclipse.ui.internal.views.markers.MockMarkerEntry;
+import org.eclipse.ui.tests.harness.util.UITestCase;
+
+/**
+ * @since 3.9
+ *
+ */
+public class MarkerEntryTreeTest extends UITestCase {
+
+	private static final int ARRAYSIZE = 5000;
+
+	private static final Comparator NAME_COMPARATOR = new Comparator() {
+		public int compare(Object o1, Object o2) {
+			return ((MockMarkerEntry) o1).name
+					.compareTo(((MockMarkerEntry) o2).name);
+		}
+	};
+
+	// compares the first letter of the names only
+	private static final Comparator INITIAL_COMPARATOR = new Comparator() {
+		public int compare(Object o1, Object o2) {
+			return ((MockMarkerEntry) o1).name.charAt(0)
+					- ((MockMarkerEntry) o2).name.charAt(0);
+		}
+	};
+
+	public MarkerEntryTreeTest() {
+		super("MarkerEntryTreeTest");
+	}
+
+	public void testAddAndRemove() {
+		MockMarkerEntry[] entries = MarkerSortUtilTest
+				.generateArray(ARRAYSIZE);
+		MarkerEntryTree tree = new MarkerEntryTree(NAME_COMPARATOR, null);
+		List expected = new ArrayList();
+		Random random = new Random(0);
+		for (int i = 0; i < ARRAYSIZE * 2; i++) {
+			MockMarkerEntry entry = entries[random.nextInt(entries.length)];
+			if (random.nextInt(3) == 0) {
+				int index = expected.indexOf(entry);
+				expected.remove(entry);
+				assertEquals(index, tree.remove(entry));
+			} else {
+				if (!expected.contains(entry)) {
+					expected.add(entry);
+					Collections.sort(expected, NAME_COMPARATOR);
+				}
+				assertEquals(expected.indexOf(entry), tree.add(entry, null, 0));
+			}
+		}
+		assertContents(expected, tree);
+		for (int i = 0; i < expected.size(); i++) {
+			assertSame(expected.get(i), tree.get(i));
+			assertEquals(i, tree.indexOf((MockMarkerEntry) expected.get(i)));
+		}
+	}
+
+	public void testBuild() {
+		MockMarkerEntry[] entries = MarkerSortUtilTest
+				.generateArray(ARRAYSIZE);
+		MockMarkerEntry[] sorted = new MockMarkerEntry[entries.length * 2];
+		for (int i = 0; i < entries.length; i++) {
+			sorted[2 * i] = entries[i];
+			sorted[2 * i + 1] = new MockMarkerEntry(entries[i].name);
+		}
+		Arrays.sort(sorted, NAME_COMPARATOR);
+		MarkerEntryTree tree = new MarkerEntryTree(NAME_COMPARATOR, null);
+		tree.build(sorted, null, new int[sorted.length]);
+
+		List expected = new ArrayList();
+		for (int i = 0; i < sorted.length; i += 2) {
+			expected.add(sorted[i]);
+		}
+		assertContents(expected, tree);
+
+		MockMarkerEntry entry = (MockMarkerEntry) expected.get(ARRAYSIZE / 2);
+		assertEquals(ARRAYSIZE / 2, tree.remove(entry));
+		assertFalse(tree.contains(entry));
+		expected.remove(entry);
+		assertContents(expected, tree);
+	}
+
+	public void testEqualEntriesKeepTheirOrder() {
+		MarkerEntryTree tree = new MarkerEntryTree(INITIAL_COMPARATOR, null);
+		MockMarkerEntry first = new MockMarkerEntry("a1");
+		MockMarkerEntry second = new MockMarkerEntry("a2");
+		MockMarkerEntry third = new MockMarkerEntry("a3");
+		MockMarkerEntry other = new MockMarkerEntry("b1");
+		assertEquals(0, tree.add(other, null, 0));
+		assertEquals(0, tree.add(first, null, 0));
+		assertEquals(1, tree.add(second, null, 0));
+		assertEquals(2, tree.add(third, null, 0));
+		assertEquals(0, tree.remove(first));
+		assertEquals(2, tree.add(first, null, 0));
+		assertContents(Arrays.asList(new Object[] { second,
+				third, first, other }), tree);
+	}
+
+	public void testCounts() {
+		MockMarkerEntry[] entries = MarkerSortUtilTest
+				.generateArray(ARRAYSIZE);
+		MarkerEntryTree tree = new MarkerEntryTree(NAME_COMPARATOR,
+				new Comparator() {
+					public int compare(Object o1, Object o2) {
+						return ((String) o1).compareTo((String) o2);
+					}
+				});
+		int[] expectedSeverities = new int[4];
+		for (int i = 0; i < entries.length; i++) {
+			int severity = i % 5 - 1;
+			tree.add(entries[i], entries[i].name.substring(0, 1), severity);
+			expectedSeverities[severity < 0 ? 3 : severity]++;
+		}
+		for (int i = 0; i < entries.length; i += 2) {
+			int severity = i % 5 - 1;
+			tree.remove(entries[i]);
+			expectedSeverities[severity < 0 ? 3 : severity]--;
+		}
+		int[] severities = tree.getSeverityCounts();
+		for (int i = 0; i < severities.length; i++) {
+			assertEquals(expectedSeverities[i], severities[i]);
+		}
+
+		// the categories follow the order of the entries
+		Object[] contents = tree.toArray();
+		int start = 0;
+		Iterator iterator = tree.getCategoryCounts().entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry next = (Map.Entry) iterator.next();
+			int count = ((Integer) next.getValue()).intValue();
+			assertTrue(count > 0);
+			for (int i = start; i < start + count; i++) {
+				assertEquals(next.getKey(),
+						((MockMarkerEntry) contents[i]).name.substring(0, 1));
+			}
+			start += count;
+		}
+		assertEquals(contents.length, start);
+	}
+
+	private static void assertContents(List expected, MarkerEntryTree tree) {
+		Object[] entries = tree.toArray();
+		assertEquals(expected.size(), tree.size());
+		assertEquals(expected.size(), entries.length);
+		for (int i = 0; i < entries.length; i++) {
+			assertSame(expected.get(i), entries[i]);
+		}
+	}
+}
@@ -0,0 +1,283 @@
+/*******************************************************************************
+ * Copyright (c) 2015 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.ui.tests.markers;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.ui.IWorkbenchPage;
+import org.eclipse.ui.internal.views.markers.CachedMarkerBuilder;
+import org.eclipse.ui.internal.views.markers.ExtendedMarkersView;
+import org.eclipse.ui.internal.views.markers.MarkerEntryTree;
+import org.eclipse.ui.tests.harness.util.UITestCase;
+import org.eclipse.ui.views.markers.MarkerItem;
+
+/**
+ * Tests that the marker changes applied to the sorted and grouped entries
+ * give the entries, categories and counts of a clean rebuild.
+ *
+ * @since 3.9
+ */
+public class MarkersIncrementalUpdateTest extends UITestCase {
+
+	private static final String PACKAGE = "org.eclipse.ui.internal.views.markers.";
+
+	private static final int MARKER_COUNT = 30;
+
+	// the seeds of the shapes of the trees the changes are applied to
+	private static final int SEEDS = 5;
+
+	private IProject project;
+
+	private CachedMarkerBuilder builder;
+
+	private Class markersClass;
+
+	private Constructor entryConstructor;
+
+	public MarkersIncrementalUpdateTest(String testName) {
+		super(testName);
+	}
+
+	protected void doSetUp() throws Exception {
+		super.doSetUp();
+		project = ResourcesPlugin.getWorkspace().getRoot().getProject(
+				"markersIncrementalUpdate");
+		if (!project.exists())
+			project.create(null);
+		if (!project.isOpen())
+			project.open(null);
+
+		IWorkbenchPage page = fWorkbench.getActiveWorkbenchWindow()
+				.getActivePage();
+		ExtendedMarkersView view = (ExtendedMarkersView) page
+				.showView("org.eclipse.ui.tests.markerTests");
+		Field field = ExtendedMarkersView.class.getDeclaredField("builder");
+		field.setAccessible(true);
+		builder = (CachedMarkerBuilder) field.get(view);
+
+		ClassLoader loader = ExtendedMarkersView.class.getClassLoader();
+		markersClass = loader.loadClass(PACKAGE + "Markers");
+		entryConstructor = loader.loadClass(PACKAGE + "MarkerEntry")
+				.getConstructor(new Class[] { IMarker.class });
+		entryConstructor.setAccessible(true);
+	}
+
+	protected void doTearDown() throws Exception {
+		MarkerEntryTree.setSeed(null);
+		if (project.exists())
+			project.delete(true, null);
+		super.doTearDown();
+	}
+
+	public void testChangesMatchRebuild() throws Exception {
+		for (int seed = 0; seed < SEEDS; seed++) {
+			MarkerEntryTree.setSeed(new Long(seed));
+			project.deleteMarkers(null, true, IResource.DEPTH_INFINITE);
+			checkChangesMatchRebuild();
+		}
+	}
+
+	private void checkChangesMatchRebuild() throws Exception {
+		List markers = new ArrayList();
+		for (int i = 0; i < MARKER_COUNT; i++) {
+			markers.add(createMarker(i, i % 3));
+		}
+		Object incremental = createMarkers(markers);
+		Object[] shown = getEntries(incremental);
+
+		Collection removed = new ArrayList();
+		Collection updated = new ArrayList();
+		// remove some markers
+		for (int i = 0; i < MARKER_COUNT; i += 5) {
+			IMarker marker = (IMarker) markers.get(i);
+			removed.add(createEntry(marker));
+			marker.delete();
+		}
+		markers.removeAll(getMarkers(removed));
+		// change the severity and the message of others, which moves them
+		// into other categories
+		List changed = new ArrayList();
+		for (int i = 1; i < markers.size(); i += 4) {
+			IMarker marker = (IMarker) markers.get(i);
+			marker.setAttribute(IMarker.SEVERITY,
+					(marker.getAttribute(IMarker.SEVERITY, 0) + 1) % 3);
+			marker.setAttribute(IMarker.MESSAGE, "changed " + i);
+			changed.add(marker);
+			updated.add(createEntry(marker));
+		}
+		// change others whose changes are only applied later, while the viewer
+		// already cleared the cached values of all entries
+		Collection late = new ArrayList();
+		for (int i = 3; i < markers.size(); i += 4) {
+			IMarker marker = (IMarker) markers.get(i);
+			marker.setAttribute(IMarker.MESSAGE, "late " + i);
+			late.add(createEntry(marker));
+		}
+		for (int i = 0; i < shown.length; i++) {
+			invoke(shown[i], "clearCache", new Class[0], new Object[0]);
+		}
+		// add new markers
+		for (int i = MARKER_COUNT; i < MARKER_COUNT + 10; i++) {
+			IMarker marker = createMarker(i, i % 3);
+			markers.add(marker);
+			updated.add(createEntry(marker));
+		}
+
+		assertTrue(((Boolean) invoke(incremental, "updateWithChanges",
+				new Class[] { Collection.class, Collection.class },
+				new Object[] { removed, updated })).booleanValue());
+		assertTrue(((Boolean) invoke(incremental, "updateWithChanges",
+				new Class[] { Collection.class, Collection.class },
+				new Object[] { new ArrayList(), late })).booleanValue());
+
+		Object rebuilt = createMarkers(markers);
+		assertSameMarkers(rebuilt, incremental);
+
+		// the entries of changed markers are reused, with their new values
+		Object[] entries = getEntries(incremental);
+		for (int i = 0; i < entries.length; i++) {
+			MarkerItem entry = (MarkerItem) entries[i];
+			if (!changed.contains(entry.getMarker()))
+				continue;
+			assertSame(find(shown, entry.getMarker()), entry);
+			assertEquals(entry.getMarker().getAttribute(IMarker.MESSAGE, ""),
+					entry.getAttributeValue(IMarker.MESSAGE, ""));
+		}
+	}
+
+	private IMarker createMarker(int index, int severity) throws Exception {
+		IMarker marker = project.createMarker(IMarker.PROBLEM);
+		marker.setAttribute(IMarker.SEVERITY, severity);
+		// unique messages, so that no two entries are sorted alike
+		marker.setAttribute(IMarker.MESSAGE, "marker " + (1000 + index));
+		return marker;
+	}
+
+	private Object createEntry(IMarker marker) throws Exception {
+		return entryConstructor.newInstance(new Object[] { marker });
+	}
+
+	/**
+	 * Return new Markers sorted and grouped from entries of the markers.
+	 */
+	private Object createMarkers(List markers) throws Exception {
+		Constructor constructor = markersClass
+				.getDeclaredConstructor(new Class[] { CachedMarkerBuilder.class });
+		constructor.setAccessible(true);
+		Object result = constructor.newInstance(new Object[] { builder });
+		Collection entries = new ArrayList();
+		for (int i = 0; i < markers.size(); i++) {
+			entries.add(createEntry((IMarker) markers.get(i)));
+		}
+		assertTrue(((Boolean) invoke(result, "updateWithNewMarkers",
+				new Class[] { Collection.class, boolean.class,
+						IProgressMonitor.class },
+				new Object[] { entries, Boolean.TRUE,
+						new NullProgressMonitor() })).booleanValue());
+		return result;
+	}
+
+	private void assertSameMarkers(Object expected, Object actual)
+			throws Exception {
+		Object[] expectedEntries = getEntries(expected);
+		Object[] actualEntries = getEntries(actual);
+		assertEquals(expectedEntries.length, actualEntries.length);
+		for (int i = 0; i < expectedEntries.length; i++) {
+			assertEquals(((MarkerItem) expectedEntries[i]).getMarker(),
+					((MarkerItem) actualEntries[i]).getMarker());
+		}
+
+		Object[] expectedCategories = (Object[]) invoke(expected,
+				"getCategories", new Class[0], new Object[0]);
+		Object[] actualCategories = (Object[]) invoke(actual,
+				"getCategories", new Class[0], new Object[0]);
+		assertEquals(expectedCategories.length, actualCategories.length);
+		for (int i = 0; i < expectedCategories.length; i++) {
+			assertEquals(invoke(expectedCategories[i], "getName", new Class[0],
+					new Object[0]), invoke(actualCategories[i], "getName",
+					new Class[0], new Object[0]));
+			assertEquals(getField(expectedCategories[i], "start"), getField(
+					actualCategories[i], "start"));
+			assertEquals(getField(expectedCategories[i], "end"), getField(
+					actualCategories[i], "end"));
+		}
+
+		Object[] expectedCounts = (Object[]) invoke(expected,
+				"getMarkerCounts", new Class[0], new Object[0]);
+		Object[] actualCounts = (Object[]) invoke(actual, "getMarkerCounts",
+				new Class[0], new Object[0]);
+		assertEquals(expectedCounts.length, actualCounts.length);
+		for (int i = 0; i < expectedCounts.length; i++) {
+			assertEquals(expectedCounts[i], actualCounts[i]);
+		}
+	}
+
+	private static Object[] getEntries(Object markers) throws Exception {
+		return (Object[]) invoke(markers, "getMarkerEntryArray", new Class[0],
+				new Object[0]);
+	}
+
+	private static Collection getMarkers(Collection entries) {
+		Collection result = new ArrayList();
+		Object[] array = entries.toArray();
+		for (int i = 0; i < array.length; i++) {
+			result.add(((MarkerItem) array[i]).getMarker());
+		}
+		return result;
+	}
+
+	private static Object find(Object[] entries, IMarker marker) {
+		for (int i = 0; i < entries.length; i++) {
+			if (marker.equals(((MarkerItem) entries[i]).getMarker()))
+				return entries[i];
+		}
+		return null;
+	}
+
+	private static Object invoke(Object target, String name, Class[] types,
+			Object[] args) throws Exception {
+		Method method = findMethod(target.getClass(), name, types);
+		method.setAccessible(true);
+		return method.invoke(target, args);
+	}
+
+	private static Method findMethod(Class type, String name, Class[] types)
+			throws NoSuchMethodException {
+		for (Class current = type; current != null; current = current
+				.getSuperclass()) {
+			try {
+				return current.getDeclaredMethod(name, types);
+			} catch (NoSuchMethodException e) {
+				// look in the superclass
+			}
+		}
+		throw new NoSuchMethodException(name);
+	}
+
+	private static Object getField(Object target, String name)
+			throws Exception {
+		Field field = target.getClass().getDeclaredField(name);
+		field.setAccessible(true);
+		return field.get(target);
+	}
+}